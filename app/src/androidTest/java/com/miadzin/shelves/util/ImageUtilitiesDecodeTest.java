@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+import java.io.ByteArrayOutputStream;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Shader;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Decodes a fixed set of covers, from a thumbnail to a scan larger than any
+ * screen, through {@link ImageUtilities#decodeSampled(byte[], int, int, int)}
+ * and checks the sample size and the configuration it picks. Logs the time
+ * and the peak heap of each cover against a full size ARGB_8888 decode.
+ */
+public class ImageUtilitiesDecodeTest extends AndroidTestCase {
+	private static final String LOG_TAG = "ImageUtilitiesDecodeTest";
+
+	// The size of a cover on the shelves
+	private static final int WIDTH = 150;
+	private static final int HEIGHT = 225;
+
+	private static final int ROUNDS = 5;
+
+	// Each cover: its width, its height, then the sample size expected
+	private static final int[][] COVERS = new int[][] { { 120, 160, 1 },
+			{ 300, 450, 2 }, { 320, 480, 2 }, { 600, 900, 4 },
+			{ 1000, 1000, 4 }, { 1200, 1800, 8 }, { 2400, 3600, 16 } };
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		// GJT: A pooled bitmap would be decoded into as it is
+		ImageUtilities.getBitmapPool().clear();
+	}
+
+	public void testSampleSize() {
+		for (int[] cover : COVERS) {
+			assertEquals(cover[0] + "x" + cover[1], cover[2], ImageUtilities
+					.getSampleSize(cover[0], cover[1], WIDTH, HEIGHT));
+		}
+		assertEquals(1, ImageUtilities.getSampleSize(2400, 3600, 0, 0));
+	}
+
+	public void testDecodeCovers() {
+		for (int[] cover : COVERS) {
+			final byte[] data = createCover(cover[0], cover[1]);
+			final String name = cover[0] + "x" + cover[1];
+
+			long best = Long.MAX_VALUE;
+			Bitmap bitmap = null;
+			for (int round = 0; round < ROUNDS; round++) {
+				if (bitmap != null)
+					bitmap.recycle();
+
+				final long start = SystemClock.elapsedRealtime();
+				bitmap = ImageUtilities.decodeSampled(data, data.length,
+						WIDTH, HEIGHT);
+				best = Math.min(best, SystemClock.elapsedRealtime() - start);
+				assertNotNull(name, bitmap);
+			}
+
+			assertEquals(name, cover[0] / cover[2], bitmap.getWidth());
+			assertEquals(name, cover[1] / cover[2], bitmap.getHeight());
+			assertEquals(name, Bitmap.Config.RGB_565, bitmap.getConfig());
+
+			final int peak = data.length + bitmap.getRowBytes()
+					* bitmap.getHeight();
+			final int full = data.length + cover[0] * cover[1] * 4;
+			assertTrue(name, peak <= full);
+			Log.i(LOG_TAG, name + ": " + data.length + " bytes decoded at 1/"
+					+ cover[2] + " in " + best + " ms, " + peak
+					+ " bytes peak instead of " + full);
+
+			bitmap.recycle();
+		}
+	}
+
+	public void testDecodeGarbage() {
+		final byte[] data = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 };
+		assertNull(ImageUtilities.decodeSampled(data, data.length, WIDTH,
+				HEIGHT));
+	}
+
+	/**
+	 * Encodes a JPEG cover of the specified size, a gradient so it doesn't
+	 * compress down to nothing.
+	 */
+	private static byte[] createCover(int width, int height) {
+		final Bitmap bitmap = Bitmap.createBitmap(width, height,
+				Bitmap.Config.ARGB_8888);
+		final Paint paint = new Paint();
+		paint.setShader(new LinearGradient(0, 0, width, height, 0xff204080,
+				0xffe0c040, Shader.TileMode.CLAMP));
+		new Canvas(bitmap).drawRect(0, 0, width, height, paint);
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+		bitmap.recycle();
+		return out.toByteArray();
+	}
+}
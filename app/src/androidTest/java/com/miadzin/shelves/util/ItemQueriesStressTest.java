@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.ProviderTestCase2;
+
+import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.provider.books.BooksProvider;
+import com.miadzin.shelves.provider.books.BooksStore;
+
+/**
+ * Runs the lookups of {@link ItemQueries} from many threads at once against
+ * a books provider, while another thread adds and deletes books, and checks
+ * that every lookup finds the row of the id it was given.
+ */
+public class ItemQueriesStressTest extends ProviderTestCase2<BooksProvider> {
+	private static final String AUTHORITY = "shelves";
+
+	private static final int BOOKS = 200;
+	private static final int READERS = 8;
+	private static final int LOOKUPS = 500;
+	private static final int WRITES = 200;
+	private static final long TIMEOUT = 120;
+
+	private static final Uri URI = BooksStore.Book.CONTENT_URI;
+
+	private final AtomicReference<Throwable> mFailure = new AtomicReference<Throwable>();
+
+	public ItemQueriesStressTest() {
+		super(BooksProvider.class, AUTHORITY);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		final ContentResolver resolver = getMockContentResolver();
+		for (int i = 0; i < BOOKS; i++) {
+			insert(resolver, getInternalId(i), getIsbn(i));
+		}
+	}
+
+	public void testLookupsFromManyThreads() throws Exception {
+		final ContentResolver resolver = getMockContentResolver();
+		final CountDownLatch start = new CountDownLatch(1);
+		final Thread[] threads = new Thread[READERS + 1];
+
+		for (int i = 0; i < READERS; i++) {
+			final long seed = i;
+			threads[i] = new Thread("reader-" + i) {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						read(resolver, new Random(seed));
+					} catch (Throwable t) {
+						mFailure.compareAndSet(null, t);
+					}
+				}
+			};
+		}
+
+		threads[READERS] = new Thread("writer") {
+			@Override
+			public void run() {
+				try {
+					start.await();
+					write(resolver);
+				} catch (Throwable t) {
+					mFailure.compareAndSet(null, t);
+				}
+			}
+		};
+
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		start.countDown();
+
+		final long deadline = System.currentTimeMillis()
+				+ TimeUnit.SECONDS.toMillis(TIMEOUT);
+		for (Thread thread : threads) {
+			thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+			assertFalse(thread.getName() + " did not finish", thread.isAlive());
+		}
+
+		final Throwable failure = mFailure.get();
+		if (failure instanceof Error)
+			throw (Error) failure;
+		if (failure != null)
+			throw new AssertionError(failure);
+	}
+
+	private static void read(ContentResolver resolver, Random random) {
+		for (int n = 0; n < LOOKUPS; n++) {
+			final int i = random.nextInt(BOOKS);
+			final String internalId = getInternalId(i);
+			final String isbn = getIsbn(i);
+
+			assertTrue(isbn, ItemQueries.exists(resolver, URI, isbn));
+			assertTrue(internalId, ItemQueries.exists(resolver, URI,
+					internalId));
+			assertTrue(internalId, ItemQueries.containsInternalId(resolver,
+					URI, internalId.toLowerCase(Locale.ENGLISH)));
+			assertEquals(internalId, ItemQueries.findInternalId(resolver,
+					URI, isbn, null));
+
+			final Cursor c = ItemQueries.queryByInternalId(resolver, URI,
+					internalId, null);
+			assertNotNull(internalId, c);
+			try {
+				assertEquals(isbn, c.getString(c
+						.getColumnIndexOrThrow(BaseItem.ISBN)));
+			} finally {
+				c.close();
+			}
+
+			final String missing = getIsbn(BOOKS + WRITES + i);
+			assertFalse(missing, ItemQueries.exists(resolver, URI, missing));
+			assertNull(missing, ItemQueries.findInternalId(resolver, URI,
+					missing, null));
+		}
+	}
+
+	private static void write(ContentResolver resolver) {
+		for (int n = 0; n < WRITES; n++) {
+			final String internalId = getInternalId(BOOKS + n);
+			insert(resolver, internalId, getIsbn(BOOKS + n));
+			assertTrue(internalId, ItemQueries.containsInternalId(resolver,
+					URI, internalId));
+			assertEquals(internalId, 1, ItemQueries.delete(resolver, URI,
+					internalId));
+			assertFalse(internalId, ItemQueries.containsInternalId(resolver,
+					URI, internalId));
+		}
+	}
+
+	private static void insert(ContentResolver resolver, String internalId,
+			String isbn) {
+		final ContentValues values = new ContentValues();
+		values.put(BaseItem.INTERNAL_ID, internalId);
+		values.put(BaseItem.TITLE, "Book " + internalId);
+		values.put(BaseItem.ISBN, isbn);
+		assertNotNull(internalId, resolver.insert(URI, values));
+	}
+
+	private static String getInternalId(int i) {
+		return "StressTest" + i;
+	}
+
+	private static String getIsbn(int i) {
+		return String.format(Locale.ENGLISH, "978%010d", i);
+	}
+}
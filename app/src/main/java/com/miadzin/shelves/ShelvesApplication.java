@@ -40,6 +40,8 @@ import com.miadzin.shelves.provider.tools.ToolsStore;
 import com.miadzin.shelves.provider.toys.ToysStore;
 import com.miadzin.shelves.provider.videogames.VideoGamesStore;
 import com.miadzin.shelves.util.CookieStore;
+import com.miadzin.shelves.util.CoverQueue;
+import com.miadzin.shelves.util.ResponseCache;
 import com.miadzin.shelves.util.auth.AccountChooser;
 import com.miadzin.shelves.util.auth.AuthManager;
 import com.miadzin.shelves.util.backup.BackupManagerWrapper;
@@ -70,6 +72,8 @@ public class ShelvesApplication extends Application {
 		super.onCreate();
 
 		CookieStore.initialize(this);
+		ResponseCache.initialize(this);
+		CoverQueue.initialize(this);
 
 		MobileAds.initialize(getApplicationContext(), "ca-app-pub-6838254586967039~4163145735");
 
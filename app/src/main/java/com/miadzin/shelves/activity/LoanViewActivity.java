@@ -9,9 +9,7 @@ import android.app.ProgressDialog;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
-import android.database.Cursor;
 import android.graphics.BitmapFactory;
-import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
@@ -43,6 +41,9 @@ import com.miadzin.shelves.activity.tools.ToolDetailsActivity;
 import com.miadzin.shelves.activity.toys.ToyDetailsActivity;
 import com.miadzin.shelves.activity.videogames.VideoGameDetailsActivity;
 import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.BaseItemContentProvider;
+import com.miadzin.shelves.base.BaseItemCoverLoader;
+import com.miadzin.shelves.base.BaseItemViewHolder;
 import com.miadzin.shelves.drawable.FastBitmapDrawable;
 import com.miadzin.shelves.provider.apparel.ApparelManager;
 import com.miadzin.shelves.provider.apparel.ApparelStore;
@@ -75,7 +76,7 @@ import com.miadzin.shelves.provider.videogames.VideoGamesManager;
 import com.miadzin.shelves.provider.videogames.VideoGamesStore;
 import com.miadzin.shelves.provider.videogames.VideoGamesStore.VideoGame;
 import com.miadzin.shelves.util.AnalyticsUtils;
-import com.miadzin.shelves.util.ImageUtilities;
+import com.miadzin.shelves.util.CollectionQuery;
 import com.miadzin.shelves.util.UIUtilities;
 import com.miadzin.shelves.util.loan.Calendars;
 
@@ -187,46 +188,26 @@ public class LoanViewActivity extends ListActivity {
 		}
 
 		private void getLoans(ArrayList<Loan> m_loans) {
-			Cursor c = null;
-			ContentResolver contentResolver = getContentResolver();
-
 			HashSet<Uri> uris = new HashSet<Uri>(
 					ShelvesApplication.TYPES_TO_URI.values());
 
-			try {
-				for (Uri uri : uris) {
-					c = contentResolver
-							.query(uri, new String[] { BaseItem.INTERNAL_ID,
-									BaseItem.TITLE, BaseItem.LOANED_TO,
-									BaseItem.LOAN_DATE }, BaseItem.LOANED_TO
-									+ " NOT NULL AND " + BaseItem.LOANED_TO
-									+ " != ''", null, null);
-
-					if (c.moveToFirst()) {
-						do {
-							Loan l = new Loan();
-							l.loanItemType = uri.toString();
-							l.loanItemId = c.getString(0);
-							l.loanName = c.getString(1);
-							l.loanTo = c.getString(2);
-							l.loanDate = c.getString(3);
-							l.loanCover = ImageUtilities.getCachedCover(
-									c.getString(0),
-									new FastBitmapDrawable(BitmapFactory
-											.decodeResource(getResources(),
-													R.drawable.unknown_cover)));
-							m_loans.add(l);
-							loanCount++;
-						} while (c.moveToNext());
-					}
-
-					if (c != null) {
-						c.close();
-					}
-				}
-
-			} catch (Exception e) {
-				Log.e(LOG_TAG, e.getMessage());
+			// GJT: Every collection at once, through the loan indexes; the
+			// covers are only read when their rows show up
+			final ArrayList<CollectionQuery.Row> rows = CollectionQuery.query(
+					getContentResolver(), uris, new String[] {
+							BaseItem.INTERNAL_ID, BaseItem.TITLE,
+							BaseItem.LOANED_TO, BaseItem.LOAN_DATE },
+					BaseItemContentProvider.LOANED_SELECTION, 3);
+
+			for (CollectionQuery.Row row : rows) {
+				Loan l = new Loan();
+				l.loanItemType = row.contentUri.toString();
+				l.loanItemId = row.values[0];
+				l.loanName = row.values[1];
+				l.loanTo = row.values[2];
+				l.loanDate = row.values[3];
+				m_loans.add(l);
+				loanCount++;
 			}
 		}
 
@@ -248,11 +229,14 @@ public class LoanViewActivity extends ListActivity {
 
 	private class LoanAdapter extends ArrayAdapter<Loan> {
 		private ArrayList<Loan> items;
+		private final FastBitmapDrawable mDefaultCover;
 
 		public LoanAdapter(Context context, int textViewResourceId,
 				ArrayList<Loan> items) {
 			super(context, textViewResourceId, items);
 			this.items = items;
+			mDefaultCover = new FastBitmapDrawable(BitmapFactory.decodeResource(
+					context.getResources(), R.drawable.unknown_cover));
 		}
 
 		@Override
@@ -276,7 +260,16 @@ public class LoanViewActivity extends ListActivity {
 				loan_title.setText(o.loanName);
 				loaned_to.setText(o.loanTo);
 				loan_date.setText(o.loanDate);
-				loan_icon.setImageDrawable(o.loanCover);
+
+				BaseItemViewHolder holder = (BaseItemViewHolder) convertView
+						.getTag();
+				if (holder == null) {
+					holder = new BaseItemViewHolder();
+					holder.cover = loan_icon;
+					convertView.setTag(holder);
+				}
+				holder.id = o.loanItemId;
+				BaseItemCoverLoader.load(holder, mDefaultCover);
 
 			}
 
@@ -493,6 +486,5 @@ public class LoanViewActivity extends ListActivity {
 		String loanTo;
 		String loanDate;
 		String loanItemType;
-		Drawable loanCover;
 	}
 }
\ No newline at end of file
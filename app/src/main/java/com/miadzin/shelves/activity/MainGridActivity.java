@@ -63,8 +63,8 @@ import com.miadzin.shelves.activity.software.SoftwareActivity;
 import com.miadzin.shelves.activity.tools.ToolsActivity;
 import com.miadzin.shelves.activity.toys.ToysActivity;
 import com.miadzin.shelves.activity.videogames.VideoGamesActivity;
-import com.miadzin.shelves.base.BaseItem;
 import com.miadzin.shelves.base.BaseItemActivity;
+import com.miadzin.shelves.base.BaseItemContentProvider;
 import com.miadzin.shelves.provider.apparel.ApparelStore;
 import com.miadzin.shelves.provider.boardgames.BoardGamesStore;
 import com.miadzin.shelves.provider.books.BooksStore;
@@ -90,6 +90,15 @@ public class MainGridActivity extends Activity {
 	private static final int CHANGE_LOCALE_EXPLANATION_DIALOG = 3;
 	private static final int CHANGE_LOCALE_DIALOG = 4;
 
+	// In the order of the grid
+	private static final Uri[] ITEM_URIS = new Uri[] {
+			ApparelStore.Apparel.CONTENT_URI,
+			BoardGamesStore.BoardGame.CONTENT_URI, BooksStore.Book.CONTENT_URI,
+			ComicsStore.Comic.CONTENT_URI, GadgetsStore.Gadget.CONTENT_URI,
+			MoviesStore.Movie.CONTENT_URI, MusicStore.Music.CONTENT_URI,
+			SoftwareStore.Software.CONTENT_URI, ToolsStore.Tool.CONTENT_URI,
+			ToysStore.Toy.CONTENT_URI, VideoGamesStore.VideoGame.CONTENT_URI };
+
 	private ImageAdapter ia;
 	private GridView mGridView;
 
@@ -180,164 +189,40 @@ public class MainGridActivity extends Activity {
 		setContentView(R.layout.main_grid);
 
 		ContentResolver cr = getContentResolver();
-		Cursor c = null;
-		Cursor l = null;
-		Cursor w = null;
 
 		itemCounter = 0;
 		itemCounts = new ArrayList<String>(0);
 		loanCounts = new ArrayList<String>(0);
 		wishlistCounts = new ArrayList<String>(0);
 
-		for (int i = 0; i < 11; i++) {
-			switch (i) {
-			case 0:
-				c = cr.query(ApparelStore.Apparel.CONTENT_URI,
-						new String[] { BaseItem._ID }, null, null, null);
-				l = cr.query(ApparelStore.Apparel.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.LOANED_TO }, BaseItem.LOANED_TO
-						+ " NOT NULL AND " + BaseItem.LOANED_TO + " != ''",
-						null, null);
-				w = cr.query(ApparelStore.Apparel.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.WISHLIST_DATE },
-						BaseItem.WISHLIST_DATE + " NOT NULL AND "
-								+ BaseItem.WISHLIST_DATE + " != ''", null, null);
-				break;
-
-			case 1:
-				c = cr.query(BoardGamesStore.BoardGame.CONTENT_URI,
-						new String[] { BaseItem._ID }, null, null, null);
-				l = cr.query(BoardGamesStore.BoardGame.CONTENT_URI,
-						new String[] { BaseItem._ID, BaseItem.LOANED_TO },
-						BaseItem.LOANED_TO + " NOT NULL AND "
-								+ BaseItem.LOANED_TO + " != ''", null, null);
-				w = cr.query(BoardGamesStore.BoardGame.CONTENT_URI,
-						new String[] { BaseItem._ID, BaseItem.WISHLIST_DATE },
-						BaseItem.WISHLIST_DATE + " NOT NULL AND "
-								+ BaseItem.WISHLIST_DATE + " != ''", null, null);
-				break;
-			case 2:
-				c = cr.query(BooksStore.Book.CONTENT_URI,
-						new String[] { BaseItem._ID }, null, null, null);
-				l = cr.query(BooksStore.Book.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.LOANED_TO }, BaseItem.LOANED_TO
-						+ " NOT NULL AND " + BaseItem.LOANED_TO + " != ''",
-						null, null);
-				w = cr.query(BooksStore.Book.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.WISHLIST_DATE },
-						BaseItem.WISHLIST_DATE + " NOT NULL AND "
-								+ BaseItem.WISHLIST_DATE + " != ''", null, null);
-				break;
-			case 3:
-				c = cr.query(ComicsStore.Comic.CONTENT_URI,
-						new String[] { BaseItem._ID }, null, null, null);
-				l = cr.query(ComicsStore.Comic.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.LOANED_TO }, BaseItem.LOANED_TO
-						+ " NOT NULL AND " + BaseItem.LOANED_TO + " != ''",
-						null, null);
-				w = cr.query(ComicsStore.Comic.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.WISHLIST_DATE },
-						BaseItem.WISHLIST_DATE + " NOT NULL AND "
-								+ BaseItem.WISHLIST_DATE + " != ''", null, null);
-				break;
-			case 4:
-				c = cr.query(GadgetsStore.Gadget.CONTENT_URI,
-						new String[] { BaseItem._ID }, null, null, null);
-				l = cr.query(GadgetsStore.Gadget.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.LOANED_TO }, BaseItem.LOANED_TO
-						+ " NOT NULL AND " + BaseItem.LOANED_TO + " != ''",
-						null, null);
-				w = cr.query(GadgetsStore.Gadget.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.WISHLIST_DATE },
-						BaseItem.WISHLIST_DATE + " NOT NULL AND "
-								+ BaseItem.WISHLIST_DATE + " != ''", null, null);
-				break;
-			case 5:
-				c = cr.query(MoviesStore.Movie.CONTENT_URI,
-						new String[] { BaseItem._ID }, null, null, null);
-				l = cr.query(MoviesStore.Movie.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.LOANED_TO }, BaseItem.LOANED_TO
-						+ " NOT NULL AND " + BaseItem.LOANED_TO + " != ''",
-						null, null);
-				w = cr.query(MoviesStore.Movie.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.WISHLIST_DATE },
-						BaseItem.WISHLIST_DATE + " NOT NULL AND "
-								+ BaseItem.WISHLIST_DATE + " != ''", null, null);
-				break;
-			case 6:
-				c = cr.query(MusicStore.Music.CONTENT_URI,
-						new String[] { BaseItem._ID }, null, null, null);
-				l = cr.query(MusicStore.Music.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.LOANED_TO }, BaseItem.LOANED_TO
-						+ " NOT NULL AND " + BaseItem.LOANED_TO + " != ''",
-						null, null);
-				w = cr.query(MusicStore.Music.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.WISHLIST_DATE },
-						BaseItem.WISHLIST_DATE + " NOT NULL AND "
-								+ BaseItem.WISHLIST_DATE + " != ''", null, null);
-				break;
-			case 7:
-				c = cr.query(SoftwareStore.Software.CONTENT_URI,
-						new String[] { BaseItem._ID }, null, null, null);
-				l = cr.query(SoftwareStore.Software.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.LOANED_TO }, BaseItem.LOANED_TO
-						+ " NOT NULL AND " + BaseItem.LOANED_TO + " != ''",
-						null, null);
-				w = cr.query(SoftwareStore.Software.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.WISHLIST_DATE },
-						BaseItem.WISHLIST_DATE + " NOT NULL AND "
-								+ BaseItem.WISHLIST_DATE + " != ''", null, null);
-				break;
-			case 8:
-				c = cr.query(ToolsStore.Tool.CONTENT_URI,
-						new String[] { BaseItem._ID }, null, null, null);
-				l = cr.query(ToolsStore.Tool.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.LOANED_TO }, BaseItem.LOANED_TO
-						+ " NOT NULL AND " + BaseItem.LOANED_TO + " != ''",
-						null, null);
-				w = cr.query(ToolsStore.Tool.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.WISHLIST_DATE },
-						BaseItem.WISHLIST_DATE + " NOT NULL AND "
-								+ BaseItem.WISHLIST_DATE + " != ''", null, null);
-				break;
-			case 9:
-				c = cr.query(ToysStore.Toy.CONTENT_URI,
-						new String[] { BaseItem._ID }, null, null, null);
-				l = cr.query(ToysStore.Toy.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.LOANED_TO }, BaseItem.LOANED_TO
-						+ " NOT NULL AND " + BaseItem.LOANED_TO + " != ''",
-						null, null);
-				w = cr.query(ToysStore.Toy.CONTENT_URI, new String[] {
-						BaseItem._ID, BaseItem.WISHLIST_DATE },
-						BaseItem.WISHLIST_DATE + " NOT NULL AND "
-								+ BaseItem.WISHLIST_DATE + " != ''", null, null);
-				break;
-			case 10:
-				c = cr.query(VideoGamesStore.VideoGame.CONTENT_URI,
-						new String[] { BaseItem._ID }, null, null, null);
-				l = cr.query(VideoGamesStore.VideoGame.CONTENT_URI,
-						new String[] { BaseItem._ID, BaseItem.LOANED_TO },
-						BaseItem.LOANED_TO + " NOT NULL AND "
-								+ BaseItem.LOANED_TO + " != ''", null, null);
-				w = cr.query(VideoGamesStore.VideoGame.CONTENT_URI,
-						new String[] { BaseItem._ID, BaseItem.WISHLIST_DATE },
-						BaseItem.WISHLIST_DATE + " NOT NULL AND "
-								+ BaseItem.WISHLIST_DATE + " != ''", null, null);
-				break;
+		// GJT: One aggregate row per type, cached by each provider
+		for (Uri uri : ITEM_URIS) {
+			int total = 0;
+			int loaned = 0;
+			int wishlist = 0;
+
+			Cursor c = cr.query(BaseItemContentProvider.getStatsUri(uri),
+					null, null, null, null);
+			if (c != null) {
+				try {
+					if (c.moveToFirst()) {
+						total = c.getInt(c
+								.getColumnIndexOrThrow(BaseItemContentProvider.STAT_TOTAL));
+						loaned = c.getInt(c
+								.getColumnIndexOrThrow(BaseItemContentProvider.STAT_LOANED));
+						wishlist = c.getInt(c
+								.getColumnIndexOrThrow(BaseItemContentProvider.STAT_WISHLIST));
+					}
+				} finally {
+					c.close();
+				}
 			}
 
-			itemCounts.add(Integer.toString(c.getCount()));
-			loanCounts.add(Integer.toString(l.getCount()));
-			wishlistCounts.add(Integer.toString(w.getCount()));
-
-			itemCounter += c.getCount();
+			itemCounts.add(Integer.toString(total));
+			loanCounts.add(Integer.toString(loaned));
+			wishlistCounts.add(Integer.toString(wishlist));
 
-			if (c != null)
-				c.close();
-			if (l != null)
-				l.close();
-			if (w != null)
-				w.close();
+			itemCounter += total;
 		}
 
 		TabSelector.changeActionBarTitle(getString(R.string.application_name),
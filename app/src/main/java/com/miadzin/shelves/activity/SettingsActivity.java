@@ -42,7 +42,7 @@ import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.database.Cursor;
-import android.graphics.Bitmap;
+import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.preference.ListPreference;
@@ -114,10 +114,10 @@ import com.miadzin.shelves.provider.videogames.VideoGamesStore;
 import com.miadzin.shelves.provider.videogames.VideoGamesStore.VideoGame;
 import com.miadzin.shelves.server.ServerInfo;
 import com.miadzin.shelves.util.AnalyticsUtils;
+import com.miadzin.shelves.util.CoverDownloadJob;
 import com.miadzin.shelves.util.ExportUtilities;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.ImageUtilities;
-import com.miadzin.shelves.util.ImportUtilities;
 import com.miadzin.shelves.util.Preferences;
 import com.miadzin.shelves.util.TextUtilities;
 import com.miadzin.shelves.util.UIUtilities;
@@ -193,6 +193,7 @@ public class SettingsActivity extends PreferenceActivity implements
 	private String[] collectionsToSend;
 
 	private ProgressDialog bringFromGoogleDialog;
+	private ProgressDialog downloadCoverDialog;
 	private AlertDialog bringFromGoogleResultDialog;
 	private int selectedCollectionIndex = -1;
 
@@ -1149,6 +1150,14 @@ public class SettingsActivity extends PreferenceActivity implements
 			sendToGoogleDialog.setMax(100);
 			sendToGoogleDialog.setProgress(10);
 			return sendToGoogleDialog;
+		case DOWNLOAD_COVER_DIALOG:
+			downloadCoverDialog = new ProgressDialog(this);
+			downloadCoverDialog.setIcon(android.R.drawable.ic_dialog_info);
+			downloadCoverDialog.setTitle(R.string.progress_dialog_wait);
+			downloadCoverDialog
+					.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+			downloadCoverDialog.setMessage("");
+			return downloadCoverDialog;
 		case BRING_FROM_GOOGLE_DIALOG:
 			bringFromGoogleDialog = new ProgressDialog(this);
 			bringFromGoogleDialog.setIcon(android.R.drawable.ic_dialog_info);
@@ -1422,9 +1431,8 @@ public class SettingsActivity extends PreferenceActivity implements
 		}
 	}
 
-	class DownloadCoverCollectionTask extends AsyncTask<Void, Void, Void> {
-		private ProgressDialog downloadingDialog = new ProgressDialog(
-				SettingsActivity.this);
+	class DownloadCoverCollectionTask extends AsyncTask<Void, Integer, Boolean>
+			implements CoverDownloadJob.ProgressListener {
 		private String mType = null;
 
 		DownloadCoverCollectionTask(String type) {
@@ -1437,156 +1445,32 @@ public class SettingsActivity extends PreferenceActivity implements
 		}
 
 		@Override
-		protected Void doInBackground(Void... arg0) {
-			Cursor c = null;
-			ContentResolver contentResolver = getContentResolver();
-			try {
-				if (mType.equals("shelves.downloadCoverApparel")) {
-					c = contentResolver.query(ApparelStore.Apparel.CONTENT_URI,
-							null, null, null, null);
-					if (c.moveToFirst()) {
-						do {
-							Apparel apparel = ApparelStore.Apparel
-									.fromCursor(c);
-							final String mID = apparel.getInternalId();
-							final Bitmap bitmap = Preferences
-									.getBitmapForManager(apparel);
-
-							ImageUtilities.deleteCachedCover(mID);
-							ImportUtilities.addCoverToCache(mID, ImageUtilities
-									.createCover(bitmap,
-											Preferences.getWidthForManager(),
-											Preferences.getHeightForManager()));
-						} while (c.moveToNext());
-					}
-				} else if (mType.equals("shelves.downloadCoverBoardGames")) {
-					c = contentResolver.query(
-							BoardGamesStore.BoardGame.CONTENT_URI, null, null,
-							null, null);
-					if (c.moveToFirst()) {
-						do {
-							BoardGame boardgame = BoardGamesStore.BoardGame
-									.fromCursor(c);
-							BoardGamesManager.deleteBoardGame(
-									getContentResolver(),
-									boardgame.getInternalId());
-						} while (c.moveToNext());
-					}
-				} else if (mType.equals("shelves.downloadCoverBooks")) {
-					c = contentResolver.query(BooksStore.Book.CONTENT_URI,
-							null, null, null, null);
-					if (c.moveToFirst()) {
-						do {
-							Book book = BooksStore.Book.fromCursor(c);
-							final String mID = book.getInternalId();
-							final Bitmap bitmap = Preferences
-									.getBitmapForManager(book);
-
-							ImageUtilities.deleteCachedCover(mID);
-							ImportUtilities.addCoverToCache(mID, ImageUtilities
-									.createCover(bitmap,
-											Preferences.getWidthForManager(),
-											Preferences.getHeightForManager()));
-						} while (c.moveToNext());
-					}
-				} else if (mType.equals("shelves.downloadCoverComics")) {
-					c = contentResolver.query(ComicsStore.Comic.CONTENT_URI,
-							null, null, null, null);
-					if (c.moveToFirst()) {
-						do {
-							Comic comic = ComicsStore.Comic.fromCursor(c);
-							ComicsManager.deleteComic(getContentResolver(),
-									comic.getInternalId());
-						} while (c.moveToNext());
-					}
-				} else if (mType.equals("shelves.downloadCoverGadgets")) {
-					c = contentResolver.query(GadgetsStore.Gadget.CONTENT_URI,
-							null, null, null, null);
-					if (c.moveToFirst()) {
-						do {
-							Gadget gadget = GadgetsStore.Gadget.fromCursor(c);
-							GadgetsManager.deleteGadget(getContentResolver(),
-									gadget.getInternalId());
-						} while (c.moveToNext());
-					}
-				} else if (mType.equals("shelves.downloadCoverMovies")) {
-					c = contentResolver.query(MoviesStore.Movie.CONTENT_URI,
-							null, null, null, null);
-					if (c.moveToFirst()) {
-						do {
-							Movie movie = MoviesStore.Movie.fromCursor(c);
-							MoviesManager.deleteMovie(getContentResolver(),
-									movie.getInternalId());
-						} while (c.moveToNext());
-					}
-				} else if (mType.equals("shelves.downloadCoverMusic")) {
-					c = contentResolver.query(MusicStore.Music.CONTENT_URI,
-							null, null, null, null);
-					if (c.moveToFirst()) {
-						do {
-							Music music = MusicStore.Music.fromCursor(c);
-							MusicManager.deleteMusic(getContentResolver(),
-									music.getInternalId());
-						} while (c.moveToNext());
-					}
-				} else if (mType.equals("shelves.downloadCoverSoftware")) {
-					c = contentResolver.query(
-							SoftwareStore.Software.CONTENT_URI, null, null,
-							null, null);
-					if (c.moveToFirst()) {
-						do {
-							Software software = SoftwareStore.Software
-									.fromCursor(c);
-							SoftwareManager.deleteSoftware(
-									getContentResolver(),
-									software.getInternalId());
-						} while (c.moveToNext());
-					}
-				} else if (mType.equals("shelves.downloadCoverTools")) {
-					c = contentResolver.query(ToolsStore.Tool.CONTENT_URI,
-							null, null, null, null);
-					if (c.moveToFirst()) {
-						do {
-							Tool tool = ToolsStore.Tool.fromCursor(c);
-							ToolsManager.deleteTool(getContentResolver(),
-									tool.getInternalId());
-						} while (c.moveToNext());
-					}
-				} else if (mType.equals("shelves.downloadCoverToys")) {
-					c = contentResolver.query(ToysStore.Toy.CONTENT_URI, null,
-							null, null, null);
-					if (c.moveToFirst()) {
-						do {
-							Toy toy = ToysStore.Toy.fromCursor(c);
-							ToysManager.deleteToy(getContentResolver(),
-									toy.getInternalId());
-						} while (c.moveToNext());
-					}
-				} else if (mType.equals("shelves.downloadCoverVideoGames")) {
-					c = contentResolver.query(
-							VideoGamesStore.VideoGame.CONTENT_URI, null, null,
-							null, null);
-					if (c.moveToFirst()) {
-						do {
-							VideoGame videogame = VideoGamesStore.VideoGame
-									.fromCursor(c);
-							VideoGamesManager.deleteVideoGame(
-									getContentResolver(),
-									videogame.getInternalId());
-						} while (c.moveToNext());
-					}
-				}
-			} finally {
-				if (c != null)
-					c.close();
+		protected Boolean doInBackground(Void... arg0) {
+			final Uri contentUri = getDownloadCoverUri(mType);
+			if (contentUri == null)
+				return false;
+
+			// GJT: Only the ids and URLs are read, and an interrupted job
+			// picks up where it stopped
+			return new CoverDownloadJob(SettingsActivity.this, contentUri)
+					.run(this);
+		}
+
+		public void onProgress(int done, int total) {
+			publishProgress(done, total);
+		}
+
+		@Override
+		protected void onProgressUpdate(Integer... values) {
+			if (downloadCoverDialog != null) {
+				downloadCoverDialog.setMax(values[1]);
+				downloadCoverDialog.setProgress(values[0]);
 			}
-			return null;
 		}
 
 		@Override
-		protected void onPostExecute(Void unused) {
-			if (downloadingDialog != null)
-				dismissDialogSafely(DOWNLOAD_COVER_DIALOG);
+		protected void onPostExecute(Boolean unused) {
+			dismissDialogSafely(DOWNLOAD_COVER_DIALOG);
 
 			/*
 			 * UIUtilities.showToast(getApplicationContext(),
@@ -1596,6 +1480,33 @@ public class SettingsActivity extends PreferenceActivity implements
 
 	}
 
+	private static Uri getDownloadCoverUri(String type) {
+		if (type.equals("shelves.downloadCoverApparel")) {
+			return ApparelStore.Apparel.CONTENT_URI;
+		} else if (type.equals("shelves.downloadCoverBoardGames")) {
+			return BoardGamesStore.BoardGame.CONTENT_URI;
+		} else if (type.equals("shelves.downloadCoverBooks")) {
+			return BooksStore.Book.CONTENT_URI;
+		} else if (type.equals("shelves.downloadCoverComics")) {
+			return ComicsStore.Comic.CONTENT_URI;
+		} else if (type.equals("shelves.downloadCoverGadgets")) {
+			return GadgetsStore.Gadget.CONTENT_URI;
+		} else if (type.equals("shelves.downloadCoverMovies")) {
+			return MoviesStore.Movie.CONTENT_URI;
+		} else if (type.equals("shelves.downloadCoverMusic")) {
+			return MusicStore.Music.CONTENT_URI;
+		} else if (type.equals("shelves.downloadCoverSoftware")) {
+			return SoftwareStore.Software.CONTENT_URI;
+		} else if (type.equals("shelves.downloadCoverTools")) {
+			return ToolsStore.Tool.CONTENT_URI;
+		} else if (type.equals("shelves.downloadCoverToys")) {
+			return ToysStore.Toy.CONTENT_URI;
+		} else if (type.equals("shelves.downloadCoverVideoGames")) {
+			return VideoGamesStore.VideoGame.CONTENT_URI;
+		}
+		return null;
+	}
+
 	public class ExportEverythingTask extends AsyncTask<Void, Void, Void> {
 		private Boolean mToDropbox = false;
 		private ContentResolver mResolver = getContentResolver();
@@ -18,7 +18,6 @@
 package com.miadzin.shelves.activity;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import android.app.Activity;
@@ -27,6 +26,7 @@ import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Intent;
 import android.database.Cursor;
+import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.KeyEvent;
@@ -45,6 +45,7 @@ import android.widget.ListView;
 import com.miadzin.shelves.R;
 import com.miadzin.shelves.ShelvesApplication;
 import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.BaseItemContentProvider;
 import com.miadzin.shelves.util.ActivityHelper;
 import com.miadzin.shelves.util.AnalyticsUtils;
 import com.miadzin.shelves.util.TextUtilities;
@@ -283,29 +284,34 @@ public class TagActivity extends Activity {
 		public Object doInBackground(Object... params) {
 			Cursor c = null;
 			ContentResolver contentResolver = getContentResolver();
+			final Uri uri = ShelvesApplication.TYPES_TO_URI.get(mType);
 			mUserTags = new ArrayList<String>();
 
-			c = contentResolver.query(
-					ShelvesApplication.TYPES_TO_URI.get(mType), new String[] {
-							BaseItem.INTERNAL_ID, BaseItem.TAGS },
-					BaseItem.TAGS + " NOT NULL", null, null);
-			if (c.moveToFirst()) {
-				do {
-					if (mID.equals(c.getString(0))) {
-						myTags = TextUtilities.breakString(c.getString(1), ",");
-					}
-					for (String tag : c.getString(1).split(",")) {
-						if (!TextUtilities.isEmpty(tag)
-								&& !mUserTags.contains(tag)) {
-							mUserTags.add(tag);
-						}
-					}
-				} while (c.moveToNext());
+			try {
+				c = contentResolver.query(uri, new String[] { BaseItem.TAGS },
+						BaseItem.INTERNAL_ID + "=?", new String[] { mID },
+						null);
+				if (c.moveToFirst()) {
+					myTags = BaseItemContentProvider.splitTags(c.getString(0));
+				}
+			} finally {
+				if (c != null)
+					c.close();
 			}
 
-			if (c != null)
-				c.close();
-			Collections.sort(mUserTags);
+			// GJT: Already distinct and sorted by the provider
+			try {
+				c = contentResolver.query(
+						BaseItemContentProvider.getTagsUri(uri),
+						new String[] { BaseItemContentProvider.TAG_NAME },
+						null, null, null);
+				while (c.moveToNext()) {
+					mUserTags.add(c.getString(0));
+				}
+			} finally {
+				if (c != null)
+					c.close();
+			}
 			return null;
 		}
 
@@ -9,9 +9,7 @@ import android.app.ProgressDialog;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
-import android.database.Cursor;
 import android.graphics.BitmapFactory;
-import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
@@ -43,6 +41,9 @@ import com.miadzin.shelves.activity.tools.ToolDetailsActivity;
 import com.miadzin.shelves.activity.toys.ToyDetailsActivity;
 import com.miadzin.shelves.activity.videogames.VideoGameDetailsActivity;
 import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.BaseItemContentProvider;
+import com.miadzin.shelves.base.BaseItemCoverLoader;
+import com.miadzin.shelves.base.BaseItemViewHolder;
 import com.miadzin.shelves.drawable.FastBitmapDrawable;
 import com.miadzin.shelves.provider.apparel.ApparelManager;
 import com.miadzin.shelves.provider.apparel.ApparelStore;
@@ -75,7 +76,7 @@ import com.miadzin.shelves.provider.videogames.VideoGamesManager;
 import com.miadzin.shelves.provider.videogames.VideoGamesStore;
 import com.miadzin.shelves.provider.videogames.VideoGamesStore.VideoGame;
 import com.miadzin.shelves.util.AnalyticsUtils;
-import com.miadzin.shelves.util.ImageUtilities;
+import com.miadzin.shelves.util.CollectionQuery;
 import com.miadzin.shelves.util.UIUtilities;
 
 public class WishlistViewActivity extends ListActivity {
@@ -185,44 +186,25 @@ public class WishlistViewActivity extends ListActivity {
 		}
 
 		private void getWishlists(ArrayList<Wishlist> m_wishlists) {
-			Cursor c = null;
-			ContentResolver contentResolver = getContentResolver();
-
 			HashSet<Uri> uris = new HashSet<Uri>(
 					ShelvesApplication.TYPES_TO_URI.values());
 
-			try {
-				for (Uri uri : uris) {
-					c = contentResolver.query(uri, new String[] {
+			// GJT: Every collection at once, through the wishlist indexes;
+			// the covers are only read when their rows show up
+			final ArrayList<CollectionQuery.Row> rows = CollectionQuery.query(
+					getContentResolver(), uris, new String[] {
 							BaseItem.INTERNAL_ID, BaseItem.TITLE,
-							BaseItem.WISHLIST_DATE }, BaseItem.WISHLIST_DATE
-							+ " NOT NULL AND " + BaseItem.WISHLIST_DATE
-							+ " != ''", null, null);
-
-					if (c.moveToFirst()) {
-						do {
-							Wishlist w = new Wishlist();
-							w.wishlistItemType = uri.toString();
-							w.wishlistItemId = c.getString(0);
-							w.wishlistName = c.getString(1);
-							w.wishlistDate = c.getString(2);
-							w.wishlistCover = ImageUtilities.getCachedCover(
-									c.getString(0),
-									new FastBitmapDrawable(BitmapFactory
-											.decodeResource(getResources(),
-													R.drawable.unknown_cover)));
-							m_wishlists.add(w);
-							wishlistCount++;
-						} while (c.moveToNext());
-					}
-
-					if (c != null) {
-						c.close();
-					}
-				}
-
-			} catch (Exception e) {
-				Log.e(LOG_TAG, e.getMessage());
+							BaseItem.WISHLIST_DATE },
+					BaseItemContentProvider.WISHLIST_SELECTION, 2);
+
+			for (CollectionQuery.Row row : rows) {
+				Wishlist w = new Wishlist();
+				w.wishlistItemType = row.contentUri.toString();
+				w.wishlistItemId = row.values[0];
+				w.wishlistName = row.values[1];
+				w.wishlistDate = row.values[2];
+				m_wishlists.add(w);
+				wishlistCount++;
 			}
 		}
 
@@ -244,11 +226,14 @@ public class WishlistViewActivity extends ListActivity {
 
 	private class WishlistAdapter extends ArrayAdapter<Wishlist> {
 		private ArrayList<Wishlist> items;
+		private final FastBitmapDrawable mDefaultCover;
 
 		public WishlistAdapter(Context context, int textViewResourceId,
 				ArrayList<Wishlist> items) {
 			super(context, textViewResourceId, items);
 			this.items = items;
+			mDefaultCover = new FastBitmapDrawable(BitmapFactory.decodeResource(
+					context.getResources(), R.drawable.unknown_cover));
 		}
 
 		@Override
@@ -268,7 +253,16 @@ public class WishlistViewActivity extends ListActivity {
 
 				wishlist_title.setText(o.wishlistName);
 				wishlist_date.setText(o.wishlistDate);
-				wishlist_icon.setImageDrawable(o.wishlistCover);
+
+				BaseItemViewHolder holder = (BaseItemViewHolder) convertView
+						.getTag();
+				if (holder == null) {
+					holder = new BaseItemViewHolder();
+					holder.cover = wishlist_icon;
+					convertView.setTag(holder);
+				}
+				holder.id = o.wishlistItemId;
+				BaseItemCoverLoader.load(holder, mDefaultCover);
 
 			}
 
@@ -411,6 +405,5 @@ public class WishlistViewActivity extends ListActivity {
 		String wishlistName;
 		String wishlistDate;
 		String wishlistItemType;
-		Drawable wishlistCover;
 	}
 }
\ No newline at end of file
@@ -47,7 +47,7 @@ import android.widget.TextView;
 import com.miadzin.shelves.R;
 import com.miadzin.shelves.activity.SettingsActivity;
 import com.miadzin.shelves.base.AddBaseItemActivity;
-import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.SearchThumbnailLoader;
 import com.miadzin.shelves.drawable.FastBitmapDrawable;
 import com.miadzin.shelves.provider.apparel.ApparelManager;
 import com.miadzin.shelves.provider.apparel.ApparelStore;
@@ -97,13 +97,18 @@ public class AddApparelActivity extends AddBaseItemActivity implements
 		if (oldAdapter != null) {
 			final int count = oldAdapter.getCount();
 			for (int i = 0; i < count; i++) {
-				resultsAdapter.add(oldAdapter.getItem(i));
+				final ResultApparel result = oldAdapter.getItem(i);
+				resultsAdapter.add(result);
+				// GJT: The old screen dropped the thumbnails still loading
+				if (result.cover == null)
+					loadThumbnail(result);
 			}
 		}
 
 		final ListView searchResults = (ListView) findViewById(R.id.list_search_results);
 		searchResults.setAdapter(resultsAdapter);
 		searchResults.setOnItemClickListener(this);
+		setupResultsList(searchResults);
 		registerForContextMenu(searchResults);
 	}
 
@@ -114,6 +119,12 @@ public class AddApparelActivity extends AddBaseItemActivity implements
 				.getText().toString());
 	}
 
+	@Override
+	protected boolean isSearching() {
+		return mSearchTask != null
+				&& mSearchTask.getStatus() != AsyncTask.Status.FINISHED;
+	}
+
 	@Override
 	protected void onDestroy() {
 		super.onDestroy();
@@ -378,12 +389,23 @@ public class AddApparelActivity extends AddBaseItemActivity implements
 		}
 	}
 
+	private void loadThumbnail(final ResultApparel apparel) {
+		mThumbnailLoader.load(apparel.apparel, COVER_WIDTH, COVER_HEIGHT,
+				new SearchThumbnailLoader.Callback() {
+					public void onThumbnailLoaded(FastBitmapDrawable cover) {
+						apparel.cover = cover;
+						mApparelAdapter.notifyDataSetChanged();
+					}
+				});
+	}
+
 	private class SearchTask extends AsyncTask<String, ResultApparel, Void>
 			implements ApparelStore.ApparelSearchListener {
 
 		private final Object mLock = new Object();
 		private String mQuery;
 		private boolean clearResults;
+		private int mFound;
 
 		public SearchTask(boolean clear) {
 			clearResults = clear;
@@ -413,8 +435,10 @@ public class AddApparelActivity extends AddBaseItemActivity implements
 				});
 			}
 
-			if (clearResults)
+			if (clearResults) {
+				mThumbnailLoader.cancel();
 				mApparelAdapter.clear();
+			}
 			showPanel(mSearchPanel, true);
 		}
 
@@ -439,12 +463,15 @@ public class AddApparelActivity extends AddBaseItemActivity implements
 		public void onProgressUpdate(ResultApparel... values) {
 			for (ResultApparel apparel : values) {
 				mApparelAdapter.add(apparel);
+				loadThumbnail(apparel);
 			}
+			mFound += values.length;
 		}
 
 		@Override
 		public void onPostExecute(Void ignore) {
 			enableSearchPanel();
+			mMoreResults = mFound > 0;
 
 			UIUtilities.showToast(
 					AddApparelActivity.this,
@@ -457,6 +484,7 @@ public class AddApparelActivity extends AddBaseItemActivity implements
 		@Override
 		public void onCancelled() {
 			enableSearchPanel();
+			mMoreResults = false;
 
 			hidePanel(mSearchPanel, true);
 		}
@@ -527,19 +555,10 @@ public class AddApparelActivity extends AddBaseItemActivity implements
 		final String title;
 		final String authors;
 
-		final FastBitmapDrawable cover;
+		FastBitmapDrawable cover;
 
 		ResultApparel(ApparelStore.Apparel apparel) {
 			this.apparel = apparel;
-			Bitmap bitmap = ImageUtilities.createShadow(
-					apparel.loadCover(BaseItem.ImageSize.THUMBNAIL),
-					COVER_WIDTH, COVER_HEIGHT);
-			if (bitmap != null) {
-				cover = new FastBitmapDrawable(bitmap);
-			} else {
-				cover = null;
-			}
-
 			title = apparel.getTitle();
 			authors = apparel.getAuthors();
 			text = title + ' ' + authors;
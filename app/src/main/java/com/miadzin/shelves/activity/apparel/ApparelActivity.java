@@ -19,8 +19,10 @@ package com.miadzin.shelves.activity.apparel;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Intent;
@@ -61,6 +63,7 @@ import com.miadzin.shelves.scan.ScanIntentResult;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.IOUtilities.inputTypes;
 import com.miadzin.shelves.util.ImageUtilities;
+import com.miadzin.shelves.util.ImportEngine;
 import com.miadzin.shelves.util.ImportResults;
 import com.miadzin.shelves.util.ImportUtilities;
 import com.miadzin.shelves.util.Preferences;
@@ -796,7 +799,6 @@ public class ApparelActivity extends BaseItemActivity {
 
 		private int existsImport = 0;
 		private int missingImport = 0;
-		private int manualItemNum = 0;
 
 		StringBuilder existingItems = new StringBuilder();
 		StringBuilder missingItems = new StringBuilder();
@@ -843,7 +845,7 @@ public class ApparelActivity extends BaseItemActivity {
 
 		@Override
 		public Integer doInBackground(Void... params) {
-			int imported = 0;
+			Integer imported = 0;
 
 			try {
 				if (mApparel == null)
@@ -852,83 +854,74 @@ public class ApparelActivity extends BaseItemActivity {
 				// GJT: Solves an odd race condition from above
 				if (mApparel == null) {
 					onCancelImport();
+					return null;
 				}
 
-				final List<ItemImport> list = mApparel;
 				final ApparelStore apparelsStore = new ApparelStore();
-				final int count = list.size();
 				final ContentResolver resolver = mResolver;
-				final AtomicInteger importCount = mImportCount;
-
-				for (int i = importCount.get(); i < count; i++) {
-					publishProgress(i, count);
-					if (isCancelled())
-						return null;
-					final ItemImport currItem = list.get(i);
-
-					final String id;
-					if (mType == inputTypes.shelvesApparel) {
-						id = TextUtilities.unprotectString(currItem.internalID);
-					} else {
-						id = currItem.id_one;
-					}
-
-					if (!ApparelManager.apparelExists(mResolver, id, null,
-							mType)) {
-						if (isCancelled())
-							return null;
-
-						ApparelStore.Apparel apparel = null;
-						final boolean isManual = TextUtilities
-								.isManualItem(currItem.internalID);
-						if (!isManual) {
-							apparel = ApparelManager.loadAndAddApparel(
-									resolver, id, apparelsStore, mType,
-									ApparelActivity.this);
-						}
-						if (apparel != null) {
-							addOrUpdate(apparel, mType, getBaseContext()
-									.getString(R.string.apparel_label),
-									currItem);
-
-							android.util.Log.d(LOG_TAG, apparel.toString());
-							imported++;
-						} else if (isManual) {
-							addManualItemsFromImport(
-									ApparelStore.Apparel.CONTENT_URI,
-									manualItemNum);
-
-							android.util.Log.d(LOG_TAG, "Manual add for" + id);
-							imported++;
-							manualItemNum++;
-						} else {
-							missingImport++;
-							if (TextUtilities.isEmpty(id))
-								missingItems.append(R.string.error_no_barcode);
-							else
-								missingItems.append(id).append("\n");
-						}
-					} else {
-						existsImport++;
-						existingItems.append(id).append("\n");
-
-						if (pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
-								true))
-							addOrUpdate(
-									ApparelManager.findApparelById(mResolver,
-											id, null),
-									mType,
-									getBaseContext().getString(
-											R.string.apparel_label), currItem);
-					}
-					importCount.incrementAndGet();
-					try {
-						Thread.sleep(1000); // GJT: Let AWS rest
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					}
-				}
 
+				final ImportEngine<ApparelStore.Apparel> engine = new ImportEngine<ApparelStore.Apparel>(
+						resolver, ApparelStore.Apparel.CONTENT_URI, mApparel,
+						mImportCount,
+						new ImportEngine.BatchItemHandler<ApparelStore.Apparel>() {
+							public boolean isCancelled() {
+								return ImportTask.this.isCancelled();
+							}
+
+							public void onProgress(int done, int count) {
+								publishProgress(done, count);
+							}
+
+							public String getId(ItemImport currItem) {
+								if (mType == inputTypes.shelvesApparel)
+									return TextUtilities
+											.unprotectString(currItem.internalID);
+								return currItem.id_one;
+							}
+
+							public ApparelStore.Apparel loadAndAdd(String id) {
+								return ApparelManager.loadAndAddApparel(resolver, id,
+										apparelsStore, mType, ApparelActivity.this);
+							}
+
+							public int getBatchSize() {
+								return ApparelStore.MAX_LOOKUP_IDS;
+							}
+
+							public Map<String, ApparelStore.Apparel> loadAndAddAll(
+									List<String> ids) {
+								return ApparelManager.loadAndAddApparel(resolver, ids,
+										apparelsStore, mType, ApparelActivity.this);
+							}
+
+							public ApparelStore.Apparel findExisting(String id) {
+								return ApparelManager.findApparelById(resolver, id,
+										null);
+							}
+
+							public ContentProviderOperation newUpdate(ApparelStore.Apparel apparel,
+									ItemImport currItem) {
+								return newImportUpdate(apparel, mType,
+										getString(R.string.apparel_label),
+										currItem);
+							}
+
+							public ContentProviderOperation newManualInsert(
+									int manualItemNum) {
+								return newManualItemInsert(
+										ApparelStore.Apparel.CONTENT_URI, manualItemNum);
+							}
+						}, pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
+								true), getString(R.string.error_no_barcode));
+
+				imported = engine.run();
+				if (imported == null)
+					return null;
+
+				missingImport = engine.getMissingCount();
+				missingItems.append(engine.getMissingItems());
+				existsImport = engine.getExistingCount();
+				existingItems.append(engine.getExistingItems());
 			} catch (IOException e) {
 				return null;
 			}
@@ -1024,12 +1017,7 @@ public class ApparelActivity extends BaseItemActivity {
 			if (scrollState == SCROLL_STATE_IDLE) {
 				mScrollHandler.removeCallbacks(mShowPopup);
 
-				final ApparelUpdater apparelUpdater = mApparelUpdater;
-				final int count = view.getChildCount();
-				for (int i = 0; i < count; i++) {
-					apparelUpdater.offer(((BaseItemViewHolder) view.getChildAt(
-							i).getTag()).id);
-				}
+				mApparelUpdater.offerRows(view);
 			} else {
 				mApparelUpdater.clear();
 				mApparelUpdater.clear();
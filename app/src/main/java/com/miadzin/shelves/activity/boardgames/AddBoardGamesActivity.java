@@ -47,7 +47,7 @@ import android.widget.TextView;
 import com.miadzin.shelves.R;
 import com.miadzin.shelves.activity.SettingsActivity;
 import com.miadzin.shelves.base.AddBaseItemActivity;
-import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.SearchThumbnailLoader;
 import com.miadzin.shelves.drawable.FastBitmapDrawable;
 import com.miadzin.shelves.provider.boardgames.BoardGamesManager;
 import com.miadzin.shelves.provider.boardgames.BoardGamesStore;
@@ -96,13 +96,18 @@ public class AddBoardGamesActivity extends AddBaseItemActivity implements
 		if (oldAdapter != null) {
 			final int count = oldAdapter.getCount();
 			for (int i = 0; i < count; i++) {
-				resultsAdapter.add(oldAdapter.getItem(i));
+				final ResultBoardGame result = oldAdapter.getItem(i);
+				resultsAdapter.add(result);
+				// GJT: The old screen dropped the thumbnails still loading
+				if (result.cover == null)
+					loadThumbnail(result);
 			}
 		}
 
 		final ListView searchResults = (ListView) findViewById(R.id.list_search_results);
 		searchResults.setAdapter(resultsAdapter);
 		searchResults.setOnItemClickListener(this);
+		setupResultsList(searchResults);
 		registerForContextMenu(searchResults);
 	}
 
@@ -111,6 +116,12 @@ public class AddBoardGamesActivity extends AddBaseItemActivity implements
 		showDialog(UNSUPPORTED_FEATURE_DIALOG_ID);
 	}
 
+	@Override
+	protected boolean isSearching() {
+		return mSearchTask != null
+				&& mSearchTask.getStatus() != AsyncTask.Status.FINISHED;
+	}
+
 	@Override
 	protected void onDestroy() {
 		super.onDestroy();
@@ -377,12 +388,23 @@ public class AddBoardGamesActivity extends AddBaseItemActivity implements
 		}
 	}
 
+	private void loadThumbnail(final ResultBoardGame boardgame) {
+		mThumbnailLoader.load(boardgame.boardgame, COVER_WIDTH, COVER_HEIGHT,
+				new SearchThumbnailLoader.Callback() {
+					public void onThumbnailLoaded(FastBitmapDrawable cover) {
+						boardgame.cover = cover;
+						mBoardGamesAdapter.notifyDataSetChanged();
+					}
+				});
+	}
+
 	private class SearchTask extends AsyncTask<String, ResultBoardGame, Void>
 			implements BoardGamesStore.BoardGameSearchListener {
 
 		private final Object mLock = new Object();
 		private String mQuery;
 		private boolean clearResults;
+		private int mFound;
 
 		public SearchTask(boolean clear) {
 			clearResults = clear;
@@ -412,8 +434,10 @@ public class AddBoardGamesActivity extends AddBaseItemActivity implements
 				});
 			}
 
-			if (clearResults)
+			if (clearResults) {
+				mThumbnailLoader.cancel();
 				mBoardGamesAdapter.clear();
+			}
 			showPanel(mSearchPanel, true);
 		}
 
@@ -439,12 +463,15 @@ public class AddBoardGamesActivity extends AddBaseItemActivity implements
 		public void onProgressUpdate(ResultBoardGame... values) {
 			for (ResultBoardGame boardgame : values) {
 				mBoardGamesAdapter.add(boardgame);
+				loadThumbnail(boardgame);
 			}
+			mFound += values.length;
 		}
 
 		@Override
 		public void onPostExecute(Void ignore) {
 			enableSearchPanel();
+			mMoreResults = mFound > 0;
 
 			UIUtilities.showToast(
 					AddBoardGamesActivity.this,
@@ -457,6 +484,7 @@ public class AddBoardGamesActivity extends AddBaseItemActivity implements
 		@Override
 		public void onCancelled() {
 			enableSearchPanel();
+			mMoreResults = false;
 
 			hidePanel(mSearchPanel, true);
 		}
@@ -520,19 +548,10 @@ public class AddBoardGamesActivity extends AddBaseItemActivity implements
 		final String title;
 		final String authors;
 
-		final FastBitmapDrawable cover;
+		FastBitmapDrawable cover;
 
 		ResultBoardGame(BoardGamesStore.BoardGame boardgame) {
 			this.boardgame = boardgame;
-			Bitmap bitmap = ImageUtilities.createShadow(
-					boardgame.loadCover(BaseItem.ImageSize.THUMBNAIL),
-					COVER_WIDTH, COVER_HEIGHT);
-			if (bitmap != null) {
-				cover = new FastBitmapDrawable(bitmap);
-			} else {
-				cover = null;
-			}
-
 			title = boardgame.getTitle();
 			authors = boardgame.getAuthor();
 			text = title + ' ' + authors;
@@ -19,9 +19,9 @@ package com.miadzin.shelves.activity.boardgames;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Intent;
@@ -62,6 +62,7 @@ import com.miadzin.shelves.scan.ScanIntentResult;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.IOUtilities.inputTypes;
 import com.miadzin.shelves.util.ImageUtilities;
+import com.miadzin.shelves.util.ImportEngine;
 import com.miadzin.shelves.util.ImportResults;
 import com.miadzin.shelves.util.ImportUtilities;
 import com.miadzin.shelves.util.Preferences;
@@ -817,7 +818,6 @@ public class BoardGamesActivity extends BaseItemActivity {
 
 		private int existsImport = 0;
 		private int missingImport = 0;
-		private int manualItemNum = 0;
 
 		StringBuilder existingItems = new StringBuilder();
 		StringBuilder missingItems = new StringBuilder();
@@ -864,7 +864,7 @@ public class BoardGamesActivity extends BaseItemActivity {
 
 		@Override
 		public Integer doInBackground(Void... params) {
-			int imported = 0;
+			Integer imported = 0;
 
 			try {
 				if (mBoardGames == null)
@@ -873,93 +873,64 @@ public class BoardGamesActivity extends BaseItemActivity {
 				// GJT: Solves an odd race condition from above
 				if (mBoardGames == null) {
 					onCancelImport();
+					return null;
 				}
 
-				final List<ItemImport> list = mBoardGames;
 				final BoardGamesStore boardgamesStore = new BoardGamesStore();
-				final int count = list.size();
 				final ContentResolver resolver = mResolver;
-				final AtomicInteger importCount = mImportCount;
-
-				for (int i = importCount.get(); i < count; i++) {
-					publishProgress(i, count);
-					if (isCancelled())
-						return null;
-
-					final ItemImport currItem = list.get(i);
-
-					final String id;
-					if (mType == inputTypes.shelvesBoardGames) {
-						id = TextUtilities.unprotectString(currItem.internalID);
-					} else {
-						id = currItem.id_one;
-					}
-
-					if (!BoardGamesManager.boardgameExists(mResolver, id, null,
-							mType)) {
-						if (isCancelled())
-							return null;
-
-						BoardGamesStore.BoardGame boardgame = null;
-						final boolean isManual = TextUtilities
-								.isManualItem(currItem.internalID);
-						if (!isManual) {
-							boardgame = BoardGamesManager.loadAndAddBoardGame(
-									resolver, id, boardgamesStore, mType,
-									BoardGamesActivity.this);
-						}
-
-						if (boardgame != null) {
-							addOrUpdate(
-									boardgame,
-									mType,
-									getBaseContext()
-											.getString(
-													R.string.boardgame_label_plural_small),
-									currItem);
-
-							android.util.Log.d(LOG_TAG, boardgame.toString());
-							imported++;
-						} else if (isManual) {
-							addManualItemsFromImport(
-									BoardGamesStore.BoardGame.CONTENT_URI,
-									manualItemNum);
-
-							android.util.Log.d(LOG_TAG, "Manual add for" + id);
-							imported++;
-							manualItemNum++;
-						} else {
-							missingImport++;
-
-							if (TextUtilities.isEmpty(id))
-								missingItems.append(R.string.error_no_barcode);
-							else
-								missingItems.append(id).append("\n");
-						}
-					} else {
-						existsImport++;
-						existingItems.append(id).append("\n");
-
-						if (pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
-								true))
-							addOrUpdate(
-									BoardGamesManager.findBoardGameById(
-											mResolver, id, null),
-									mType,
-									getBaseContext()
-											.getString(
-													R.string.boardgame_label_plural_small),
-									currItem);
-					}
-					importCount.incrementAndGet();
-					try {
-						Thread.sleep(1000); // GJT: Let AWS rest
-					} catch (InterruptedException e) {
-						// Auto-generated catch block
-						e.printStackTrace();
-					}
-				}
 
+				final ImportEngine<BoardGamesStore.BoardGame> engine = new ImportEngine<BoardGamesStore.BoardGame>(
+						resolver, BoardGamesStore.BoardGame.CONTENT_URI, mBoardGames,
+						mImportCount,
+						new ImportEngine.ItemHandler<BoardGamesStore.BoardGame>() {
+							public boolean isCancelled() {
+								return ImportTask.this.isCancelled();
+							}
+
+							public void onProgress(int done, int count) {
+								publishProgress(done, count);
+							}
+
+							public String getId(ItemImport currItem) {
+								if (mType == inputTypes.shelvesBoardGames)
+									return TextUtilities
+											.unprotectString(currItem.internalID);
+								return currItem.id_one;
+							}
+
+							public BoardGamesStore.BoardGame loadAndAdd(String id) {
+								return BoardGamesManager.loadAndAddBoardGame(resolver, id,
+										boardgamesStore, mType, BoardGamesActivity.this);
+							}
+
+							public BoardGamesStore.BoardGame findExisting(String id) {
+								return BoardGamesManager.findBoardGameById(resolver, id,
+										null);
+							}
+
+							public ContentProviderOperation newUpdate(BoardGamesStore.BoardGame boardgame,
+									ItemImport currItem) {
+								return newImportUpdate(boardgame, mType,
+										getString(R.string.boardgame_label_plural_small),
+										currItem);
+							}
+
+							public ContentProviderOperation newManualInsert(
+									int manualItemNum) {
+								return newManualItemInsert(
+										BoardGamesStore.BoardGame.CONTENT_URI, manualItemNum);
+							}
+						}, pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
+								true), getString(R.string.error_no_barcode));
+
+				imported = engine.run();
+				if (imported == null)
+					return null;
+
+				missingImport = engine.getMissingCount();
+				missingItems.append(engine.getMissingItems());
+				existsImport = engine.getExistingCount();
+				existingItems.append(engine.getExistingItems());
 			} catch (IOException e) {
 				return null;
 			}
@@ -1061,13 +1032,7 @@ public class BoardGamesActivity extends BaseItemActivity {
 			if (scrollState == SCROLL_STATE_IDLE) {
 				mScrollHandler.removeCallbacks(mShowPopup);
 
-				final BoardGamesUpdater boardgamesUpdater = mBoardGamesUpdater;
-				final int count = view.getChildCount();
-
-				for (int i = 0; i < count; i++) {
-					boardgamesUpdater.offer(((BaseItemViewHolder) view
-							.getChildAt(i).getTag()).id);
-				}
+				mBoardGamesUpdater.offerRows(view);
 			} else {
 				mBoardGamesUpdater.clear();
 			}
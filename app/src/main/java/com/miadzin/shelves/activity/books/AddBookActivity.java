@@ -48,7 +48,7 @@ import android.widget.TextView;
 import com.miadzin.shelves.R;
 import com.miadzin.shelves.activity.SettingsActivity;
 import com.miadzin.shelves.base.AddBaseItemActivity;
-import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.SearchThumbnailLoader;
 import com.miadzin.shelves.drawable.FastBitmapDrawable;
 import com.miadzin.shelves.provider.books.BooksManager;
 import com.miadzin.shelves.provider.books.BooksStore;
@@ -97,13 +97,18 @@ public class AddBookActivity extends AddBaseItemActivity implements
 		if (oldAdapter != null) {
 			final int count = oldAdapter.getCount();
 			for (int i = 0; i < count; i++) {
-				resultsAdapter.add(oldAdapter.getItem(i));
+				final ResultBook result = oldAdapter.getItem(i);
+				resultsAdapter.add(result);
+				// GJT: The old screen dropped the thumbnails still loading
+				if (result.cover == null)
+					loadThumbnail(result);
 			}
 		}
 
 		final ListView searchResults = (ListView) findViewById(R.id.list_search_results);
 		searchResults.setAdapter(resultsAdapter);
 		searchResults.setOnItemClickListener(this);
+		setupResultsList(searchResults);
 		registerForContextMenu(searchResults);
 	}
 
@@ -114,6 +119,12 @@ public class AddBookActivity extends AddBaseItemActivity implements
 				.getText().toString());
 	}
 
+	@Override
+	protected boolean isSearching() {
+		return mSearchTask != null
+				&& mSearchTask.getStatus() != AsyncTask.Status.FINISHED;
+	}
+
 	@Override
 	protected void onDestroy() {
 		super.onDestroy();
@@ -374,12 +385,23 @@ public class AddBookActivity extends AddBaseItemActivity implements
 		}
 	}
 
+	private void loadThumbnail(final ResultBook book) {
+		mThumbnailLoader.load(book.book, COVER_WIDTH, COVER_HEIGHT,
+				new SearchThumbnailLoader.Callback() {
+					public void onThumbnailLoaded(FastBitmapDrawable cover) {
+						book.cover = cover;
+						mBooksAdapter.notifyDataSetChanged();
+					}
+				});
+	}
+
 	private class SearchTask extends AsyncTask<String, ResultBook, Void>
 			implements BooksStore.BookSearchListener {
 
 		private final Object mLock = new Object();
 		private String mQuery;
 		private boolean clearResults;
+		private int mFound;
 
 		public SearchTask(boolean clear) {
 			clearResults = clear;
@@ -409,8 +431,10 @@ public class AddBookActivity extends AddBaseItemActivity implements
 						.setText(R.string.search_progress);
 			}
 
-			if (clearResults)
+			if (clearResults) {
+				mThumbnailLoader.cancel();
 				mBooksAdapter.clear();
+			}
 			showPanel(mSearchPanel, true);
 		}
 
@@ -436,12 +460,15 @@ public class AddBookActivity extends AddBaseItemActivity implements
 		public void onProgressUpdate(ResultBook... values) {
 			for (ResultBook book : values) {
 				mBooksAdapter.add(book);
+				loadThumbnail(book);
 			}
+			mFound += values.length;
 		}
 
 		@Override
 		public void onPostExecute(Void ignore) {
 			enableSearchPanel();
+			mMoreResults = mFound > 0;
 
 			UIUtilities.showToast(
 					AddBookActivity.this,
@@ -454,6 +481,7 @@ public class AddBookActivity extends AddBaseItemActivity implements
 		@Override
 		public void onCancelled() {
 			enableSearchPanel();
+			mMoreResults = false;
 
 			hidePanel(mSearchPanel, true);
 		}
@@ -522,19 +550,10 @@ public class AddBookActivity extends AddBaseItemActivity implements
 		final String title;
 		final String authors;
 
-		final FastBitmapDrawable cover;
+		FastBitmapDrawable cover;
 
 		ResultBook(BooksStore.Book book) {
 			this.book = book;
-			Bitmap bitmap = ImageUtilities.createShadow(
-					book.loadCover(BaseItem.ImageSize.THUMBNAIL), COVER_WIDTH,
-					COVER_HEIGHT);
-			if (bitmap != null) {
-				cover = new FastBitmapDrawable(bitmap);
-			} else {
-				cover = null;
-			}
-
 			title = book.getTitle();
 			authors = TextUtilities.joinAuthors(book.getAuthors(), ", ");
 			text = title + ' ' + authors;
@@ -20,8 +20,10 @@ package com.miadzin.shelves.activity.books;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Intent;
@@ -62,6 +64,7 @@ import com.miadzin.shelves.scan.ScanIntentResult;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.IOUtilities.inputTypes;
 import com.miadzin.shelves.util.ImageUtilities;
+import com.miadzin.shelves.util.ImportEngine;
 import com.miadzin.shelves.util.ImportResults;
 import com.miadzin.shelves.util.ImportUtilities;
 import com.miadzin.shelves.util.Preferences;
@@ -837,7 +840,6 @@ public class BooksActivity extends BaseItemActivity {
 
 		private int existsImport = 0;
 		private int missingImport = 0;
-		private int manualItemNum = 0;
 
 		StringBuilder existingItems = new StringBuilder();
 		StringBuilder missingItems = new StringBuilder();
@@ -884,7 +886,7 @@ public class BooksActivity extends BaseItemActivity {
 
 		@Override
 		public Integer doInBackground(Void... params) {
-			int imported = 0;
+			Integer imported = 0;
 
 			try {
 				if (mBooks == null)
@@ -893,88 +895,74 @@ public class BooksActivity extends BaseItemActivity {
 				// GJT: Solves an odd race condition from above
 				if (mBooks == null) {
 					onCancelImport();
+					return null;
 				}
 
-				final List<ItemImport> list = mBooks;
 				final BooksStore booksStore = new BooksStore();
-				final int count = list.size();
 				final ContentResolver resolver = mResolver;
-				final AtomicInteger importCount = mImportCount;
-
-				for (int i = importCount.get(); i < count; i++) {
-					publishProgress(i, count);
-					if (isCancelled())
-						return null;
-
-					final ItemImport currItem = list.get(i);
-
-					final String id;
-					if (mType == inputTypes.shelvesBooks) {
-						id = TextUtilities.unprotectString(currItem.internalID);
-					} else {
-						id = currItem.id_one;
-					}
-
-					if (!BooksManager.bookExists(mResolver, id, null, mType)) {
-						if (isCancelled())
-							return null;
-
-						BooksStore.Book book = null;
-						final boolean isManual = TextUtilities
-								.isManualItem(currItem.internalID);
-						if (!isManual) {
-							book = BooksManager.loadAndAddBook(resolver, id,
-									booksStore, mType, BooksActivity.this);
-						}
-
-						if (book != null) {
-							addOrUpdate(
-									book,
-									mType,
-									getBaseContext().getString(
-											R.string.book_label_plural_small),
-									currItem);
-
-							android.util.Log.d(LOG_TAG, book.toString());
-							imported++;
-						} else if (isManual) {
-							addManualItemsFromImport(
-									BooksStore.Book.CONTENT_URI, manualItemNum);
-
-							android.util.Log.d(LOG_TAG, "Manual add for" + id);
-							imported++;
-							manualItemNum++;
-						} else {
-							missingImport++;
-
-							if (TextUtilities.isEmpty(id))
-								missingItems.append(R.string.error_no_barcode);
-							else
-								missingItems.append(id).append("\n");
-						}
-					} else {
-						existsImport++;
-						existingItems.append(id).append("\n");
-
-						if (pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
-								true))
-							addOrUpdate(
-									BooksManager.findBookById(mResolver, id,
-											null),
-									mType,
-									getBaseContext().getString(
-											R.string.book_label_plural_small),
-									currItem);
-					}
-					importCount.incrementAndGet();
-					try {
-						Thread.sleep(1000); // GJT: Let AWS rest
-					} catch (InterruptedException e) {
-						// Auto-generated catch block
-						e.printStackTrace();
-					}
-				}
 
+				final ImportEngine<BooksStore.Book> engine = new ImportEngine<BooksStore.Book>(
+						resolver, BooksStore.Book.CONTENT_URI, mBooks,
+						mImportCount,
+						new ImportEngine.BatchItemHandler<BooksStore.Book>() {
+							public boolean isCancelled() {
+								return ImportTask.this.isCancelled();
+							}
+
+							public void onProgress(int done, int count) {
+								publishProgress(done, count);
+							}
+
+							public String getId(ItemImport currItem) {
+								if (mType == inputTypes.shelvesBooks)
+									return TextUtilities
+											.unprotectString(currItem.internalID);
+								return currItem.id_one;
+							}
+
+							public BooksStore.Book loadAndAdd(String id) {
+								return BooksManager.loadAndAddBook(resolver, id,
+										booksStore, mType, BooksActivity.this);
+							}
+
+							public int getBatchSize() {
+								return BooksStore.MAX_LOOKUP_IDS;
+							}
+
+							public Map<String, BooksStore.Book> loadAndAddAll(
+									List<String> ids) {
+								return BooksManager.loadAndAddBooks(resolver, ids,
+										booksStore, mType, BooksActivity.this);
+							}
+
+							public BooksStore.Book findExisting(String id) {
+								return BooksManager.findBookById(resolver, id,
+										null);
+							}
+
+							public ContentProviderOperation newUpdate(BooksStore.Book book,
+									ItemImport currItem) {
+								return newImportUpdate(book, mType,
+										getString(R.string.book_label_plural_small),
+										currItem);
+							}
+
+							public ContentProviderOperation newManualInsert(
+									int manualItemNum) {
+								return newManualItemInsert(
+										BooksStore.Book.CONTENT_URI, manualItemNum);
+							}
+						}, pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
+								true), getString(R.string.error_no_barcode));
+
+				imported = engine.run();
+				if (imported == null)
+					return null;
+
+				missingImport = engine.getMissingCount();
+				missingItems.append(engine.getMissingItems());
+				existsImport = engine.getExistingCount();
+				existingItems.append(engine.getExistingItems());
 			} catch (IOException e) {
 				return null;
 			}
@@ -1075,13 +1063,7 @@ public class BooksActivity extends BaseItemActivity {
 			if (scrollState == SCROLL_STATE_IDLE) {
 				mScrollHandler.removeCallbacks(mShowPopup);
 
-				final BooksUpdater booksUpdater = mBooksUpdater;
-				final int count = view.getChildCount();
-
-				for (int i = 0; i < count; i++) {
-					booksUpdater.offer(((BaseItemViewHolder) view.getChildAt(i)
-							.getTag()).id);
-				}
+				mBooksUpdater.offerRows(view);
 			} else {
 				mBooksUpdater.clear();
 			}
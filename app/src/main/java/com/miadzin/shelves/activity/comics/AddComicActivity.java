@@ -48,7 +48,7 @@ import android.widget.TextView;
 import com.miadzin.shelves.R;
 import com.miadzin.shelves.activity.SettingsActivity;
 import com.miadzin.shelves.base.AddBaseItemActivity;
-import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.SearchThumbnailLoader;
 import com.miadzin.shelves.drawable.FastBitmapDrawable;
 import com.miadzin.shelves.provider.comics.ComicsManager;
 import com.miadzin.shelves.provider.comics.ComicsStore;
@@ -97,13 +97,18 @@ public class AddComicActivity extends AddBaseItemActivity implements
 		if (oldAdapter != null) {
 			final int count = oldAdapter.getCount();
 			for (int i = 0; i < count; i++) {
-				resultsAdapter.add(oldAdapter.getItem(i));
+				final ResultComic result = oldAdapter.getItem(i);
+				resultsAdapter.add(result);
+				// GJT: The old screen dropped the thumbnails still loading
+				if (result.cover == null)
+					loadThumbnail(result);
 			}
 		}
 
 		final ListView searchResults = (ListView) findViewById(R.id.list_search_results);
 		searchResults.setAdapter(resultsAdapter);
 		searchResults.setOnItemClickListener(this);
+		setupResultsList(searchResults);
 		registerForContextMenu(searchResults);
 	}
 
@@ -114,6 +119,12 @@ public class AddComicActivity extends AddBaseItemActivity implements
 				.getText().toString());
 	}
 
+	@Override
+	protected boolean isSearching() {
+		return mSearchTask != null
+				&& mSearchTask.getStatus() != AsyncTask.Status.FINISHED;
+	}
+
 	@Override
 	protected void onDestroy() {
 		super.onDestroy();
@@ -374,12 +385,23 @@ public class AddComicActivity extends AddBaseItemActivity implements
 		}
 	}
 
+	private void loadThumbnail(final ResultComic comic) {
+		mThumbnailLoader.load(comic.comic, COVER_WIDTH, COVER_HEIGHT,
+				new SearchThumbnailLoader.Callback() {
+					public void onThumbnailLoaded(FastBitmapDrawable cover) {
+						comic.cover = cover;
+						mComicsAdapter.notifyDataSetChanged();
+					}
+				});
+	}
+
 	private class SearchTask extends AsyncTask<String, ResultComic, Void>
 			implements ComicsStore.ComicSearchListener {
 
 		private final Object mLock = new Object();
 		private String mQuery;
 		private boolean clearResults;
+		private int mFound;
 
 		public SearchTask(boolean clear) {
 			clearResults = clear;
@@ -409,8 +431,10 @@ public class AddComicActivity extends AddBaseItemActivity implements
 				});
 			}
 
-			if (clearResults)
+			if (clearResults) {
+				mThumbnailLoader.cancel();
 				mComicsAdapter.clear();
+			}
 			showPanel(mSearchPanel, true);
 		}
 
@@ -439,12 +463,15 @@ public class AddComicActivity extends AddBaseItemActivity implements
 		public void onProgressUpdate(ResultComic... values) {
 			for (ResultComic comic : values) {
 				mComicsAdapter.add(comic);
+				loadThumbnail(comic);
 			}
+			mFound += values.length;
 		}
 
 		@Override
 		public void onPostExecute(Void ignore) {
 			enableSearchPanel();
+			mMoreResults = mFound > 0;
 
 			UIUtilities.showToast(
 					AddComicActivity.this,
@@ -457,6 +484,7 @@ public class AddComicActivity extends AddBaseItemActivity implements
 		@Override
 		public void onCancelled() {
 			enableSearchPanel();
+			mMoreResults = false;
 
 			hidePanel(mSearchPanel, true);
 		}
@@ -525,19 +553,10 @@ public class AddComicActivity extends AddBaseItemActivity implements
 		final String title;
 		final String authors;
 
-		final FastBitmapDrawable cover;
+		FastBitmapDrawable cover;
 
 		ResultComic(ComicsStore.Comic comic) {
 			this.comic = comic;
-			Bitmap bitmap = ImageUtilities.createShadow(
-					comic.loadCover(BaseItem.ImageSize.THUMBNAIL), COVER_WIDTH,
-					COVER_HEIGHT);
-			if (bitmap != null) {
-				cover = new FastBitmapDrawable(bitmap);
-			} else {
-				cover = null;
-			}
-
 			title = comic.getTitle();
 			authors = comic.getAuthors();
 			text = title + ' ' + authors;
@@ -18,9 +18,9 @@ package com.miadzin.shelves.activity.comics;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Intent;
@@ -61,6 +61,7 @@ import com.miadzin.shelves.scan.ScanIntentResult;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.IOUtilities.inputTypes;
 import com.miadzin.shelves.util.ImageUtilities;
+import com.miadzin.shelves.util.ImportEngine;
 import com.miadzin.shelves.util.ImportResults;
 import com.miadzin.shelves.util.ImportUtilities;
 import com.miadzin.shelves.util.Preferences;
@@ -789,7 +790,6 @@ public class ComicsActivity extends BaseItemActivity {
 
 		private int existsImport = 0;
 		private int missingImport = 0;
-		private int manualItemNum = 0;
 
 		StringBuilder existingItems = new StringBuilder();
 		StringBuilder missingItems = new StringBuilder();
@@ -836,7 +836,7 @@ public class ComicsActivity extends BaseItemActivity {
 
 		@Override
 		public Integer doInBackground(Void... params) {
-			int imported = 0;
+			Integer imported = 0;
 
 			try {
 				if (mComics == null)
@@ -845,89 +845,64 @@ public class ComicsActivity extends BaseItemActivity {
 				// GJT: Solves an odd race condition from above
 				if (mComics == null) {
 					onCancelImport();
+					return null;
 				}
 
-				final List<ItemImport> list = mComics;
 				final ComicsStore comicsStore = new ComicsStore();
-				final int count = list.size();
 				final ContentResolver resolver = mResolver;
-				final AtomicInteger importCount = mImportCount;
-
-				for (int i = importCount.get(); i < count; i++) {
-					publishProgress(i, count);
-					if (isCancelled())
-						return null;
-
-					final ItemImport currItem = list.get(i);
-
-					final String id;
-					if (mType == inputTypes.shelvesComics) {
-						id = TextUtilities.unprotectString(currItem.internalID);
-					} else {
-						id = currItem.id_one;
-					}
-
-					if (!ComicsManager.comicExists(mResolver, id, null, mType)) {
-						if (isCancelled())
-							return null;
-
-						ComicsStore.Comic comic = null;
-						final boolean isManual = TextUtilities
-								.isManualItem(currItem.internalID);
-						if (!isManual) {
-							comic = ComicsManager.loadAndAddComic(resolver, id,
-									comicsStore, mType, ComicsActivity.this);
-						}
-
-						if (comic != null) {
-							addOrUpdate(
-									comic,
-									mType,
-									getBaseContext().getString(
-											R.string.comic_label_plural_small),
-									currItem);
-
-							android.util.Log.d(LOG_TAG, comic.toString());
-							imported++;
-						} else if (isManual) {
-							addManualItemsFromImport(
-									ComicsStore.Comic.CONTENT_URI,
-									manualItemNum);
-
-							android.util.Log.d(LOG_TAG, "Manual add for" + id);
-							imported++;
-							manualItemNum++;
-						} else {
-							missingImport++;
-
-							if (TextUtilities.isEmpty(id))
-								missingItems.append(R.string.error_no_barcode);
-							else
-								missingItems.append(id).append("\n");
-						}
-					} else {
-						existsImport++;
-						existingItems.append(id).append("\n");
-
-						if (pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
-								true))
-							addOrUpdate(
-									ComicsManager.findComicById(mResolver, id,
-											null),
-									mType,
-									getBaseContext().getString(
-											R.string.comic_label_plural_small),
-									currItem);
-					}
-					importCount.incrementAndGet();
-					try {
-						Thread.sleep(1000); // GJT: Let AWS rest
-					} catch (InterruptedException e) {
-						// Auto-generated catch block
-						e.printStackTrace();
-					}
-				}
 
+				final ImportEngine<ComicsStore.Comic> engine = new ImportEngine<ComicsStore.Comic>(
+						resolver, ComicsStore.Comic.CONTENT_URI, mComics,
+						mImportCount,
+						new ImportEngine.ItemHandler<ComicsStore.Comic>() {
+							public boolean isCancelled() {
+								return ImportTask.this.isCancelled();
+							}
+
+							public void onProgress(int done, int count) {
+								publishProgress(done, count);
+							}
+
+							public String getId(ItemImport currItem) {
+								if (mType == inputTypes.shelvesComics)
+									return TextUtilities
+											.unprotectString(currItem.internalID);
+								return currItem.id_one;
+							}
+
+							public ComicsStore.Comic loadAndAdd(String id) {
+								return ComicsManager.loadAndAddComic(resolver, id,
+										comicsStore, mType, ComicsActivity.this);
+							}
+
+							public ComicsStore.Comic findExisting(String id) {
+								return ComicsManager.findComicById(resolver, id,
+										null);
+							}
+
+							public ContentProviderOperation newUpdate(ComicsStore.Comic comic,
+									ItemImport currItem) {
+								return newImportUpdate(comic, mType,
+										getString(R.string.comic_label_plural_small),
+										currItem);
+							}
+
+							public ContentProviderOperation newManualInsert(
+									int manualItemNum) {
+								return newManualItemInsert(
+										ComicsStore.Comic.CONTENT_URI, manualItemNum);
+							}
+						}, pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
+								true), getString(R.string.error_no_barcode));
+
+				imported = engine.run();
+				if (imported == null)
+					return null;
+
+				missingImport = engine.getMissingCount();
+				missingItems.append(engine.getMissingItems());
+				existsImport = engine.getExistingCount();
+				existingItems.append(engine.getExistingItems());
 			} catch (IOException e) {
 				return null;
 			}
@@ -1028,13 +1003,7 @@ public class ComicsActivity extends BaseItemActivity {
 			if (scrollState == SCROLL_STATE_IDLE) {
 				mScrollHandler.removeCallbacks(mShowPopup);
 
-				final ComicsUpdater comicsUpdater = mComicsUpdater;
-				final int count = view.getChildCount();
-
-				for (int i = 0; i < count; i++) {
-					comicsUpdater.offer(((BaseItemViewHolder) view
-							.getChildAt(i).getTag()).id);
-				}
+				mComicsUpdater.offerRows(view);
 			} else {
 				mComicsUpdater.clear();
 			}
@@ -19,8 +19,10 @@ package com.miadzin.shelves.activity.gadgets;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Intent;
@@ -62,6 +64,7 @@ import com.miadzin.shelves.scan.ScanIntentResult;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.IOUtilities.inputTypes;
 import com.miadzin.shelves.util.ImageUtilities;
+import com.miadzin.shelves.util.ImportEngine;
 import com.miadzin.shelves.util.ImportResults;
 import com.miadzin.shelves.util.ImportUtilities;
 import com.miadzin.shelves.util.Preferences;
@@ -777,7 +780,6 @@ public class GadgetsActivity extends BaseItemActivity {
 
 		private int existsImport = 0;
 		private int missingImport = 0;
-		private int manualItemNum = 0;
 
 		StringBuilder existingItems = new StringBuilder();
 		StringBuilder missingItems = new StringBuilder();
@@ -824,7 +826,7 @@ public class GadgetsActivity extends BaseItemActivity {
 
 		@Override
 		public Integer doInBackground(Void... params) {
-			int imported = 0;
+			Integer imported = 0;
 
 			try {
 				if (mGadgets == null)
@@ -833,91 +835,74 @@ public class GadgetsActivity extends BaseItemActivity {
 				// GJT: Solves an odd race condition from above
 				if (mGadgets == null) {
 					onCancelImport();
+					return null;
 				}
 
-				final List<ItemImport> list = mGadgets;
 				final GadgetsStore gadgetsStore = new GadgetsStore();
-				final int count = list.size();
 				final ContentResolver resolver = mResolver;
-				final AtomicInteger importCount = mImportCount;
-
-				for (int i = importCount.get(); i < count; i++) {
-					publishProgress(i, count);
-					if (isCancelled())
-						return null;
-
-					final ItemImport currItem = list.get(i);
-
-					final String id;
-					if (mType == inputTypes.shelvesGadgets) {
-						id = TextUtilities.unprotectString(currItem.internalID);
-					} else {
-						id = currItem.id_one;
-					}
-
-					if (!GadgetsManager
-							.gadgetExists(mResolver, id, null, mType)) {
-						if (isCancelled())
-							return null;
-
-						GadgetsStore.Gadget gadget = null;
-						final boolean isManual = TextUtilities
-								.isManualItem(currItem.internalID);
-						if (!isManual) {
-							gadget = GadgetsManager.loadAndAddGadget(resolver,
-									id, gadgetsStore, mType,
-									GadgetsActivity.this);
-						}
-
-						if (gadget != null) {
-							addOrUpdate(
-									gadget,
-									mType,
-									getBaseContext().getString(
-											R.string.gadget_label_plural_small),
-									currItem);
-							android.util.Log.d(LOG_TAG, gadget.toString());
-							imported++;
-						} else if (isManual) {
-							addManualItemsFromImport(
-									GadgetsStore.Gadget.CONTENT_URI,
-									manualItemNum);
-
-							android.util.Log.d(LOG_TAG, "Manual add for" + id);
-							imported++;
-							manualItemNum++;
-						} else {
-							missingImport++;
-
-							if (TextUtilities.isEmpty(id))
-								missingItems.append(R.string.error_no_barcode);
-							else
-								missingItems.append(id).append("\n");
-
-						}
-					} else {
-						existsImport++;
-						existingItems.append(id).append("\n");
-
-						if (pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
-								true))
-							addOrUpdate(
-									GadgetsManager.findGadgetById(mResolver,
-											id, null),
-									mType,
-									getBaseContext().getString(
-											R.string.gadget_label_plural_small),
-									currItem);
-					}
-					importCount.incrementAndGet();
-					try {
-						Thread.sleep(1000); // GJT: Let AWS rest
-					} catch (InterruptedException e) {
-						// Auto-generated catch block
-						e.printStackTrace();
-					}
-				}
 
+				final ImportEngine<GadgetsStore.Gadget> engine = new ImportEngine<GadgetsStore.Gadget>(
+						resolver, GadgetsStore.Gadget.CONTENT_URI, mGadgets,
+						mImportCount,
+						new ImportEngine.BatchItemHandler<GadgetsStore.Gadget>() {
+							public boolean isCancelled() {
+								return ImportTask.this.isCancelled();
+							}
+
+							public void onProgress(int done, int count) {
+								publishProgress(done, count);
+							}
+
+							public String getId(ItemImport currItem) {
+								if (mType == inputTypes.shelvesGadgets)
+									return TextUtilities
+											.unprotectString(currItem.internalID);
+								return currItem.id_one;
+							}
+
+							public GadgetsStore.Gadget loadAndAdd(String id) {
+								return GadgetsManager.loadAndAddGadget(resolver, id,
+										gadgetsStore, mType, GadgetsActivity.this);
+							}
+
+							public int getBatchSize() {
+								return GadgetsStore.MAX_LOOKUP_IDS;
+							}
+
+							public Map<String, GadgetsStore.Gadget> loadAndAddAll(
+									List<String> ids) {
+								return GadgetsManager.loadAndAddGadgets(resolver, ids,
+										gadgetsStore, mType, GadgetsActivity.this);
+							}
+
+							public GadgetsStore.Gadget findExisting(String id) {
+								return GadgetsManager.findGadgetById(resolver, id,
+										null);
+							}
+
+							public ContentProviderOperation newUpdate(GadgetsStore.Gadget gadget,
+									ItemImport currItem) {
+								return newImportUpdate(gadget, mType,
+										getString(R.string.gadget_label_plural_small),
+										currItem);
+							}
+
+							public ContentProviderOperation newManualInsert(
+									int manualItemNum) {
+								return newManualItemInsert(
+										GadgetsStore.Gadget.CONTENT_URI, manualItemNum);
+							}
+						}, pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
+								true), getString(R.string.error_no_barcode));
+
+				imported = engine.run();
+				if (imported == null)
+					return null;
+
+				missingImport = engine.getMissingCount();
+				missingItems.append(engine.getMissingItems());
+				existsImport = engine.getExistingCount();
+				existingItems.append(engine.getExistingItems());
 			} catch (IOException e) {
 				return null;
 			}
@@ -1009,12 +994,7 @@ public class GadgetsActivity extends BaseItemActivity {
 			if (scrollState == SCROLL_STATE_IDLE) {
 				mScrollHandler.removeCallbacks(mShowPopup);
 
-				final GadgetsUpdater gadgetsUpdater = mGadgetsUpdater;
-				final int count = view.getChildCount();
-				for (int i = 0; i < count; i++) {
-					gadgetsUpdater.offer(((BaseItemViewHolder) view.getChildAt(
-							i).getTag()).id);
-				}
+				mGadgetsUpdater.offerRows(view);
 			} else {
 				mGadgetsUpdater.clear();
 			}
@@ -47,7 +47,7 @@ import android.widget.TextView;
 import com.miadzin.shelves.R;
 import com.miadzin.shelves.activity.SettingsActivity;
 import com.miadzin.shelves.base.AddBaseItemActivity;
-import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.SearchThumbnailLoader;
 import com.miadzin.shelves.drawable.FastBitmapDrawable;
 import com.miadzin.shelves.provider.movies.MoviesManager;
 import com.miadzin.shelves.provider.movies.MoviesStore;
@@ -97,13 +97,18 @@ public class AddMovieActivity extends AddBaseItemActivity implements
 		if (oldAdapter != null) {
 			final int count = oldAdapter.getCount();
 			for (int i = 0; i < count; i++) {
-				resultsAdapter.add(oldAdapter.getItem(i));
+				final ResultMovie result = oldAdapter.getItem(i);
+				resultsAdapter.add(result);
+				// GJT: The old screen dropped the thumbnails still loading
+				if (result.cover == null)
+					loadThumbnail(result);
 			}
 		}
 
 		final ListView searchResults = (ListView) findViewById(R.id.list_search_results);
 		searchResults.setAdapter(resultsAdapter);
 		searchResults.setOnItemClickListener(this);
+		setupResultsList(searchResults);
 		registerForContextMenu(searchResults);
 	}
 
@@ -114,6 +119,12 @@ public class AddMovieActivity extends AddBaseItemActivity implements
 				.getText().toString());
 	}
 
+	@Override
+	protected boolean isSearching() {
+		return mSearchTask != null
+				&& mSearchTask.getStatus() != AsyncTask.Status.FINISHED;
+	}
+
 	@Override
 	protected void onDestroy() {
 		super.onDestroy();
@@ -376,12 +387,23 @@ public class AddMovieActivity extends AddBaseItemActivity implements
 		}
 	}
 
+	private void loadThumbnail(final ResultMovie movie) {
+		mThumbnailLoader.load(movie.movie, COVER_WIDTH, COVER_HEIGHT,
+				new SearchThumbnailLoader.Callback() {
+					public void onThumbnailLoaded(FastBitmapDrawable cover) {
+						movie.cover = cover;
+						mMoviesAdapter.notifyDataSetChanged();
+					}
+				});
+	}
+
 	private class SearchTask extends AsyncTask<String, ResultMovie, Void>
 			implements MoviesStore.MovieSearchListener {
 
 		private final Object mLock = new Object();
 		private String mQuery;
 		private boolean clearResults;
+		private int mFound;
 
 		public SearchTask(boolean clear) {
 			clearResults = clear;
@@ -411,8 +433,10 @@ public class AddMovieActivity extends AddBaseItemActivity implements
 				});
 			}
 
-			if (clearResults)
+			if (clearResults) {
+				mThumbnailLoader.cancel();
 				mMoviesAdapter.clear();
+			}
 			showPanel(mSearchPanel, true);
 		}
 
@@ -437,12 +461,15 @@ public class AddMovieActivity extends AddBaseItemActivity implements
 		public void onProgressUpdate(ResultMovie... values) {
 			for (ResultMovie movie : values) {
 				mMoviesAdapter.add(movie);
+				loadThumbnail(movie);
 			}
+			mFound += values.length;
 		}
 
 		@Override
 		public void onPostExecute(Void ignore) {
 			enableSearchPanel();
+			mMoreResults = mFound > 0;
 
 			UIUtilities.showToast(
 					AddMovieActivity.this,
@@ -455,6 +482,7 @@ public class AddMovieActivity extends AddBaseItemActivity implements
 		@Override
 		public void onCancelled() {
 			enableSearchPanel();
+			mMoreResults = false;
 
 			hidePanel(mSearchPanel, true);
 		}
@@ -524,19 +552,10 @@ public class AddMovieActivity extends AddBaseItemActivity implements
 		final String title;
 		final String authors;
 
-		final FastBitmapDrawable cover;
+		FastBitmapDrawable cover;
 
 		ResultMovie(MoviesStore.Movie movie) {
 			this.movie = movie;
-			Bitmap bitmap = ImageUtilities.createShadow(
-					movie.loadCover(BaseItem.ImageSize.THUMBNAIL), COVER_WIDTH,
-					COVER_HEIGHT);
-			if (bitmap != null) {
-				cover = new FastBitmapDrawable(bitmap);
-			} else {
-				cover = null;
-			}
-
 			title = movie.getTitle();
 			authors = TextUtilities.joinAuthors(movie.getDirectors(), ", ");
 			text = title + ' ' + authors;
@@ -19,8 +19,10 @@ package com.miadzin.shelves.activity.movies;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Intent;
@@ -62,6 +64,7 @@ import com.miadzin.shelves.scan.ScanIntentResult;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.IOUtilities.inputTypes;
 import com.miadzin.shelves.util.ImageUtilities;
+import com.miadzin.shelves.util.ImportEngine;
 import com.miadzin.shelves.util.ImportResults;
 import com.miadzin.shelves.util.ImportUtilities;
 import com.miadzin.shelves.util.Preferences;
@@ -806,7 +809,6 @@ public class MoviesActivity extends BaseItemActivity {
 
 		private int existsImport = 0;
 		private int missingImport = 0;
-		private int manualItemNum = 0;
 
 		StringBuilder existingItems = new StringBuilder();
 		StringBuilder missingItems = new StringBuilder();
@@ -853,7 +855,7 @@ public class MoviesActivity extends BaseItemActivity {
 
 		@Override
 		public Integer doInBackground(Void... params) {
-			int imported = 0;
+			Integer imported = 0;
 
 			try {
 				if (mMovies == null)
@@ -862,90 +864,74 @@ public class MoviesActivity extends BaseItemActivity {
 				// GJT: Solves an odd race condition from above
 				if (mMovies == null) {
 					onCancelImport();
+					return null;
 				}
 
-				final List<ItemImport> list = mMovies;
 				final MoviesStore moviesStore = new MoviesStore();
-				final int count = list.size();
 				final ContentResolver resolver = mResolver;
-				final AtomicInteger importCount = mImportCount;
-
-				for (int i = importCount.get(); i < count; i++) {
-					publishProgress(i, count);
-					if (isCancelled())
-						return null;
-
-					final ItemImport currItem = list.get(i);
-
-					final String id;
-					if (mType == inputTypes.shelvesMovies) {
-						id = TextUtilities.unprotectString(currItem.internalID);
-					} else {
-						id = currItem.id_one;
-					}
-
-					if (!MoviesManager.movieExists(mResolver, id, null, mType)) {
-						if (isCancelled())
-							return null;
-
-						MoviesStore.Movie movie = null;
-						final boolean isManual = TextUtilities
-								.isManualItem(currItem.internalID);
-						if (!isManual) {
-							movie = MoviesManager.loadAndAddMovie(resolver, id,
-									moviesStore, mType, MoviesActivity.this);
-						}
-
-						if (movie != null) {
-							addOrUpdate(
-									movie,
-									mType,
-									getBaseContext().getString(
-											R.string.movie_label_plural_small),
-									currItem);
-
-							android.util.Log.d(LOG_TAG, movie.toString());
-							imported++;
-						} else if (isManual) {
-							addManualItemsFromImport(
-									MoviesStore.Movie.CONTENT_URI,
-									manualItemNum);
-
-							android.util.Log.d(LOG_TAG, "Manual add for" + id);
-							imported++;
-							manualItemNum++;
-						} else {
-							missingImport++;
-
-							if (TextUtilities.isEmpty(id))
-								missingItems.append(R.string.error_no_barcode);
-							else
-								missingItems.append(id).append("\n");
-
-						}
-					} else {
-						existsImport++;
-						existingItems.append(id).append("\n");
-
-						if (pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
-								true))
-							addOrUpdate(
-									MoviesManager.findMovieById(mResolver, id,
-											null),
-									mType,
-									getBaseContext().getString(
-											R.string.movie_label_plural_small),
-									currItem);
-					}
-					importCount.incrementAndGet();
-					try {
-						Thread.sleep(1000); // GJT: Let AWS rest
-					} catch (InterruptedException e) {
-						// Auto-generated catch block
-						e.printStackTrace();
-					}
-				}
 
+				final ImportEngine<MoviesStore.Movie> engine = new ImportEngine<MoviesStore.Movie>(
+						resolver, MoviesStore.Movie.CONTENT_URI, mMovies,
+						mImportCount,
+						new ImportEngine.BatchItemHandler<MoviesStore.Movie>() {
+							public boolean isCancelled() {
+								return ImportTask.this.isCancelled();
+							}
+
+							public void onProgress(int done, int count) {
+								publishProgress(done, count);
+							}
+
+							public String getId(ItemImport currItem) {
+								if (mType == inputTypes.shelvesMovies)
+									return TextUtilities
+											.unprotectString(currItem.internalID);
+								return currItem.id_one;
+							}
+
+							public MoviesStore.Movie loadAndAdd(String id) {
+								return MoviesManager.loadAndAddMovie(resolver, id,
+										moviesStore, mType, MoviesActivity.this);
+							}
+
+							public int getBatchSize() {
+								return MoviesStore.MAX_LOOKUP_IDS;
+							}
+
+							public Map<String, MoviesStore.Movie> loadAndAddAll(
+									List<String> ids) {
+								return MoviesManager.loadAndAddMovies(resolver, ids,
+										moviesStore, mType, MoviesActivity.this);
+							}
+
+							public MoviesStore.Movie findExisting(String id) {
+								return MoviesManager.findMovieById(resolver, id,
+										null);
+							}
+
+							public ContentProviderOperation newUpdate(MoviesStore.Movie movie,
+									ItemImport currItem) {
+								return newImportUpdate(movie, mType,
+										getString(R.string.movie_label_plural_small),
+										currItem);
+							}
+
+							public ContentProviderOperation newManualInsert(
+									int manualItemNum) {
+								return newManualItemInsert(
+										MoviesStore.Movie.CONTENT_URI, manualItemNum);
+							}
+						}, pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
+								true), getString(R.string.error_no_barcode));
+
+				imported = engine.run();
+				if (imported == null)
+					return null;
+
+				missingImport = engine.getMissingCount();
+				missingItems.append(engine.getMissingItems());
+				existsImport = engine.getExistingCount();
+				existingItems.append(engine.getExistingItems());
 			} catch (IOException e) {
 				return null;
 			}
@@ -1043,12 +1029,7 @@ public class MoviesActivity extends BaseItemActivity {
 			if (scrollState == SCROLL_STATE_IDLE) {
 				mScrollHandler.removeCallbacks(mShowPopup);
 
-				final MoviesUpdater moviesUpdater = mMoviesUpdater;
-				final int count = view.getChildCount();
-				for (int i = 0; i < count; i++) {
-					moviesUpdater.offer(((BaseItemViewHolder) view
-							.getChildAt(i).getTag()).id);
-				}
+				mMoviesUpdater.offerRows(view);
 			} else {
 				mMoviesUpdater.clear();
 			}
@@ -47,7 +47,7 @@ import android.widget.TextView;
 import com.miadzin.shelves.R;
 import com.miadzin.shelves.activity.SettingsActivity;
 import com.miadzin.shelves.base.AddBaseItemActivity;
-import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.SearchThumbnailLoader;
 import com.miadzin.shelves.drawable.FastBitmapDrawable;
 import com.miadzin.shelves.provider.music.MusicManager;
 import com.miadzin.shelves.provider.music.MusicStore;
@@ -97,13 +97,18 @@ public class AddMusicActivity extends AddBaseItemActivity implements
 		if (oldAdapter != null) {
 			final int count = oldAdapter.getCount();
 			for (int i = 0; i < count; i++) {
-				resultsAdapter.add(oldAdapter.getItem(i));
+				final ResultMusic result = oldAdapter.getItem(i);
+				resultsAdapter.add(result);
+				// GJT: The old screen dropped the thumbnails still loading
+				if (result.cover == null)
+					loadThumbnail(result);
 			}
 		}
 
 		final ListView searchResults = (ListView) findViewById(R.id.list_search_results);
 		searchResults.setAdapter(resultsAdapter);
 		searchResults.setOnItemClickListener(this);
+		setupResultsList(searchResults);
 		registerForContextMenu(searchResults);
 	}
 
@@ -114,6 +119,12 @@ public class AddMusicActivity extends AddBaseItemActivity implements
 				.getText().toString());
 	}
 
+	@Override
+	protected boolean isSearching() {
+		return mSearchTask != null
+				&& mSearchTask.getStatus() != AsyncTask.Status.FINISHED;
+	}
+
 	@Override
 	protected void onDestroy() {
 		super.onDestroy();
@@ -376,12 +387,23 @@ public class AddMusicActivity extends AddBaseItemActivity implements
 		}
 	}
 
+	private void loadThumbnail(final ResultMusic music) {
+		mThumbnailLoader.load(music.music, COVER_WIDTH, COVER_HEIGHT,
+				new SearchThumbnailLoader.Callback() {
+					public void onThumbnailLoaded(FastBitmapDrawable cover) {
+						music.cover = cover;
+						mMusicAdapter.notifyDataSetChanged();
+					}
+				});
+	}
+
 	private class SearchTask extends AsyncTask<String, ResultMusic, Void>
 			implements MusicStore.MusicSearchListener {
 
 		private final Object mLock = new Object();
 		private String mQuery;
 		private boolean clearResults;
+		private int mFound;
 
 		public SearchTask(boolean clear) {
 			clearResults = clear;
@@ -411,8 +433,10 @@ public class AddMusicActivity extends AddBaseItemActivity implements
 				});
 			}
 
-			if (clearResults)
+			if (clearResults) {
+				mThumbnailLoader.cancel();
 				mMusicAdapter.clear();
+			}
 			showPanel(mSearchPanel, true);
 		}
 
@@ -437,12 +461,15 @@ public class AddMusicActivity extends AddBaseItemActivity implements
 		public void onProgressUpdate(ResultMusic... values) {
 			for (ResultMusic music : values) {
 				mMusicAdapter.add(music);
+				loadThumbnail(music);
 			}
+			mFound += values.length;
 		}
 
 		@Override
 		public void onPostExecute(Void ignore) {
 			enableSearchPanel();
+			mMoreResults = mFound > 0;
 
 			UIUtilities.showToast(
 					AddMusicActivity.this,
@@ -455,6 +482,7 @@ public class AddMusicActivity extends AddBaseItemActivity implements
 		@Override
 		public void onCancelled() {
 			enableSearchPanel();
+			mMoreResults = false;
 
 			hidePanel(mSearchPanel, true);
 		}
@@ -524,19 +552,10 @@ public class AddMusicActivity extends AddBaseItemActivity implements
 		final String title;
 		final String authors;
 
-		final FastBitmapDrawable cover;
+		FastBitmapDrawable cover;
 
 		ResultMusic(MusicStore.Music music) {
 			this.music = music;
-			Bitmap bitmap = ImageUtilities.createShadow(
-					music.loadCover(BaseItem.ImageSize.THUMBNAIL), COVER_WIDTH,
-					COVER_HEIGHT);
-			if (bitmap != null) {
-				cover = new FastBitmapDrawable(bitmap);
-			} else {
-				cover = null;
-			}
-
 			title = music.getTitle();
 			authors = TextUtilities.join(music.getAuthors(), ", ");
 			text = title + ' ' + authors;
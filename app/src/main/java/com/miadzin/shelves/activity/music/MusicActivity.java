@@ -19,8 +19,10 @@ package com.miadzin.shelves.activity.music;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Intent;
@@ -62,6 +64,7 @@ import com.miadzin.shelves.scan.ScanIntentResult;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.IOUtilities.inputTypes;
 import com.miadzin.shelves.util.ImageUtilities;
+import com.miadzin.shelves.util.ImportEngine;
 import com.miadzin.shelves.util.ImportResults;
 import com.miadzin.shelves.util.ImportUtilities;
 import com.miadzin.shelves.util.Preferences;
@@ -802,7 +805,6 @@ public class MusicActivity extends BaseItemActivity {
 
 		private int existsImport = 0;
 		private int missingImport = 0;
-		private int manualItemNum = 0;
 
 		StringBuilder existingItems = new StringBuilder();
 		StringBuilder missingItems = new StringBuilder();
@@ -849,7 +851,7 @@ public class MusicActivity extends BaseItemActivity {
 
 		@Override
 		public Integer doInBackground(Void... params) {
-			int imported = 0;
+			Integer imported = 0;
 
 			try {
 				if (mMusic == null)
@@ -858,89 +860,74 @@ public class MusicActivity extends BaseItemActivity {
 				// GJT: Solves an odd race condition from above
 				if (mMusic == null) {
 					onCancelImport();
+					return null;
 				}
 
-				final List<ItemImport> list = mMusic;
 				final MusicStore musicStore = new MusicStore();
-				final int count = list.size();
 				final ContentResolver resolver = mResolver;
-				final AtomicInteger importCount = mImportCount;
-
-				for (int i = importCount.get(); i < count; i++) {
-					publishProgress(i, count);
-					if (isCancelled())
-						return null;
-
-					final ItemImport currItem = list.get(i);
-
-					final String id;
-					if (mType == inputTypes.shelvesMusic) {
-						id = TextUtilities.unprotectString(currItem.internalID);
-					} else {
-						id = currItem.id_one;
-					}
-
-					if (!MusicManager.musicExists(mResolver, id, null, mType)) {
-						if (isCancelled())
-							return null;
-
-						MusicStore.Music music = null;
-						final boolean isManual = TextUtilities
-								.isManualItem(currItem.internalID);
-						if (!isManual) {
-							music = MusicManager.loadAndAddMusic(resolver, id,
-									musicStore, mType, MusicActivity.this);
-						}
-
-						if (music != null) {
-							addOrUpdate(
-									music,
-									mType,
-									getBaseContext().getString(
-											R.string.music_label_plural_small),
-									currItem);
-
-							android.util.Log.d(LOG_TAG, music.toString());
-							imported++;
-						} else if (isManual) {
-							addManualItemsFromImport(
-									MusicStore.Music.CONTENT_URI, manualItemNum);
-
-							android.util.Log.d(LOG_TAG, "Manual add for" + id);
-							imported++;
-							manualItemNum++;
-						} else {
-							missingImport++;
-
-							if (TextUtilities.isEmpty(id))
-								missingItems.append(R.string.error_no_barcode);
-							else
-								missingItems.append(id).append("\n");
-
-						}
-					} else {
-						existsImport++;
-						existingItems.append(id).append("\n");
-
-						if (pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
-								true))
-							addOrUpdate(
-									MusicManager.findMusicById(mResolver, id,
-											null),
-									mType,
-									getBaseContext().getString(
-											R.string.music_label_plural_small),
-									currItem);
-					}
-					importCount.incrementAndGet();
-					try {
-						Thread.sleep(1000); // GJT: Let AWS rest
-					} catch (InterruptedException e) {
-						// Auto-generated catch block
-						e.printStackTrace();
-					}
-				}
 
+				final ImportEngine<MusicStore.Music> engine = new ImportEngine<MusicStore.Music>(
+						resolver, MusicStore.Music.CONTENT_URI, mMusic,
+						mImportCount,
+						new ImportEngine.BatchItemHandler<MusicStore.Music>() {
+							public boolean isCancelled() {
+								return ImportTask.this.isCancelled();
+							}
+
+							public void onProgress(int done, int count) {
+								publishProgress(done, count);
+							}
+
+							public String getId(ItemImport currItem) {
+								if (mType == inputTypes.shelvesMusic)
+									return TextUtilities
+											.unprotectString(currItem.internalID);
+								return currItem.id_one;
+							}
+
+							public MusicStore.Music loadAndAdd(String id) {
+								return MusicManager.loadAndAddMusic(resolver, id,
+										musicStore, mType, MusicActivity.this);
+							}
+
+							public int getBatchSize() {
+								return MusicStore.MAX_LOOKUP_IDS;
+							}
+
+							public Map<String, MusicStore.Music> loadAndAddAll(
+									List<String> ids) {
+								return MusicManager.loadAndAddMusic(resolver, ids,
+										musicStore, mType, MusicActivity.this);
+							}
+
+							public MusicStore.Music findExisting(String id) {
+								return MusicManager.findMusicById(resolver, id,
+										null);
+							}
+
+							public ContentProviderOperation newUpdate(MusicStore.Music music,
+									ItemImport currItem) {
+								return newImportUpdate(music, mType,
+										getString(R.string.music_label_plural_small),
+										currItem);
+							}
+
+							public ContentProviderOperation newManualInsert(
+									int manualItemNum) {
+								return newManualItemInsert(
+										MusicStore.Music.CONTENT_URI, manualItemNum);
+							}
+						}, pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
+								true), getString(R.string.error_no_barcode));
+
+				imported = engine.run();
+				if (imported == null)
+					return null;
+
+				missingImport = engine.getMissingCount();
+				missingItems.append(engine.getMissingItems());
+				existsImport = engine.getExistingCount();
+				existingItems.append(engine.getExistingItems());
 			} catch (IOException e) {
 				return null;
 			}
@@ -1035,12 +1022,7 @@ public class MusicActivity extends BaseItemActivity {
 			if (scrollState == SCROLL_STATE_IDLE) {
 				mScrollHandler.removeCallbacks(mShowPopup);
 
-				final MusicUpdater musicUpdater = mMusicUpdater;
-				final int count = view.getChildCount();
-				for (int i = 0; i < count; i++) {
-					musicUpdater.offer(((BaseItemViewHolder) view.getChildAt(i)
-							.getTag()).id);
-				}
+				mMusicUpdater.offerRows(view);
 			} else {
 				mMusicUpdater.clear();
 			}
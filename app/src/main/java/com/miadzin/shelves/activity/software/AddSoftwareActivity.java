@@ -48,7 +48,7 @@ import android.widget.TextView;
 import com.miadzin.shelves.R;
 import com.miadzin.shelves.activity.SettingsActivity;
 import com.miadzin.shelves.base.AddBaseItemActivity;
-import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.SearchThumbnailLoader;
 import com.miadzin.shelves.drawable.FastBitmapDrawable;
 import com.miadzin.shelves.provider.software.SoftwareManager;
 import com.miadzin.shelves.provider.software.SoftwareStore;
@@ -98,13 +98,18 @@ public class AddSoftwareActivity extends AddBaseItemActivity implements
 		if (oldAdapter != null) {
 			final int count = oldAdapter.getCount();
 			for (int i = 0; i < count; i++) {
-				resultsAdapter.add(oldAdapter.getItem(i));
+				final ResultSoftware result = oldAdapter.getItem(i);
+				resultsAdapter.add(result);
+				// GJT: The old screen dropped the thumbnails still loading
+				if (result.cover == null)
+					loadThumbnail(result);
 			}
 		}
 
 		final ListView searchResults = (ListView) findViewById(R.id.list_search_results);
 		searchResults.setAdapter(resultsAdapter);
 		searchResults.setOnItemClickListener(this);
+		setupResultsList(searchResults);
 		registerForContextMenu(searchResults);
 	}
 
@@ -115,6 +120,12 @@ public class AddSoftwareActivity extends AddBaseItemActivity implements
 				.getText().toString());
 	}
 
+	@Override
+	protected boolean isSearching() {
+		return mSearchTask != null
+				&& mSearchTask.getStatus() != AsyncTask.Status.FINISHED;
+	}
+
 	@Override
 	protected void onDestroy() {
 		super.onDestroy();
@@ -380,12 +391,23 @@ public class AddSoftwareActivity extends AddBaseItemActivity implements
 		}
 	}
 
+	private void loadThumbnail(final ResultSoftware software) {
+		mThumbnailLoader.load(software.software, COVER_WIDTH, COVER_HEIGHT,
+				new SearchThumbnailLoader.Callback() {
+					public void onThumbnailLoaded(FastBitmapDrawable cover) {
+						software.cover = cover;
+						mSoftwareAdapter.notifyDataSetChanged();
+					}
+				});
+	}
+
 	private class SearchTask extends AsyncTask<String, ResultSoftware, Void>
 			implements SoftwareStore.SoftwareSearchListener {
 
 		private final Object mLock = new Object();
 		private String mQuery;
 		private boolean clearResults;
+		private int mFound;
 
 		public SearchTask(boolean clear) {
 			clearResults = clear;
@@ -415,8 +437,10 @@ public class AddSoftwareActivity extends AddBaseItemActivity implements
 				});
 			}
 
-			if (clearResults)
+			if (clearResults) {
+				mThumbnailLoader.cancel();
 				mSoftwareAdapter.clear();
+			}
 			showPanel(mSearchPanel, true);
 		}
 
@@ -441,12 +465,15 @@ public class AddSoftwareActivity extends AddBaseItemActivity implements
 		public void onProgressUpdate(ResultSoftware... values) {
 			for (ResultSoftware software : values) {
 				mSoftwareAdapter.add(software);
+				loadThumbnail(software);
 			}
+			mFound += values.length;
 		}
 
 		@Override
 		public void onPostExecute(Void ignore) {
 			enableSearchPanel();
+			mMoreResults = mFound > 0;
 
 			UIUtilities.showToast(
 					AddSoftwareActivity.this,
@@ -459,6 +486,7 @@ public class AddSoftwareActivity extends AddBaseItemActivity implements
 		@Override
 		public void onCancelled() {
 			enableSearchPanel();
+			mMoreResults = false;
 
 			hidePanel(mSearchPanel, true);
 		}
@@ -529,19 +557,10 @@ public class AddSoftwareActivity extends AddBaseItemActivity implements
 		final String title;
 		final String authors;
 
-		final FastBitmapDrawable cover;
+		FastBitmapDrawable cover;
 
 		ResultSoftware(SoftwareStore.Software software) {
 			this.software = software;
-			Bitmap bitmap = ImageUtilities.createShadow(
-					software.loadCover(BaseItem.ImageSize.THUMBNAIL),
-					COVER_WIDTH, COVER_HEIGHT);
-			if (bitmap != null) {
-				cover = new FastBitmapDrawable(bitmap);
-			} else {
-				cover = null;
-			}
-
 			title = software.getTitle();
 			authors = software.getAuthors();
 			text = title + ' ' + authors;
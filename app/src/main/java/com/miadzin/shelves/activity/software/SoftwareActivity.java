@@ -19,8 +19,10 @@ package com.miadzin.shelves.activity.software;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Intent;
@@ -62,6 +64,7 @@ import com.miadzin.shelves.scan.ScanIntentResult;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.IOUtilities.inputTypes;
 import com.miadzin.shelves.util.ImageUtilities;
+import com.miadzin.shelves.util.ImportEngine;
 import com.miadzin.shelves.util.ImportResults;
 import com.miadzin.shelves.util.ImportUtilities;
 import com.miadzin.shelves.util.Preferences;
@@ -798,7 +801,6 @@ public class SoftwareActivity extends BaseItemActivity {
 
 		private int existsImport = 0;
 		private int missingImport = 0;
-		private int manualItemNum = 0;
 
 		StringBuilder existingItems = new StringBuilder();
 		StringBuilder missingItems = new StringBuilder();
@@ -845,7 +847,7 @@ public class SoftwareActivity extends BaseItemActivity {
 
 		@Override
 		public Integer doInBackground(Void... params) {
-			int imported = 0;
+			Integer imported = 0;
 
 			try {
 				if (mSoftware == null)
@@ -854,89 +856,74 @@ public class SoftwareActivity extends BaseItemActivity {
 				// GJT: Solves an odd race condition from above
 				if (mSoftware == null) {
 					onCancelImport();
+					return null;
 				}
 
-				final List<ItemImport> list = mSoftware;
 				final SoftwareStore softwareStore = new SoftwareStore();
-				final int count = list.size();
 				final ContentResolver resolver = mResolver;
-				final AtomicInteger importCount = mImportCount;
-
-				for (int i = importCount.get(); i < count; i++) {
-					publishProgress(i, count);
-					if (isCancelled())
-						return null;
-
-					final ItemImport currItem = list.get(i);
-
-					final String id;
-					if (mType == inputTypes.shelvesSoftware) {
-						id = TextUtilities.unprotectString(currItem.internalID);
-					} else {
-						id = currItem.id_one;
-					}
-
-					if (!SoftwareManager.softwareExists(mResolver, id, null,
-							mType)) {
-						if (isCancelled())
-							return null;
-
-						SoftwareStore.Software software = null;
-						final boolean isManual = TextUtilities
-								.isManualItem(currItem.internalID);
-						if (!isManual) {
-							software = SoftwareManager.loadAndAddSoftware(
-									resolver, id, softwareStore, mType,
-									SoftwareActivity.this);
-						}
-
-						if (software != null) {
-							addOrUpdate(software, mType, getBaseContext()
-									.getString(R.string.software_label),
-									currItem);
-
-							android.util.Log.d(LOG_TAG, software.toString());
-							imported++;
-						} else if (isManual) {
-							addManualItemsFromImport(
-									SoftwareStore.Software.CONTENT_URI,
-									manualItemNum);
-
-							android.util.Log.d(LOG_TAG, "Manual add for" + id);
-							imported++;
-							manualItemNum++;
-						} else {
-							missingImport++;
-
-							if (TextUtilities.isEmpty(id))
-								missingItems.append(R.string.error_no_barcode);
-							else
-								missingItems.append(id).append("\n");
-
-						}
-					} else {
-						existsImport++;
-						existingItems.append(id).append("\n");
-
-						if (pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
-								true))
-							addOrUpdate(
-									SoftwareManager.findSoftwareById(mResolver,
-											id, null),
-									mType,
-									getBaseContext().getString(
-											R.string.software_label), currItem);
-					}
-
-					importCount.incrementAndGet();
-					try {
-						Thread.sleep(1000); // GJT: Let AWS rest
-					} catch (InterruptedException e) {
-						// Auto-generated catch block
-						e.printStackTrace();
-					}
-				}
 
+				final ImportEngine<SoftwareStore.Software> engine = new ImportEngine<SoftwareStore.Software>(
+						resolver, SoftwareStore.Software.CONTENT_URI, mSoftware,
+						mImportCount,
+						new ImportEngine.BatchItemHandler<SoftwareStore.Software>() {
+							public boolean isCancelled() {
+								return ImportTask.this.isCancelled();
+							}
+
+							public void onProgress(int done, int count) {
+								publishProgress(done, count);
+							}
+
+							public String getId(ItemImport currItem) {
+								if (mType == inputTypes.shelvesSoftware)
+									return TextUtilities
+											.unprotectString(currItem.internalID);
+								return currItem.id_one;
+							}
+
+							public SoftwareStore.Software loadAndAdd(String id) {
+								return SoftwareManager.loadAndAddSoftware(resolver, id,
+										softwareStore, mType, SoftwareActivity.this);
+							}
+
+							public int getBatchSize() {
+								return SoftwareStore.MAX_LOOKUP_IDS;
+							}
+
+							public Map<String, SoftwareStore.Software> loadAndAddAll(
+									List<String> ids) {
+								return SoftwareManager.loadAndAddSoftware(resolver, ids,
+										softwareStore, mType, SoftwareActivity.this);
+							}
+
+							public SoftwareStore.Software findExisting(String id) {
+								return SoftwareManager.findSoftwareById(resolver, id,
+										null);
+							}
+
+							public ContentProviderOperation newUpdate(SoftwareStore.Software software,
+									ItemImport currItem) {
+								return newImportUpdate(software, mType,
+										getString(R.string.software_label),
+										currItem);
+							}
+
+							public ContentProviderOperation newManualInsert(
+									int manualItemNum) {
+								return newManualItemInsert(
+										SoftwareStore.Software.CONTENT_URI, manualItemNum);
+							}
+						}, pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
+								true), getString(R.string.error_no_barcode));
+
+				imported = engine.run();
+				if (imported == null)
+					return null;
+
+				missingImport = engine.getMissingCount();
+				missingItems.append(engine.getMissingItems());
+				existsImport = engine.getExistingCount();
+				existingItems.append(engine.getExistingItems());
 			} catch (IOException e) {
 				return null;
 			}
@@ -1033,12 +1020,7 @@ public class SoftwareActivity extends BaseItemActivity {
 			if (scrollState == SCROLL_STATE_IDLE) {
 				mScrollHandler.removeCallbacks(mShowPopup);
 
-				final SoftwareUpdater softwareUpdater = mSoftwareUpdater;
-				final int count = view.getChildCount();
-				for (int i = 0; i < count; i++) {
-					softwareUpdater.offer(((BaseItemViewHolder) view
-							.getChildAt(i).getTag()).id);
-				}
+				mSoftwareUpdater.offerRows(view);
 			} else {
 				mSoftwareUpdater.clear();
 			}
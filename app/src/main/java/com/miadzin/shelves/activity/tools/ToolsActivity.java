@@ -19,9 +19,11 @@ package com.miadzin.shelves.activity.tools;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import android.content.ActivityNotFoundException;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Intent;
@@ -63,6 +65,7 @@ import com.miadzin.shelves.scan.ScanIntentResult;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.IOUtilities.inputTypes;
 import com.miadzin.shelves.util.ImageUtilities;
+import com.miadzin.shelves.util.ImportEngine;
 import com.miadzin.shelves.util.ImportResults;
 import com.miadzin.shelves.util.ImportUtilities;
 import com.miadzin.shelves.util.Preferences;
@@ -782,7 +785,6 @@ public class ToolsActivity extends BaseItemActivity {
 
 		private int existsImport = 0;
 		private int missingImport = 0;
-		private int manualItemNum = 0;
 
 		StringBuilder existingItems = new StringBuilder();
 		StringBuilder missingItems = new StringBuilder();
@@ -829,7 +831,7 @@ public class ToolsActivity extends BaseItemActivity {
 
 		@Override
 		public Integer doInBackground(Void... params) {
-			int imported = 0;
+			Integer imported = 0;
 
 			try {
 				if (mTools == null)
@@ -838,89 +840,74 @@ public class ToolsActivity extends BaseItemActivity {
 				// GJT: Solves an odd race condition from above
 				if (mTools == null) {
 					onCancelImport();
+					return null;
 				}
 
-				final List<ItemImport> list = mTools;
 				final ToolsStore toolsStore = new ToolsStore();
-				final int count = list.size();
 				final ContentResolver resolver = mResolver;
-				final AtomicInteger importCount = mImportCount;
-
-				for (int i = importCount.get(); i < count; i++) {
-					publishProgress(i, count);
-					if (isCancelled())
-						return null;
-
-					final ItemImport currItem = list.get(i);
-
-					final String id;
-					if (mType == inputTypes.shelvesTools) {
-						id = TextUtilities.unprotectString(currItem.internalID);
-					} else {
-						id = currItem.id_one;
-					}
-
-					if (!ToolsManager.toolExists(mResolver, id, null, mType)) {
-						if (isCancelled())
-							return null;
-
-						ToolsStore.Tool tool = null;
-						final boolean isManual = TextUtilities
-								.isManualItem(currItem.internalID);
-						if (!isManual) {
-							tool = ToolsManager.loadAndAddTool(resolver, id,
-									toolsStore, mType, ToolsActivity.this);
-						}
-
-						if (tool != null) {
-							addOrUpdate(
-									tool,
-									mType,
-									getBaseContext().getString(
-											R.string.tool_label_plural_small),
-									currItem);
-
-							android.util.Log.d(LOG_TAG, tool.toString());
-							imported++;
-						} else if (isManual) {
-							addManualItemsFromImport(
-									ToolsStore.Tool.CONTENT_URI, manualItemNum);
-
-							android.util.Log.d(LOG_TAG, "Manual add for" + id);
-							imported++;
-							manualItemNum++;
-						} else {
-							missingImport++;
-
-							if (TextUtilities.isEmpty(id))
-								missingItems.append(R.string.error_no_barcode);
-							else
-								missingItems.append(id).append("\n");
-
-						}
-					} else {
-						existsImport++;
-						existingItems.append(id).append("\n");
-
-						if (pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
-								true))
-							addOrUpdate(
-									ToolsManager.findToolById(mResolver, id,
-											null),
-									mType,
-									getBaseContext().getString(
-											R.string.tool_label_plural_small),
-									currItem);
-					}
-					importCount.incrementAndGet();
-					try {
-						Thread.sleep(1000); // GJT: Let AWS rest
-					} catch (InterruptedException e) {
-						// Auto-generated catch block
-						e.printStackTrace();
-					}
-				}
 
+				final ImportEngine<ToolsStore.Tool> engine = new ImportEngine<ToolsStore.Tool>(
+						resolver, ToolsStore.Tool.CONTENT_URI, mTools,
+						mImportCount,
+						new ImportEngine.BatchItemHandler<ToolsStore.Tool>() {
+							public boolean isCancelled() {
+								return ImportTask.this.isCancelled();
+							}
+
+							public void onProgress(int done, int count) {
+								publishProgress(done, count);
+							}
+
+							public String getId(ItemImport currItem) {
+								if (mType == inputTypes.shelvesTools)
+									return TextUtilities
+											.unprotectString(currItem.internalID);
+								return currItem.id_one;
+							}
+
+							public ToolsStore.Tool loadAndAdd(String id) {
+								return ToolsManager.loadAndAddTool(resolver, id,
+										toolsStore, mType, ToolsActivity.this);
+							}
+
+							public int getBatchSize() {
+								return ToolsStore.MAX_LOOKUP_IDS;
+							}
+
+							public Map<String, ToolsStore.Tool> loadAndAddAll(
+									List<String> ids) {
+								return ToolsManager.loadAndAddTools(resolver, ids,
+										toolsStore, mType, ToolsActivity.this);
+							}
+
+							public ToolsStore.Tool findExisting(String id) {
+								return ToolsManager.findToolById(resolver, id,
+										null);
+							}
+
+							public ContentProviderOperation newUpdate(ToolsStore.Tool tool,
+									ItemImport currItem) {
+								return newImportUpdate(tool, mType,
+										getString(R.string.tool_label_plural_small),
+										currItem);
+							}
+
+							public ContentProviderOperation newManualInsert(
+									int manualItemNum) {
+								return newManualItemInsert(
+										ToolsStore.Tool.CONTENT_URI, manualItemNum);
+							}
+						}, pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
+								true), getString(R.string.error_no_barcode));
+
+				imported = engine.run();
+				if (imported == null)
+					return null;
+
+				missingImport = engine.getMissingCount();
+				missingItems.append(engine.getMissingItems());
+				existsImport = engine.getExistingCount();
+				existingItems.append(engine.getExistingItems());
 			} catch (IOException e) {
 				return null;
 			}
@@ -1011,12 +998,7 @@ public class ToolsActivity extends BaseItemActivity {
 			if (scrollState == SCROLL_STATE_IDLE) {
 				mScrollHandler.removeCallbacks(mShowPopup);
 
-				final ToolsUpdater toolsUpdater = mToolsUpdater;
-				final int count = view.getChildCount();
-				for (int i = 0; i < count; i++) {
-					toolsUpdater.offer(((BaseItemViewHolder) view.getChildAt(i)
-							.getTag()).id);
-				}
+				mToolsUpdater.offerRows(view);
 			} else {
 				mToolsUpdater.clear();
 			}
@@ -19,8 +19,10 @@ package com.miadzin.shelves.activity.toys;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Intent;
@@ -62,6 +64,7 @@ import com.miadzin.shelves.scan.ScanIntentResult;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.IOUtilities.inputTypes;
 import com.miadzin.shelves.util.ImageUtilities;
+import com.miadzin.shelves.util.ImportEngine;
 import com.miadzin.shelves.util.ImportResults;
 import com.miadzin.shelves.util.ImportUtilities;
 import com.miadzin.shelves.util.Preferences;
@@ -770,7 +773,6 @@ public class ToysActivity extends BaseItemActivity {
 
 		private int existsImport = 0;
 		private int missingImport = 0;
-		private int manualItemNum = 0;
 
 		StringBuilder existingItems = new StringBuilder();
 		StringBuilder missingItems = new StringBuilder();
@@ -817,7 +819,7 @@ public class ToysActivity extends BaseItemActivity {
 
 		@Override
 		public Integer doInBackground(Void... params) {
-			int imported = 0;
+			Integer imported = 0;
 
 			try {
 				if (mToys == null)
@@ -826,90 +828,74 @@ public class ToysActivity extends BaseItemActivity {
 				// GJT: Solves an odd race condition from above
 				if (mToys == null) {
 					onCancelImport();
+					return null;
 				}
 
-				final List<ItemImport> list = mToys;
-				final ToysStore toyssStore = new ToysStore();
-				final int count = list.size();
+				final ToysStore toysStore = new ToysStore();
 				final ContentResolver resolver = mResolver;
-				final AtomicInteger importCount = mImportCount;
-
-				for (int i = importCount.get(); i < count; i++) {
-					publishProgress(i, count);
-					if (isCancelled())
-						return null;
-
-					final ItemImport currItem = list.get(i);
-
-					final String id;
-					if (mType == inputTypes.shelvesToys) {
-						id = TextUtilities.unprotectString(currItem.internalID);
-					} else {
-						id = currItem.id_one;
-					}
-
-					if (!ToysManager.toyExists(mResolver, id, null, mType)) {
-						if (isCancelled())
-							return null;
-
-						ToysStore.Toy toy = null;
-						final boolean isManual = TextUtilities
-								.isManualItem(currItem.internalID);
-						if (!isManual) {
-							toy = ToysManager.loadAndAddToy(resolver, id,
-									toyssStore, mType, ToysActivity.this);
-						}
-
-						if (toy != null) {
-							addOrUpdate(
-									toy,
-									mType,
-									getBaseContext().getString(
-											R.string.toy_label_plural_small),
-									currItem);
-
-							android.util.Log.d(LOG_TAG, toy.toString());
-							imported++;
-						} else if (isManual) {
-							addManualItemsFromImport(ToysStore.Toy.CONTENT_URI,
-									manualItemNum);
-
-							android.util.Log.d(LOG_TAG, "Manual add for" + id);
-							imported++;
-							manualItemNum++;
-						} else {
-							missingImport++;
-
-							if (TextUtilities.isEmpty(id))
-								missingItems.append(R.string.error_no_barcode);
-							else
-								missingItems.append(id).append("\n");
-
-						}
-					} else {
-						existsImport++;
-						existingItems.append(id).append("\n");
-
-						if (pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
-								true))
-							addOrUpdate(
-									ToysManager
-											.findToyById(mResolver, id, null),
-									mType,
-									getBaseContext().getString(
-											R.string.toy_label_plural_small),
-									currItem);
-
-					}
-					importCount.incrementAndGet();
-					try {
-						Thread.sleep(1000); // GJT: Let AWS rest
-					} catch (InterruptedException e) {
-						// Auto-generated catch block
-						e.printStackTrace();
-					}
-				}
 
+				final ImportEngine<ToysStore.Toy> engine = new ImportEngine<ToysStore.Toy>(
+						resolver, ToysStore.Toy.CONTENT_URI, mToys,
+						mImportCount,
+						new ImportEngine.BatchItemHandler<ToysStore.Toy>() {
+							public boolean isCancelled() {
+								return ImportTask.this.isCancelled();
+							}
+
+							public void onProgress(int done, int count) {
+								publishProgress(done, count);
+							}
+
+							public String getId(ItemImport currItem) {
+								if (mType == inputTypes.shelvesToys)
+									return TextUtilities
+											.unprotectString(currItem.internalID);
+								return currItem.id_one;
+							}
+
+							public ToysStore.Toy loadAndAdd(String id) {
+								return ToysManager.loadAndAddToy(resolver, id,
+										toysStore, mType, ToysActivity.this);
+							}
+
+							public int getBatchSize() {
+								return ToysStore.MAX_LOOKUP_IDS;
+							}
+
+							public Map<String, ToysStore.Toy> loadAndAddAll(
+									List<String> ids) {
+								return ToysManager.loadAndAddToys(resolver, ids,
+										toysStore, mType, ToysActivity.this);
+							}
+
+							public ToysStore.Toy findExisting(String id) {
+								return ToysManager.findToyById(resolver, id,
+										null);
+							}
+
+							public ContentProviderOperation newUpdate(ToysStore.Toy toy,
+									ItemImport currItem) {
+								return newImportUpdate(toy, mType,
+										getString(R.string.toy_label_plural_small),
+										currItem);
+							}
+
+							public ContentProviderOperation newManualInsert(
+									int manualItemNum) {
+								return newManualItemInsert(
+										ToysStore.Toy.CONTENT_URI, manualItemNum);
+							}
+						}, pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
+								true), getString(R.string.error_no_barcode));
+
+				imported = engine.run();
+				if (imported == null)
+					return null;
+
+				missingImport = engine.getMissingCount();
+				missingItems.append(engine.getMissingItems());
+				existsImport = engine.getExistingCount();
+				existingItems.append(engine.getExistingItems());
 			} catch (IOException e) {
 				return null;
 			}
@@ -1000,12 +986,7 @@ public class ToysActivity extends BaseItemActivity {
 			if (scrollState == SCROLL_STATE_IDLE) {
 				mScrollHandler.removeCallbacks(mShowPopup);
 
-				final ToysUpdater toysUpdater = mToysUpdater;
-				final int count = view.getChildCount();
-				for (int i = 0; i < count; i++) {
-					toysUpdater.offer(((BaseItemViewHolder) view.getChildAt(i)
-							.getTag()).id);
-				}
+				mToysUpdater.offerRows(view);
 			} else {
 				mToysUpdater.clear();
 			}
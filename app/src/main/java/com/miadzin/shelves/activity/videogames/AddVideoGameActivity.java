@@ -47,7 +47,7 @@ import android.widget.TextView;
 import com.miadzin.shelves.R;
 import com.miadzin.shelves.activity.SettingsActivity;
 import com.miadzin.shelves.base.AddBaseItemActivity;
-import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.SearchThumbnailLoader;
 import com.miadzin.shelves.drawable.FastBitmapDrawable;
 import com.miadzin.shelves.provider.videogames.VideoGamesManager;
 import com.miadzin.shelves.provider.videogames.VideoGamesStore;
@@ -97,13 +97,18 @@ public class AddVideoGameActivity extends AddBaseItemActivity implements
 		if (oldAdapter != null) {
 			final int count = oldAdapter.getCount();
 			for (int i = 0; i < count; i++) {
-				resultsAdapter.add(oldAdapter.getItem(i));
+				final ResultVideoGame result = oldAdapter.getItem(i);
+				resultsAdapter.add(result);
+				// GJT: The old screen dropped the thumbnails still loading
+				if (result.cover == null)
+					loadThumbnail(result);
 			}
 		}
 
 		final ListView searchResults = (ListView) findViewById(R.id.list_search_results);
 		searchResults.setAdapter(resultsAdapter);
 		searchResults.setOnItemClickListener(this);
+		setupResultsList(searchResults);
 		registerForContextMenu(searchResults);
 	}
 
@@ -114,6 +119,12 @@ public class AddVideoGameActivity extends AddBaseItemActivity implements
 				.getText().toString());
 	}
 
+	@Override
+	protected boolean isSearching() {
+		return mSearchTask != null
+				&& mSearchTask.getStatus() != AsyncTask.Status.FINISHED;
+	}
+
 	@Override
 	protected void onDestroy() {
 		super.onDestroy();
@@ -379,12 +390,23 @@ public class AddVideoGameActivity extends AddBaseItemActivity implements
 		}
 	}
 
+	private void loadThumbnail(final ResultVideoGame videogame) {
+		mThumbnailLoader.load(videogame.videogame, COVER_WIDTH, COVER_HEIGHT,
+				new SearchThumbnailLoader.Callback() {
+					public void onThumbnailLoaded(FastBitmapDrawable cover) {
+						videogame.cover = cover;
+						mVideoGamesAdapter.notifyDataSetChanged();
+					}
+				});
+	}
+
 	private class SearchTask extends AsyncTask<String, ResultVideoGame, Void>
 			implements VideoGamesStore.VideoGameSearchListener {
 
 		private final Object mLock = new Object();
 		private String mQuery;
 		private boolean clearResults;
+		private int mFound;
 
 		public SearchTask(boolean clear) {
 			clearResults = clear;
@@ -414,8 +436,10 @@ public class AddVideoGameActivity extends AddBaseItemActivity implements
 				});
 			}
 
-			if (clearResults)
+			if (clearResults) {
+				mThumbnailLoader.cancel();
 				mVideoGamesAdapter.clear();
+			}
 			showPanel(mSearchPanel, true);
 		}
 
@@ -440,12 +464,15 @@ public class AddVideoGameActivity extends AddBaseItemActivity implements
 		public void onProgressUpdate(ResultVideoGame... values) {
 			for (ResultVideoGame videogame : values) {
 				mVideoGamesAdapter.add(videogame);
+				loadThumbnail(videogame);
 			}
+			mFound += values.length;
 		}
 
 		@Override
 		public void onPostExecute(Void ignore) {
 			enableSearchPanel();
+			mMoreResults = mFound > 0;
 
 			UIUtilities.showToast(
 					AddVideoGameActivity.this,
@@ -458,6 +485,7 @@ public class AddVideoGameActivity extends AddBaseItemActivity implements
 		@Override
 		public void onCancelled() {
 			enableSearchPanel();
+			mMoreResults = false;
 
 			hidePanel(mSearchPanel, true);
 		}
@@ -528,19 +556,10 @@ public class AddVideoGameActivity extends AddBaseItemActivity implements
 		final String title;
 		final String author;
 
-		final FastBitmapDrawable cover;
+		FastBitmapDrawable cover;
 
 		ResultVideoGame(VideoGamesStore.VideoGame videogame) {
 			this.videogame = videogame;
-			Bitmap bitmap = ImageUtilities.createShadow(
-					videogame.loadCover(BaseItem.ImageSize.THUMBNAIL),
-					COVER_WIDTH, COVER_HEIGHT);
-			if (bitmap != null) {
-				cover = new FastBitmapDrawable(bitmap);
-			} else {
-				cover = null;
-			}
-
 			title = videogame.getTitle();
 			author = videogame.getAuthors();
 			text = title + ' ' + author;
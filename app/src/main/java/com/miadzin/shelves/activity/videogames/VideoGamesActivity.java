@@ -19,8 +19,10 @@ package com.miadzin.shelves.activity.videogames;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Intent;
@@ -62,6 +64,7 @@ import com.miadzin.shelves.scan.ScanIntentResult;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.IOUtilities.inputTypes;
 import com.miadzin.shelves.util.ImageUtilities;
+import com.miadzin.shelves.util.ImportEngine;
 import com.miadzin.shelves.util.ImportResults;
 import com.miadzin.shelves.util.ImportUtilities;
 import com.miadzin.shelves.util.Preferences;
@@ -813,7 +816,6 @@ public class VideoGamesActivity extends BaseItemActivity {
 
 		private int existsImport = 0;
 		private int missingImport = 0;
-		private int manualItemNum = 0;
 
 		StringBuilder existingItems = new StringBuilder();
 		StringBuilder missingItems = new StringBuilder();
@@ -860,7 +862,7 @@ public class VideoGamesActivity extends BaseItemActivity {
 
 		@Override
 		public Integer doInBackground(Void... params) {
-			int imported = 0;
+			Integer imported = 0;
 
 			try {
 				if (mVideoGames == null)
@@ -869,92 +871,74 @@ public class VideoGamesActivity extends BaseItemActivity {
 				// GJT: Solves an odd race condition from above
 				if (mVideoGames == null) {
 					onCancelImport();
+					return null;
 				}
 
-				final List<ItemImport> list = mVideoGames;
 				final VideoGamesStore videogamesStore = new VideoGamesStore();
-				final int count = list.size();
 				final ContentResolver resolver = mResolver;
-				final AtomicInteger importCount = mImportCount;
-
-				for (int i = importCount.get(); i < count; i++) {
-					publishProgress(i, count);
-					if (isCancelled())
-						return null;
-
-					final ItemImport currItem = list.get(i);
-
-					final String id;
-					if (mType == inputTypes.shelvesVideoGames) {
-						id = TextUtilities.unprotectString(currItem.internalID);
-					} else {
-						id = currItem.id_one;
-					}
-
-					if (!VideoGamesManager.videogameExists(mResolver, id, null,
-							mType)) {
-						if (isCancelled())
-							return null;
-
-						VideoGamesStore.VideoGame videogame = null;
-						final boolean isManual = TextUtilities
-								.isManualItem(currItem.internalID);
-						if (!isManual) {
-							videogame = VideoGamesManager.loadAndAddVideoGame(
-									resolver, id, videogamesStore, mType,
-									VideoGamesActivity.this);
-						}
-						if (videogame != null) {
-							addOrUpdate(
-									videogame,
-									mType,
-									getBaseContext()
-											.getString(
-													R.string.videogame_label_plural_small),
-									currItem);
-
-							android.util.Log.d(LOG_TAG, videogame.toString());
-							imported++;
-						} else if (isManual) {
-							addManualItemsFromImport(
-									VideoGamesStore.VideoGame.CONTENT_URI,
-									manualItemNum);
-
-							android.util.Log.d(LOG_TAG, "Manual add for" + id);
-							imported++;
-							manualItemNum++;
-						} else {
-							missingImport++;
-
-							if (TextUtilities.isEmpty(id))
-								missingItems.append(R.string.error_no_barcode);
-							else
-								missingItems.append(id).append("\n");
-
-						}
-					} else {
-						existsImport++;
-						existingItems.append(id).append("\n");
-						if (pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
-								true))
-							addOrUpdate(
-									VideoGamesManager.findVideoGameById(
-											mResolver, id, null),
-									mType,
-									getBaseContext()
-											.getString(
-													R.string.videogame_label_plural_small),
-									currItem);
-					}
-					importCount.incrementAndGet();
-					try {
-						Thread.sleep(1000); // GJT: Let AWS rest
-					} catch (InterruptedException e) {
-						// Auto-generated catch block
-						e.printStackTrace();
-					}
-				}
 
+				final ImportEngine<VideoGamesStore.VideoGame> engine = new ImportEngine<VideoGamesStore.VideoGame>(
+						resolver, VideoGamesStore.VideoGame.CONTENT_URI, mVideoGames,
+						mImportCount,
+						new ImportEngine.BatchItemHandler<VideoGamesStore.VideoGame>() {
+							public boolean isCancelled() {
+								return ImportTask.this.isCancelled();
+							}
+
+							public void onProgress(int done, int count) {
+								publishProgress(done, count);
+							}
+
+							public String getId(ItemImport currItem) {
+								if (mType == inputTypes.shelvesVideoGames)
+									return TextUtilities
+											.unprotectString(currItem.internalID);
+								return currItem.id_one;
+							}
+
+							public VideoGamesStore.VideoGame loadAndAdd(String id) {
+								return VideoGamesManager.loadAndAddVideoGame(resolver, id,
+										videogamesStore, mType, VideoGamesActivity.this);
+							}
+
+							public int getBatchSize() {
+								return VideoGamesStore.MAX_LOOKUP_IDS;
+							}
+
+							public Map<String, VideoGamesStore.VideoGame> loadAndAddAll(
+									List<String> ids) {
+								return VideoGamesManager.loadAndAddVideoGames(resolver, ids,
+										videogamesStore, mType, VideoGamesActivity.this);
+							}
+
+							public VideoGamesStore.VideoGame findExisting(String id) {
+								return VideoGamesManager.findVideoGameById(resolver, id,
+										null);
+							}
+
+							public ContentProviderOperation newUpdate(VideoGamesStore.VideoGame videogame,
+									ItemImport currItem) {
+								return newImportUpdate(videogame, mType,
+										getString(R.string.videogame_label_plural_small),
+										currItem);
+							}
+
+							public ContentProviderOperation newManualInsert(
+									int manualItemNum) {
+								return newManualItemInsert(
+										VideoGamesStore.VideoGame.CONTENT_URI, manualItemNum);
+							}
+						}, pref.getBoolean(Preferences.KEY_OVERRIDE_IMPORT,
+								true), getString(R.string.error_no_barcode));
+
+				imported = engine.run();
+				if (imported == null)
+					return null;
+
+				missingImport = engine.getMissingCount();
+				missingItems.append(engine.getMissingItems());
+				existsImport = engine.getExistingCount();
+				existingItems.append(engine.getExistingItems());
 			} catch (IOException e) {
 				return null;
 			}
@@ -1052,12 +1036,7 @@ public class VideoGamesActivity extends BaseItemActivity {
 			if (scrollState == SCROLL_STATE_IDLE) {
 				mScrollHandler.removeCallbacks(mShowPopup);
 
-				final VideoGamesUpdater videogamesUpdater = mVideoGamesUpdater;
-				final int count = view.getChildCount();
-				for (int i = 0; i < count; i++) {
-					videogamesUpdater.offer(((BaseItemViewHolder) view
-							.getChildAt(i).getTag()).id);
-				}
+				mVideoGamesUpdater.offerRows(view);
 			} else {
 				mVideoGamesUpdater.clear();
 			}
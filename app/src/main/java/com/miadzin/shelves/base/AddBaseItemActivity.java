@@ -28,7 +28,9 @@ import android.view.MenuItem;
 import android.view.View;
 import android.view.animation.AnimationUtils;
 import android.view.inputmethod.InputMethodManager;
+import android.widget.AbsListView;
 import android.widget.EditText;
+import android.widget.ListView;
 
 import com.google.android.gms.ads.AdRequest;
 import com.google.android.gms.ads.AdView;
@@ -52,12 +54,19 @@ public abstract class AddBaseItemActivity extends Activity implements
 	protected static final String STATE_ADD_IN_PROGRESS = "shelves.add.inprogress";
 	protected static final String STATE_SEARCH_IN_PROGRESS = "shelves.search.inprogress";
 
+	// GJT: Rows left below the screen when the next page is requested
+	private static final int PREFETCH_DISTANCE = 3;
+
 	protected View mSearchButton;
 	protected EditText mSearchQuery;
 	protected View mSearchPanel;
 	protected View mAddPanel;
 
 	protected int mPage = 1;
+	// Whether the last page had results, so the next one is worth asking for
+	protected boolean mMoreResults;
+
+	protected final SearchThumbnailLoader mThumbnailLoader = new SearchThumbnailLoader();
 
 	private ActivityHelper mActivityHelper;
 	protected String itemIdString;
@@ -176,10 +185,42 @@ public abstract class AddBaseItemActivity extends Activity implements
 		}
 	}
 
+	@Override
+	protected void onDestroy() {
+		mThumbnailLoader.cancel();
+		super.onDestroy();
+	}
+
 	abstract protected void getNextResults();
 
 	abstract protected void onSearch(boolean b);
 
+	abstract protected boolean isSearching();
+
+	/**
+	 * Requests the next page of results as the user nears the end of the
+	 * specified list, so it is there by the time they get to it.
+	 */
+	protected void setupResultsList(ListView searchResults) {
+		searchResults.setOnScrollListener(new AbsListView.OnScrollListener() {
+			public void onScrollStateChanged(AbsListView view,
+					int scrollState) {
+			}
+
+			public void onScroll(AbsListView view, int firstVisibleItem,
+					int visibleItemCount, int totalItemCount) {
+				if (mMoreResults
+						&& totalItemCount > 0
+						&& firstVisibleItem + visibleItemCount >= totalItemCount
+								- PREFETCH_DISTANCE && !isSearching()) {
+					// Until the page requested now says otherwise
+					mMoreResults = false;
+					getNextResults();
+				}
+			}
+		});
+	}
+
 	protected void showPanel(View panel, boolean slideUp) {
 		panel.startAnimation(AnimationUtils.loadAnimation(this,
 				slideUp ? R.anim.slide_in : R.anim.slide_out_top));
@@ -20,7 +20,7 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 
-import android.content.ContentResolver;
+import android.content.ContentProviderOperation;
 import android.content.ContentValues;
 import android.graphics.Bitmap;
 import android.util.Log;
@@ -61,6 +61,10 @@ public abstract class BaseItem {
 	public static final String REVIEWS = "reviews";
 	public static final String PAGES = "pages";
 	public static final String LAST_MODIFIED = "last_modified";
+	public static final String ETAG = "etag";
+	public static final String LAST_CHECKED = "last_checked";
+	// GJT: See IdentifierIndex
+	public static final String IDENTIFIER_KEY = "identifier_key";
 	public static final String PUBLICATION = "publication";
 	public static final String DETAILS_URL = "details_url";
 	public static final String TINY_URL = "tiny_url";
@@ -124,6 +128,7 @@ public abstract class BaseItem {
 	public String mTitle;
 	public String mDetailsUrl;
 	public Calendar mLastModified;
+	public String mETag;
 
 	public List<String> mTags;
 	public String mFormat;
@@ -212,6 +217,10 @@ public abstract class BaseItem {
 		return mLastModified;
 	}
 
+	public String getETag() {
+		return mETag;
+	}
+
 	public String getLoanedTo() {
 		return mLoanedTo;
 	}
@@ -264,7 +273,12 @@ public abstract class BaseItem {
 
 	public abstract String getImageUrl(ImageSize size);
 
-	public void addInfo(ContentResolver contentResolver, String type,
+	/**
+	 * Builds the update that stores user supplied information, such as tags,
+	 * rating or notes, on this item. Used by the imports, which apply these
+	 * updates in batches.
+	 */
+	public ContentProviderOperation newInfoOperation(String type,
 			String title, String sort_title, String description, String tags,
 			String rating, String notes, String loan_date, String loan_to,
 			String event_id, String wishlist) {
@@ -351,12 +365,10 @@ public abstract class BaseItem {
 			contentValues.put(BaseItem.WISHLIST_DATE, wishlist);
 		}
 
-		try {
-			contentResolver.update(ShelvesApplication.TYPES_TO_URI.get(type),
-					contentValues, BaseItem.INTERNAL_ID + "=?",
-					new String[] { ServerInfo.NAME + mInternalId });
-		} catch (Exception e) {
-			Log.e(LOG_TAG, e.toString());
-		}
+		return ContentProviderOperation
+				.newUpdate(ShelvesApplication.TYPES_TO_URI.get(type))
+				.withValues(contentValues)
+				.withSelection(BaseItem.INTERNAL_ID + "=?",
+						new String[] { ServerInfo.NAME + mInternalId }).build();
 	}
 }
\ No newline at end of file
@@ -20,14 +20,10 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
-import java.util.StringTokenizer;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import android.app.Activity;
@@ -35,11 +31,13 @@ import android.app.AlertDialog;
 import android.app.Dialog;
 import android.app.SearchManager;
 import android.content.ActivityNotFoundException;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.content.SharedPreferences;
 import android.content.pm.ActivityInfo;
 import android.content.res.Configuration;
@@ -49,6 +47,7 @@ import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.RemoteException;
 import android.util.Log;
 import android.view.ContextMenu;
 import android.view.Gravity;
@@ -81,7 +80,6 @@ import com.miadzin.shelves.activity.QuantityActivity;
 import com.miadzin.shelves.activity.RateActivity;
 import com.miadzin.shelves.activity.SettingsActivity;
 import com.miadzin.shelves.activity.TagActivity;
-import com.miadzin.shelves.drawable.CrossFadeDrawable;
 import com.miadzin.shelves.drawable.FastBitmapDrawable;
 import com.miadzin.shelves.provider.ItemImport;
 import com.miadzin.shelves.provider.apparel.ApparelManager;
@@ -108,6 +106,7 @@ import com.miadzin.shelves.util.ImportUtilities;
 import com.miadzin.shelves.util.Preferences;
 import com.miadzin.shelves.util.TextUtilities;
 import com.miadzin.shelves.util.UIUtilities;
+import com.miadzin.shelves.util.loan.Calendars;
 import com.miadzin.shelves.view.ShelvesView;
 
 public abstract class BaseItemActivity extends Activity {
@@ -453,32 +452,30 @@ public abstract class BaseItemActivity extends Activity {
 
 	protected static String setupActionBarTitle(ContentResolver cr,
 			String activityToMatch) {
-		Cursor c = null;
-		Cursor l = null;
-		Cursor w = null;
+		int total = 0;
+		int loaned = 0;
+		int wishlist = 0;
 
 		final Uri uri = findItemUri(activityToMatch);
 
-		c = cr.query(uri, new String[] { BaseItem._ID }, null, null, null);
-		l = cr.query(uri, new String[] { BaseItem._ID, BaseItem.LOANED_TO },
-				BaseItem.LOANED_TO + " NOT NULL AND " + BaseItem.LOANED_TO
-						+ " != ''", null, null);
-		w = cr.query(uri,
-				new String[] { BaseItem._ID, BaseItem.WISHLIST_DATE },
-				BaseItem.WISHLIST_DATE + " NOT NULL AND "
-						+ BaseItem.WISHLIST_DATE + " != ''", null, null);
-
-		final String title = "\n" + c.getCount() + " | " + l.getCount() + " / "
-				+ w.getCount();
-
-		if (c != null)
-			c.close();
-		if (l != null)
-			l.close();
-		if (w != null)
-			w.close();
-
-		return title;
+		final Cursor c = cr.query(BaseItemContentProvider.getStatsUri(uri),
+				null, null, null, null);
+		if (c != null) {
+			try {
+				if (c.moveToFirst()) {
+					total = c.getInt(c
+							.getColumnIndexOrThrow(BaseItemContentProvider.STAT_TOTAL));
+					loaned = c.getInt(c
+							.getColumnIndexOrThrow(BaseItemContentProvider.STAT_LOANED));
+					wishlist = c.getInt(c
+							.getColumnIndexOrThrow(BaseItemContentProvider.STAT_WISHLIST));
+				}
+			} finally {
+				c.close();
+			}
+		}
+
+		return "\n" + total + " | " + loaned + " / " + wishlist;
 	}
 
 	protected FastBitmapDrawable getDefaultCover() {
@@ -759,21 +756,7 @@ public abstract class BaseItemActivity extends Activity {
 			final BaseItemViewHolder holder = (BaseItemViewHolder) view
 					.getTag();
 			if (holder.queryCover) {
-				final String id = holder.id;
-
-				FastBitmapDrawable cached = ImageUtilities.getCachedCover(id,
-						cover);
-
-				if (grid == null) {
-					holder.cover.setImageDrawable(ImageUtilities
-							.getCachedCover(id, cached));
-				} else {
-					CrossFadeDrawable d = holder.transition;
-					d.setEnd(cached.getBitmap());
-					holder.title.setCompoundDrawablesWithIntrinsicBounds(null,
-							null, null, d);
-					d.startTransition(COVER_TRANSITION_DURATION);
-				}
+				BaseItemCoverLoader.load(holder, cover);
 				holder.queryCover = false;
 			}
 		}
@@ -1162,17 +1145,22 @@ public abstract class BaseItemActivity extends Activity {
 	}
 
 	// Used in all Import Tasks
-	protected void addOrUpdate(BaseItem bi, inputTypes mType, String itemName,
-			ItemImport currItem) {
+	/**
+	 * Builds the update that copies the user supplied information of an
+	 * imported line onto the matching item.
+	 *
+	 * @return The update, or null if there is nothing to update
+	 */
+	protected ContentProviderOperation newImportUpdate(BaseItem bi,
+			inputTypes mType, String itemName, ItemImport currItem) {
 		if (bi != null) {
 			switch (mType) {
 			case boardGameGeekBoardGames:
-				bi.addInfo(getContentResolver(), itemName, currItem.title,
+				return bi.newInfoOperation(itemName, currItem.title,
 						IOUtilities.NO_OP, IOUtilities.NO_OP,
 						IOUtilities.NO_OP, currItem.rating, IOUtilities.NO_OP,
 						IOUtilities.NO_OP, IOUtilities.NO_OP,
 						IOUtilities.NO_OP, currItem.wishlist);
-				break;
 			case DLApparel:
 			case DLBooks:
 			case DLGadgets:
@@ -1182,26 +1170,23 @@ public abstract class BaseItemActivity extends Activity {
 			case DLTools:
 			case DLToys:
 			case DLVideoGames:
-				bi.addInfo(getContentResolver(), itemName, IOUtilities.NO_OP,
+				return bi.newInfoOperation(itemName, IOUtilities.NO_OP,
 						IOUtilities.NO_OP, IOUtilities.NO_OP,
 						IOUtilities.NO_OP, currItem.rating, currItem.notes, "",
 						"", "", "");
-				break;
 			case libraryThingBooks:
-				bi.addInfo(getContentResolver(), itemName, IOUtilities.NO_OP,
+				return bi.newInfoOperation(itemName, IOUtilities.NO_OP,
 						IOUtilities.NO_OP, IOUtilities.NO_OP, currItem.tags,
 						currItem.rating, IOUtilities.NO_OP, "", "", "", "");
-				break;
 			case mediaManBooks:
 			case mediaManMovies:
 			case mediaManMusic:
 			case mediaManVideoGames:
 				final String rating = String.valueOf((Integer
 						.parseInt(currItem.rating) / 10));
-				bi.addInfo(getContentResolver(), itemName, "", "",
+				return bi.newInfoOperation(itemName, "", "",
 						IOUtilities.NO_OP, currItem.tags, rating, "", "", "",
 						"", "");
-				break;
 			case shelvesApparel:
 			case shelvesBoardGames:
 			case shelvesBooks:
@@ -1213,23 +1198,29 @@ public abstract class BaseItemActivity extends Activity {
 			case shelvesTools:
 			case shelvesToys:
 			case shelvesVideoGames:
-				bi.addInfo(getContentResolver(), itemName, currItem.title,
+				return bi.newInfoOperation(itemName, currItem.title,
 						currItem.sort_title, currItem.desc, currItem.tags,
 						currItem.rating, currItem.notes, currItem.loan_date,
 						currItem.loan_to, currItem.event_id, currItem.wishlist);
-				break;
 			}
 		}
+		return null;
 	}
 
-	protected void addManualItemsFromImport(Uri uri, int itemNum) {
+	/**
+	 * Builds the insert for a manually added item from the import file.
+	 */
+	protected ContentProviderOperation newManualItemInsert(Uri uri, int itemNum) {
 		ContentValues textValues = new ContentValues();
 
-		String lineObj = ImportUtilities.manualItems.get(itemNum);
-		String[] line = lineObj.split("\t");
+		final String[] line = ImportUtilities.manualItems.get(itemNum);
 		final int lineLength = line.length;
 
 		for (int j = 1; j < ImportUtilities.header.length; j++) {
+			// GJT: Older backups carry them, the provider computes its own
+			if (BaseItemContentProvider
+					.isDerivedColumn(ImportUtilities.header[j]))
+				continue;
 			if (j < lineLength) {
 				if (TextUtilities.isEmpty(line[j]))
 					textValues.put(ImportUtilities.header[j], "");
@@ -1238,11 +1229,8 @@ public abstract class BaseItemActivity extends Activity {
 			}
 		}
 
-		try {
-			getContentResolver().insert(uri, textValues);
-		} catch (Exception e) {
-			Log.e(LOG_TAG, e.toString());
-		}
+		return ContentProviderOperation.newInsert(uri).withValues(textValues)
+				.build();
 	}
 
 	protected void applyTagsToMultiSelect(String addedTags) {
@@ -1255,50 +1243,21 @@ public abstract class BaseItemActivity extends Activity {
 		if (itr.hasNext()) {
 
 			final Uri uri = ShelvesApplication.TYPES_TO_URI.get(mMultiItemType);
+			final Uri tagsUri = BaseItemContentProvider.getTagsUri(uri);
+			final ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
 
+			// GJT: The provider merges them with the tags each item already has
 			do {
-				Set<String> uniqueTags = new HashSet<String>();
-
-				Cursor c = null;
 				String mID = (String) itr.next();
 
-				try {
-					c = cr.query(uri, new String[] { BaseItem._ID,
-							BaseItem.TAGS }, BaseItem.INTERNAL_ID + "=?",
-							new String[] { mID }, null);
-					if (c.getCount() > 0) {
-						if (c.moveToFirst()) {
-							List<String> existingTags = TextUtilities
-									.breakString(c.getString(1), ",");
-							if (!TextUtilities.isEmpty(existingTags)) {
-								for (String existingTag : existingTags) {
-									uniqueTags.add(existingTag);
-								}
-							}
-
-							StringTokenizer tokens = new StringTokenizer(
-									addedTags, ", ");
-
-							while (tokens.hasMoreTokens()) {
-								uniqueTags.add(tokens.nextToken());
-							}
-						}
-					}
-				} finally {
-					if (c != null)
-						c.close();
-				}
-
-				List<String> uniqueTagsList = asSortedList(uniqueTags);
-				ContentValues tagValues = new ContentValues();
-				tagValues
-						.put(BaseItem.TAGS, TextUtilities
-								.removeBrackets(uniqueTagsList.toString()));
-
-				cr.update(uri, tagValues, BaseItem.INTERNAL_ID + "=?",
-						new String[] { mID });
+				operations.add(ContentProviderOperation.newUpdate(tagsUri)
+						.withValue(BaseItem.TAGS, addedTags)
+						.withSelection(BaseItem.INTERNAL_ID + "=?",
+								new String[] { mID }).build());
 			} while (itr.hasNext());
 
+			applyBatch(cr, tagsUri, operations);
+
 			setupViews();
 			postApplyMulti();
 		}
@@ -1312,46 +1271,106 @@ public abstract class BaseItemActivity extends Activity {
 		if (itr.hasNext()) {
 
 			final Uri uri = ShelvesApplication.TYPES_TO_URI.get(mMultiItemType);
+			final ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+
+			ContentValues rateValue = new ContentValues();
+			rateValue.put(BaseItem.RATING, rating);
 
 			do {
 				String mID = (String) itr.next();
 
-				ContentValues rateValue = new ContentValues();
-				rateValue.put(BaseItem.RATING, rating);
-
-				cr.update(uri, rateValue, BaseItem.INTERNAL_ID + "=?",
-						new String[] { mID });
+				operations.add(ContentProviderOperation.newUpdate(uri)
+						.withValues(rateValue)
+						.withSelection(BaseItem.INTERNAL_ID + "=?",
+								new String[] { mID }).build());
 			} while (itr.hasNext());
 
+			applyBatch(cr, uri, operations);
+
 			postApplyMulti();
 		}
 	}
 
 	protected void applyDeleteToMultiSelect() {
+		ContentResolver cr = getContentResolver();
+
 		Iterator itr = multiSelectIds.iterator();
 
 		if (itr.hasNext()) {
+
+			final Uri uri = ShelvesApplication.TYPES_TO_URI.get(mMultiItemType);
+			final ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+
+			// GJT: Loaned items also have a calendar event to remove
+			final HashMap<String, Integer> eventIds = new HashMap<String, Integer>();
+			Cursor c = null;
+			try {
+				c = cr.query(uri, new String[] { BaseItem.INTERNAL_ID,
+						BaseItem.EVENT_ID }, BaseItem.EVENT_ID + " > 0", null,
+						null);
+				while (c.moveToNext()) {
+					eventIds.put(c.getString(0), c.getInt(1));
+				}
+			} finally {
+				if (c != null)
+					c.close();
+			}
+
 			do {
 				String mID = (String) itr.next();
-				onDelete(mID);
+
+				operations.add(ContentProviderOperation.newDelete(uri)
+						.withSelection(BaseItem.INTERNAL_ID + "=?",
+								new String[] { mID }).build());
 			} while (itr.hasNext());
 
+			if (applyBatch(cr, uri, operations)) {
+				for (String mID : multiSelectIds) {
+					ImageUtilities.deleteCachedCover(mID);
+
+					final Integer eventId = eventIds.get(mID);
+					if (eventId != null) {
+						Calendars.deleteCalendarEvent(cr, eventId);
+					}
+				}
+
+				mActivityHelper
+						.setActionBarTitle((getString(itemIdString) + setupActionBarTitle(
+								cr, this.toString())));
+				UIUtilities.showToast(
+						this,
+						getString(R.string.success_item_deleted,
+								getString(itemIdString)));
+			}
+
 			postApplyMulti();
 		}
 	}
 
+	/**
+	 * Applies the specified operations in a single transaction of the provider
+	 * behind the specified URI.
+	 *
+	 * @return True if the batch was applied, false otherwise
+	 */
+	private boolean applyBatch(ContentResolver cr, Uri uri,
+			ArrayList<ContentProviderOperation> operations) {
+		try {
+			cr.applyBatch(uri.getAuthority(), operations);
+			return true;
+		} catch (RemoteException e) {
+			Log.e(LOG_TAG, e.toString());
+		} catch (OperationApplicationException e) {
+			Log.e(LOG_TAG, e.toString());
+		}
+		return false;
+	}
+
 	private void postApplyMulti() {
 		multiSelectIds = new ArrayList<String>();
 		mMultiSelect = false;
 	}
 
-	public static <T extends Comparable<? super T>> List<T> asSortedList(
-			Collection<T> c) {
-		List<T> list = new ArrayList<T>(c);
-		java.util.Collections.sort(list);
-		return list;
-	}
-
 	@Override
 	protected Dialog onCreateDialog(int id) {
 		switch (id) {
@@ -1649,26 +1668,18 @@ public abstract class BaseItemActivity extends Activity {
 		Cursor c = null;
 
 		final Uri uri = findItemUri(this.toString());
-		c = getContentResolver().query(uri,
-				new String[] { BaseItem.INTERNAL_ID, BaseItem.TAGS },
-				BaseItem.TAGS + " NOT NULL AND " + BaseItem.TAGS + " != ''",
-				null, null);
-
-		if (c.moveToFirst()) {
-			do {
-				for (String tag : c.getString(1).split(",")) {
-					tag = tag.trim();
-					if (!TextUtilities.isEmpty(tag)
-							&& !mFilterTags.contains(tag))
-						mFilterTags.add(tag);
-				}
-			} while (c.moveToNext());
+		try {
+			c = getContentResolver().query(
+					BaseItemContentProvider.getTagsUri(uri),
+					new String[] { BaseItemContentProvider.TAG_NAME }, null,
+					null, null);
+			while (c.moveToNext()) {
+				mFilterTags.add(c.getString(0));
+			}
+		} finally {
+			if (c != null)
+				c.close();
 		}
-
-		if (c != null)
-			c.close();
-
-		Collections.sort(mFilterTags);
 	}
 
 	protected Dialog createFilterDialog(int id) {
@@ -1800,9 +1811,6 @@ public abstract class BaseItemActivity extends Activity {
 				((ProgressBar) mExportPanel.findViewById(R.id.progress))
 						.setIndeterminate(true);
 
-				((TextView) mExportPanel.findViewById(R.id.label_import))
-						.setText(getText(R.string.export_label));
-
 				final View cancelButton = mExportPanel
 						.findViewById(R.id.button_cancel);
 				cancelButton.setOnClickListener(new View.OnClickListener() {
@@ -1812,6 +1820,9 @@ public abstract class BaseItemActivity extends Activity {
 				});
 			}
 
+			((TextView) mExportPanel.findViewById(R.id.label_import))
+					.setText(getText(R.string.export_label));
+
 			mResolver = getContentResolver();
 
 			showPanel(mExportPanel, true);
@@ -1823,7 +1834,13 @@ public abstract class BaseItemActivity extends Activity {
 
 			try {
 
-				status = ExportUtilities.exportItems(mType, mResolver) ? 1 : 0;
+				status = ExportUtilities.exportItems(mType, mResolver,
+						new ExportUtilities.ExportListener() {
+							public void onRowsExported(int rows,
+									int rowsPerSecond) {
+								publishProgress(rows, rowsPerSecond);
+							}
+						}) ? 1 : 0;
 
 			} catch (IOException e) {
 				return null;
@@ -1832,6 +1849,13 @@ public abstract class BaseItemActivity extends Activity {
 			return status;
 		}
 
+		@Override
+		public void onProgressUpdate(Integer... values) {
+			((TextView) mExportPanel.findViewById(R.id.label_import))
+					.setText(getString(R.string.export_progress, values[0],
+							values[1]));
+		}
+
 		@Override
 		public void onCancelled() {
 			hidePanel(mExportPanel, true);
@@ -20,7 +20,6 @@ import android.widget.TextView;
 import com.miadzin.shelves.R;
 import com.miadzin.shelves.drawable.CrossFadeDrawable;
 import com.miadzin.shelves.drawable.FastBitmapDrawable;
-import com.miadzin.shelves.util.ImageUtilities;
 import com.miadzin.shelves.util.TextUtilities;
 
 public class BaseItemAdapter extends CursorAdapter implements
@@ -262,26 +261,20 @@ public class BaseItemAdapter extends CursorAdapter implements
 				|| mViewType.equals(BaseItemActivity.LIST_VIEW)) {
 			final BaseItemActivity activity = mActivity;
 
-			if (mViewType.equals(BaseItemActivity.SHELF_VIEW)) {
-				if (activity.isPendingCoversUpdate()) {
+			if (activity.isPendingCoversUpdate()) {
+				// GJT: Covers are bound once the fling settles, in
+				// updateCovers()
+				BaseItemCoverLoader.cancel(holder);
+				if (mViewType.equals(BaseItemActivity.SHELF_VIEW)) {
 					holder.title.setCompoundDrawablesWithIntrinsicBounds(null,
 							null, null, mDefaultCover);
-					holder.queryCover = true;
 				} else {
-					holder.title.setCompoundDrawablesWithIntrinsicBounds(null,
-							null, null,
-							ImageUtilities.getCachedCover(id, mDefaultCover));
-					holder.queryCover = false;
-				}
-			} else {
-				if (activity.isPendingCoversUpdate()) {
 					holder.cover.setImageDrawable(mDefaultCover);
-					holder.queryCover = true;
-				} else {
-					holder.cover.setImageDrawable(ImageUtilities
-							.getCachedCover(id, mDefaultCover));
-					holder.queryCover = false;
 				}
+				holder.queryCover = true;
+			} else {
+				BaseItemCoverLoader.load(holder, mDefaultCover);
+				holder.queryCover = false;
 			}
 		}
 
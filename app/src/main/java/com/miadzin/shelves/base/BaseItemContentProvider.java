@@ -0,0 +1,944 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.base;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.os.Build;
+
+import com.miadzin.shelves.ShelvesApplication;
+import com.miadzin.shelves.util.IdentifierIndex;
+import com.miadzin.shelves.util.TextUtilities;
+import com.miadzin.shelves.util.TitleKeys;
+
+/**
+ * Common base of the item providers. Batches sent through
+ * {@link #bulkInsert(Uri, ContentValues[])} or {@link #applyBatch(ArrayList)}
+ * run in a single transaction, and observers are notified once per batch
+ * instead of once per row.
+ *
+ * Each item table also has a full text index, kept up to date by triggers,
+ * that serves the search suggestions and the type-to-filter queries, and a
+ * normalized copy of the tags: a tags table and an item to tag join table.
+ * The comma separated tags column stays the one written by clients; the
+ * provider keeps the join table in step with it.
+ *
+ * The counts shown in the headers are served from a single aggregate query
+ * whose result is kept until the next write.
+ *
+ * The provider also keeps the key of the barcodes of each item, see
+ * {@link IdentifierIndex}, up to date on every insert and update.
+ *
+ * Every sort order offered in the lists runs on an index. Columns holding
+ * numbers as text, such as the prices, are sorted on a numeric key kept next
+ * to them, see {@link #getSortKey(String)}, and the sort orders are rewritten
+ * to use those keys, see {@link #getOrderBy(String)}.
+ */
+public abstract class BaseItemContentProvider extends ContentProvider {
+	private static final String SEARCH_TABLE_SUFFIX = "_fts";
+
+	/**
+	 * Path, under the authority of each provider, of the tags in use. Queries
+	 * return {@link #TAG_NAME} and {@link #TAG_COUNT}; updates add the comma
+	 * separated tags in {@link BaseItem#TAGS} to the selected items.
+	 */
+	public static final String TAGS_PATH = "tags";
+	public static final String TAG_NAME = "name";
+	public static final String TAG_COUNT = "count";
+
+	private static final String TAG_SEPARATOR = ", ";
+
+	/**
+	 * Path, under the authority of each provider, of the collection
+	 * statistics. Queries return a single row with {@link #STAT_TOTAL},
+	 * {@link #STAT_LOANED}, {@link #STAT_WISHLIST} and {@link #STAT_QUANTITY}.
+	 */
+	public static final String STATS_PATH = "stats";
+	public static final String STAT_TOTAL = "total";
+	public static final String STAT_LOANED = "loaned";
+	public static final String STAT_WISHLIST = "wishlist";
+	public static final String STAT_QUANTITY = "quantity";
+
+	/**
+	 * Query parameter capping the number of items a query returns, used to
+	 * page through a collection.
+	 */
+	public static final String LIMIT_PARAMETER = "limit";
+
+	/**
+	 * Query parameter marking a write observers don't need to hear about,
+	 * such as bookkeeping that changes nothing on screen.
+	 */
+	public static final String SILENT_PARAMETER = "silent";
+
+	/**
+	 * Selects the loaned items in a way the index made by
+	 * {@link #createStatusIndexes(SQLiteDatabase, String)} can serve: a text
+	 * greater than the empty string is neither null nor empty.
+	 */
+	public static final String LOANED_SELECTION = BaseItem.LOANED_TO + " > ''";
+
+	/**
+	 * Selects the items on the wishlist, like {@link #LOANED_SELECTION}.
+	 */
+	public static final String WISHLIST_SELECTION = BaseItem.WISHLIST_DATE
+			+ " > ''";
+
+	private static final String[] STATS_COLUMNS = new String[] { STAT_TOTAL,
+			STAT_LOANED, STAT_WISHLIST, STAT_QUANTITY };
+
+	// GJT: Whatever the simple FTS tokenizer would split words on
+	private static final Pattern SEARCH_SEPARATORS = Pattern
+			.compile("[\\s\\p{Punct}]+");
+
+	private final ThreadLocal<Batch> mBatch = new ThreadLocal<Batch>();
+
+	private final Object mStatsLock = new Object();
+	// Sort orders as picked to the sort orders run, there are only a few
+	private final HashMap<String, String> mOrderBy = new HashMap<String, String>();
+	private int[] mStats;
+	private int mStatsGeneration;
+
+	private static class Batch {
+		int depth;
+		final LinkedHashSet<Uri> changedUris = new LinkedHashSet<Uri>();
+	}
+
+	protected abstract SQLiteOpenHelper getOpenHelper();
+
+	/**
+	 * Returns the key the items are sorted by title on: the title in lower
+	 * case, without its leading article.
+	 */
+	protected abstract String keyFor(String name);
+
+	/**
+	 * Returns the columns of the items table that hold numbers as text and
+	 * are sorted on their key.
+	 */
+	protected abstract String[] getSortNumberColumns();
+
+	/**
+	 * Tells observers that the data behind the specified URI changed. Inside a
+	 * batch the notification is held back until the batch commits.
+	 */
+	protected void notifyChange(Uri uri) {
+		invalidateStats();
+
+		if (uri.getQueryParameter(SILENT_PARAMETER) != null)
+			return;
+
+		final Batch batch = mBatch.get();
+		if (batch != null) {
+			batch.changedUris.add(uri);
+			return;
+		}
+
+		getContext().getContentResolver().notifyChange(uri, null);
+		ShelvesApplication.dataChanged();
+	}
+
+	@Override
+	public int bulkInsert(Uri uri, ContentValues[] values) {
+		final SQLiteDatabase db = beginBatch();
+		boolean successful = false;
+		try {
+			final int count = values.length;
+			for (int i = 0; i < count; i++) {
+				insert(uri, values[i]);
+			}
+			db.setTransactionSuccessful();
+			successful = true;
+			return count;
+		} finally {
+			endBatch(db, successful);
+		}
+	}
+
+	@Override
+	public ContentProviderResult[] applyBatch(
+			ArrayList<ContentProviderOperation> operations)
+			throws OperationApplicationException {
+		final SQLiteDatabase db = beginBatch();
+		boolean successful = false;
+		try {
+			final ContentProviderResult[] results = super
+					.applyBatch(operations);
+			db.setTransactionSuccessful();
+			successful = true;
+			return results;
+		} finally {
+			endBatch(db, successful);
+		}
+	}
+
+	private SQLiteDatabase beginBatch() {
+		final SQLiteDatabase db = getOpenHelper().getWritableDatabase();
+		db.beginTransaction();
+
+		Batch batch = mBatch.get();
+		if (batch == null) {
+			batch = new Batch();
+			mBatch.set(batch);
+		}
+		batch.depth++;
+
+		return db;
+	}
+
+	private void endBatch(SQLiteDatabase db, boolean successful) {
+		db.endTransaction();
+
+		final Batch batch = mBatch.get();
+		if (--batch.depth > 0)
+			return;
+
+		mBatch.remove();
+		// Stats read while the batch ran may have seen part of it
+		invalidateStats();
+		// GJT: A failed batch was rolled back, nothing to tell anyone
+		if (!successful || batch.changedUris.isEmpty())
+			return;
+
+		for (Uri uri : batch.changedUris) {
+			getContext().getContentResolver().notifyChange(uri, null);
+		}
+		ShelvesApplication.dataChanged();
+	}
+
+	/**
+	 * Returns the specified URI, marked so writes through it don't notify
+	 * observers.
+	 */
+	public static Uri getSilentUri(Uri uri) {
+		return uri.buildUpon().appendQueryParameter(SILENT_PARAMETER, "1")
+				.build();
+	}
+
+	/**
+	 * Returns the row limit requested by the specified URI, or null if it
+	 * requests none or an invalid one.
+	 */
+	protected static String getLimit(Uri uri) {
+		final String limit = uri.getQueryParameter(LIMIT_PARAMETER);
+		if (limit == null)
+			return null;
+
+		try {
+			return Integer.parseInt(limit) > 0 ? limit : null;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Turns what the user typed into a full text query matching the items
+	 * that have every word typed as a prefix of one of their words.
+	 *
+	 * @return The query, or null if nothing searchable was typed
+	 */
+	public static String getSearchQuery(CharSequence constraint) {
+		if (constraint == null)
+			return null;
+
+		final StringBuilder query = new StringBuilder();
+		for (String term : SEARCH_SEPARATORS.split(constraint)) {
+			if (term.length() == 0)
+				continue;
+
+			if (query.length() > 0)
+				query.append(' ');
+			// Quoted so that words such as OR or NOT are not operators
+			query.append('"').append(term).append("*\"");
+		}
+
+		return query.length() > 0 ? query.toString() : null;
+	}
+
+	/**
+	 * Returns a selection matching the rows of the specified table found by
+	 * the full text query given as its only argument.
+	 */
+	public static String getSearchSelection(String table) {
+		final String searchTable = table + SEARCH_TABLE_SUFFIX;
+		return BaseItem._ID + " IN (SELECT docid FROM " + searchTable
+				+ " WHERE " + searchTable + " MATCH ?)";
+	}
+
+	protected static void appendSearchWhere(SQLiteQueryBuilder qb,
+			String table, String query) {
+		final String searchTable = table + SEARCH_TABLE_SUFFIX;
+		qb.appendWhere(BaseItem._ID + " IN (SELECT docid FROM " + searchTable
+				+ " WHERE " + searchTable + " MATCH ");
+		qb.appendWhereEscapeString(query);
+		qb.appendWhere(")");
+	}
+
+	/**
+	 * Creates, or rebuilds, the full text index of the specified table and
+	 * the triggers that keep it in sync.
+	 *
+	 * @param columns
+	 *            The columns to index
+	 */
+	protected static void createSearchIndex(SQLiteDatabase db, String table,
+			String[] columns) {
+		final String searchTable = table + SEARCH_TABLE_SUFFIX;
+
+		final StringBuilder names = new StringBuilder();
+		final StringBuilder newValues = new StringBuilder();
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				names.append(", ");
+				newValues.append(", ");
+			}
+			names.append(columns[i]);
+			newValues.append("new.").append(columns[i]);
+		}
+
+		final String insert = "INSERT INTO " + searchTable + " (docid, "
+				+ names + ") VALUES (new." + BaseItem._ID + ", " + newValues
+				+ ");";
+		final String delete = "DELETE FROM " + searchTable
+				+ " WHERE docid = old." + BaseItem._ID + ";";
+
+		db.execSQL("DROP TRIGGER IF EXISTS " + searchTable + "_insert");
+		db.execSQL("DROP TRIGGER IF EXISTS " + searchTable + "_update");
+		db.execSQL("DROP TRIGGER IF EXISTS " + searchTable + "_delete");
+		db.execSQL("DROP TABLE IF EXISTS " + searchTable);
+
+		db.execSQL("CREATE VIRTUAL TABLE " + searchTable + " USING fts3("
+				+ names + ");");
+		db.execSQL("INSERT INTO " + searchTable + " (docid, " + names
+				+ ") SELECT " + BaseItem._ID + ", " + names + " FROM " + table
+				+ ";");
+
+		db.execSQL("CREATE TRIGGER " + searchTable + "_insert AFTER INSERT ON "
+				+ table + " BEGIN " + insert + " END;");
+		// Only changes to the indexed columns need to touch the index
+		db.execSQL("CREATE TRIGGER " + searchTable + "_update AFTER UPDATE OF "
+				+ names + " ON " + table + " BEGIN " + delete + " " + insert
+				+ " END;");
+		db.execSQL("CREATE TRIGGER " + searchTable + "_delete AFTER DELETE ON "
+				+ table + " BEGIN " + delete + " END;");
+	}
+
+	/**
+	 * Returns the URI of the tags used by the items of the specified URI.
+	 */
+	public static Uri getTagsUri(Uri contentUri) {
+		return new Uri.Builder().scheme(contentUri.getScheme())
+				.authority(contentUri.getAuthority()).appendPath(TAGS_PATH)
+				.build();
+	}
+
+	/**
+	 * Returns a selection matching the items tagged with every one of the
+	 * specified number of tags, given as its arguments.
+	 */
+	public static String getTagSelection(int tagCount) {
+		final StringBuilder selection = new StringBuilder();
+		selection.append(BaseItem._ID).append(
+				" IN (SELECT item_id FROM item_tags JOIN tags ON tags._id ="
+						+ " item_tags.tag_id WHERE tags.name IN (");
+		for (int i = 0; i < tagCount; i++) {
+			if (i > 0)
+				selection.append(", ");
+			selection.append('?');
+		}
+		selection.append(") GROUP BY item_id HAVING COUNT(*) = ")
+				.append(tagCount).append(')');
+		return selection.toString();
+	}
+
+	/**
+	 * Splits a comma separated list of tags, dropping blanks and duplicates.
+	 */
+	public static List<String> splitTags(String tags) {
+		final LinkedHashSet<String> split = new LinkedHashSet<String>();
+		if (tags != null) {
+			for (String tag : tags.split(",")) {
+				tag = tag.trim();
+				if (tag.length() > 0)
+					split.add(tag);
+			}
+		}
+		return new ArrayList<String>(split);
+	}
+
+	/**
+	 * Creates the tags and join tables of the specified items table, then
+	 * fills them from the tags column of the existing items.
+	 */
+	protected static void createTagTables(SQLiteDatabase db, String table) {
+		db.execSQL("DROP TRIGGER IF EXISTS " + table + "_tags_delete");
+		db.execSQL("DROP TABLE IF EXISTS item_tags");
+		db.execSQL("DROP TABLE IF EXISTS tags");
+
+		db.execSQL("CREATE TABLE tags (" + BaseItem._ID
+				+ " INTEGER PRIMARY KEY, " + TAG_NAME
+				+ " TEXT NOT NULL UNIQUE);");
+		db.execSQL("CREATE TABLE item_tags (item_id INTEGER NOT NULL, "
+				+ "tag_id INTEGER NOT NULL, PRIMARY KEY (item_id, tag_id));");
+		db.execSQL("CREATE INDEX itemTagsTag ON item_tags(tag_id);");
+
+		db.execSQL("CREATE TRIGGER " + table + "_tags_delete AFTER DELETE ON "
+				+ table + " BEGIN DELETE FROM item_tags WHERE item_id = old."
+				+ BaseItem._ID + "; END;");
+
+		final Cursor c = db.query(table, new String[] { BaseItem._ID,
+				BaseItem.TAGS }, BaseItem.TAGS + " NOT NULL AND "
+				+ BaseItem.TAGS + " != ''", null, null, null, null);
+		try {
+			while (c.moveToNext()) {
+				setItemTags(db, c.getLong(0), splitTags(c.getString(1)));
+			}
+		} finally {
+			c.close();
+		}
+	}
+
+	/**
+	 * Creates the indexes of the loaned items and of the items on the
+	 * wishlist of the specified items table. They only hold the few items
+	 * concerned where SQLite supports partial indexes, from Lollipop on.
+	 */
+	protected static void createStatusIndexes(SQLiteDatabase db, String table) {
+		// GJT: Build.VERSION_CODES.LOLLIPOP, SQLite 3.8
+		final boolean partial = Build.VERSION.SDK_INT >= 21;
+
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + table + "IndexLoaned ON "
+				+ table + "(" + BaseItem.LOANED_TO + ")"
+				+ (partial ? " WHERE " + LOANED_SELECTION : "") + ";");
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + table + "IndexWishlist ON "
+				+ table + "(" + BaseItem.WISHLIST_DATE + ")"
+				+ (partial ? " WHERE " + WISHLIST_SELECTION : "") + ";");
+	}
+
+	/**
+	 * Creates the indexes the existence checks run on, see
+	 * {@link IdentifierIndex}, and computes the key of every item already in
+	 * the table.
+	 */
+	protected static void createIdentifierIndex(SQLiteDatabase db,
+			String table) {
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + table
+				+ "IndexIdentifierKey ON " + table + "("
+				+ BaseItem.IDENTIFIER_KEY + ");");
+		createInternalIdIndex(db, table);
+		writeIdentifierKeys(db, table, null);
+	}
+
+	/**
+	 * Creates the index of the internal ids, which are compared without
+	 * regard to case, replacing the one that compared them as they are.
+	 */
+	protected static void createInternalIdIndex(SQLiteDatabase db,
+			String table) {
+		db.execSQL("DROP INDEX IF EXISTS " + table + "IndexInternalId");
+		db.execSQL("CREATE INDEX " + table + "IndexInternalId ON " + table
+				+ "(" + BaseItem.INTERNAL_ID + " COLLATE NOCASE);");
+	}
+
+	/**
+	 * Adds the numeric keys of the specified columns to an items table,
+	 * computed for the items already in it, and creates the indexes every
+	 * sort order offered in the lists runs on.
+	 *
+	 * @param columns
+	 *            The columns sorted on as they are, without regard to case
+	 * @param numberColumns
+	 *            The columns holding numbers as text, sorted on their keys
+	 */
+	protected static void createSortKeys(SQLiteDatabase db, String table,
+			String[] columns, String[] numberColumns) {
+		for (String column : numberColumns) {
+			db.execSQL("ALTER TABLE " + table + " ADD COLUMN "
+					+ getSortKey(column) + " REAL");
+		}
+		writeSortNumbers(db, table, numberColumns);
+
+		// GJT: The sort orders compare without regard to case, so must these
+		for (String column : columns) {
+			db.execSQL("CREATE INDEX IF NOT EXISTS " + table + "Index_"
+					+ column + " ON " + table + "(" + column
+					+ " COLLATE NOCASE);");
+		}
+		for (String column : numberColumns) {
+			final String key = getSortKey(column);
+			db.execSQL("CREATE INDEX IF NOT EXISTS " + table + "Index_" + key
+					+ " ON " + table + "(" + key + ");");
+		}
+	}
+
+	/**
+	 * Computes again the title keys of every item of an items table, after
+	 * the way they are computed changed.
+	 */
+	protected static void writeSortTitles(SQLiteDatabase db, String table,
+			TitleKeys keys) {
+		final Cursor c = db.query(table, new String[] { BaseItem._ID,
+				BaseItem.TITLE }, null, null, null, null, null);
+		final SQLiteStatement update = db.compileStatement("UPDATE " + table
+				+ " SET " + BaseItem.SORT_TITLE + " = ? WHERE " + BaseItem._ID
+				+ " = ?");
+		try {
+			while (c.moveToNext()) {
+				update.bindString(1, keys.keyFor(c.getString(1)));
+				update.bindLong(2, c.getLong(0));
+				update.execute();
+			}
+		} finally {
+			update.close();
+			c.close();
+		}
+	}
+
+	/**
+	 * Returns the column of the key the specified column is sorted on.
+	 */
+	public static String getSortKey(String column) {
+		return "sort_" + column;
+	}
+
+	/**
+	 * Returns true if the specified column is computed by the provider, or
+	 * only describes the cached cover, rather than entered by the user. A
+	 * backup doesn't carry these: they would be stale once restored.
+	 */
+	public static boolean isDerivedColumn(String column) {
+		// GJT: The title key is kept, older versions read it from backups
+		return BaseItem.ETAG.equals(column)
+				|| BaseItem.LAST_CHECKED.equals(column)
+				|| BaseItem.IDENTIFIER_KEY.equals(column)
+				|| (column.startsWith(getSortKey(""))
+						&& !BaseItem.SORT_TITLE.equals(column));
+	}
+
+	/**
+	 * Adds to the specified values the sort keys of the columns they write.
+	 */
+	protected void putSortKeys(ContentValues values) {
+		if (values.containsKey(BaseItem.TITLE)) {
+			values.put(BaseItem.SORT_TITLE,
+					keyFor(values.getAsString(BaseItem.TITLE)));
+		}
+		for (String column : getSortNumberColumns()) {
+			if (values.containsKey(column)) {
+				values.put(getSortKey(column),
+						TextUtilities.numberFor(values.getAsString(column)));
+			}
+		}
+	}
+
+	/**
+	 * Rewrites a sort order picked in the lists to run on the sort keys and
+	 * their indexes. The columns holding numbers as text are sorted on their
+	 * keys; the title key, already in lower case, and the ids lose their
+	 * collation, which would keep their indexes from being used.
+	 */
+	protected String getOrderBy(String sortOrder) {
+		if (sortOrder == null)
+			return null;
+
+		synchronized (mOrderBy) {
+			String orderBy = mOrderBy.get(sortOrder);
+			if (orderBy == null) {
+				orderBy = rewriteSortOrder(sortOrder, getSortNumberColumns());
+				mOrderBy.put(sortOrder, orderBy);
+			}
+			return orderBy;
+		}
+	}
+
+	private static String rewriteSortOrder(String sortOrder,
+			String[] numberColumns) {
+		final StringBuilder orderBy = new StringBuilder(sortOrder.length());
+		for (String term : sortOrder.split(",")) {
+			term = term.trim();
+			final String[] words = term.split("\\s+");
+			final String column = words[0];
+			final String last = words[words.length - 1];
+			final String direction = words.length > 1
+					&& ("asc".equalsIgnoreCase(last) || "desc"
+							.equalsIgnoreCase(last)) ? " " + last : "";
+
+			if (orderBy.length() > 0)
+				orderBy.append(", ");
+			if (column.equals(BaseItem._ID)
+					|| column.equals(BaseItem.SORT_TITLE)) {
+				orderBy.append(column).append(direction);
+			} else if (contains(numberColumns, column)) {
+				orderBy.append(getSortKey(column)).append(direction);
+			} else {
+				orderBy.append(term);
+			}
+		}
+		return orderBy.toString();
+	}
+
+	private static boolean contains(String[] columns, String column) {
+		for (String c : columns) {
+			if (c.equals(column))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Inserts an item, and its tags, in a single transaction.
+	 */
+	protected static long insertItem(SQLiteDatabase db, String table,
+			String nullColumnHack, ContentValues values) {
+		values.put(BaseItem.IDENTIFIER_KEY, IdentifierIndex.getKey(
+				values.getAsString(BaseItem.EAN),
+				values.getAsString(BaseItem.ISBN),
+				values.getAsString(BaseItem.UPC)));
+
+		if (!values.containsKey(BaseItem.TAGS))
+			return db.insert(table, nullColumnHack, values);
+
+		db.beginTransaction();
+		try {
+			final long rowId = db.insert(table, nullColumnHack, values);
+			if (rowId > 0) {
+				setItemTags(db, rowId,
+						splitTags(values.getAsString(BaseItem.TAGS)));
+			}
+			db.setTransactionSuccessful();
+			return rowId;
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	/**
+	 * Updates the selected items, and their tags, in a single transaction.
+	 */
+	protected static int updateItems(SQLiteDatabase db, String table,
+			ContentValues values, String where, String[] whereArgs) {
+		final boolean tagged = values.containsKey(BaseItem.TAGS);
+		final boolean identified = values.containsKey(BaseItem.EAN)
+				|| values.containsKey(BaseItem.ISBN)
+				|| values.containsKey(BaseItem.UPC);
+		if (!tagged && !identified)
+			return db.update(table, values, where, whereArgs);
+
+		db.beginTransaction();
+		try {
+			// Selected first, the update could change what the clause matches
+			final long[] itemIds = selectIds(db, table, where, whereArgs);
+			final int count = db.update(table, values, where, whereArgs);
+
+			if (tagged) {
+				final List<String> tags = splitTags(values
+						.getAsString(BaseItem.TAGS));
+				for (long itemId : itemIds) {
+					setItemTags(db, itemId, tags);
+				}
+			}
+			if (identified) {
+				// GJT: The other barcodes of the item may decide the key
+				for (long itemId : itemIds) {
+					writeIdentifierKeys(db, table, BaseItem._ID + " = "
+							+ itemId);
+				}
+			}
+			db.setTransactionSuccessful();
+			return count;
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	/**
+	 * Adds tags to the selected items, keeping the ones they already have.
+	 *
+	 * @param tags
+	 *            The comma separated tags to add
+	 * @return The number of items tagged
+	 */
+	protected static int addTags(SQLiteDatabase db, String table, String tags,
+			String where, String[] whereArgs) {
+		final List<String> added = splitTags(tags);
+
+		db.beginTransaction();
+		try {
+			final long[] itemIds = selectIds(db, table, where, whereArgs);
+			if (!added.isEmpty()) {
+				final SQLiteStatement insertItemTag = db
+						.compileStatement("INSERT OR IGNORE INTO item_tags"
+								+ " (item_id, tag_id) VALUES (?, ?)");
+				try {
+					final long[] tagIds = getTagIds(db, added);
+					for (long itemId : itemIds) {
+						for (long tagId : tagIds) {
+							insertItemTag.bindLong(1, itemId);
+							insertItemTag.bindLong(2, tagId);
+							insertItemTag.execute();
+						}
+						writeTagsColumn(db, table, itemId);
+					}
+				} finally {
+					insertItemTag.close();
+				}
+			}
+			db.setTransactionSuccessful();
+			return itemIds.length;
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	/**
+	 * Lists the tags in use, with the number of items that have each one,
+	 * sorted by name.
+	 */
+	protected static Cursor queryTags(SQLiteDatabase db) {
+		return db.rawQuery("SELECT tags." + BaseItem._ID + ", tags."
+				+ TAG_NAME + ", COUNT(*) AS " + TAG_COUNT
+				+ " FROM tags JOIN item_tags ON item_tags.tag_id = tags."
+				+ BaseItem._ID + " GROUP BY tags." + BaseItem._ID
+				+ " ORDER BY tags." + TAG_NAME, null);
+	}
+
+	/**
+	 * Returns the URI of the collection statistics of the provider serving
+	 * the specified content URI.
+	 */
+	public static Uri getStatsUri(Uri contentUri) {
+		return new Uri.Builder().scheme(contentUri.getScheme())
+				.authority(contentUri.getAuthority()).appendPath(STATS_PATH)
+				.build();
+	}
+
+	/**
+	 * Counts the items of the specified table, the loaned ones, the ones on
+	 * the wishlist and the copies owned, an item without a positive quantity
+	 * counting as one copy. The counts are computed in a single pass and
+	 * cached until the next write.
+	 */
+	protected Cursor queryStats(SQLiteDatabase db, String table) {
+		int[] stats;
+		int generation;
+		synchronized (mStatsLock) {
+			stats = mStats;
+			generation = mStatsGeneration;
+		}
+
+		if (stats == null) {
+			stats = new int[STATS_COLUMNS.length];
+
+			final Cursor c = db.rawQuery("SELECT COUNT(*), SUM("
+					+ BaseItem.LOANED_TO + " != ''), SUM("
+					+ BaseItem.WISHLIST_DATE + " != ''), SUM(MAX(1, IFNULL(CAST("
+					+ BaseItem.QUANTITY + " AS INTEGER), 0))) FROM " + table,
+					null);
+			try {
+				if (c.moveToFirst()) {
+					for (int i = 0; i < stats.length; i++) {
+						// SUM() of no rows is null, which reads as 0
+						stats[i] = c.getInt(i);
+					}
+				}
+			} finally {
+				c.close();
+			}
+
+			synchronized (mStatsLock) {
+				// GJT: Don't cache counts a concurrent write made stale
+				if (generation == mStatsGeneration)
+					mStats = stats;
+			}
+		}
+
+		final MatrixCursor cursor = new MatrixCursor(STATS_COLUMNS, 1);
+		final Integer[] row = new Integer[stats.length];
+		for (int i = 0; i < stats.length; i++) {
+			row[i] = stats[i];
+		}
+		cursor.addRow(row);
+		return cursor;
+	}
+
+	private void invalidateStats() {
+		synchronized (mStatsLock) {
+			mStats = null;
+			mStatsGeneration++;
+		}
+	}
+
+	private static long[] selectIds(SQLiteDatabase db, String table,
+			String where, String[] whereArgs) {
+		final Cursor c = db.query(table, new String[] { BaseItem._ID }, where,
+				whereArgs, null, null, null);
+		try {
+			final long[] ids = new long[c.getCount()];
+			for (int i = 0; c.moveToNext(); i++) {
+				ids[i] = c.getLong(0);
+			}
+			return ids;
+		} finally {
+			c.close();
+		}
+	}
+
+	// GJT: Not every table has every barcode, the missing ones read as null
+	private static void writeIdentifierKeys(SQLiteDatabase db, String table,
+			String where) {
+		final Cursor c = db.query(table, null, where, null, null, null, null);
+		final SQLiteStatement update = db.compileStatement("UPDATE " + table
+				+ " SET " + BaseItem.IDENTIFIER_KEY + " = ? WHERE "
+				+ BaseItem._ID + " = ?");
+		try {
+			final int idColumn = c.getColumnIndexOrThrow(BaseItem._ID);
+			final int eanColumn = c.getColumnIndex(BaseItem.EAN);
+			final int isbnColumn = c.getColumnIndex(BaseItem.ISBN);
+			final int upcColumn = c.getColumnIndex(BaseItem.UPC);
+			while (c.moveToNext()) {
+				update.bindLong(1, IdentifierIndex.getKey(
+						getString(c, eanColumn), getString(c, isbnColumn),
+						getString(c, upcColumn)));
+				update.bindLong(2, c.getLong(idColumn));
+				update.execute();
+			}
+		} finally {
+			update.close();
+			c.close();
+		}
+	}
+
+	private static void writeSortNumbers(SQLiteDatabase db, String table,
+			String[] numberColumns) {
+		final Cursor c = db.query(table, null, null, null, null, null, null);
+		try {
+			final int idColumn = c.getColumnIndexOrThrow(BaseItem._ID);
+			for (String column : numberColumns) {
+				// GJT: Board games have no price, their key stays empty
+				final int numberColumn = c.getColumnIndex(column);
+				if (numberColumn == -1)
+					continue;
+
+				final SQLiteStatement update = db.compileStatement("UPDATE "
+						+ table + " SET " + getSortKey(column) + " = ? WHERE "
+						+ BaseItem._ID + " = ?");
+				try {
+					c.moveToPosition(-1);
+					while (c.moveToNext()) {
+						final Double number = TextUtilities.numberFor(c
+								.getString(numberColumn));
+						if (number == null)
+							continue;
+						update.bindDouble(1, number);
+						update.bindLong(2, c.getLong(idColumn));
+						update.execute();
+					}
+				} finally {
+					update.close();
+				}
+			}
+		} finally {
+			c.close();
+		}
+	}
+
+	private static String getString(Cursor c, int column) {
+		return column != -1 ? c.getString(column) : null;
+	}
+
+	private static long[] getTagIds(SQLiteDatabase db, List<String> tags) {
+		final SQLiteStatement insertTag = db
+				.compileStatement("INSERT OR IGNORE INTO tags (" + TAG_NAME
+						+ ") VALUES (?)");
+		final SQLiteStatement selectTag = db.compileStatement("SELECT "
+				+ BaseItem._ID + " FROM tags WHERE " + TAG_NAME + " = ?");
+		try {
+			final int count = tags.size();
+			final long[] tagIds = new long[count];
+			for (int i = 0; i < count; i++) {
+				insertTag.bindString(1, tags.get(i));
+				insertTag.execute();
+				selectTag.bindString(1, tags.get(i));
+				tagIds[i] = selectTag.simpleQueryForLong();
+			}
+			return tagIds;
+		} finally {
+			insertTag.close();
+			selectTag.close();
+		}
+	}
+
+	private static void setItemTags(SQLiteDatabase db, long itemId,
+			List<String> tags) {
+		db.delete("item_tags", "item_id = " + itemId, null);
+		if (tags.isEmpty())
+			return;
+
+		final SQLiteStatement insertItemTag = db
+				.compileStatement("INSERT OR IGNORE INTO item_tags"
+						+ " (item_id, tag_id) VALUES (?, ?)");
+		try {
+			for (long tagId : getTagIds(db, tags)) {
+				insertItemTag.bindLong(1, itemId);
+				insertItemTag.bindLong(2, tagId);
+				insertItemTag.execute();
+			}
+		} finally {
+			insertItemTag.close();
+		}
+	}
+
+	// GJT: Rebuilds the tags column from the join table, sorted like the tag
+	// dialog sorts them
+	private static void writeTagsColumn(SQLiteDatabase db, String table,
+			long itemId) {
+		final StringBuilder tags = new StringBuilder();
+		final Cursor c = db.rawQuery("SELECT tags." + TAG_NAME
+				+ " FROM tags JOIN item_tags ON item_tags.tag_id = tags."
+				+ BaseItem._ID + " WHERE item_tags.item_id = " + itemId
+				+ " ORDER BY tags." + TAG_NAME, null);
+		try {
+			while (c.moveToNext()) {
+				if (tags.length() > 0)
+					tags.append(TAG_SEPARATOR);
+				tags.append(c.getString(0));
+			}
+		} finally {
+			c.close();
+		}
+
+		final ContentValues values = new ContentValues();
+		values.put(BaseItem.TAGS, tags.toString());
+		db.update(table, values, BaseItem._ID + " = " + itemId, null);
+	}
+}
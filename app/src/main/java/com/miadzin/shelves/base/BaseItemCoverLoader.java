@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.base;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import com.miadzin.shelves.drawable.CrossFadeDrawable;
+import com.miadzin.shelves.drawable.FastBitmapDrawable;
+import com.miadzin.shelves.util.ImageUtilities;
+
+/**
+ * Decodes covers on background threads and binds them to the rows of the
+ * shelves and lists. Covers already in the memory cache are bound right away;
+ * the others show the default cover until their decode completes. All the
+ * public methods must be called from the UI thread.
+ */
+public class BaseItemCoverLoader {
+	private static final int CORE_POOL_SIZE = 2;
+	private static final int KEEP_ALIVE = 10;
+
+	private static final ThreadFactory sThreadFactory = new ThreadFactory() {
+		private final AtomicInteger mCount = new AtomicInteger(1);
+
+		public Thread newThread(final Runnable r) {
+			return new Thread(new Runnable() {
+				public void run() {
+					Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+					r.run();
+				}
+			}, "CoverLoader #" + mCount.getAndIncrement());
+		}
+	};
+
+	private static final ThreadPoolExecutor sExecutor = new ThreadPoolExecutor(
+			CORE_POOL_SIZE, CORE_POOL_SIZE, KEEP_ALIVE, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(), sThreadFactory);
+	static {
+		sExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	private static final Handler sHandler = new Handler(Looper.getMainLooper());
+
+	private BaseItemCoverLoader() {
+	}
+
+	/**
+	 * Binds the cover of the item held by the specified holder. A cover found
+	 * in the memory cache is bound immediately; otherwise the default cover is
+	 * bound and the real one is decoded in the background, then faded in.
+	 *
+	 * @param holder
+	 *            The holder of the row to bind; its id must be set
+	 * @param defaultCover
+	 *            The cover to show while decoding, or when there is no cover
+	 */
+	public static void load(BaseItemViewHolder holder,
+			FastBitmapDrawable defaultCover) {
+		cancel(holder);
+
+		final FastBitmapDrawable cached = ImageUtilities.peekCachedCover(
+				holder.id, defaultCover);
+		if (cached != null) {
+			bindCover(holder, cached, false);
+			return;
+		}
+
+		bindCover(holder, defaultCover, false);
+
+		final CoverTask task = new CoverTask(holder, defaultCover);
+		holder.coverTask = task;
+		sExecutor.execute(task);
+	}
+
+	/**
+	 * Cancels the decode pending for the specified holder, if any. Called when
+	 * a row is recycled for another item or when a fling starts.
+	 */
+	public static void cancel(BaseItemViewHolder holder) {
+		final CoverTask task = holder.coverTask;
+		if (task != null) {
+			task.mCancelled = true;
+			sExecutor.remove(task);
+			holder.coverTask = null;
+		}
+	}
+
+	private static void bindCover(BaseItemViewHolder holder,
+			FastBitmapDrawable cover, boolean fade) {
+		if (holder.transition != null) {
+			if (!fade) {
+				holder.title.setCompoundDrawablesWithIntrinsicBounds(null,
+						null, null, cover);
+			} else {
+				final CrossFadeDrawable d = holder.transition;
+				d.setEnd(cover.getBitmap());
+				holder.title.setCompoundDrawablesWithIntrinsicBounds(null,
+						null, null, d);
+				d.startTransition(BaseItemActivity.COVER_TRANSITION_DURATION);
+			}
+		} else if (holder.cover != null) {
+			holder.cover.setImageDrawable(cover);
+		}
+	}
+
+	static class CoverTask implements Runnable {
+		private final BaseItemViewHolder mHolder;
+		private final String mId;
+		private final FastBitmapDrawable mDefaultCover;
+
+		volatile boolean mCancelled;
+
+		CoverTask(BaseItemViewHolder holder, FastBitmapDrawable defaultCover) {
+			mHolder = holder;
+			mId = holder.id;
+			mDefaultCover = defaultCover;
+		}
+
+		public void run() {
+			if (mCancelled)
+				return;
+
+			final FastBitmapDrawable cover = ImageUtilities.getCachedCover(
+					mId, mDefaultCover);
+
+			if (mCancelled)
+				return;
+
+			sHandler.post(new Runnable() {
+				public void run() {
+					final BaseItemViewHolder holder = mHolder;
+					if (mCancelled || holder.coverTask != CoverTask.this)
+						return;
+
+					holder.coverTask = null;
+					bindCover(holder, cover, cover != mDefaultCover);
+				}
+			});
+		}
+	}
+}
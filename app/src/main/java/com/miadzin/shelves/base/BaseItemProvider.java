@@ -16,13 +16,14 @@
 
 package com.miadzin.shelves.base;
 
+import java.util.List;
+
 import android.app.Activity;
 import android.database.Cursor;
 import android.net.Uri;
 
 import com.miadzin.shelves.R;
 import com.miadzin.shelves.ShelvesApplication;
-import com.miadzin.shelves.util.TextUtilities;
 
 public abstract class BaseItemProvider {
 	public final String LOG_TAG = "BaseItemProvider";
@@ -112,169 +113,59 @@ public abstract class BaseItemProvider {
 
 	public static Cursor runQuery(Activity mActivity, String mSortOrder,
 			CharSequence constraint) {
-		final StringBuilder selection = new StringBuilder();
 		String[] projectionArray = null;
 		final String activityToMatch = mActivity.toString();
 		final Uri uri = getActivityUri(activityToMatch);
 
 		if (activityToMatch.contains("Apparel")) {
 			projectionArray = APPAREL_PROJECTION_IDS_AND_TITLE;
-
-			selection.append(BaseItem.DEPARTMENT);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.FABRIC);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.FEATURES);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.CONDITION);
-			selection.append(" LIKE ? OR ");
 		} else if (activityToMatch.contains("BoardGames")) {
 			projectionArray = BOARDGAMES_PROJECTION_IDS_AND_TITLE;
-
-			selection.append(BaseItem.AGE);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.MIN_PLAYERS);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.MAX_PLAYERS);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.PLAYING_TIME);
-			selection.append(" LIKE ? OR ");
 		} else if (activityToMatch.contains("Books")) {
 			projectionArray = BOOKS_PROJECTION_IDS_AND_TITLE;
-
-			selection.append(BaseItem.PUBLISHER);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.FORMAT);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.DEWEY_NUMBER);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.CONDITION);
-			selection.append(" LIKE ? OR ");
 		} else if (activityToMatch.contains("Comics")) {
 			projectionArray = COMICS_PROJECTION_IDS_AND_TITLE;
-
-			selection.append(BaseItem.ARTISTS);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.CHARACTERS);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.ISSUE_NUMBER);
-			selection.append(" LIKE ? OR ");
 		} else if (activityToMatch.contains("Gadgets")) {
 			projectionArray = GADGETS_PROJECTION_IDS_AND_TITLE;
-
-			selection.append(BaseItem.FEATURES);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.CONDITION);
-			selection.append(" LIKE ? OR ");
 		} else if (activityToMatch.contains("Movies")) {
 			projectionArray = MOVIES_PROJECTION_IDS_AND_TITLE;
-
-			selection.append(BaseItem.ACTORS);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.LABEL);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.FORMAT);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.AUDIENCE);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.FEATURES);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.LANGUAGES);
-			selection.append(" LIKE ? OR ");
 		} else if (activityToMatch.contains("Music")) {
 			projectionArray = MUSIC_PROJECTION_IDS_AND_TITLE;
-
-			selection.append(BaseItem.LABEL);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.FORMAT);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.TRACKS);
-			selection.append(" LIKE ? OR ");
 		} else if (activityToMatch.contains("Software")) {
 			projectionArray = SOFTWARE_PROJECTION_IDS_AND_TITLE;
-
-			selection.append(BaseItem.LABEL);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.PLATFORM);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.FORMAT);
-			selection.append(" LIKE ? OR ");
 		} else if (activityToMatch.contains("Tools")) {
 			projectionArray = TOOLS_PROJECTION_IDS_AND_TITLE;
-
-			selection.append(BaseItem.FEATURES);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.CONDITION);
-			selection.append(" LIKE ? OR ");
 		} else if (activityToMatch.contains("Toys")) {
 			projectionArray = TOYS_PROJECTION_IDS_AND_TITLE;
-
-			selection.append(BaseItem.FEATURES);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.CONDITION);
-			selection.append(" LIKE ? OR ");
 		} else if (activityToMatch.contains("VideoGames")) {
 			projectionArray = VIDEOGAMES_PROJECTION_IDS_AND_TITLE;
-
-			selection.append(BaseItem.PLATFORM);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.ESRB);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.FORMAT);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.GENRE);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.FEATURES);
-			selection.append(" LIKE ? OR ");
-			selection.append(BaseItem.CONDITION);
-			selection.append(" LIKE ? OR ");
 		}
 
-		selection.append(BaseItem.TITLE);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.AUTHORS);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.LOANED_TO);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.TAGS);
-		selection.append(" LIKE ?");
-
-		final String mSelection = selection.toString();
-
-		if (constraint == null || constraint.length() == 0) {
-			return mActivity.managedQuery(uri, projectionArray, null, null,
-					mSortOrder);
-		}
-
-		final StringBuilder buffer = new StringBuilder();
-		String stringConstraint = constraint.toString();
-
-		stringConstraint = TextUtilities.itrim(TextUtilities
-				.rtrim(stringConstraint));
-
-		if (stringConstraint.contains(",")) {
-			String[] tags = stringConstraint.split(", ");
-			for (int i = 0; i < tags.length; i++) {
-				CharSequence tag = tags[i].trim();
-
-				buffer.append('%').append(tag).append('%');
+		// GJT: The tag filter joins the tags it picks with commas; those items
+		// must have every one of the tags
+		if (constraint != null && constraint.toString().contains(",")) {
+			final List<String> tags = BaseItemContentProvider
+					.splitTags(constraint.toString());
+			if (!tags.isEmpty()) {
+				return mActivity.managedQuery(uri, projectionArray,
+						BaseItemContentProvider.getTagSelection(tags.size()),
+						tags.toArray(new String[tags.size()]), mSortOrder);
 			}
 		}
 
-		else {
-			buffer.append('%').append(stringConstraint).append('%');
-		}
-
-		final int arrSize = TextUtilities.countMatches(mSelection, "LIKE");
-		final String[] arguments = new String[arrSize];
-		final String strBuffer = buffer.toString();
+		final String query = BaseItemContentProvider
+				.getSearchQuery(constraint);
 
-		for (int i = 0; i < arrSize; i++) {
-			arguments[i] = strBuffer;
+		if (query == null) {
+			return mActivity.managedQuery(uri, projectionArray, null, null,
+					mSortOrder);
 		}
 
-		return mActivity.managedQuery(uri, projectionArray, mSelection,
-				arguments, mSortOrder);
+		// GJT: The content URIs all end with the name of their table
+		return mActivity.managedQuery(uri, projectionArray,
+				BaseItemContentProvider.getSearchSelection(uri
+						.getLastPathSegment()), new String[] { query },
+				mSortOrder);
 	}
 
 	static public Uri getActivityUri(String activityToMatch) {
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.base;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.widget.AbsListView;
+import android.widget.ListAdapter;
+
+import com.miadzin.shelves.util.RefreshScheduler;
+
+/**
+ * Keeps the covers of the items of one type fresh while their list is on
+ * screen, through the {@link RefreshScheduler} shared by every type. All the
+ * methods must be called from the UI thread.
+ */
+public abstract class BaseItemUpdater implements RefreshScheduler.ItemSource {
+	private final RefreshScheduler mScheduler;
+	private final Uri mContentUri;
+
+	protected BaseItemUpdater(Context context, Uri contentUri) {
+		mScheduler = RefreshScheduler.getInstance(context);
+		mContentUri = contentUri;
+	}
+
+	public Uri getContentUri() {
+		return mContentUri;
+	}
+
+	/**
+	 * Starts sweeping through the items not checked lately, behind the rows
+	 * offered from the screen.
+	 */
+	public void start() {
+		mScheduler.sweep(this);
+	}
+
+	/**
+	 * Drops every pending check, the sweep included.
+	 */
+	public void stop() {
+		mScheduler.cancel(this, RefreshScheduler.PRIORITY_SWEEP);
+	}
+
+	/**
+	 * Checks the specified items first.
+	 */
+	public void offer(String... internalIds) {
+		mScheduler.offer(this, RefreshScheduler.PRIORITY_VISIBLE, internalIds);
+	}
+
+	/**
+	 * Checks the rows on screen first, then the rows of the next page.
+	 */
+	public void offerRows(AbsListView view) {
+		final int count = view.getChildCount();
+		final String[] visible = new String[count];
+		for (int i = 0; i < count; i++) {
+			final Object tag = view.getChildAt(i).getTag();
+			if (tag instanceof BaseItemViewHolder)
+				visible[i] = ((BaseItemViewHolder) tag).id;
+		}
+		mScheduler.offer(this, RefreshScheduler.PRIORITY_VISIBLE, visible);
+
+		final ListAdapter adapter = view.getAdapter();
+		if (adapter == null)
+			return;
+
+		final int first = view.getLastVisiblePosition() + 1;
+		final int last = Math.min(first + count, adapter.getCount());
+		final String[] nextPage = new String[Math.max(last - first, 0)];
+		for (int position = first; position < last; position++) {
+			final Object item = adapter.getItem(position);
+			if (item instanceof Cursor) {
+				final Cursor c = (Cursor) item;
+				final int column = c.getColumnIndex(BaseItem.INTERNAL_ID);
+				if (column != -1)
+					nextPage[position - first] = c.getString(column);
+			}
+		}
+		mScheduler.offer(this, RefreshScheduler.PRIORITY_NEXT_PAGE, nextPage);
+	}
+
+	/**
+	 * Drops the checks offered from the screen, when the rows they were
+	 * offered for scroll away. The sweep carries on.
+	 */
+	public void clear() {
+		mScheduler.cancel(this, RefreshScheduler.PRIORITY_NEXT_PAGE);
+	}
+}
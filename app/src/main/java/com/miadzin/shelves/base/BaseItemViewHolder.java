@@ -41,6 +41,7 @@ public class BaseItemViewHolder {
 	public ImageView cover; // GJT: Added, for BookListAdapter to not using
 							// setCompoundDrawablesWithIntrinsicBounds
 	public boolean queryCover;
+	BaseItemCoverLoader.CoverTask coverTask;
 	public String sortTitle;
 	public String sortAuthors; // GJT: Added for author sorts
 	public String tags;
@@ -16,13 +16,10 @@
 
 package com.miadzin.shelves.base;
 
-import java.util.regex.Pattern;
-
 import android.app.Activity;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
@@ -79,15 +76,13 @@ import com.miadzin.shelves.util.ImageUtilities;
 import com.miadzin.shelves.util.ImportUtilities;
 import com.miadzin.shelves.util.Preferences;
 import com.miadzin.shelves.util.TextUtilities;
+import com.miadzin.shelves.util.TitleKeys;
 import com.miadzin.shelves.util.UIUtilities;
 
 public class BaseManualAddActivity extends Activity {
 	private final String LOG_TAG = "BaseManualAddActivity";
 	public static final String manualSuffix = "_manual";
 
-	private Pattern[] mKeyPrefixes;
-	private Pattern[] mKeySuffixes;
-
 	private int mRating;
 
 	private final int ADD_NEW_COVER = 0;
@@ -950,44 +945,14 @@ public class BaseManualAddActivity extends Activity {
 					textValues.put(BaseItem.RATING, mRating);
 					final String title = editTitle.getText().toString();
 					textValues.put(BaseItem.TITLE, (title));
-					String name = editTitle.getText().toString().trim()
-							.toLowerCase();
 
 					if (editPrice != null) {
 						final String price = editPrice.getText().toString();
 						textValues.put(BaseItem.RETAIL_PRICE, (price));
 					}
 
-					if (mKeyPrefixes == null) {
-						final Resources resources = getBaseContext()
-								.getResources();
-						final String[] keyPrefixes = resources
-								.getStringArray(R.array.prefixes);
-						final int count = keyPrefixes.length;
-
-						mKeyPrefixes = new Pattern[count];
-						for (int i = 0; i < count; i++) {
-							mKeyPrefixes[i] = Pattern.compile("^"
-									+ keyPrefixes[i] + "\\s+");
-						}
-					}
-
-					if (mKeySuffixes == null) {
-						final Resources resources = getBaseContext()
-								.getResources();
-						final String[] keySuffixes = resources
-								.getStringArray(R.array.suffixes);
-						final int count = keySuffixes.length;
-
-						mKeySuffixes = new Pattern[count];
-						for (int i = 0; i < count; i++) {
-							mKeySuffixes[i] = Pattern.compile("\\s*"
-									+ keySuffixes[i] + "$");
-						}
-					}
-
-					textValues.put(BaseItem.SORT_TITLE, TextUtilities.keyFor(
-							mKeyPrefixes, mKeySuffixes, name));
+					textValues.put(BaseItem.SORT_TITLE, TitleKeys.get(
+							BaseManualAddActivity.this).keyFor(title));
 
 					final String id;
 					if (mID != null) {
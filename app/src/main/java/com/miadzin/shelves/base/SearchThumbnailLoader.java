@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.base;
+
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import com.miadzin.shelves.drawable.FastBitmapDrawable;
+import com.miadzin.shelves.util.ImageUtilities;
+
+/**
+ * Downloads the thumbnails of search results on a few background threads, so
+ * a row is shown as soon as its item is parsed and its thumbnail follows. The
+ * threads are shared by every search screen; each screen has its own loader
+ * to cancel what it queued. All the public methods must be called from the UI
+ * thread.
+ */
+public class SearchThumbnailLoader {
+	private static final int THREADS = 3;
+	private static final int KEEP_ALIVE = 10;
+
+	private static final ThreadFactory sThreadFactory = new ThreadFactory() {
+		private final AtomicInteger mCount = new AtomicInteger(1);
+
+		public Thread newThread(final Runnable r) {
+			return new Thread(new Runnable() {
+				public void run() {
+					Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+					r.run();
+				}
+			}, "SearchThumbnailLoader #" + mCount.getAndIncrement());
+		}
+	};
+
+	private static final ThreadPoolExecutor sExecutor = new ThreadPoolExecutor(
+			THREADS, THREADS, KEEP_ALIVE, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(), sThreadFactory);
+	static {
+		sExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	private static final Handler sHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Told on the UI thread of a thumbnail downloaded. Not called for items
+	 * without one.
+	 */
+	public interface Callback {
+		void onThumbnailLoaded(FastBitmapDrawable cover);
+	}
+
+	private final ArrayList<ThumbnailTask> mTasks = new ArrayList<ThumbnailTask>();
+
+	/**
+	 * Queues the download of the thumbnail of the specified item, drawn with
+	 * a shadow at the specified size.
+	 */
+	public void load(BaseItem item, int width, int height, Callback callback) {
+		final ThumbnailTask task = new ThumbnailTask(item, width, height,
+				callback);
+		mTasks.add(task);
+		sExecutor.execute(task);
+	}
+
+	/**
+	 * Drops every download queued through this loader. Downloads already
+	 * running complete, but their callbacks are not called.
+	 */
+	public void cancel() {
+		for (ThumbnailTask task : mTasks) {
+			task.mCancelled = true;
+			sExecutor.remove(task);
+		}
+		mTasks.clear();
+	}
+
+	private class ThumbnailTask implements Runnable {
+		private final BaseItem mItem;
+		private final int mWidth;
+		private final int mHeight;
+		private final Callback mCallback;
+
+		volatile boolean mCancelled;
+
+		ThumbnailTask(BaseItem item, int width, int height, Callback callback) {
+			mItem = item;
+			mWidth = width;
+			mHeight = height;
+			mCallback = callback;
+		}
+
+		public void run() {
+			if (mCancelled)
+				return;
+
+			final Bitmap cover = mItem
+					.loadCover(BaseItem.ImageSize.THUMBNAIL);
+			final Bitmap bitmap = ImageUtilities.createShadow(cover, mWidth,
+					mHeight);
+			// The downloaded cover is only needed to draw the thumbnail
+			ImageUtilities.getBitmapPool().put(cover);
+
+			sHandler.post(new Runnable() {
+				public void run() {
+					if (mCancelled)
+						return;
+					mTasks.remove(ThumbnailTask.this);
+					if (bitmap != null)
+						mCallback.onThumbnailLoaded(new FastBitmapDrawable(
+								bitmap));
+				}
+			});
+		}
+	}
+}
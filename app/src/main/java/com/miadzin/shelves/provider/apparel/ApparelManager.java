@@ -16,17 +16,20 @@
 
 package com.miadzin.shelves.provider.apparel;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
-import android.graphics.Bitmap;
 import android.net.Uri;
 
-import com.miadzin.shelves.base.BaseItem;
 import com.miadzin.shelves.provider.apparel.ApparelStore.Apparel;
+import com.miadzin.shelves.util.CoverQueue;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.ImageUtilities;
-import com.miadzin.shelves.util.ImportUtilities;
+import com.miadzin.shelves.util.ItemQueries;
 import com.miadzin.shelves.util.Preferences;
 import com.miadzin.shelves.util.loan.Calendars;
 
@@ -34,81 +37,19 @@ public class ApparelManager {
 	static int APPAREL_COVER_WIDTH;
 	static int APPAREL_COVER_HEIGHT;
 
-	private static String sIdSelection;
-	private static String sSelection;
-
-	private static String[] sArguments1 = new String[1];
-	private static String[] sArguments4 = new String[4];
-
-	private static final String[] PROJECTION_ID_IID = new String[] {
-			BaseItem._ID, BaseItem.INTERNAL_ID };
-
-	private static final String[] PROJECTION_ID = new String[] { BaseItem._ID };
-
-	static {
-		StringBuilder selection = new StringBuilder();
-		selection.append(BaseItem.INTERNAL_ID);
-		selection.append(" LIKE ?");
-		sIdSelection = selection.toString();
-
-		selection = new StringBuilder();
-		selection.append(sIdSelection);
-		selection.append(" OR ");
-		selection.append(BaseItem.EAN);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.UPC);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.ISBN);
-		selection.append(" LIKE ?");
-		sSelection = selection.toString();
-	}
-
 	private ApparelManager() {
 	}
 
 	public static String findApparelId(ContentResolver contentResolver,
 			String id, String sortOrder) {
-		String internalId = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id;
-			c = contentResolver.query(ApparelStore.Apparel.CONTENT_URI,
-					PROJECTION_ID_IID, sSelection, arguments4, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					internalId = c.getString(c
-							.getColumnIndexOrThrow(BaseItem.INTERNAL_ID));
-				}
-			}
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return internalId;
+		return ItemQueries.findInternalId(contentResolver,
+				ApparelStore.Apparel.CONTENT_URI, id, sortOrder);
 	}
 
 	public static boolean apparelExists(ContentResolver contentResolver,
 			String id, String sortOrder, IOUtilities.inputTypes type) {
-		boolean exists;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id
-					.replaceFirst("^0+(?!$)", "");
-
-			c = contentResolver.query(ApparelStore.Apparel.CONTENT_URI,
-					PROJECTION_ID, sSelection, arguments4, sortOrder);
-			exists = c.getCount() > 0;
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return exists;
+		return ItemQueries.exists(contentResolver,
+				ApparelStore.Apparel.CONTENT_URI, id);
 	}
 
 	public static ApparelStore.Apparel loadAndAddApparel(
@@ -117,53 +58,51 @@ public class ApparelManager {
 
 		final ApparelStore.Apparel apparel = apparelStore.findApparel(id,
 				mSavedImportType, context);
-		if (apparel != null) {
-			Bitmap bitmap = null;
-
-			bitmap = Preferences.getBitmapForManager(apparel);
-			APPAREL_COVER_WIDTH = Preferences.getWidthForManager();
-			APPAREL_COVER_HEIGHT = Preferences.getHeightForManager();
+		if (apparel != null)
+			return addApparel(resolver, apparel);
 
-			if (bitmap != null) {
-				bitmap = ImageUtilities.createCover(bitmap,
-						APPAREL_COVER_WIDTH, APPAREL_COVER_HEIGHT);
-				ImportUtilities
-						.addCoverToCache(apparel.getInternalId(), bitmap);
-				bitmap.recycle();
-			}
+		return null;
+	}
 
-			// Should kill duplicate item entry bug...
-			Cursor c = null;
-			sArguments1[0] = apparel.getInternalId();
-			c = resolver
-					.query(ApparelStore.Apparel.CONTENT_URI,
-							null,
-							BaseItem.INTERNAL_ID + "='"
-									+ apparel.getInternalId() + "'", null, null);
-			if (c.moveToFirst()) {
-				if (c.getCount() < 1) {
-					final Uri uri = resolver.insert(
-							ApparelStore.Apparel.CONTENT_URI,
-							apparel.getContentValues());
-					if (uri != null) {
-						if (c != null) {
-							c.close();
-						}
-						return apparel;
-					}
-				}
-			} else {
-				if (c != null) {
-					c.close();
-				}
-				final Uri uri = resolver.insert(
-						ApparelStore.Apparel.CONTENT_URI,
-						apparel.getContentValues());
-				return apparel;
-			}
+	/**
+	 * Looks up the apparel with the specified ids, several per request, and
+	 * adds the ones found.
+	 * 
+	 * @return The apparel added, by id
+	 */
+	public static HashMap<String, ApparelStore.Apparel> loadAndAddApparel(
+			ContentResolver resolver, List<String> ids,
+			ApparelStore apparelStore, IOUtilities.inputTypes mSavedImportType,
+			Context context) {
+		final HashMap<String, ApparelStore.Apparel> found = apparelStore
+				.findApparel(ids, mSavedImportType, context);
+		final HashMap<String, ApparelStore.Apparel> added = new HashMap<String, ApparelStore.Apparel>();
+		for (Map.Entry<String, ApparelStore.Apparel> entry : found.entrySet()) {
+			final ApparelStore.Apparel apparel = addApparel(resolver,
+					entry.getValue());
+			if (apparel != null)
+				added.put(entry.getKey(), apparel);
 		}
 
-		return null;
+		return added;
+	}
+
+	private static ApparelStore.Apparel addApparel(ContentResolver resolver,
+			ApparelStore.Apparel apparel) {
+		APPAREL_COVER_WIDTH = Preferences.getWidthForManager();
+		APPAREL_COVER_HEIGHT = Preferences.getHeightForManager();
+
+		// Should kill duplicate item entry bug...
+		if (ItemQueries.containsInternalId(resolver,
+				ApparelStore.Apparel.CONTENT_URI, apparel.getInternalId()))
+			return null;
+
+		if (resolver.insert(ApparelStore.Apparel.CONTENT_URI,
+				apparel.getContentValues()) == null)
+			return null;
+
+		CoverQueue.get().enqueue(ApparelStore.Apparel.CONTENT_URI, apparel);
+		return apparel;
 	}
 
 	public static boolean deleteApparel(ContentResolver contentResolver,
@@ -176,10 +115,8 @@ public class ApparelManager {
 			eventId = apparel.getEventId();
 		}
 
-		final String[] arguments1 = sArguments1;
-		arguments1[0] = apparelId;
-		int count = contentResolver.delete(ApparelStore.Apparel.CONTENT_URI,
-				sIdSelection, arguments1);
+		int count = ItemQueries.delete(contentResolver,
+				ApparelStore.Apparel.CONTENT_URI, apparelId);
 		ImageUtilities.deleteCachedCover(apparelId);
 
 		if (eventId > 0) {
@@ -192,20 +129,14 @@ public class ApparelManager {
 	public static ApparelStore.Apparel findApparel(
 			ContentResolver contentResolver, String id, String sortOrder) {
 		ApparelStore.Apparel apparel = null;
-		Cursor c = null;
-
-		try {
-			sArguments1[0] = id;
-			c = contentResolver.query(ApparelStore.Apparel.CONTENT_URI, null,
-					sIdSelection, sArguments1, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					apparel = ApparelStore.Apparel.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		final Cursor c = ItemQueries.queryByInternalId(contentResolver,
+				ApparelStore.Apparel.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				apparel = ApparelStore.Apparel.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
 		return apparel;
@@ -234,22 +165,14 @@ public class ApparelManager {
 	public static ApparelStore.Apparel findApparelById(
 			ContentResolver contentResolver, String id, String sortOrder) {
 		ApparelStore.Apparel apparel = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id;
-
-			c = contentResolver.query(ApparelStore.Apparel.CONTENT_URI, null,
-					sSelection, sArguments4, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					apparel = ApparelStore.Apparel.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		final Cursor c = ItemQueries.queryById(contentResolver,
+				ApparelStore.Apparel.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				apparel = ApparelStore.Apparel.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
 		return apparel;
@@ -114,6 +114,7 @@ public class ApparelStore extends ServerInfo {
 				expiring = mLoader.load(url);
 			}
 			mLastModified = expiring.lastModified;
+			mETag = expiring.etag;
 
 			return expiring.bitmap;
 		}
@@ -142,6 +143,9 @@ public class ApparelStore extends ServerInfo {
 			if (mLastModified != null) {
 				values.put(LAST_MODIFIED, mLastModified.getTimeInMillis());
 			}
+			if (mETag != null) {
+				values.put(ETAG, mETag);
+			}
 			values.put(DETAILS_URL, TextUtilities.protectString(mDetailsUrl));
 
 			final int density = Preferences.getDPI();
@@ -211,6 +215,7 @@ public class ApparelStore extends ServerInfo {
 			calendar.setTimeInMillis(c.getLong(c
 					.getColumnIndexOrThrow(LAST_MODIFIED)));
 			apparel.mLastModified = calendar;
+			apparel.mETag = c.getString(c.getColumnIndexOrThrow(ETAG));
 
 			try {
 				Collections.addAll(apparel.mTags,
@@ -387,6 +392,31 @@ public class ApparelStore extends ServerInfo {
 		}
 	}
 
+	/**
+	 * Finds the apparel with the specified ids, several per request.
+	 * 
+	 * @param ids
+	 *            The ids of the apparel to find (EAN, UPC, etc.)
+	 * 
+	 * @return The apparel found, by id; the ids not found are missing.
+	 */
+	public HashMap<String, Apparel> findApparel(List<String> ids,
+			final IOUtilities.inputTypes mSavedImportType, Context context) {
+		return findItems(ids, mSavedImportType, context,
+				VALUE_SEARCHINDEX_APPAREL, RESPONSE_TAG_EAN,
+				new ItemParser<Apparel>() {
+					public Apparel createItem() {
+						return createApparel();
+					}
+
+					public boolean parseItem(XmlPullParser parser,
+							Apparel apparel) throws XmlPullParserException,
+							IOException {
+						return parseApparel(parser, apparel);
+					}
+				});
+	}
+
 	private Apparel findApparelLookup(HttpGet get, final Apparel apparel,
 			final inputTypes mSavedImportType, String id) {
 		final boolean[] result = new boolean[1];
@@ -17,15 +17,12 @@
 package com.miadzin.shelves.provider.boardgames;
 
 import java.util.HashMap;
-import java.util.regex.Pattern;
 
 import android.app.SearchManager;
-import android.content.ContentProvider;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.UriMatcher;
-import android.content.res.Resources;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
@@ -36,23 +33,38 @@ import android.provider.BaseColumns;
 import android.provider.LiveFolders;
 import android.util.Log;
 
-import com.miadzin.shelves.R;
-import com.miadzin.shelves.ShelvesApplication;
 import com.miadzin.shelves.activity.SettingsActivity;
 import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.BaseItemContentProvider;
 import com.miadzin.shelves.util.TextUtilities;
+import com.miadzin.shelves.util.TitleKeys;
 
-public class BoardGamesProvider extends ContentProvider {
+public class BoardGamesProvider extends BaseItemContentProvider {
 	private static final String LOG_TAG = "BoardGamesProvider";
 
 	public static final String DATABASE_NAME = "boardgames.db";
 
-	private static final int DATABASE_VERSION = 2;
+	private static final int DATABASE_VERSION = 11;
+
+	// GJT: Columns of the full text index used by search and filtering
+	private static final String[] SEARCH_COLUMNS = new String[] {
+			BaseItem.TITLE, BaseItem.AUTHORS, BaseItem.LOANED_TO, BaseItem.TAGS,
+			BaseItem.NOTES, BaseItem.AGE, BaseItem.MIN_PLAYERS,
+			BaseItem.MAX_PLAYERS, BaseItem.PLAYING_TIME };
+
+	// GJT: Columns the lists can be sorted on, see createSortKeys()
+	private static final String[] SORT_COLUMNS = new String[] {
+			BaseItem.AUTHORS, BaseItem.RATING };
+	private static final String[] SORT_NUMBER_COLUMNS = new String[] {
+			BaseItem.RETAIL_PRICE, BaseItem.AGE, BaseItem.MIN_PLAYERS,
+			BaseItem.MAX_PLAYERS, BaseItem.PLAYING_TIME };
 
 	private static final int SEARCH = 1;
 	private static final int BOARDGAMES = 2;
 	private static final int BOARDGAME_ID = 3;
 	private static final int LIVE_FOLDER_BOARDGAMES = 4;
+	private static final int TAG_LIST = 5;
+	private static final int STATS = 6;
 
 	private static final String AUTHORITY = "BoardGamesProvider";
 
@@ -67,6 +79,8 @@ public class BoardGamesProvider extends ContentProvider {
 		URI_MATCHER.addURI(AUTHORITY, "boardgames/#", BOARDGAME_ID);
 		URI_MATCHER.addURI(AUTHORITY, "live_folders/boardgames",
 				LIVE_FOLDER_BOARDGAMES);
+		URI_MATCHER.addURI(AUTHORITY, TAGS_PATH, TAG_LIST);
+		URI_MATCHER.addURI(AUTHORITY, STATS_PATH, STATS);
 	}
 
 	private static final HashMap<String, String> SUGGESTION_PROJECTION_MAP;
@@ -96,9 +110,6 @@ public class BoardGamesProvider extends ContentProvider {
 
 	private static SQLiteOpenHelper mOpenHelper;
 
-	private Pattern[] mKeyPrefixes;
-	private Pattern[] mKeySuffixes;
-
 	private static Context dbContext;
 
 	@Override
@@ -109,6 +120,11 @@ public class BoardGamesProvider extends ContentProvider {
 		return true;
 	}
 
+	@Override
+	protected SQLiteOpenHelper getOpenHelper() {
+		return mOpenHelper;
+	}
+
 	@Override
 	public Cursor query(Uri uri, String[] projection, String selection,
 			String[] selectionArgs, String sortOrder) {
@@ -126,34 +142,9 @@ public class BoardGamesProvider extends ContentProvider {
 		switch (URI_MATCHER.match(uri)) {
 		case SEARCH:
 			qb.setTables("boardgames");
-			String query = uri.getLastPathSegment();
-			if (!TextUtilities.isEmpty(query)) {
-				qb.appendWhere(BaseItem.AUTHORS + " LIKE ");
-				qb.appendWhereEscapeString('%' + query + '%');
-				qb.appendWhere(" OR ");
-				qb.appendWhere(BaseItem.TITLE + " LIKE ");
-				qb.appendWhereEscapeString('%' + query + '%');
-				qb.appendWhere(" OR ");
-				// GJT: Used to enable tag results in suggestions bar
-
-				// The following is to allow for searching tags in any order,
-				// e.g.
-				// danger, fight should return the same results as fight, danger
-				if (query.contains(",")) {
-					String[] tags = query.split(",");
-					for (int i = 0; i < tags.length; i++) {
-						String tag = tags[i].trim();
-
-						qb.appendWhere(BaseItem.TAGS + " LIKE ");
-						qb.appendWhereEscapeString('%' + tag + '%');
-						if (i != tags.length - 1) {
-							qb.appendWhere(" OR ");
-						}
-					}
-				} else {
-					qb.appendWhere(BaseItem.TAGS + " LIKE ");
-					qb.appendWhereEscapeString('%' + query + '%');
-				}
+			String query = getSearchQuery(uri.getLastPathSegment());
+			if (query != null) {
+				appendSearchWhere(qb, "boardgames", query);
 			}
 			qb.setProjectionMap(SUGGESTION_PROJECTION_MAP);
 			break;
@@ -172,13 +163,24 @@ public class BoardGamesProvider extends ContentProvider {
 			// by ContentProvider$Transport.bulkQuery(), with "name ASC" as a
 			// forced sort. I'll override it with the actual user pref
 			break;
+		case TAG_LIST:
+			Cursor tags = queryTags(mOpenHelper.getReadableDatabase());
+			tags.setNotificationUri(getContext().getContentResolver(), uri);
+			return tags;
+		case STATS:
+			Cursor stats = queryStats(mOpenHelper.getReadableDatabase(),
+					"boardgames");
+			// GJT: Writes notify the items, so that's what to watch
+			stats.setNotificationUri(getContext().getContentResolver(),
+					BoardGamesStore.BoardGame.CONTENT_URI);
+			return stats;
 		default:
 			throw new IllegalArgumentException("Unknown URI " + uri);
 		}
 
 		SQLiteDatabase db = mOpenHelper.getReadableDatabase();
 		Cursor c = qb.query(db, projection, selection, selectionArgs, null,
-				null, orderBy);
+				null, getOrderBy(orderBy), getLimit(uri));
 		c.setNotificationUri(getContext().getContentResolver(), uri);
 
 		return c;
@@ -191,6 +193,10 @@ public class BoardGamesProvider extends ContentProvider {
 			return "vnd.android.cursor.dir/vnd.com.miadzin.shelves.boardgames";
 		case BOARDGAME_ID:
 			return "vnd.android.cursor.item/vnd.com.miadzin.shelves.boardgames";
+		case TAG_LIST:
+			return "vnd.android.cursor.dir/vnd.com.miadzin.shelves.tags";
+		case STATS:
+			return "vnd.android.cursor.item/vnd.com.miadzin.shelves.stats";
 		default:
 			throw new IllegalArgumentException("Unknown URI " + uri);
 		}
@@ -202,8 +208,7 @@ public class BoardGamesProvider extends ContentProvider {
 
 		if (initialValues != null) {
 			values = new ContentValues(initialValues);
-			values.put(BaseItem.SORT_TITLE,
-					keyFor(values.getAsString(BaseItem.TITLE)));
+			putSortKeys(values);
 		} else {
 			values = new ContentValues();
 		}
@@ -213,51 +218,25 @@ public class BoardGamesProvider extends ContentProvider {
 		}
 
 		SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-		final long rowId = db.insert("boardgames", BaseItem.TITLE, values);
+		final long rowId = insertItem(db, "boardgames", BaseItem.TITLE, values);
 		if (rowId > 0) {
 			Uri insertUri = ContentUris.withAppendedId(
 					BoardGamesStore.BoardGame.CONTENT_URI, rowId);
-			getContext().getContentResolver().notifyChange(uri, null);
-			ShelvesApplication.dataChanged();
+			notifyChange(uri);
 			return insertUri;
 		}
 
 		throw new SQLException("Failed to insert row into " + uri);
 	}
 
-	private String keyFor(String name) {
-		if (name == null)
-			name = "";
-
-		name = name.trim().toLowerCase();
-
-		if (mKeyPrefixes == null) {
-			final Resources resources = getContext().getResources();
-			final String[] keyPrefixes = resources
-					.getStringArray(R.array.prefixes);
-			final int count = keyPrefixes.length;
-
-			mKeyPrefixes = new Pattern[count];
-			for (int i = 0; i < count; i++) {
-				mKeyPrefixes[i] = Pattern
-						.compile("^" + keyPrefixes[i] + "\\s+");
-			}
-		}
-
-		if (mKeySuffixes == null) {
-			final Resources resources = getContext().getResources();
-			final String[] keySuffixes = resources
-					.getStringArray(R.array.suffixes);
-			final int count = keySuffixes.length;
-
-			mKeySuffixes = new Pattern[count];
-			for (int i = 0; i < count; i++) {
-				mKeySuffixes[i] = Pattern
-						.compile("\\s*" + keySuffixes[i] + "$");
-			}
-		}
+	@Override
+	protected String keyFor(String name) {
+		return TitleKeys.get(getContext()).keyFor(name);
+	}
 
-		return TextUtilities.keyFor(mKeyPrefixes, mKeySuffixes, name);
+	@Override
+	protected String[] getSortNumberColumns() {
+		return SORT_NUMBER_COLUMNS;
 	}
 
 	@Override
@@ -281,8 +260,7 @@ public class BoardGamesProvider extends ContentProvider {
 			throw new IllegalArgumentException("Unknown URI " + uri);
 		}
 
-		getContext().getContentResolver().notifyChange(uri, null);
-		ShelvesApplication.dataChanged();
+		notifyChange(uri);
 
 		return count;
 	}
@@ -299,23 +277,35 @@ public class BoardGamesProvider extends ContentProvider {
 		int count = 0;
 		SQLiteDatabase db = mOpenHelper.getWritableDatabase();
 
+		// GJT: Keep the sort keys in step with the columns they come from
+		if (values != null) {
+			values = new ContentValues(values);
+			putSortKeys(values);
+		}
+
 		switch (URI_MATCHER.match(uri)) {
 		case BOARDGAMES:
-			count = db.update("boardgames", values, selection, selectionArgs);
+			count = updateItems(db, "boardgames", values, selection,
+					selectionArgs);
 			break;
 		case BOARDGAME_ID:
-			count = db.update("boardgames", values,
+			count = updateItems(db, "boardgames", values,
 					BaseItem._ID
 							+ " = "
 							+ uri.getPathSegments().get(1)
 							+ (!TextUtilities.isEmpty(selection) ? " AND ("
 									+ selection + ')' : ""), selectionArgs);
 			break;
+		case TAG_LIST:
+			count = addTags(db, "boardgames", values.getAsString(BaseItem.TAGS),
+					selection, selectionArgs);
+			// GJT: Observers watch the items, not the tags
+			uri = BoardGamesStore.BoardGame.CONTENT_URI;
+			break;
 		default:
 			throw new IllegalArgumentException("Unknown URI " + uri);
 		}
-		getContext().getContentResolver().notifyChange(uri, null);
-		ShelvesApplication.dataChanged();
+		notifyChange(uri);
 		return count;
 	}
 
@@ -346,13 +336,19 @@ public class BoardGamesProvider extends ContentProvider {
 					+ " TEXT, " + BaseItem.EVENT_ID + " INTEGER, "
 					+ BaseItem.NOTES + " TEXT, " + BaseItem.UPC + " TEXT, "
 					+ BaseItem.WISHLIST_DATE + " TEXT, " + BaseItem.QUANTITY
-					+ " TEXT);");
+					+ " TEXT, " + BaseItem.ETAG + " TEXT, "
+					+ BaseItem.LAST_CHECKED + " INTEGER, "
+					+ BaseItem.IDENTIFIER_KEY + " INTEGER);");
 
 			// GJT: Was this here for sorting?
 			db.execSQL("CREATE INDEX boardgameIndexTitle ON boardgames("
 					+ BaseItem.SORT_TITLE + ");");
-			db.execSQL("CREATE INDEX boardgameIndexAuthors ON boardgames("
-					+ BaseItem.AUTHORS + ");");
+
+			createSearchIndex(db, "boardgames", SEARCH_COLUMNS);
+			createTagTables(db, "boardgames");
+			createStatusIndexes(db, "boardgames");
+			createIdentifierIndex(db, "boardgames");
+			createSortKeys(db, "boardgames", SORT_COLUMNS, SORT_NUMBER_COLUMNS);
 		}
 
 		// In version 1.2, I am fixing the way authors names are stored, to
@@ -370,6 +366,31 @@ public class BoardGamesProvider extends ContentProvider {
 			case 1:
 				db.execSQL("ALTER TABLE boardgames ADD COLUMN "
 						+ BaseItem.QUANTITY + " TEXT");
+			case 2:
+				createSearchIndex(db, "boardgames", SEARCH_COLUMNS);
+			case 3:
+				createTagTables(db, "boardgames");
+			case 4:
+				db.execSQL("ALTER TABLE boardgames ADD COLUMN " + BaseItem.ETAG
+						+ " TEXT");
+			case 5:
+				db.execSQL("ALTER TABLE boardgames ADD COLUMN "
+						+ BaseItem.LAST_CHECKED + " INTEGER");
+			case 6:
+				createStatusIndexes(db, "boardgames");
+			case 7:
+				db.execSQL("ALTER TABLE boardgames ADD COLUMN "
+						+ BaseItem.IDENTIFIER_KEY + " INTEGER");
+				createIdentifierIndex(db, "boardgames");
+			case 8:
+				// GJT: Replaced by the one without regard to case
+				db.execSQL("DROP INDEX IF EXISTS boardgameIndexAuthors");
+				createSortKeys(db, "boardgames", SORT_COLUMNS,
+						SORT_NUMBER_COLUMNS);
+			case 9:
+				writeSortTitles(db, "boardgames", TitleKeys.get(dbContext));
+			case 10:
+				createInternalIdIndex(db, "boardgames");
 				break;
 			default:
 				break;
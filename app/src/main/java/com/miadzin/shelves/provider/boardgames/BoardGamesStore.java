@@ -148,6 +148,7 @@ public class BoardGamesStore extends BGGInfo {
 				expiring = mLoader.load(url);
 			}
 			mLastModified = expiring.lastModified;
+			mETag = expiring.etag;
 
 			return expiring.bitmap;
 		}
@@ -165,6 +166,9 @@ public class BoardGamesStore extends BGGInfo {
 			if (mLastModified != null) {
 				values.put(LAST_MODIFIED, mLastModified.getTimeInMillis());
 			}
+			if (mETag != null) {
+				values.put(ETAG, mETag);
+			}
 
 			values.put(PUBLICATION, mPublicationDate);
 
@@ -233,6 +237,7 @@ public class BoardGamesStore extends BGGInfo {
 			calendar.setTimeInMillis(c.getLong(c
 					.getColumnIndexOrThrow(LAST_MODIFIED)));
 			boardgame.mLastModified = calendar;
+			boardgame.mETag = c.getString(c.getColumnIndexOrThrow(ETAG));
 
 			try {
 				Collections.addAll(boardgame.mTags,
@@ -17,17 +17,20 @@
 
 package com.miadzin.shelves.provider.books;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
-import android.graphics.Bitmap;
 import android.net.Uri;
 
-import com.miadzin.shelves.base.BaseItem;
 import com.miadzin.shelves.provider.books.BooksStore.Book;
+import com.miadzin.shelves.util.CoverQueue;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.ImageUtilities;
-import com.miadzin.shelves.util.ImportUtilities;
+import com.miadzin.shelves.util.ItemQueries;
 import com.miadzin.shelves.util.Preferences;
 import com.miadzin.shelves.util.loan.Calendars;
 
@@ -35,81 +38,19 @@ public class BooksManager {
 	static int BOOK_COVER_WIDTH;
 	static int BOOK_COVER_HEIGHT;
 
-	private static String sIdSelection;
-	private static String sSelection;
-
-	private static String[] sArguments1 = new String[1];
-	private static String[] sArguments4 = new String[4];
-
-	private static final String[] PROJECTION_ID_IID = new String[] {
-			BaseItem._ID, BaseItem.INTERNAL_ID };
-
-	private static final String[] PROJECTION_ID = new String[] { BaseItem._ID };
-
-	static {
-		StringBuilder selection = new StringBuilder();
-		selection.append(BaseItem.INTERNAL_ID);
-		selection.append(" LIKE ?");
-		sIdSelection = selection.toString();
-
-		selection = new StringBuilder();
-		selection.append(sIdSelection);
-		selection.append(" OR ");
-		selection.append(BaseItem.EAN);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.UPC);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.ISBN);
-		selection.append(" LIKE ?");
-		sSelection = selection.toString();
-	}
-
 	private BooksManager() {
 	}
 
 	public static String findBookId(ContentResolver contentResolver, String id,
 			String sortOrder) {
-		String internalId = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id;
-			c = contentResolver.query(BooksStore.Book.CONTENT_URI,
-					PROJECTION_ID_IID, sSelection, arguments4, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					internalId = c.getString(c
-							.getColumnIndexOrThrow(BaseItem.INTERNAL_ID));
-				}
-			}
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return internalId;
+		return ItemQueries.findInternalId(contentResolver,
+				BooksStore.Book.CONTENT_URI, id, sortOrder);
 	}
 
 	public static boolean bookExists(ContentResolver contentResolver,
 			String id, String sortOrder, IOUtilities.inputTypes type) {
-		boolean exists;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id
-					.replaceFirst("^0+(?!$)", "");
-
-			c = contentResolver.query(BooksStore.Book.CONTENT_URI,
-					PROJECTION_ID, sSelection, arguments4, sortOrder);
-			exists = c.getCount() > 0;
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return exists;
+		return ItemQueries.exists(contentResolver,
+				BooksStore.Book.CONTENT_URI, id);
 	}
 
 	public static BooksStore.Book loadAndAddBook(ContentResolver resolver,
@@ -117,49 +58,49 @@ public class BooksManager {
 			Context context) {
 
 		final BooksStore.Book book = booksStore.findBook(id, type, context);
-		if (book != null) {
-			Bitmap bitmap = null;
-
-			bitmap = Preferences.getBitmapForManager(book);
-			BOOK_COVER_WIDTH = Preferences.getWidthForManager();
-			BOOK_COVER_HEIGHT = Preferences.getHeightForManager();
+		if (book != null)
+			return addBook(resolver, book);
 
-			if (bitmap != null) {
-				bitmap = ImageUtilities.createCover(bitmap, BOOK_COVER_WIDTH,
-						BOOK_COVER_HEIGHT);
-				ImportUtilities.addCoverToCache(book.getInternalId(), bitmap);
-				bitmap.recycle();
-			}
+		return null;
+	}
 
-			// Should kill duplicate item entry bug...
-			Cursor c = null;
-			sArguments1[0] = book.getInternalId();
-			c = resolver.query(BooksStore.Book.CONTENT_URI, null,
-					BaseItem.INTERNAL_ID + "='" + book.getInternalId() + "'",
-					null, null);
-			if (c.moveToFirst()) {
-				if (c.getCount() < 1) {
-					final Uri uri = resolver.insert(
-							BooksStore.Book.CONTENT_URI,
-							book.getContentValues());
-					if (uri != null) {
-						if (c != null) {
-							c.close();
-						}
-						return book;
-					}
-				}
-			} else {
-				if (c != null) {
-					c.close();
-				}
-				final Uri uri = resolver.insert(BooksStore.Book.CONTENT_URI,
-						book.getContentValues());
-				return book;
-			}
+	/**
+	 * Looks up the books with the specified ids, several per request, and
+	 * adds the ones found.
+	 * 
+	 * @return The books added, by id
+	 */
+	public static HashMap<String, BooksStore.Book> loadAndAddBooks(
+			ContentResolver resolver, List<String> ids, BooksStore booksStore,
+			IOUtilities.inputTypes type, Context context) {
+		final HashMap<String, BooksStore.Book> found = booksStore.findBooks(ids,
+				type, context);
+		final HashMap<String, BooksStore.Book> added = new HashMap<String, BooksStore.Book>();
+		for (Map.Entry<String, BooksStore.Book> entry : found.entrySet()) {
+			final BooksStore.Book book = addBook(resolver, entry.getValue());
+			if (book != null)
+				added.put(entry.getKey(), book);
 		}
 
-		return null;
+		return added;
+	}
+
+	private static BooksStore.Book addBook(ContentResolver resolver,
+			BooksStore.Book book) {
+		BOOK_COVER_WIDTH = Preferences.getWidthForManager();
+		BOOK_COVER_HEIGHT = Preferences.getHeightForManager();
+
+		// Should kill duplicate item entry bug...
+		if (ItemQueries.containsInternalId(resolver,
+				BooksStore.Book.CONTENT_URI, book.getInternalId()))
+			return null;
+
+		if (resolver.insert(BooksStore.Book.CONTENT_URI,
+				book.getContentValues()) == null)
+			return null;
+
+		CoverQueue.get().enqueue(BooksStore.Book.CONTENT_URI, book);
+		return book;
 	}
 
 	public static boolean deleteBook(ContentResolver contentResolver,
@@ -171,10 +112,8 @@ public class BooksManager {
 			eventId = book.getEventId();
 		}
 
-		final String[] arguments1 = sArguments1;
-		arguments1[0] = bookId;
-		int count = contentResolver.delete(BooksStore.Book.CONTENT_URI,
-				sIdSelection, arguments1);
+		int count = ItemQueries.delete(contentResolver,
+				BooksStore.Book.CONTENT_URI, bookId);
 		ImageUtilities.deleteCachedCover(bookId);
 
 		if (eventId > 0) {
@@ -186,20 +125,14 @@ public class BooksManager {
 	public static BooksStore.Book findBook(ContentResolver contentResolver,
 			String id, String sortOrder) {
 		BooksStore.Book book = null;
-		Cursor c = null;
-
-		try {
-			sArguments1[0] = id;
-			c = contentResolver.query(BooksStore.Book.CONTENT_URI, null,
-					sIdSelection, sArguments1, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					book = BooksStore.Book.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		final Cursor c = ItemQueries.queryByInternalId(contentResolver,
+				BooksStore.Book.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				book = BooksStore.Book.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
 		return book;
@@ -228,22 +161,14 @@ public class BooksManager {
 	public static BooksStore.Book findBookById(ContentResolver contentResolver,
 			String id, String sortOrder) {
 		BooksStore.Book book = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id;
-
-			c = contentResolver.query(BooksStore.Book.CONTENT_URI, null,
-					sSelection, sArguments4, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					book = BooksStore.Book.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		final Cursor c = ItemQueries.queryById(contentResolver,
+				BooksStore.Book.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				book = BooksStore.Book.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
 		return book;
@@ -22,16 +22,13 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.regex.Pattern;
 
 import android.app.SearchManager;
-import android.content.ContentProvider;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.UriMatcher;
-import android.content.res.Resources;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
@@ -43,28 +40,43 @@ import android.provider.BaseColumns;
 import android.provider.LiveFolders;
 import android.util.Log;
 
-import com.miadzin.shelves.R;
-import com.miadzin.shelves.ShelvesApplication;
 import com.miadzin.shelves.activity.SettingsActivity;
 import com.miadzin.shelves.activity.books.BooksActivity;
 import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.BaseItemContentProvider;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.ImageUtilities;
 import com.miadzin.shelves.util.ImportUtilities;
 import com.miadzin.shelves.util.TSVWriter;
 import com.miadzin.shelves.util.TextUtilities;
+import com.miadzin.shelves.util.TitleKeys;
 
-public class BooksProvider extends ContentProvider {
+public class BooksProvider extends BaseItemContentProvider {
 	private static final String LOG_TAG = "BooksProvider";
 
 	public static final String DATABASE_NAME = "books.db";
 
-	private static final int DATABASE_VERSION = 7;
+	private static final int DATABASE_VERSION = 16;
+
+	// GJT: Columns of the full text index used by search and filtering
+	private static final String[] SEARCH_COLUMNS = new String[] {
+			BaseItem.TITLE, BaseItem.AUTHORS, BaseItem.LOANED_TO, BaseItem.TAGS,
+			BaseItem.NOTES, BaseItem.PUBLISHER, BaseItem.FORMAT,
+			BaseItem.DEWEY_NUMBER, BaseItem.CONDITION };
+
+	// GJT: Columns the lists can be sorted on, see createSortKeys()
+	private static final String[] SORT_COLUMNS = new String[] {
+			BaseItem.AUTHORS, BaseItem.RATING, BaseItem.DEWEY_NUMBER,
+			BaseItem.FORMAT, BaseItem.PAGES, BaseItem.PUBLISHER };
+	private static final String[] SORT_NUMBER_COLUMNS = new String[] {
+			BaseItem.RETAIL_PRICE };
 
 	private static final int SEARCH = 1;
 	private static final int BOOKS = 2;
 	private static final int BOOK_ID = 3;
 	private static final int LIVE_FOLDER_BOOKS = 4;
+	private static final int TAG_LIST = 5;
+	private static final int STATS = 6;
 
 	private static final String AUTHORITY = "shelves";
 
@@ -78,6 +90,8 @@ public class BooksProvider extends ContentProvider {
 		URI_MATCHER.addURI(AUTHORITY, "books", BOOKS);
 		URI_MATCHER.addURI(AUTHORITY, "books/#", BOOK_ID);
 		URI_MATCHER.addURI(AUTHORITY, "live_folders/books", LIVE_FOLDER_BOOKS);
+		URI_MATCHER.addURI(AUTHORITY, TAGS_PATH, TAG_LIST);
+		URI_MATCHER.addURI(AUTHORITY, STATS_PATH, STATS);
 	}
 
 	private static final HashMap<String, String> SUGGESTION_PROJECTION_MAP;
@@ -107,9 +121,6 @@ public class BooksProvider extends ContentProvider {
 
 	private static SQLiteOpenHelper mOpenHelper;
 
-	private Pattern[] mKeyPrefixes;
-	private Pattern[] mKeySuffixes;
-
 	private static Context dbContext;
 
 	@Override
@@ -120,6 +131,11 @@ public class BooksProvider extends ContentProvider {
 		return true;
 	}
 
+	@Override
+	protected SQLiteOpenHelper getOpenHelper() {
+		return mOpenHelper;
+	}
+
 	@Override
 	public Cursor query(Uri uri, String[] projection, String selection,
 			String[] selectionArgs, String sortOrder) {
@@ -137,34 +153,9 @@ public class BooksProvider extends ContentProvider {
 		switch (URI_MATCHER.match(uri)) {
 		case SEARCH:
 			qb.setTables("books");
-			String query = uri.getLastPathSegment();
-			if (!TextUtilities.isEmpty(query)) {
-				qb.appendWhere(BaseItem.AUTHORS + " LIKE ");
-				qb.appendWhereEscapeString('%' + query + '%');
-				qb.appendWhere(" OR ");
-				qb.appendWhere(BaseItem.TITLE + " LIKE ");
-				qb.appendWhereEscapeString('%' + query + '%');
-				qb.appendWhere(" OR ");
-				// GJT: Used to enable tag results in suggestions bar
-
-				// The following is to allow for searching tags in any order,
-				// e.g.
-				// danger, fight should return the same results as fight, danger
-				if (query.contains(",")) {
-					String[] tags = query.split(",");
-					for (int i = 0; i < tags.length; i++) {
-						String tag = tags[i].trim();
-
-						qb.appendWhere(BaseItem.TAGS + " LIKE ");
-						qb.appendWhereEscapeString('%' + tag + '%');
-						if (i != tags.length - 1) {
-							qb.appendWhere(" OR ");
-						}
-					}
-				} else {
-					qb.appendWhere(BaseItem.TAGS + " LIKE ");
-					qb.appendWhereEscapeString('%' + query + '%');
-				}
+			String query = getSearchQuery(uri.getLastPathSegment());
+			if (query != null) {
+				appendSearchWhere(qb, "books", query);
 			}
 			qb.setProjectionMap(SUGGESTION_PROJECTION_MAP);
 			break;
@@ -183,13 +174,24 @@ public class BooksProvider extends ContentProvider {
 			// by ContentProvider$Transport.bulkQuery(), with "name ASC" as a
 			// forced sort. I'll override it with the actual user pref
 			break;
+		case TAG_LIST:
+			Cursor tags = queryTags(mOpenHelper.getReadableDatabase());
+			tags.setNotificationUri(getContext().getContentResolver(), uri);
+			return tags;
+		case STATS:
+			Cursor stats = queryStats(mOpenHelper.getReadableDatabase(),
+					"books");
+			// GJT: Writes notify the items, so that's what to watch
+			stats.setNotificationUri(getContext().getContentResolver(),
+					BooksStore.Book.CONTENT_URI);
+			return stats;
 		default:
 			throw new IllegalArgumentException("Unknown URI " + uri);
 		}
 
 		SQLiteDatabase db = mOpenHelper.getReadableDatabase();
 		Cursor c = qb.query(db, projection, selection, selectionArgs, null,
-				null, orderBy);
+				null, getOrderBy(orderBy), getLimit(uri));
 		c.setNotificationUri(getContext().getContentResolver(), uri);
 
 		return c;
@@ -202,6 +204,10 @@ public class BooksProvider extends ContentProvider {
 			return "vnd.android.cursor.dir/vnd.com.miadzin.shelves.books";
 		case BOOK_ID:
 			return "vnd.android.cursor.item/vnd.com.miadzin.shelves.books";
+		case TAG_LIST:
+			return "vnd.android.cursor.dir/vnd.com.miadzin.shelves.tags";
+		case STATS:
+			return "vnd.android.cursor.item/vnd.com.miadzin.shelves.stats";
 		default:
 			throw new IllegalArgumentException("Unknown URI " + uri);
 		}
@@ -213,8 +219,7 @@ public class BooksProvider extends ContentProvider {
 
 		if (initialValues != null) {
 			values = new ContentValues(initialValues);
-			values.put(BaseItem.SORT_TITLE,
-					keyFor(values.getAsString(BaseItem.TITLE)));
+			putSortKeys(values);
 		} else {
 			values = new ContentValues();
 		}
@@ -224,51 +229,25 @@ public class BooksProvider extends ContentProvider {
 		}
 
 		SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-		final long rowId = db.insert("books", BaseItem.TITLE, values);
+		final long rowId = insertItem(db, "books", BaseItem.TITLE, values);
 		if (rowId > 0) {
 			Uri insertUri = ContentUris.withAppendedId(
 					BooksStore.Book.CONTENT_URI, rowId);
-			getContext().getContentResolver().notifyChange(uri, null);
-			ShelvesApplication.dataChanged();
+			notifyChange(uri);
 			return insertUri;
 		}
 
 		throw new SQLException("Failed to insert row into " + uri);
 	}
 
-	private String keyFor(String name) {
-		if (name == null)
-			name = "";
-
-		name = name.trim().toLowerCase();
-
-		if (mKeyPrefixes == null) {
-			final Resources resources = getContext().getResources();
-			final String[] keyPrefixes = resources
-					.getStringArray(R.array.prefixes);
-			final int count = keyPrefixes.length;
-
-			mKeyPrefixes = new Pattern[count];
-			for (int i = 0; i < count; i++) {
-				mKeyPrefixes[i] = Pattern
-						.compile("^" + keyPrefixes[i] + "\\s+");
-			}
-		}
-
-		if (mKeySuffixes == null) {
-			final Resources resources = getContext().getResources();
-			final String[] keySuffixes = resources
-					.getStringArray(R.array.suffixes);
-			final int count = keySuffixes.length;
-
-			mKeySuffixes = new Pattern[count];
-			for (int i = 0; i < count; i++) {
-				mKeySuffixes[i] = Pattern
-						.compile("\\s*" + keySuffixes[i] + "$");
-			}
-		}
+	@Override
+	protected String keyFor(String name) {
+		return TitleKeys.get(getContext()).keyFor(name);
+	}
 
-		return TextUtilities.keyFor(mKeyPrefixes, mKeySuffixes, name);
+	@Override
+	protected String[] getSortNumberColumns() {
+		return SORT_NUMBER_COLUMNS;
 	}
 
 	@Override
@@ -292,8 +271,7 @@ public class BooksProvider extends ContentProvider {
 			throw new IllegalArgumentException("Unknown URI " + uri);
 		}
 
-		getContext().getContentResolver().notifyChange(uri, null);
-		ShelvesApplication.dataChanged();
+		notifyChange(uri);
 
 		return count;
 	}
@@ -310,23 +288,35 @@ public class BooksProvider extends ContentProvider {
 		int count = 0;
 		SQLiteDatabase db = mOpenHelper.getWritableDatabase();
 
+		// GJT: Keep the sort keys in step with the columns they come from
+		if (values != null) {
+			values = new ContentValues(values);
+			putSortKeys(values);
+		}
+
 		switch (URI_MATCHER.match(uri)) {
 		case BOOKS:
-			count = db.update("books", values, selection, selectionArgs);
+			count = updateItems(db, "books", values, selection,
+					selectionArgs);
 			break;
 		case BOOK_ID:
-			count = db.update("books", values,
+			count = updateItems(db, "books", values,
 					BaseItem._ID
 							+ " = "
 							+ uri.getPathSegments().get(1)
 							+ (!TextUtilities.isEmpty(selection) ? " AND ("
 									+ selection + ')' : ""), selectionArgs);
 			break;
+		case TAG_LIST:
+			count = addTags(db, "books", values.getAsString(BaseItem.TAGS),
+					selection, selectionArgs);
+			// GJT: Observers watch the items, not the tags
+			uri = BooksStore.Book.CONTENT_URI;
+			break;
 		default:
 			throw new IllegalArgumentException("Unknown URI " + uri);
 		}
-		getContext().getContentResolver().notifyChange(uri, null);
-		ShelvesApplication.dataChanged();
+		notifyChange(uri);
 		return count;
 	}
 
@@ -371,13 +361,19 @@ public class BooksProvider extends ContentProvider {
 					+ " TEXT, " + BaseItem.EVENT_ID + " INTEGER, "
 					+ BaseItem.NOTES + " TEXT, " + BaseItem.UPC + " TEXT, "
 					+ BaseItem.WISHLIST_DATE + " TEXT, " + BaseItem.QUANTITY
-					+ " TEXT);");
+					+ " TEXT, " + BaseItem.ETAG + " TEXT, "
+					+ BaseItem.LAST_CHECKED + " INTEGER, "
+					+ BaseItem.IDENTIFIER_KEY + " INTEGER);");
 
 			// GJT: Was this here for sorting?
 			db.execSQL("CREATE INDEX bookIndexTitle ON books("
 					+ BaseItem.SORT_TITLE + ");");
-			db.execSQL("CREATE INDEX bookIndexAuthors ON books("
-					+ BaseItem.AUTHORS + ");");
+
+			createSearchIndex(db, "books", SEARCH_COLUMNS);
+			createTagTables(db, "books");
+			createStatusIndexes(db, "books");
+			createIdentifierIndex(db, "books");
+			createSortKeys(db, "books", SORT_COLUMNS, SORT_NUMBER_COLUMNS);
 		}
 
 		// In version 1.2, I am fixing the way authors names are stored, to
@@ -517,6 +513,30 @@ public class BooksProvider extends ContentProvider {
 			case 6:
 				db.execSQL("ALTER TABLE books ADD COLUMN " + BaseItem.QUANTITY
 						+ " TEXT");
+			case 7:
+				createSearchIndex(db, "books", SEARCH_COLUMNS);
+			case 8:
+				createTagTables(db, "books");
+			case 9:
+				db.execSQL("ALTER TABLE books ADD COLUMN " + BaseItem.ETAG
+						+ " TEXT");
+			case 10:
+				db.execSQL("ALTER TABLE books ADD COLUMN "
+						+ BaseItem.LAST_CHECKED + " INTEGER");
+			case 11:
+				createStatusIndexes(db, "books");
+			case 12:
+				db.execSQL("ALTER TABLE books ADD COLUMN "
+						+ BaseItem.IDENTIFIER_KEY + " INTEGER");
+				createIdentifierIndex(db, "books");
+			case 13:
+				// GJT: Replaced by the one without regard to case
+				db.execSQL("DROP INDEX IF EXISTS bookIndexAuthors");
+				createSortKeys(db, "books", SORT_COLUMNS, SORT_NUMBER_COLUMNS);
+			case 14:
+				writeSortTitles(db, "books", TitleKeys.get(dbContext));
+			case 15:
+				createInternalIdIndex(db, "books");
 				break;
 			default:
 				break;
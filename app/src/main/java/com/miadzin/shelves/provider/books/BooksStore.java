@@ -156,6 +156,7 @@ public class BooksStore extends ServerInfo {
 				expiring = mLoader.load(url);
 			}
 			mLastModified = expiring.lastModified;
+			mETag = expiring.etag;
 
 			return expiring.bitmap;
 		}
@@ -176,6 +177,9 @@ public class BooksStore extends ServerInfo {
 			if (mLastModified != null) {
 				values.put(LAST_MODIFIED, mLastModified.getTimeInMillis());
 			}
+			if (mETag != null) {
+				values.put(ETAG, mETag);
+			}
 			values.put(PUBLICATION,
 					mPublicationDate != null ? format.format(mPublicationDate)
 							: "");
@@ -249,6 +253,7 @@ public class BooksStore extends ServerInfo {
 			calendar.setTimeInMillis(c.getLong(c
 					.getColumnIndexOrThrow(LAST_MODIFIED)));
 			book.mLastModified = calendar;
+			book.mETag = c.getString(c.getColumnIndexOrThrow(ETAG));
 
 			try {
 				Collections.addAll(book.mTags,
@@ -437,6 +442,30 @@ public class BooksStore extends ServerInfo {
 		}
 	}
 
+	/**
+	 * Finds the books with the specified ids, several per request.
+	 * 
+	 * @param ids
+	 *            The ids of the books to find (ISBN-10, ISBN-13, etc.)
+	 * 
+	 * @return The books found, by id; the ids not found are missing.
+	 */
+	public HashMap<String, Book> findBooks(List<String> ids,
+			final IOUtilities.inputTypes mSavedImportType, Context context) {
+		return findItems(ids, mSavedImportType, context,
+				VALUE_SEARCHINDEX_BOOKS, RESPONSE_TAG_ISBN,
+				new ItemParser<Book>() {
+					public Book createItem() {
+						return createBook();
+					}
+
+					public boolean parseItem(XmlPullParser parser, Book book)
+							throws XmlPullParserException, IOException {
+						return parseBook(parser, book);
+					}
+				});
+	}
+
 	private Book findBookLookup(HttpGet get, final Book book,
 			final inputTypes mSavedImportType, String id) {
 		final boolean[] result = new boolean[1];
@@ -17,191 +17,21 @@
 
 package com.miadzin.shelves.provider.books;
 
-import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.HashMap;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-
-import org.apache.http.Header;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
-import org.apache.http.client.methods.HttpGet;
-
 import android.content.ContentResolver;
-import android.content.ContentValues;
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.os.Process;
 
 import com.miadzin.shelves.base.BaseItem;
-import com.miadzin.shelves.util.HttpManager;
-import com.miadzin.shelves.util.ImageUtilities;
-import com.miadzin.shelves.util.ImportUtilities;
-import com.miadzin.shelves.util.Preferences;
-
-public class BooksUpdater implements Runnable {
-	private static final String LOG_TAG = "BooksUpdater";
-
-	private static final long ONE_DAY = 24 * 60 * 60 * 1000;
-
-	private static final HashMap<String, Long> sLastChecks = new HashMap<String, Long>();
-
-	private final BlockingQueue<String> mQueue = new ArrayBlockingQueue<String>(
-			12);
-	private final ContentResolver mResolver;
-	private final SimpleDateFormat mLastModifiedFormat;
-	private final String mSelection;
-	private final String[] mArguments = new String[1];
-	private final ContentValues mValues = new ContentValues();
-
-	private Thread mThread;
-	private volatile boolean mStopped;
+import com.miadzin.shelves.base.BaseItemUpdater;
 
+/**
+ * Keeps the covers of the books fresh.
+ */
+public class BooksUpdater extends BaseItemUpdater {
 	public BooksUpdater(Context context) {
-		mResolver = context.getContentResolver();
-		mLastModifiedFormat = new SimpleDateFormat(
-				"EEE, dd MMM yyyy HH:mm:ss z");
-		mSelection = BaseItem._ID + "=?";
-	}
-
-	public void start() {
-		if (mThread == null) {
-			mStopped = false;
-			mThread = new Thread(this, "BooksUpdater");
-			mThread.start();
-		}
-	}
-
-	public void stop() {
-		if (mThread != null) {
-			mStopped = true;
-			mThread.interrupt();
-			mThread = null;
-		}
-	}
-
-	public void offer(String... books) {
-		for (String bookId : books) {
-			if (bookId != null)
-				mQueue.offer(bookId);
-		}
+		super(context, BooksStore.Book.CONTENT_URI);
 	}
 
-	public void clear() {
-		mQueue.clear();
-	}
-
-	public void run() {
-		Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-		final ImageUtilities.ExpiringBitmap expiring = new ImageUtilities.ExpiringBitmap();
-
-		while (!mStopped) {
-			try {
-				final String bookId = mQueue.take();
-
-				final Long lastCheck = sLastChecks.get(bookId);
-				if (lastCheck != null
-						&& (lastCheck + ONE_DAY) >= System.currentTimeMillis()) {
-					continue;
-				}
-				sLastChecks.put(bookId, System.currentTimeMillis());
-
-				final BooksStore.Book book = BooksManager.findBook(mResolver,
-						bookId, null);
-
-				if (book == null)
-					continue;
-
-				final String imgURL = Preferences.getImageURLForUpdater(book);
-
-				if (book.getLastModified() == null || imgURL == null) {
-					continue;
-				}
-
-				if (bookCoverUpdated(book, expiring)
-						&& expiring.lastModified != null) {
-					ImageUtilities.deleteCachedCover(bookId);
-
-					final Bitmap bitmap = Preferences.getBitmapForManager(book);
-
-					ImportUtilities.addCoverToCache(book.getInternalId(),
-							bitmap);
-
-					if (bitmap != null)
-						bitmap.recycle();
-
-					mValues.put(BaseItem.LAST_MODIFIED,
-							expiring.lastModified.getTimeInMillis());
-					mArguments[0] = bookId;
-					mResolver.update(BooksStore.Book.CONTENT_URI, mValues,
-							mSelection, mArguments);
-				}
-
-				Thread.sleep(1000);
-			} catch (InterruptedException e) {
-				// Ignore
-			}
-		}
-	}
-
-	private boolean bookCoverUpdated(BooksStore.Book book,
-			ImageUtilities.ExpiringBitmap expiring) {
-		expiring.lastModified = null;
-
-		final String tinyThumbnail = Preferences.getImageURLForUpdater(book);
-
-		if (tinyThumbnail != null && !tinyThumbnail.equals("")) {
-			HttpGet get = null;
-			try {
-				get = new HttpGet(Preferences.getImageURLForUpdater(book));
-
-			} catch (NullPointerException npe) {
-				android.util.Log.e(LOG_TAG,
-						"Could not check modification image for " + book, npe);
-			}
-
-			HttpEntity entity = null;
-			try {
-				final HttpResponse response = HttpManager.execute(get);
-				if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-					entity = response.getEntity();
-
-					final Header header = response
-							.getFirstHeader("Last-Modified");
-					if (header != null) {
-						final Calendar calendar = Calendar.getInstance();
-						try {
-							calendar.setTime(mLastModifiedFormat.parse(header
-									.getValue()));
-							expiring.lastModified = calendar;
-							return calendar.after(book.getLastModified());
-						} catch (ParseException e) {
-							return false;
-						}
-					}
-				}
-			} catch (IOException e) {
-				android.util.Log.e(LOG_TAG,
-						"Could not check modification date for " + book, e);
-			} catch (IllegalArgumentException iae) {
-				android.util.Log.e(LOG_TAG, "Null get value for " + book, iae);
-			} finally {
-				if (entity != null) {
-					try {
-						entity.consumeContent();
-					} catch (IOException e) {
-						android.util.Log
-								.e(LOG_TAG,
-										"Could not check modification date for "
-												+ book, e);
-					}
-				}
-			}
-		}
-		return false;
+	public BaseItem findItem(ContentResolver resolver, String internalId) {
+		return BooksManager.findBook(resolver, internalId, null);
 	}
 }
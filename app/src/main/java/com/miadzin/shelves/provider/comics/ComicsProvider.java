@@ -17,15 +17,12 @@
 package com.miadzin.shelves.provider.comics;
 
 import java.util.HashMap;
-import java.util.regex.Pattern;
 
 import android.app.SearchManager;
-import android.content.ContentProvider;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.UriMatcher;
-import android.content.res.Resources;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
@@ -36,23 +33,37 @@ import android.provider.BaseColumns;
 import android.provider.LiveFolders;
 import android.util.Log;
 
-import com.miadzin.shelves.R;
-import com.miadzin.shelves.ShelvesApplication;
 import com.miadzin.shelves.activity.SettingsActivity;
 import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.BaseItemContentProvider;
 import com.miadzin.shelves.util.TextUtilities;
+import com.miadzin.shelves.util.TitleKeys;
 
-public class ComicsProvider extends ContentProvider {
+public class ComicsProvider extends BaseItemContentProvider {
 	private static final String LOG_TAG = "ComicsProvider";
 
 	public static final String DATABASE_NAME = "comics.db";
 
-	private static final int DATABASE_VERSION = 2;
+	private static final int DATABASE_VERSION = 11;
+
+	// GJT: Columns of the full text index used by search and filtering
+	private static final String[] SEARCH_COLUMNS = new String[] {
+			BaseItem.TITLE, BaseItem.AUTHORS, BaseItem.LOANED_TO, BaseItem.TAGS,
+			BaseItem.NOTES, BaseItem.ARTISTS, BaseItem.CHARACTERS,
+			BaseItem.ISSUE_NUMBER };
+
+	// GJT: Columns the lists can be sorted on, see createSortKeys()
+	private static final String[] SORT_COLUMNS = new String[] {
+			BaseItem.AUTHORS, BaseItem.RATING };
+	private static final String[] SORT_NUMBER_COLUMNS = new String[] {
+			BaseItem.RETAIL_PRICE, BaseItem.ISSUE_NUMBER };
 
 	private static final int SEARCH = 1;
 	private static final int COMICS = 2;
 	private static final int COMIC_ID = 3;
 	private static final int LIVE_FOLDER_COMICS = 4;
+	private static final int TAG_LIST = 5;
+	private static final int STATS = 6;
 
 	private static final String AUTHORITY = "ComicsProvider";
 
@@ -67,6 +78,8 @@ public class ComicsProvider extends ContentProvider {
 		URI_MATCHER.addURI(AUTHORITY, "comics/#", COMIC_ID);
 		URI_MATCHER
 				.addURI(AUTHORITY, "live_folders/comics", LIVE_FOLDER_COMICS);
+		URI_MATCHER.addURI(AUTHORITY, TAGS_PATH, TAG_LIST);
+		URI_MATCHER.addURI(AUTHORITY, STATS_PATH, STATS);
 	}
 
 	private static final HashMap<String, String> SUGGESTION_PROJECTION_MAP;
@@ -96,9 +109,6 @@ public class ComicsProvider extends ContentProvider {
 
 	private static SQLiteOpenHelper mOpenHelper;
 
-	private Pattern[] mKeyPrefixes;
-	private Pattern[] mKeySuffixes;
-
 	private static Context dbContext;
 
 	@Override
@@ -109,6 +119,11 @@ public class ComicsProvider extends ContentProvider {
 		return true;
 	}
 
+	@Override
+	protected SQLiteOpenHelper getOpenHelper() {
+		return mOpenHelper;
+	}
+
 	@Override
 	public Cursor query(Uri uri, String[] projection, String selection,
 			String[] selectionArgs, String sortOrder) {
@@ -126,34 +141,9 @@ public class ComicsProvider extends ContentProvider {
 		switch (URI_MATCHER.match(uri)) {
 		case SEARCH:
 			qb.setTables("comics");
-			String query = uri.getLastPathSegment();
-			if (!TextUtilities.isEmpty(query)) {
-				qb.appendWhere(BaseItem.AUTHORS + " LIKE ");
-				qb.appendWhereEscapeString('%' + query + '%');
-				qb.appendWhere(" OR ");
-				qb.appendWhere(BaseItem.TITLE + " LIKE ");
-				qb.appendWhereEscapeString('%' + query + '%');
-				qb.appendWhere(" OR ");
-				// GJT: Used to enable tag results in suggestions bar
-
-				// The following is to allow for searching tags in any order,
-				// e.g.
-				// danger, fight should return the same results as fight, danger
-				if (query.contains(",")) {
-					String[] tags = query.split(",");
-					for (int i = 0; i < tags.length; i++) {
-						String tag = tags[i].trim();
-
-						qb.appendWhere(BaseItem.TAGS + " LIKE ");
-						qb.appendWhereEscapeString('%' + tag + '%');
-						if (i != tags.length - 1) {
-							qb.appendWhere(" OR ");
-						}
-					}
-				} else {
-					qb.appendWhere(BaseItem.TAGS + " LIKE ");
-					qb.appendWhereEscapeString('%' + query + '%');
-				}
+			String query = getSearchQuery(uri.getLastPathSegment());
+			if (query != null) {
+				appendSearchWhere(qb, "comics", query);
 			}
 			qb.setProjectionMap(SUGGESTION_PROJECTION_MAP);
 			break;
@@ -172,13 +162,24 @@ public class ComicsProvider extends ContentProvider {
 			// by ContentProvider$Transport.bulkQuery(), with "name ASC" as a
 			// forced sort. I'll override it with the actual user pref
 			break;
+		case TAG_LIST:
+			Cursor tags = queryTags(mOpenHelper.getReadableDatabase());
+			tags.setNotificationUri(getContext().getContentResolver(), uri);
+			return tags;
+		case STATS:
+			Cursor stats = queryStats(mOpenHelper.getReadableDatabase(),
+					"comics");
+			// GJT: Writes notify the items, so that's what to watch
+			stats.setNotificationUri(getContext().getContentResolver(),
+					ComicsStore.Comic.CONTENT_URI);
+			return stats;
 		default:
 			throw new IllegalArgumentException("Unknown URI " + uri);
 		}
 
 		SQLiteDatabase db = mOpenHelper.getReadableDatabase();
 		Cursor c = qb.query(db, projection, selection, selectionArgs, null,
-				null, orderBy);
+				null, getOrderBy(orderBy), getLimit(uri));
 		c.setNotificationUri(getContext().getContentResolver(), uri);
 
 		return c;
@@ -191,6 +192,10 @@ public class ComicsProvider extends ContentProvider {
 			return "vnd.android.cursor.dir/vnd.com.miadzin.shelves.comics";
 		case COMIC_ID:
 			return "vnd.android.cursor.item/vnd.com.miadzin.shelves.comics";
+		case TAG_LIST:
+			return "vnd.android.cursor.dir/vnd.com.miadzin.shelves.tags";
+		case STATS:
+			return "vnd.android.cursor.item/vnd.com.miadzin.shelves.stats";
 		default:
 			throw new IllegalArgumentException("Unknown URI " + uri);
 		}
@@ -202,8 +207,7 @@ public class ComicsProvider extends ContentProvider {
 
 		if (initialValues != null) {
 			values = new ContentValues(initialValues);
-			values.put(BaseItem.SORT_TITLE,
-					keyFor(values.getAsString(BaseItem.TITLE)));
+			putSortKeys(values);
 		} else {
 			values = new ContentValues();
 		}
@@ -213,51 +217,25 @@ public class ComicsProvider extends ContentProvider {
 		}
 
 		SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-		final long rowId = db.insert("comics", BaseItem.TITLE, values);
+		final long rowId = insertItem(db, "comics", BaseItem.TITLE, values);
 		if (rowId > 0) {
 			Uri insertUri = ContentUris.withAppendedId(
 					ComicsStore.Comic.CONTENT_URI, rowId);
-			getContext().getContentResolver().notifyChange(uri, null);
-			ShelvesApplication.dataChanged();
+			notifyChange(uri);
 			return insertUri;
 		}
 
 		throw new SQLException("Failed to insert row into " + uri);
 	}
 
-	private String keyFor(String name) {
-		if (name == null)
-			name = "";
-
-		name = name.trim().toLowerCase();
-
-		if (mKeyPrefixes == null) {
-			final Resources resources = getContext().getResources();
-			final String[] keyPrefixes = resources
-					.getStringArray(R.array.prefixes);
-			final int count = keyPrefixes.length;
-
-			mKeyPrefixes = new Pattern[count];
-			for (int i = 0; i < count; i++) {
-				mKeyPrefixes[i] = Pattern
-						.compile("^" + keyPrefixes[i] + "\\s+");
-			}
-		}
-
-		if (mKeySuffixes == null) {
-			final Resources resources = getContext().getResources();
-			final String[] keySuffixes = resources
-					.getStringArray(R.array.suffixes);
-			final int count = keySuffixes.length;
-
-			mKeySuffixes = new Pattern[count];
-			for (int i = 0; i < count; i++) {
-				mKeySuffixes[i] = Pattern
-						.compile("\\s*" + keySuffixes[i] + "$");
-			}
-		}
+	@Override
+	protected String keyFor(String name) {
+		return TitleKeys.get(getContext()).keyFor(name);
+	}
 
-		return TextUtilities.keyFor(mKeyPrefixes, mKeySuffixes, name);
+	@Override
+	protected String[] getSortNumberColumns() {
+		return SORT_NUMBER_COLUMNS;
 	}
 
 	@Override
@@ -281,8 +259,7 @@ public class ComicsProvider extends ContentProvider {
 			throw new IllegalArgumentException("Unknown URI " + uri);
 		}
 
-		getContext().getContentResolver().notifyChange(uri, null);
-		ShelvesApplication.dataChanged();
+		notifyChange(uri);
 
 		return count;
 	}
@@ -299,23 +276,35 @@ public class ComicsProvider extends ContentProvider {
 		int count = 0;
 		SQLiteDatabase db = mOpenHelper.getWritableDatabase();
 
+		// GJT: Keep the sort keys in step with the columns they come from
+		if (values != null) {
+			values = new ContentValues(values);
+			putSortKeys(values);
+		}
+
 		switch (URI_MATCHER.match(uri)) {
 		case COMICS:
-			count = db.update("comics", values, selection, selectionArgs);
+			count = updateItems(db, "comics", values, selection,
+					selectionArgs);
 			break;
 		case COMIC_ID:
-			count = db.update("comics", values,
+			count = updateItems(db, "comics", values,
 					BaseItem._ID
 							+ " = "
 							+ uri.getPathSegments().get(1)
 							+ (!TextUtilities.isEmpty(selection) ? " AND ("
 									+ selection + ')' : ""), selectionArgs);
 			break;
+		case TAG_LIST:
+			count = addTags(db, "comics", values.getAsString(BaseItem.TAGS),
+					selection, selectionArgs);
+			// GJT: Observers watch the items, not the tags
+			uri = ComicsStore.Comic.CONTENT_URI;
+			break;
 		default:
 			throw new IllegalArgumentException("Unknown URI " + uri);
 		}
-		getContext().getContentResolver().notifyChange(uri, null);
-		ShelvesApplication.dataChanged();
+		notifyChange(uri);
 		return count;
 	}
 
@@ -347,13 +336,19 @@ public class ComicsProvider extends ContentProvider {
 					+ " TEXT, " + BaseItem.EVENT_ID + " INTEGER, "
 					+ BaseItem.NOTES + " TEXT, " + BaseItem.UPC + " TEXT, "
 					+ BaseItem.WISHLIST_DATE + " TEXT, " + BaseItem.QUANTITY
-					+ " TEXT);");
+					+ " TEXT, " + BaseItem.ETAG + " TEXT, "
+					+ BaseItem.LAST_CHECKED + " INTEGER, "
+					+ BaseItem.IDENTIFIER_KEY + " INTEGER);");
 
 			// GJT: Was this here for sorting?
 			db.execSQL("CREATE INDEX comicIndexTitle ON comics("
 					+ BaseItem.SORT_TITLE + ");");
-			db.execSQL("CREATE INDEX comicIndexAuthors ON comics("
-					+ BaseItem.AUTHORS + ");");
+
+			createSearchIndex(db, "comics", SEARCH_COLUMNS);
+			createTagTables(db, "comics");
+			createStatusIndexes(db, "comics");
+			createIdentifierIndex(db, "comics");
+			createSortKeys(db, "comics", SORT_COLUMNS, SORT_NUMBER_COLUMNS);
 		}
 
 		// In version 1.2, I am fixing the way authors names are stored, to
@@ -371,6 +366,30 @@ public class ComicsProvider extends ContentProvider {
 			case 1:
 				db.execSQL("ALTER TABLE comics ADD COLUMN " + BaseItem.QUANTITY
 						+ " TEXT");
+			case 2:
+				createSearchIndex(db, "comics", SEARCH_COLUMNS);
+			case 3:
+				createTagTables(db, "comics");
+			case 4:
+				db.execSQL("ALTER TABLE comics ADD COLUMN " + BaseItem.ETAG
+						+ " TEXT");
+			case 5:
+				db.execSQL("ALTER TABLE comics ADD COLUMN "
+						+ BaseItem.LAST_CHECKED + " INTEGER");
+			case 6:
+				createStatusIndexes(db, "comics");
+			case 7:
+				db.execSQL("ALTER TABLE comics ADD COLUMN "
+						+ BaseItem.IDENTIFIER_KEY + " INTEGER");
+				createIdentifierIndex(db, "comics");
+			case 8:
+				// GJT: Replaced by the one without regard to case
+				db.execSQL("DROP INDEX IF EXISTS comicIndexAuthors");
+				createSortKeys(db, "comics", SORT_COLUMNS, SORT_NUMBER_COLUMNS);
+			case 9:
+				writeSortTitles(db, "comics", TitleKeys.get(dbContext));
+			case 10:
+				createInternalIdIndex(db, "comics");
 				break;
 			default:
 				break;
@@ -154,6 +154,7 @@ public class ComicsStore extends CVInfo {
 				expiring = mLoader.load(url);
 			}
 			mLastModified = expiring.lastModified;
+			mETag = expiring.etag;
 
 			return expiring.bitmap;
 		}
@@ -171,6 +172,9 @@ public class ComicsStore extends CVInfo {
 			if (mLastModified != null) {
 				values.put(LAST_MODIFIED, mLastModified.getTimeInMillis());
 			}
+			if (mETag != null) {
+				values.put(ETAG, mETag);
+			}
 
 			values.put(PUBLICATION,
 					mPublicationDate != null ? format.format(mPublicationDate)
@@ -242,6 +246,7 @@ public class ComicsStore extends CVInfo {
 			calendar.setTimeInMillis(c.getLong(c
 					.getColumnIndexOrThrow(LAST_MODIFIED)));
 			comic.mLastModified = calendar;
+			comic.mETag = c.getString(c.getColumnIndexOrThrow(ETAG));
 
 			try {
 				Collections.addAll(comic.mTags,
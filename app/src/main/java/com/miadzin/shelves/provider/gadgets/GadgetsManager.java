@@ -16,17 +16,20 @@
 
 package com.miadzin.shelves.provider.gadgets;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
-import android.graphics.Bitmap;
 import android.net.Uri;
 
-import com.miadzin.shelves.base.BaseItem;
 import com.miadzin.shelves.provider.gadgets.GadgetsStore.Gadget;
+import com.miadzin.shelves.util.CoverQueue;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.ImageUtilities;
-import com.miadzin.shelves.util.ImportUtilities;
+import com.miadzin.shelves.util.ItemQueries;
 import com.miadzin.shelves.util.Preferences;
 import com.miadzin.shelves.util.loan.Calendars;
 
@@ -34,81 +37,19 @@ public class GadgetsManager {
 	static int GADGET_COVER_WIDTH;
 	static int GADGET_COVER_HEIGHT;
 
-	private static String sIdSelection;
-	private static String sSelection;
-
-	private static String[] sArguments1 = new String[1];
-	private static String[] sArguments4 = new String[4];
-
-	private static final String[] PROJECTION_ID_IID = new String[] {
-			BaseItem._ID, BaseItem.INTERNAL_ID };
-
-	private static final String[] PROJECTION_ID = new String[] { BaseItem._ID };
-
-	static {
-		StringBuilder selection = new StringBuilder();
-		selection.append(BaseItem.INTERNAL_ID);
-		selection.append(" LIKE ?");
-		sIdSelection = selection.toString();
-
-		selection = new StringBuilder();
-		selection.append(sIdSelection);
-		selection.append(" OR ");
-		selection.append(BaseItem.EAN);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.UPC);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.ISBN);
-		selection.append(" LIKE ?");
-		sSelection = selection.toString();
-	}
-
 	private GadgetsManager() {
 	}
 
 	public static String findGadgetId(ContentResolver contentResolver,
 			String id, String sortOrder) {
-		String internalId = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id;
-			c = contentResolver.query(GadgetsStore.Gadget.CONTENT_URI,
-					PROJECTION_ID_IID, sSelection, arguments4, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					internalId = c.getString(c
-							.getColumnIndexOrThrow(BaseItem.INTERNAL_ID));
-				}
-			}
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return internalId;
+		return ItemQueries.findInternalId(contentResolver,
+				GadgetsStore.Gadget.CONTENT_URI, id, sortOrder);
 	}
 
 	public static boolean gadgetExists(ContentResolver contentResolver,
 			String id, String sortOrder, IOUtilities.inputTypes type) {
-		boolean exists;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id
-					.replaceFirst("^0+(?!$)", "");
-
-			c = contentResolver.query(GadgetsStore.Gadget.CONTENT_URI,
-					PROJECTION_ID, sSelection, arguments4, sortOrder);
-			exists = c.getCount() > 0;
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return exists;
+		return ItemQueries.exists(contentResolver,
+				GadgetsStore.Gadget.CONTENT_URI, id);
 	}
 
 	public static GadgetsStore.Gadget loadAndAddGadget(
@@ -117,50 +58,51 @@ public class GadgetsManager {
 
 		final GadgetsStore.Gadget gadget = gadgetsStore.findGadget(id,
 				mSavedImportType, context);
-		if (gadget != null) {
-			Bitmap bitmap = null;
-
-			bitmap = Preferences.getBitmapForManager(gadget);
-			GADGET_COVER_WIDTH = Preferences.getWidthForManager();
-			GADGET_COVER_HEIGHT = Preferences.getHeightForManager();
+		if (gadget != null)
+			return addGadget(resolver, gadget);
 
-			if (bitmap != null) {
-				bitmap = ImageUtilities.createCover(bitmap, GADGET_COVER_WIDTH,
-						GADGET_COVER_HEIGHT);
-				ImportUtilities.addCoverToCache(gadget.getInternalId(), bitmap);
-				bitmap.recycle();
-			}
+		return null;
+	}
 
-			// Should kill duplicate item entry bug...
-			Cursor c = null;
-			sArguments1[0] = gadget.getInternalId();
-			c = resolver.query(GadgetsStore.Gadget.CONTENT_URI, null,
-					BaseItem.INTERNAL_ID + "='" + gadget.getInternalId() + "'",
-					null, null);
-			if (c.moveToFirst()) {
-				if (c.getCount() < 1) {
-					final Uri uri = resolver.insert(
-							GadgetsStore.Gadget.CONTENT_URI,
-							gadget.getContentValues());
-					if (uri != null) {
-						if (c != null) {
-							c.close();
-						}
-						return gadget;
-					}
-				}
-			} else {
-				if (c != null) {
-					c.close();
-				}
-				final Uri uri = resolver.insert(
-						GadgetsStore.Gadget.CONTENT_URI,
-						gadget.getContentValues());
-				return gadget;
-			}
+	/**
+	 * Looks up the gadgets with the specified ids, several per request, and
+	 * adds the ones found.
+	 * 
+	 * @return The gadgets added, by id
+	 */
+	public static HashMap<String, GadgetsStore.Gadget> loadAndAddGadgets(
+			ContentResolver resolver, List<String> ids,
+			GadgetsStore gadgetsStore, IOUtilities.inputTypes mSavedImportType,
+			Context context) {
+		final HashMap<String, GadgetsStore.Gadget> found = gadgetsStore
+				.findGadgets(ids, mSavedImportType, context);
+		final HashMap<String, GadgetsStore.Gadget> added = new HashMap<String, GadgetsStore.Gadget>();
+		for (Map.Entry<String, GadgetsStore.Gadget> entry : found.entrySet()) {
+			final GadgetsStore.Gadget gadget = addGadget(resolver,
+					entry.getValue());
+			if (gadget != null)
+				added.put(entry.getKey(), gadget);
 		}
 
-		return null;
+		return added;
+	}
+
+	private static GadgetsStore.Gadget addGadget(ContentResolver resolver,
+			GadgetsStore.Gadget gadget) {
+		GADGET_COVER_WIDTH = Preferences.getWidthForManager();
+		GADGET_COVER_HEIGHT = Preferences.getHeightForManager();
+
+		// Should kill duplicate item entry bug...
+		if (ItemQueries.containsInternalId(resolver,
+				GadgetsStore.Gadget.CONTENT_URI, gadget.getInternalId()))
+			return null;
+
+		if (resolver.insert(GadgetsStore.Gadget.CONTENT_URI,
+				gadget.getContentValues()) == null)
+			return null;
+
+		CoverQueue.get().enqueue(GadgetsStore.Gadget.CONTENT_URI, gadget);
+		return gadget;
 	}
 
 	public static boolean deleteGadget(ContentResolver contentResolver,
@@ -173,10 +115,8 @@ public class GadgetsManager {
 			eventId = gadget.getEventId();
 		}
 
-		final String[] arguments1 = sArguments1;
-		arguments1[0] = gadgetId;
-		int count = contentResolver.delete(GadgetsStore.Gadget.CONTENT_URI,
-				sIdSelection, arguments1);
+		int count = ItemQueries.delete(contentResolver,
+				GadgetsStore.Gadget.CONTENT_URI, gadgetId);
 		ImageUtilities.deleteCachedCover(gadgetId);
 
 		if (eventId > 0) {
@@ -189,20 +129,14 @@ public class GadgetsManager {
 	public static GadgetsStore.Gadget findGadget(
 			ContentResolver contentResolver, String id, String sortOrder) {
 		GadgetsStore.Gadget gadget = null;
-		Cursor c = null;
-
-		try {
-			sArguments1[0] = id;
-			c = contentResolver.query(GadgetsStore.Gadget.CONTENT_URI, null,
-					sIdSelection, sArguments1, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					gadget = GadgetsStore.Gadget.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		final Cursor c = ItemQueries.queryByInternalId(contentResolver,
+				GadgetsStore.Gadget.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				gadget = GadgetsStore.Gadget.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
 		return gadget;
@@ -231,22 +165,14 @@ public class GadgetsManager {
 	public static GadgetsStore.Gadget findGadgetById(
 			ContentResolver contentResolver, String id, String sortOrder) {
 		GadgetsStore.Gadget gadget = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id;
-
-			c = contentResolver.query(GadgetsStore.Gadget.CONTENT_URI, null,
-					sSelection, sArguments4, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					gadget = GadgetsStore.Gadget.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		final Cursor c = ItemQueries.queryById(contentResolver,
+				GadgetsStore.Gadget.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				gadget = GadgetsStore.Gadget.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
 		return gadget;
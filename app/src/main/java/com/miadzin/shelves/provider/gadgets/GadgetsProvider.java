@@ -17,15 +17,12 @@
 package com.miadzin.shelves.provider.gadgets;
 
 import java.util.HashMap;
-import java.util.regex.Pattern;
 
 import android.app.SearchManager;
-import android.content.ContentProvider;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.UriMatcher;
-import android.content.res.Resources;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
@@ -36,24 +33,37 @@ import android.provider.BaseColumns;
 import android.provider.LiveFolders;
 import android.util.Log;
 
-import com.miadzin.shelves.R;
-import com.miadzin.shelves.ShelvesApplication;
 import com.miadzin.shelves.activity.SettingsActivity;
 import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.BaseItemContentProvider;
 import com.miadzin.shelves.util.TextUtilities;
+import com.miadzin.shelves.util.TitleKeys;
 
-public class GadgetsProvider extends ContentProvider {
+public class GadgetsProvider extends BaseItemContentProvider {
 	private static final String LOG_TAG = "GadgetsProvider";
 
 	public static final String DATABASE_NAME = "gadgets.db";
 	// GJT: Version 2.2, changed to "2" to support item loans
 	// GJT: Version 2.2.4, changed to "3" for UPC
-	private static final int DATABASE_VERSION = 5;
+	private static final int DATABASE_VERSION = 14;
+
+	// GJT: Columns of the full text index used by search and filtering
+	private static final String[] SEARCH_COLUMNS = new String[] {
+			BaseItem.TITLE, BaseItem.AUTHORS, BaseItem.LOANED_TO, BaseItem.TAGS,
+			BaseItem.NOTES, BaseItem.FEATURES, BaseItem.CONDITION };
+
+	// GJT: Columns the lists can be sorted on, see createSortKeys()
+	private static final String[] SORT_COLUMNS = new String[] {
+			BaseItem.AUTHORS, BaseItem.RATING };
+	private static final String[] SORT_NUMBER_COLUMNS = new String[] {
+			BaseItem.RETAIL_PRICE };
 
 	private static final int SEARCH = 1;
 	private static final int GADGETS = 2;
 	private static final int GADGET_ID = 3;
 	private static final int LIVE_FOLDER_GADGETS = 4;
+	private static final int TAG_LIST = 5;
+	private static final int STATS = 6;
 
 	private static final String AUTHORITY = "GadgetsProvider";
 
@@ -68,6 +78,8 @@ public class GadgetsProvider extends ContentProvider {
 		URI_MATCHER.addURI(AUTHORITY, "gadgets/#", GADGET_ID);
 		URI_MATCHER.addURI(AUTHORITY, "live_folders/gadgets",
 				LIVE_FOLDER_GADGETS);
+		URI_MATCHER.addURI(AUTHORITY, TAGS_PATH, TAG_LIST);
+		URI_MATCHER.addURI(AUTHORITY, STATS_PATH, STATS);
 	}
 
 	private static final HashMap<String, String> SUGGESTION_PROJECTION_MAP;
@@ -97,9 +109,6 @@ public class GadgetsProvider extends ContentProvider {
 
 	private static SQLiteOpenHelper mOpenHelper;
 
-	private Pattern[] mKeyPrefixes;
-	private Pattern[] mKeySuffixes;
-
 	private static Context dbContext;
 
 	@Override
@@ -110,6 +119,11 @@ public class GadgetsProvider extends ContentProvider {
 		return true;
 	}
 
+	@Override
+	protected SQLiteOpenHelper getOpenHelper() {
+		return mOpenHelper;
+	}
+
 	@Override
 	public Cursor query(Uri uri, String[] projection, String selection,
 			String[] selectionArgs, String sortOrder) {
@@ -127,34 +141,9 @@ public class GadgetsProvider extends ContentProvider {
 		switch (URI_MATCHER.match(uri)) {
 		case SEARCH:
 			qb.setTables("gadgets");
-			String query = uri.getLastPathSegment();
-			if (!TextUtilities.isEmpty(query)) {
-				qb.appendWhere(BaseItem.AUTHORS + " LIKE ");
-				qb.appendWhereEscapeString('%' + query + '%');
-				qb.appendWhere(" OR ");
-				qb.appendWhere(BaseItem.TITLE + " LIKE ");
-				qb.appendWhereEscapeString('%' + query + '%');
-				qb.appendWhere(" OR ");
-				// GJT: Used to enable tag results in suggestions bar
-
-				// The following is to allow for searching tags in any order,
-				// e.g.
-				// danger, fight should return the same results as fight, danger
-				if (query.contains(",")) {
-					String[] tags = query.split(",");
-					for (int i = 0; i < tags.length; i++) {
-						String tag = tags[i].trim();
-
-						qb.appendWhere(BaseItem.TAGS + " LIKE ");
-						qb.appendWhereEscapeString('%' + tag + '%');
-						if (i != tags.length - 1) {
-							qb.appendWhere(" OR ");
-						}
-					}
-				} else {
-					qb.appendWhere(BaseItem.TAGS + " LIKE ");
-					qb.appendWhereEscapeString('%' + query + '%');
-				}
+			String query = getSearchQuery(uri.getLastPathSegment());
+			if (query != null) {
+				appendSearchWhere(qb, "gadgets", query);
 			}
 			qb.setProjectionMap(SUGGESTION_PROJECTION_MAP);
 			break;
@@ -173,13 +162,24 @@ public class GadgetsProvider extends ContentProvider {
 			// by ContentProvider$Transport.bulkQuery(), with "name ASC" as a
 			// forced sort. I'll override it with the actual user pref
 			break;
+		case TAG_LIST:
+			Cursor tags = queryTags(mOpenHelper.getReadableDatabase());
+			tags.setNotificationUri(getContext().getContentResolver(), uri);
+			return tags;
+		case STATS:
+			Cursor stats = queryStats(mOpenHelper.getReadableDatabase(),
+					"gadgets");
+			// GJT: Writes notify the items, so that's what to watch
+			stats.setNotificationUri(getContext().getContentResolver(),
+					GadgetsStore.Gadget.CONTENT_URI);
+			return stats;
 		default:
 			throw new IllegalArgumentException("Unknown URI " + uri);
 		}
 
 		SQLiteDatabase db = mOpenHelper.getReadableDatabase();
 		Cursor c = qb.query(db, projection, selection, selectionArgs, null,
-				null, orderBy);
+				null, getOrderBy(orderBy), getLimit(uri));
 		c.setNotificationUri(getContext().getContentResolver(), uri);
 
 		return c;
@@ -192,6 +192,10 @@ public class GadgetsProvider extends ContentProvider {
 			return "vnd.android.cursor.dir/vnd.com.miadzin.shelves.gadgets";
 		case GADGET_ID:
 			return "vnd.android.cursor.item/vnd.com.miadzin.shelves.gadgets";
+		case TAG_LIST:
+			return "vnd.android.cursor.dir/vnd.com.miadzin.shelves.tags";
+		case STATS:
+			return "vnd.android.cursor.item/vnd.com.miadzin.shelves.stats";
 		default:
 			throw new IllegalArgumentException("Unknown URI " + uri);
 		}
@@ -203,8 +207,7 @@ public class GadgetsProvider extends ContentProvider {
 
 		if (initialValues != null) {
 			values = new ContentValues(initialValues);
-			values.put(BaseItem.SORT_TITLE,
-					keyFor(values.getAsString(BaseItem.TITLE)));
+			putSortKeys(values);
 		} else {
 			values = new ContentValues();
 		}
@@ -214,51 +217,25 @@ public class GadgetsProvider extends ContentProvider {
 		}
 
 		SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-		final long rowId = db.insert("gadgets", BaseItem.TITLE, values);
+		final long rowId = insertItem(db, "gadgets", BaseItem.TITLE, values);
 		if (rowId > 0) {
 			Uri insertUri = ContentUris.withAppendedId(
 					GadgetsStore.Gadget.CONTENT_URI, rowId);
-			getContext().getContentResolver().notifyChange(uri, null);
-			ShelvesApplication.dataChanged();
+			notifyChange(uri);
 			return insertUri;
 		}
 
 		throw new SQLException("Failed to insert row into " + uri);
 	}
 
-	private String keyFor(String name) {
-		if (name == null)
-			name = "";
-
-		name = name.trim().toLowerCase();
-
-		if (mKeyPrefixes == null) {
-			final Resources resources = getContext().getResources();
-			final String[] keyPrefixes = resources
-					.getStringArray(R.array.prefixes);
-			final int count = keyPrefixes.length;
-
-			mKeyPrefixes = new Pattern[count];
-			for (int i = 0; i < count; i++) {
-				mKeyPrefixes[i] = Pattern
-						.compile("^" + keyPrefixes[i] + "\\s+");
-			}
-		}
-
-		if (mKeySuffixes == null) {
-			final Resources resources = getContext().getResources();
-			final String[] keySuffixes = resources
-					.getStringArray(R.array.suffixes);
-			final int count = keySuffixes.length;
-
-			mKeySuffixes = new Pattern[count];
-			for (int i = 0; i < count; i++) {
-				mKeySuffixes[i] = Pattern
-						.compile("\\s*" + keySuffixes[i] + "$");
-			}
-		}
+	@Override
+	protected String keyFor(String name) {
+		return TitleKeys.get(getContext()).keyFor(name);
+	}
 
-		return TextUtilities.keyFor(mKeyPrefixes, mKeySuffixes, name);
+	@Override
+	protected String[] getSortNumberColumns() {
+		return SORT_NUMBER_COLUMNS;
 	}
 
 	@Override
@@ -282,8 +259,7 @@ public class GadgetsProvider extends ContentProvider {
 			throw new IllegalArgumentException("Unknown URI " + uri);
 		}
 
-		getContext().getContentResolver().notifyChange(uri, null);
-		ShelvesApplication.dataChanged();
+		notifyChange(uri);
 
 		return count;
 	}
@@ -300,23 +276,35 @@ public class GadgetsProvider extends ContentProvider {
 		int count = 0;
 		SQLiteDatabase db = mOpenHelper.getWritableDatabase();
 
+		// GJT: Keep the sort keys in step with the columns they come from
+		if (values != null) {
+			values = new ContentValues(values);
+			putSortKeys(values);
+		}
+
 		switch (URI_MATCHER.match(uri)) {
 		case GADGETS:
-			count = db.update("gadgets", values, selection, selectionArgs);
+			count = updateItems(db, "gadgets", values, selection,
+					selectionArgs);
 			break;
 		case GADGET_ID:
-			count = db.update("gadgets", values,
+			count = updateItems(db, "gadgets", values,
 					BaseItem._ID
 							+ " = "
 							+ uri.getPathSegments().get(1)
 							+ (!TextUtilities.isEmpty(selection) ? " AND ("
 									+ selection + ')' : ""), selectionArgs);
 			break;
+		case TAG_LIST:
+			count = addTags(db, "gadgets", values.getAsString(BaseItem.TAGS),
+					selection, selectionArgs);
+			// GJT: Observers watch the items, not the tags
+			uri = GadgetsStore.Gadget.CONTENT_URI;
+			break;
 		default:
 			throw new IllegalArgumentException("Unknown URI " + uri);
 		}
-		getContext().getContentResolver().notifyChange(uri, null);
-		ShelvesApplication.dataChanged();
+		notifyChange(uri);
 		return count;
 	}
 
@@ -347,13 +335,19 @@ public class GadgetsProvider extends ContentProvider {
 					+ " TEXT, " + BaseItem.EVENT_ID + " INTEGER, "
 					+ BaseItem.NOTES + " TEXT, " + BaseItem.UPC + " TEXT, "
 					+ BaseItem.WISHLIST_DATE + " TEXT, " + BaseItem.QUANTITY
-					+ " TEXT);");
+					+ " TEXT, " + BaseItem.ETAG + " TEXT, "
+					+ BaseItem.LAST_CHECKED + " INTEGER, "
+					+ BaseItem.IDENTIFIER_KEY + " INTEGER);");
 
 			// GJT: Was this here for sorting?
 			db.execSQL("CREATE INDEX gadgetIndexTitle ON gadgets("
 					+ BaseItem.SORT_TITLE + ");");
-			db.execSQL("CREATE INDEX gadgetIndexDirectors ON gadgets("
-					+ BaseItem.AUTHORS + ");");
+
+			createSearchIndex(db, "gadgets", SEARCH_COLUMNS);
+			createTagTables(db, "gadgets");
+			createStatusIndexes(db, "gadgets");
+			createIdentifierIndex(db, "gadgets");
+			createSortKeys(db, "gadgets", SORT_COLUMNS, SORT_NUMBER_COLUMNS);
 		}
 
 		@Override
@@ -380,6 +374,31 @@ public class GadgetsProvider extends ContentProvider {
 			case 4:
 				db.execSQL("ALTER TABLE gadgets ADD COLUMN "
 						+ BaseItem.QUANTITY + " TEXT");
+			case 5:
+				createSearchIndex(db, "gadgets", SEARCH_COLUMNS);
+			case 6:
+				createTagTables(db, "gadgets");
+			case 7:
+				db.execSQL("ALTER TABLE gadgets ADD COLUMN " + BaseItem.ETAG
+						+ " TEXT");
+			case 8:
+				db.execSQL("ALTER TABLE gadgets ADD COLUMN "
+						+ BaseItem.LAST_CHECKED + " INTEGER");
+			case 9:
+				createStatusIndexes(db, "gadgets");
+			case 10:
+				db.execSQL("ALTER TABLE gadgets ADD COLUMN "
+						+ BaseItem.IDENTIFIER_KEY + " INTEGER");
+				createIdentifierIndex(db, "gadgets");
+			case 11:
+				// GJT: Replaced by the one without regard to case
+				db.execSQL("DROP INDEX IF EXISTS gadgetIndexDirectors");
+				createSortKeys(db, "gadgets", SORT_COLUMNS,
+						SORT_NUMBER_COLUMNS);
+			case 12:
+				writeSortTitles(db, "gadgets", TitleKeys.get(dbContext));
+			case 13:
+				createInternalIdIndex(db, "gadgets");
 				break;
 			default:
 				break;
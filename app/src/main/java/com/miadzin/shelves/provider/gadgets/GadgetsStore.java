@@ -119,6 +119,7 @@ public class GadgetsStore extends ServerInfo {
 				expiring = mLoader.load(url);
 			}
 			mLastModified = expiring.lastModified;
+			mETag = expiring.etag;
 
 			return expiring.bitmap;
 		}
@@ -138,6 +139,9 @@ public class GadgetsStore extends ServerInfo {
 			if (mLastModified != null) {
 				values.put(LAST_MODIFIED, mLastModified.getTimeInMillis());
 			}
+			if (mETag != null) {
+				values.put(ETAG, mETag);
+			}
 			values.put(DETAILS_URL, TextUtilities.protectString(mDetailsUrl));
 			final int density = Preferences.getDPI();
 
@@ -201,6 +205,7 @@ public class GadgetsStore extends ServerInfo {
 			calendar.setTimeInMillis(c.getLong(c
 					.getColumnIndexOrThrow(LAST_MODIFIED)));
 			gadget.mLastModified = calendar;
+			gadget.mETag = c.getString(c.getColumnIndexOrThrow(ETAG));
 			try {
 				Collections.addAll(gadget.mTags,
 						c.getString(c.getColumnIndexOrThrow(TAGS)).split(", "));
@@ -373,6 +378,31 @@ public class GadgetsStore extends ServerInfo {
 		}
 	}
 
+	/**
+	 * Finds the gadgets with the specified ids, several per request.
+	 * 
+	 * @param ids
+	 *            The ids of the gadgets to find (EAN, UPC, etc.)
+	 * 
+	 * @return The gadgets found, by id; the ids not found are missing.
+	 */
+	public HashMap<String, Gadget> findGadgets(List<String> ids,
+			final IOUtilities.inputTypes mSavedImportType, Context context) {
+		return findItems(ids, mSavedImportType, context,
+				VALUE_SEARCHINDEX_GADGETS, RESPONSE_TAG_EAN,
+				new ItemParser<Gadget>() {
+					public Gadget createItem() {
+						return createGadget();
+					}
+
+					public boolean parseItem(XmlPullParser parser,
+							Gadget gadget) throws XmlPullParserException,
+							IOException {
+						return parseGadget(parser, gadget);
+					}
+				});
+	}
+
 	private Gadget findGadgetLookup(HttpGet get, final Gadget gadget,
 			final inputTypes mSavedImportType, String id) {
 		final boolean[] result = new boolean[1];
@@ -16,17 +16,20 @@
 
 package com.miadzin.shelves.provider.movies;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
-import android.graphics.Bitmap;
 import android.net.Uri;
 
-import com.miadzin.shelves.base.BaseItem;
 import com.miadzin.shelves.provider.movies.MoviesStore.Movie;
+import com.miadzin.shelves.util.CoverQueue;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.ImageUtilities;
-import com.miadzin.shelves.util.ImportUtilities;
+import com.miadzin.shelves.util.ItemQueries;
 import com.miadzin.shelves.util.Preferences;
 import com.miadzin.shelves.util.loan.Calendars;
 
@@ -34,82 +37,21 @@ public class MoviesManager {
 	static int MOVIE_COVER_WIDTH;
 	static int MOVIE_COVER_HEIGHT;
 
-	private static String sIdSelection;
-	private static String sSelection;
-
-	private static String[] sArguments1 = new String[1];
-	private static String[] sArguments4 = new String[4];
-
-	private static final String[] PROJECTION_ID_IID = new String[] {
-			BaseItem._ID, BaseItem.INTERNAL_ID };
-
-	protected static final String[] PROJECTION_ID = new String[] { BaseItem._ID };
-
 	private static final String LOG_TAG = "MoviesManager";
-	static {
-		StringBuilder selection = new StringBuilder();
-		selection.append(BaseItem.INTERNAL_ID);
-		selection.append(" LIKE ?");
-		sIdSelection = selection.toString();
-
-		selection = new StringBuilder();
-		selection.append(sIdSelection);
-		selection.append(" OR ");
-		selection.append(BaseItem.EAN);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.UPC);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.ISBN);
-		selection.append(" LIKE ?");
-		sSelection = selection.toString();
-	}
 
 	private MoviesManager() {
 	}
 
 	public static String findMovieId(ContentResolver contentResolver,
 			String id, String sortOrder) {
-		String internalId = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id;
-			c = contentResolver.query(MoviesStore.Movie.CONTENT_URI,
-					PROJECTION_ID_IID, sSelection, arguments4, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					internalId = c.getString(c
-							.getColumnIndexOrThrow(BaseItem.INTERNAL_ID));
-				}
-			}
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return internalId;
+		return ItemQueries.findInternalId(contentResolver,
+				MoviesStore.Movie.CONTENT_URI, id, sortOrder);
 	}
 
 	public static boolean movieExists(ContentResolver contentResolver,
 			String id, String sortOrder, IOUtilities.inputTypes type) {
-		boolean exists;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id
-					.replaceFirst("^0+(?!$)", "");
-
-			c = contentResolver.query(MoviesStore.Movie.CONTENT_URI,
-					PROJECTION_ID, sSelection, arguments4, sortOrder);
-			exists = c.getCount() > 0;
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return exists;
+		return ItemQueries.exists(contentResolver,
+				MoviesStore.Movie.CONTENT_URI, id);
 	}
 
 	public static MoviesStore.Movie loadAndAddMovie(ContentResolver resolver,
@@ -118,49 +60,50 @@ public class MoviesManager {
 
 		final MoviesStore.Movie movie = moviesStore.findMovie(id,
 				mSavedImportType, context);
-		if (movie != null) {
-			Bitmap bitmap = null;
-
-			bitmap = Preferences.getBitmapForManager(movie);
-			MOVIE_COVER_WIDTH = Preferences.getWidthForManager();
-			MOVIE_COVER_HEIGHT = Preferences.getHeightForManager();
+		if (movie != null)
+			return addMovie(resolver, movie);
 
-			if (bitmap != null) {
-				bitmap = ImageUtilities.createCover(bitmap, MOVIE_COVER_WIDTH,
-						MOVIE_COVER_HEIGHT);
-				ImportUtilities.addCoverToCache(movie.getInternalId(), bitmap);
-				bitmap.recycle();
-			}
+		return null;
+	}
 
-			// Should kill duplicate item entry bug...
-			Cursor c = null;
-			sArguments1[0] = movie.getInternalId();
-			c = resolver.query(MoviesStore.Movie.CONTENT_URI, null,
-					BaseItem.INTERNAL_ID + "='" + movie.getInternalId() + "'",
-					null, null);
-			if (c.moveToFirst()) {
-				if (c.getCount() < 1) {
-					final Uri uri = resolver.insert(
-							MoviesStore.Movie.CONTENT_URI,
-							movie.getContentValues());
-					if (uri != null) {
-						if (c != null) {
-							c.close();
-						}
-						return movie;
-					}
-				}
-			} else {
-				if (c != null) {
-					c.close();
-				}
-				final Uri uri = resolver.insert(MoviesStore.Movie.CONTENT_URI,
-						movie.getContentValues());
-				return movie;
-			}
+	/**
+	 * Looks up the movies with the specified ids, several per request, and
+	 * adds the ones found.
+	 * 
+	 * @return The movies added, by id
+	 */
+	public static HashMap<String, MoviesStore.Movie> loadAndAddMovies(
+			ContentResolver resolver, List<String> ids, MoviesStore moviesStore,
+			IOUtilities.inputTypes mSavedImportType, Context context) {
+		final HashMap<String, MoviesStore.Movie> found = moviesStore.findMovies(
+				ids, mSavedImportType, context);
+		final HashMap<String, MoviesStore.Movie> added = new HashMap<String, MoviesStore.Movie>();
+		for (Map.Entry<String, MoviesStore.Movie> entry : found.entrySet()) {
+			final MoviesStore.Movie movie = addMovie(resolver,
+					entry.getValue());
+			if (movie != null)
+				added.put(entry.getKey(), movie);
 		}
 
-		return null;
+		return added;
+	}
+
+	private static MoviesStore.Movie addMovie(ContentResolver resolver,
+			MoviesStore.Movie movie) {
+		MOVIE_COVER_WIDTH = Preferences.getWidthForManager();
+		MOVIE_COVER_HEIGHT = Preferences.getHeightForManager();
+
+		// Should kill duplicate item entry bug...
+		if (ItemQueries.containsInternalId(resolver,
+				MoviesStore.Movie.CONTENT_URI, movie.getInternalId()))
+			return null;
+
+		if (resolver.insert(MoviesStore.Movie.CONTENT_URI,
+				movie.getContentValues()) == null)
+			return null;
+
+		CoverQueue.get().enqueue(MoviesStore.Movie.CONTENT_URI, movie);
+		return movie;
 	}
 
 	public static boolean deleteMovie(ContentResolver contentResolver,
@@ -172,10 +115,8 @@ public class MoviesManager {
 			eventId = movie.getEventId();
 		}
 
-		final String[] arguments1 = sArguments1;
-		arguments1[0] = movieId;
-		int count = contentResolver.delete(MoviesStore.Movie.CONTENT_URI,
-				sIdSelection, arguments1);
+		int count = ItemQueries.delete(contentResolver,
+				MoviesStore.Movie.CONTENT_URI, movieId);
 		ImageUtilities.deleteCachedCover(movieId);
 
 		if (eventId > 0) {
@@ -188,20 +129,14 @@ public class MoviesManager {
 	public static MoviesStore.Movie findMovie(ContentResolver contentResolver,
 			String id, String sortOrder) {
 		MoviesStore.Movie movie = null;
-		Cursor c = null;
-
-		try {
-			sArguments1[0] = id;
-			c = contentResolver.query(MoviesStore.Movie.CONTENT_URI, null,
-					sIdSelection, sArguments1, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					movie = MoviesStore.Movie.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		final Cursor c = ItemQueries.queryByInternalId(contentResolver,
+				MoviesStore.Movie.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				movie = MoviesStore.Movie.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
 		return movie;
@@ -230,22 +165,14 @@ public class MoviesManager {
 	public static MoviesStore.Movie findMovieById(
 			ContentResolver contentResolver, String id, String sortOrder) {
 		MoviesStore.Movie movie = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id;
-
-			c = contentResolver.query(MoviesStore.Movie.CONTENT_URI, null,
-					sSelection, sArguments4, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					movie = MoviesStore.Movie.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		final Cursor c = ItemQueries.queryById(contentResolver,
+				MoviesStore.Movie.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				movie = MoviesStore.Movie.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
 		return movie;
@@ -145,6 +145,7 @@ public class MoviesStore extends ServerInfo {
 				expiring = mLoader.load(url);
 			}
 			mLastModified = expiring.lastModified;
+			mETag = expiring.etag;
 
 			return expiring.bitmap;
 		}
@@ -166,6 +167,9 @@ public class MoviesStore extends ServerInfo {
 			if (mLastModified != null) {
 				values.put(LAST_MODIFIED, mLastModified.getTimeInMillis());
 			}
+			if (mETag != null) {
+				values.put(ETAG, mETag);
+			}
 			values.put(RELEASE_DATE,
 					mReleaseDate != null ? format.format(mReleaseDate) : "");
 			values.put(THEATRICAL_DEBUT,
@@ -245,6 +249,7 @@ public class MoviesStore extends ServerInfo {
 			calendar.setTimeInMillis(c.getLong(c
 					.getColumnIndexOrThrow(LAST_MODIFIED)));
 			movie.mLastModified = calendar;
+			movie.mETag = c.getString(c.getColumnIndexOrThrow(ETAG));
 			try {
 				Collections.addAll(movie.mTags,
 						c.getString(c.getColumnIndexOrThrow(TAGS)).split(", "));
@@ -452,6 +457,30 @@ public class MoviesStore extends ServerInfo {
 		}
 	}
 
+	/**
+	 * Finds the movies with the specified ids, several per request.
+	 * 
+	 * @param ids
+	 *            The ids of the movies to find (EAN, UPC, etc.)
+	 * 
+	 * @return The movies found, by id; the ids not found are missing.
+	 */
+	public HashMap<String, Movie> findMovies(List<String> ids,
+			final IOUtilities.inputTypes mSavedImportType, Context context) {
+		return findItems(ids, mSavedImportType, context,
+				VALUE_SEARCHINDEX_MOVIES, RESPONSE_TAG_EAN,
+				new ItemParser<Movie>() {
+					public Movie createItem() {
+						return createMovie();
+					}
+
+					public boolean parseItem(XmlPullParser parser, Movie movie)
+							throws XmlPullParserException, IOException {
+						return parseMovie(parser, movie);
+					}
+				});
+	}
+
 	private Movie findMovieLookup(HttpGet get, final Movie movie,
 			final inputTypes mSavedImportType, String id) {
 		final boolean[] result = new boolean[1];
@@ -16,17 +16,20 @@
 
 package com.miadzin.shelves.provider.music;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
-import android.graphics.Bitmap;
 import android.net.Uri;
 
-import com.miadzin.shelves.base.BaseItem;
 import com.miadzin.shelves.provider.music.MusicStore.Music;
+import com.miadzin.shelves.util.CoverQueue;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.ImageUtilities;
-import com.miadzin.shelves.util.ImportUtilities;
+import com.miadzin.shelves.util.ItemQueries;
 import com.miadzin.shelves.util.Preferences;
 import com.miadzin.shelves.util.loan.Calendars;
 
@@ -34,81 +37,19 @@ public class MusicManager {
 	static int MUSIC_COVER_WIDTH;
 	static int MUSIC_COVER_HEIGHT;
 
-	private static String sIdSelection;
-	private static String sSelection;
-
-	private static String[] sArguments1 = new String[1];
-	private static String[] sArguments4 = new String[4];
-
-	private static final String[] PROJECTION_ID_IID = new String[] {
-			BaseItem._ID, BaseItem.INTERNAL_ID };
-
-	private static final String[] PROJECTION_ID = new String[] { BaseItem._ID };
-
-	static {
-		StringBuilder selection = new StringBuilder();
-		selection.append(BaseItem.INTERNAL_ID);
-		selection.append(" LIKE ?");
-		sIdSelection = selection.toString();
-
-		selection = new StringBuilder();
-		selection.append(sIdSelection);
-		selection.append(" OR ");
-		selection.append(BaseItem.EAN);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.UPC);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.ISBN);
-		selection.append(" LIKE ?");
-		sSelection = selection.toString();
-	}
-
 	private MusicManager() {
 	}
 
 	public static String findMusicId(ContentResolver contentResolver,
 			String id, String sortOrder) {
-		String internalId = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id;
-			c = contentResolver.query(MusicStore.Music.CONTENT_URI,
-					PROJECTION_ID_IID, sSelection, arguments4, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					internalId = c.getString(c
-							.getColumnIndexOrThrow(BaseItem.INTERNAL_ID));
-				}
-			}
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return internalId;
+		return ItemQueries.findInternalId(contentResolver,
+				MusicStore.Music.CONTENT_URI, id, sortOrder);
 	}
 
 	public static boolean musicExists(ContentResolver contentResolver,
 			String id, String sortOrder, IOUtilities.inputTypes type) {
-		boolean exists;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id
-					.replaceFirst("^0+(?!$)", "");
-
-			c = contentResolver.query(MusicStore.Music.CONTENT_URI,
-					PROJECTION_ID, sSelection, arguments4, sortOrder);
-			exists = c.getCount() > 0;
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return exists;
+		return ItemQueries.exists(contentResolver,
+				MusicStore.Music.CONTENT_URI, id);
 	}
 
 	public static MusicStore.Music loadAndAddMusic(ContentResolver resolver,
@@ -117,49 +58,49 @@ public class MusicManager {
 
 		final MusicStore.Music music = musicStore.findMusic(id,
 				mSavedImportType, context);
-		if (music != null) {
-			Bitmap bitmap = null;
-
-			bitmap = Preferences.getBitmapForManager(music);
-			MUSIC_COVER_WIDTH = Preferences.getWidthForManager();
-			MUSIC_COVER_HEIGHT = Preferences.getHeightForManager();
+		if (music != null)
+			return addMusic(resolver, music);
 
-			if (bitmap != null) {
-				bitmap = ImageUtilities.createCover(bitmap, MUSIC_COVER_WIDTH,
-						MUSIC_COVER_HEIGHT);
-				ImportUtilities.addCoverToCache(music.getInternalId(), bitmap);
-				bitmap.recycle();
-			}
+		return null;
+	}
 
-			// Should kill duplicate item entry bug...
-			Cursor c = null;
-			sArguments1[0] = music.getInternalId();
-			c = resolver.query(MusicStore.Music.CONTENT_URI, null,
-					BaseItem.INTERNAL_ID + "='" + music.getInternalId() + "'",
-					null, null);
-			if (c.moveToFirst()) {
-				if (c.getCount() < 1) {
-					final Uri uri = resolver.insert(
-							MusicStore.Music.CONTENT_URI,
-							music.getContentValues());
-					if (uri != null) {
-						if (c != null) {
-							c.close();
-						}
-						return music;
-					}
-				}
-			} else {
-				if (c != null) {
-					c.close();
-				}
-				final Uri uri = resolver.insert(MusicStore.Music.CONTENT_URI,
-						music.getContentValues());
-				return music;
-			}
+	/**
+	 * Looks up the music with the specified ids, several per request, and
+	 * adds the ones found.
+	 * 
+	 * @return The music added, by id
+	 */
+	public static HashMap<String, MusicStore.Music> loadAndAddMusic(
+			ContentResolver resolver, List<String> ids, MusicStore musicStore,
+			IOUtilities.inputTypes mSavedImportType, Context context) {
+		final HashMap<String, MusicStore.Music> found = musicStore.findMusic(
+				ids, mSavedImportType, context);
+		final HashMap<String, MusicStore.Music> added = new HashMap<String, MusicStore.Music>();
+		for (Map.Entry<String, MusicStore.Music> entry : found.entrySet()) {
+			final MusicStore.Music music = addMusic(resolver, entry.getValue());
+			if (music != null)
+				added.put(entry.getKey(), music);
 		}
 
-		return null;
+		return added;
+	}
+
+	private static MusicStore.Music addMusic(ContentResolver resolver,
+			MusicStore.Music music) {
+		MUSIC_COVER_WIDTH = Preferences.getWidthForManager();
+		MUSIC_COVER_HEIGHT = Preferences.getHeightForManager();
+
+		// Should kill duplicate item entry bug...
+		if (ItemQueries.containsInternalId(resolver,
+				MusicStore.Music.CONTENT_URI, music.getInternalId()))
+			return null;
+
+		if (resolver.insert(MusicStore.Music.CONTENT_URI,
+				music.getContentValues()) == null)
+			return null;
+
+		CoverQueue.get().enqueue(MusicStore.Music.CONTENT_URI, music);
+		return music;
 	}
 
 	public static boolean deleteMusic(ContentResolver contentResolver,
@@ -171,10 +112,8 @@ public class MusicManager {
 			eventId = music.getEventId();
 		}
 
-		final String[] arguments1 = sArguments1;
-		arguments1[0] = musicId;
-		int count = contentResolver.delete(MusicStore.Music.CONTENT_URI,
-				sIdSelection, arguments1);
+		int count = ItemQueries.delete(contentResolver,
+				MusicStore.Music.CONTENT_URI, musicId);
 		ImageUtilities.deleteCachedCover(musicId);
 
 		if (eventId > 0) {
@@ -187,20 +126,14 @@ public class MusicManager {
 	public static MusicStore.Music findMusic(ContentResolver contentResolver,
 			String id, String sortOrder) {
 		MusicStore.Music music = null;
-		Cursor c = null;
-
-		try {
-			sArguments1[0] = id;
-			c = contentResolver.query(MusicStore.Music.CONTENT_URI, null,
-					sIdSelection, sArguments1, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					music = MusicStore.Music.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		final Cursor c = ItemQueries.queryByInternalId(contentResolver,
+				MusicStore.Music.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				music = MusicStore.Music.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
 		return music;
@@ -229,22 +162,14 @@ public class MusicManager {
 	public static MusicStore.Music findMusicById(
 			ContentResolver contentResolver, String id, String sortOrder) {
 		MusicStore.Music music = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id;
-
-			c = contentResolver.query(MusicStore.Music.CONTENT_URI, null,
-					sSelection, sArguments4, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					music = MusicStore.Music.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		final Cursor c = ItemQueries.queryById(contentResolver,
+				MusicStore.Music.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				music = MusicStore.Music.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
 		return music;
@@ -122,6 +122,7 @@ public class MusicStore extends ServerInfo {
 				expiring = mLoader.load(url);
 			}
 			mLastModified = expiring.lastModified;
+			mETag = expiring.etag;
 
 			return expiring.bitmap;
 		}
@@ -141,6 +142,9 @@ public class MusicStore extends ServerInfo {
 			if (mLastModified != null) {
 				values.put(LAST_MODIFIED, mLastModified.getTimeInMillis());
 			}
+			if (mETag != null) {
+				values.put(ETAG, mETag);
+			}
 			values.put(RELEASE_DATE,
 					mReleaseDate != null ? format.format(mReleaseDate) : "");
 			values.put(DETAILS_URL, TextUtilities.protectString(mDetailsUrl));
@@ -210,6 +214,7 @@ public class MusicStore extends ServerInfo {
 			calendar.setTimeInMillis(c.getLong(c
 					.getColumnIndexOrThrow(LAST_MODIFIED)));
 			music.mLastModified = calendar;
+			music.mETag = c.getString(c.getColumnIndexOrThrow(ETAG));
 			try {
 				Collections.addAll(music.mTags,
 						c.getString(c.getColumnIndexOrThrow(TAGS)).split(", "));
@@ -407,6 +412,30 @@ public class MusicStore extends ServerInfo {
 		}
 	}
 
+	/**
+	 * Finds the music with the specified ids, several per request.
+	 * 
+	 * @param ids
+	 *            The ids of the music to find (EAN, UPC, etc.)
+	 * 
+	 * @return The music found, by id; the ids not found are missing.
+	 */
+	public HashMap<String, Music> findMusic(List<String> ids,
+			final IOUtilities.inputTypes mSavedImportType, Context context) {
+		return findItems(ids, mSavedImportType, context,
+				VALUE_SEARCHINDEX_MUSIC, RESPONSE_TAG_EAN,
+				new ItemParser<Music>() {
+					public Music createItem() {
+						return createMusic();
+					}
+
+					public boolean parseItem(XmlPullParser parser, Music music)
+							throws XmlPullParserException, IOException {
+						return parseMusic(parser, music);
+					}
+				});
+	}
+
 	private Music findMusicLookup(HttpGet get, final Music music,
 			final inputTypes mSavedImportType, String id) {
 		final boolean[] result = new boolean[1];
@@ -16,17 +16,20 @@
 
 package com.miadzin.shelves.provider.software;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
-import android.graphics.Bitmap;
 import android.net.Uri;
 
-import com.miadzin.shelves.base.BaseItem;
 import com.miadzin.shelves.provider.software.SoftwareStore.Software;
+import com.miadzin.shelves.util.CoverQueue;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.ImageUtilities;
-import com.miadzin.shelves.util.ImportUtilities;
+import com.miadzin.shelves.util.ItemQueries;
 import com.miadzin.shelves.util.Preferences;
 import com.miadzin.shelves.util.loan.Calendars;
 
@@ -34,81 +37,19 @@ public class SoftwareManager {
 	static int SOFTWARE_COVER_WIDTH;
 	static int SOFTWARE_COVER_HEIGHT;
 
-	private static String sIdSelection;
-	private static String sSelection;
-
-	private static String[] sArguments1 = new String[1];
-	private static String[] sArguments4 = new String[4];
-
-	private static final String[] PROJECTION_ID_IID = new String[] {
-			BaseItem._ID, BaseItem.INTERNAL_ID };
-
-	private static final String[] PROJECTION_ID = new String[] { BaseItem._ID };
-
-	static {
-		StringBuilder selection = new StringBuilder();
-		selection.append(BaseItem.INTERNAL_ID);
-		selection.append(" LIKE ?");
-		sIdSelection = selection.toString();
-
-		selection = new StringBuilder();
-		selection.append(sIdSelection);
-		selection.append(" OR ");
-		selection.append(BaseItem.EAN);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.UPC);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.ISBN);
-		selection.append(" LIKE ?");
-		sSelection = selection.toString();
-	}
-
 	private SoftwareManager() {
 	}
 
 	public static String findSoftwareId(ContentResolver contentResolver,
 			String id, String sortOrder) {
-		String internalId = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id;
-			c = contentResolver.query(SoftwareStore.Software.CONTENT_URI,
-					PROJECTION_ID_IID, sSelection, arguments4, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					internalId = c.getString(c
-							.getColumnIndexOrThrow(BaseItem.INTERNAL_ID));
-				}
-			}
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return internalId;
+		return ItemQueries.findInternalId(contentResolver,
+				SoftwareStore.Software.CONTENT_URI, id, sortOrder);
 	}
 
 	public static boolean softwareExists(ContentResolver contentResolver,
 			String id, String sortOrder, IOUtilities.inputTypes type) {
-		boolean exists;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id
-					.replaceFirst("^0+(?!$)", "");
-
-			c = contentResolver.query(SoftwareStore.Software.CONTENT_URI,
-					PROJECTION_ID, sSelection, arguments4, sortOrder);
-			exists = c.getCount() > 0;
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return exists;
+		return ItemQueries.exists(contentResolver,
+				SoftwareStore.Software.CONTENT_URI, id);
 	}
 
 	public static SoftwareStore.Software loadAndAddSoftware(
@@ -117,51 +58,53 @@ public class SoftwareManager {
 
 		final SoftwareStore.Software software = softwareStore.findSoftware(id,
 				mSavedImportType, context);
-		if (software != null) {
-			Bitmap bitmap = null;
-
-			bitmap = Preferences.getBitmapForManager(software);
-			SOFTWARE_COVER_WIDTH = Preferences.getWidthForManager();
-			SOFTWARE_COVER_HEIGHT = Preferences.getHeightForManager();
-
-			if (bitmap != null) {
-				bitmap = ImageUtilities.createCover(bitmap,
-						SOFTWARE_COVER_WIDTH, SOFTWARE_COVER_HEIGHT);
-				ImportUtilities.addCoverToCache(software.getInternalId(),
-						bitmap);
-				bitmap.recycle();
-			}
+		if (software != null)
+			return addSoftware(resolver, software);
 
-			// Should kill duplicate item entry bug...
-			Cursor c = null;
-			sArguments1[0] = software.getInternalId();
-			c = resolver.query(SoftwareStore.Software.CONTENT_URI, null,
-					BaseItem.INTERNAL_ID + "='" + software.getInternalId()
-							+ "'", null, null);
-			if (c.moveToFirst()) {
-				if (c.getCount() < 1) {
-					final Uri uri = resolver.insert(
-							SoftwareStore.Software.CONTENT_URI,
-							software.getContentValues());
-					if (uri != null) {
-						if (c != null) {
-							c.close();
-						}
-						return software;
-					}
-				}
-			} else {
-				if (c != null) {
-					c.close();
-				}
-				final Uri uri = resolver.insert(
-						SoftwareStore.Software.CONTENT_URI,
-						software.getContentValues());
-				return software;
-			}
+		return null;
+	}
+
+	/**
+	 * Looks up the software with the specified ids, several per request, and
+	 * adds the ones found.
+	 * 
+	 * @return The software added, by id
+	 */
+	public static HashMap<String, SoftwareStore.Software> loadAndAddSoftware(
+			ContentResolver resolver, List<String> ids,
+			SoftwareStore softwareStore,
+			IOUtilities.inputTypes mSavedImportType, Context context) {
+		final HashMap<String, SoftwareStore.Software> found = softwareStore
+				.findSoftware(ids, mSavedImportType, context);
+		final HashMap<String, SoftwareStore.Software> added = new HashMap<String, SoftwareStore.Software>();
+		for (Map.Entry<String, SoftwareStore.Software> entry : found
+				.entrySet()) {
+			final SoftwareStore.Software software = addSoftware(resolver,
+					entry.getValue());
+			if (software != null)
+				added.put(entry.getKey(), software);
 		}
 
-		return null;
+		return added;
+	}
+
+	private static SoftwareStore.Software addSoftware(
+			ContentResolver resolver, SoftwareStore.Software software) {
+		SOFTWARE_COVER_WIDTH = Preferences.getWidthForManager();
+		SOFTWARE_COVER_HEIGHT = Preferences.getHeightForManager();
+
+		// Should kill duplicate item entry bug...
+		if (ItemQueries.containsInternalId(resolver,
+				SoftwareStore.Software.CONTENT_URI, software.getInternalId()))
+			return null;
+
+		if (resolver.insert(SoftwareStore.Software.CONTENT_URI,
+				software.getContentValues()) == null)
+			return null;
+
+		CoverQueue.get().enqueue(SoftwareStore.Software.CONTENT_URI,
+				software);
+		return software;
 	}
 
 	public static boolean deleteSoftware(ContentResolver contentResolver,
@@ -174,10 +117,8 @@ public class SoftwareManager {
 			eventId = software.getEventId();
 		}
 
-		final String[] arguments1 = sArguments1;
-		arguments1[0] = softwareId;
-		int count = contentResolver.delete(SoftwareStore.Software.CONTENT_URI,
-				sIdSelection, arguments1);
+		int count = ItemQueries.delete(contentResolver,
+				SoftwareStore.Software.CONTENT_URI, softwareId);
 		ImageUtilities.deleteCachedCover(softwareId);
 
 		if (eventId > 0) {
@@ -190,20 +131,14 @@ public class SoftwareManager {
 	public static SoftwareStore.Software findSoftware(
 			ContentResolver contentResolver, String id, String sortOrder) {
 		SoftwareStore.Software software = null;
-		Cursor c = null;
-
-		try {
-			sArguments1[0] = id;
-			c = contentResolver.query(SoftwareStore.Software.CONTENT_URI, null,
-					sIdSelection, sArguments1, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					software = SoftwareStore.Software.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		final Cursor c = ItemQueries.queryByInternalId(contentResolver,
+				SoftwareStore.Software.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				software = SoftwareStore.Software.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
 		return software;
@@ -232,22 +167,14 @@ public class SoftwareManager {
 	public static SoftwareStore.Software findSoftwareById(
 			ContentResolver contentResolver, String id, String sortOrder) {
 		SoftwareStore.Software software = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id;
-
-			c = contentResolver.query(SoftwareStore.Software.CONTENT_URI, null,
-					sSelection, sArguments4, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					software = SoftwareStore.Software.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		final Cursor c = ItemQueries.queryById(contentResolver,
+				SoftwareStore.Software.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				software = SoftwareStore.Software.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
 		return software;
@@ -125,6 +125,7 @@ public class SoftwareStore extends ServerInfo {
 				expiring = mLoader.load(url);
 			}
 			mLastModified = expiring.lastModified;
+			mETag = expiring.etag;
 
 			return expiring.bitmap;
 		}
@@ -145,6 +146,9 @@ public class SoftwareStore extends ServerInfo {
 			if (mLastModified != null) {
 				values.put(LAST_MODIFIED, mLastModified.getTimeInMillis());
 			}
+			if (mETag != null) {
+				values.put(ETAG, mETag);
+			}
 			values.put(RELEASE_DATE,
 					mReleaseDate != null ? format.format(mReleaseDate) : "");
 			values.put(DETAILS_URL, TextUtilities.protectString(mDetailsUrl));
@@ -212,6 +216,7 @@ public class SoftwareStore extends ServerInfo {
 			calendar.setTimeInMillis(c.getLong(c
 					.getColumnIndexOrThrow(LAST_MODIFIED)));
 			software.mLastModified = calendar;
+			software.mETag = c.getString(c.getColumnIndexOrThrow(ETAG));
 			try {
 				Collections.addAll(software.mTags,
 						c.getString(c.getColumnIndexOrThrow(TAGS)).split(", "));
@@ -383,6 +388,31 @@ public class SoftwareStore extends ServerInfo {
 		}
 	}
 
+	/**
+	 * Finds the software with the specified ids, several per request.
+	 * 
+	 * @param ids
+	 *            The ids of the software to find (EAN, UPC, etc.)
+	 * 
+	 * @return The software found, by id; the ids not found are missing.
+	 */
+	public HashMap<String, Software> findSoftware(List<String> ids,
+			final IOUtilities.inputTypes mSavedImportType, Context context) {
+		return findItems(ids, mSavedImportType, context,
+				VALUE_SEARCHINDEX_SOFTWARE, RESPONSE_TAG_EAN,
+				new ItemParser<Software>() {
+					public Software createItem() {
+						return createSoftware();
+					}
+
+					public boolean parseItem(XmlPullParser parser,
+							Software software) throws XmlPullParserException,
+							IOException {
+						return parseSoftware(parser, software);
+					}
+				});
+	}
+
 	private Software findSoftwareLookup(HttpGet get, final Software software,
 			final inputTypes mSavedImportType, String id) {
 		final boolean[] result = new boolean[1];
@@ -16,17 +16,20 @@
 
 package com.miadzin.shelves.provider.tools;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
-import android.graphics.Bitmap;
 import android.net.Uri;
 
-import com.miadzin.shelves.base.BaseItem;
 import com.miadzin.shelves.provider.tools.ToolsStore.Tool;
+import com.miadzin.shelves.util.CoverQueue;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.ImageUtilities;
-import com.miadzin.shelves.util.ImportUtilities;
+import com.miadzin.shelves.util.ItemQueries;
 import com.miadzin.shelves.util.Preferences;
 import com.miadzin.shelves.util.loan.Calendars;
 
@@ -34,81 +37,19 @@ public class ToolsManager {
 	static int TOOL_COVER_WIDTH;
 	static int TOOL_COVER_HEIGHT;
 
-	private static String sIdSelection;
-	private static String sSelection;
-
-	private static String[] sArguments1 = new String[1];
-	private static String[] sArguments4 = new String[4];
-
-	private static final String[] PROJECTION_ID_IID = new String[] {
-			BaseItem._ID, BaseItem.INTERNAL_ID };
-
-	private static final String[] PROJECTION_ID = new String[] { BaseItem._ID };
-
-	static {
-		StringBuilder selection = new StringBuilder();
-		selection.append(BaseItem.INTERNAL_ID);
-		selection.append(" LIKE ?");
-		sIdSelection = selection.toString();
-
-		selection = new StringBuilder();
-		selection.append(sIdSelection);
-		selection.append(" OR ");
-		selection.append(BaseItem.EAN);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.UPC);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.ISBN);
-		selection.append(" LIKE ?");
-		sSelection = selection.toString();
-	}
-
 	private ToolsManager() {
 	}
 
 	public static String findToolId(ContentResolver contentResolver, String id,
 			String sortOrder) {
-		String internalId = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id;
-			c = contentResolver.query(ToolsStore.Tool.CONTENT_URI,
-					PROJECTION_ID_IID, sSelection, arguments4, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					internalId = c.getString(c
-							.getColumnIndexOrThrow(BaseItem.INTERNAL_ID));
-				}
-			}
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return internalId;
+		return ItemQueries.findInternalId(contentResolver,
+				ToolsStore.Tool.CONTENT_URI, id, sortOrder);
 	}
 
 	public static boolean toolExists(ContentResolver contentResolver,
 			String id, String sortOrder, IOUtilities.inputTypes type) {
-		boolean exists;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id
-					.replaceFirst("^0+(?!$)", "");
-
-			c = contentResolver.query(ToolsStore.Tool.CONTENT_URI,
-					PROJECTION_ID, sSelection, arguments4, sortOrder);
-			exists = c.getCount() > 0;
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return exists;
+		return ItemQueries.exists(contentResolver,
+				ToolsStore.Tool.CONTENT_URI, id);
 	}
 
 	public static ToolsStore.Tool loadAndAddTool(ContentResolver resolver,
@@ -117,49 +58,49 @@ public class ToolsManager {
 
 		final ToolsStore.Tool tool = toolsStore.findTool(id, mSavedImportType,
 				context);
-		if (tool != null) {
-			Bitmap bitmap = null;
+		if (tool != null)
+			return addTool(resolver, tool);
 
-			bitmap = Preferences.getBitmapForManager(tool);
-			TOOL_COVER_WIDTH = Preferences.getWidthForManager();
-			TOOL_COVER_HEIGHT = Preferences.getHeightForManager();
-
-			if (bitmap != null) {
-				bitmap = ImageUtilities.createCover(bitmap, TOOL_COVER_WIDTH,
-						TOOL_COVER_HEIGHT);
-				ImportUtilities.addCoverToCache(tool.getInternalId(), bitmap);
-				bitmap.recycle();
-			}
+		return null;
+	}
 
-			// Should kill duplicate item entry bug...
-			Cursor c = null;
-			sArguments1[0] = tool.getInternalId();
-			c = resolver.query(ToolsStore.Tool.CONTENT_URI, null,
-					BaseItem.INTERNAL_ID + "='" + tool.getInternalId() + "'",
-					null, null);
-			if (c.moveToFirst()) {
-				if (c.getCount() < 1) {
-					final Uri uri = resolver.insert(
-							ToolsStore.Tool.CONTENT_URI,
-							tool.getContentValues());
-					if (uri != null) {
-						if (c != null) {
-							c.close();
-						}
-						return tool;
-					}
-				}
-			} else {
-				if (c != null) {
-					c.close();
-				}
-				final Uri uri = resolver.insert(ToolsStore.Tool.CONTENT_URI,
-						tool.getContentValues());
-				return tool;
-			}
+	/**
+	 * Looks up the tools with the specified ids, several per request, and
+	 * adds the ones found.
+	 * 
+	 * @return The tools added, by id
+	 */
+	public static HashMap<String, ToolsStore.Tool> loadAndAddTools(
+			ContentResolver resolver, List<String> ids, ToolsStore toolsStore,
+			IOUtilities.inputTypes mSavedImportType, Context context) {
+		final HashMap<String, ToolsStore.Tool> found = toolsStore.findTools(ids,
+				mSavedImportType, context);
+		final HashMap<String, ToolsStore.Tool> added = new HashMap<String, ToolsStore.Tool>();
+		for (Map.Entry<String, ToolsStore.Tool> entry : found.entrySet()) {
+			final ToolsStore.Tool tool = addTool(resolver, entry.getValue());
+			if (tool != null)
+				added.put(entry.getKey(), tool);
 		}
 
-		return null;
+		return added;
+	}
+
+	private static ToolsStore.Tool addTool(ContentResolver resolver,
+			ToolsStore.Tool tool) {
+		TOOL_COVER_WIDTH = Preferences.getWidthForManager();
+		TOOL_COVER_HEIGHT = Preferences.getHeightForManager();
+
+		// Should kill duplicate item entry bug...
+		if (ItemQueries.containsInternalId(resolver,
+				ToolsStore.Tool.CONTENT_URI, tool.getInternalId()))
+			return null;
+
+		if (resolver.insert(ToolsStore.Tool.CONTENT_URI,
+				tool.getContentValues()) == null)
+			return null;
+
+		CoverQueue.get().enqueue(ToolsStore.Tool.CONTENT_URI, tool);
+		return tool;
 	}
 
 	public static boolean deleteTool(ContentResolver contentResolver,
@@ -171,10 +112,8 @@ public class ToolsManager {
 			eventId = tool.getEventId();
 		}
 
-		final String[] arguments1 = sArguments1;
-		arguments1[0] = toolId;
-		int count = contentResolver.delete(ToolsStore.Tool.CONTENT_URI,
-				sIdSelection, arguments1);
+		int count = ItemQueries.delete(contentResolver,
+				ToolsStore.Tool.CONTENT_URI, toolId);
 		ImageUtilities.deleteCachedCover(toolId);
 
 		if (eventId > 0) {
@@ -187,20 +126,14 @@ public class ToolsManager {
 	public static ToolsStore.Tool findTool(ContentResolver contentResolver,
 			String id, String sortOrder) {
 		ToolsStore.Tool tool = null;
-		Cursor c = null;
-
-		try {
-			sArguments1[0] = id;
-			c = contentResolver.query(ToolsStore.Tool.CONTENT_URI, null,
-					sIdSelection, sArguments1, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					tool = ToolsStore.Tool.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		final Cursor c = ItemQueries.queryByInternalId(contentResolver,
+				ToolsStore.Tool.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				tool = ToolsStore.Tool.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
 		return tool;
@@ -228,25 +161,17 @@ public class ToolsManager {
 
 	public static ToolsStore.Tool findToolById(ContentResolver contentResolver,
 			String id, String sortOrder) {
-		ToolsStore.Tool Tool = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id;
-
-			c = contentResolver.query(ToolsStore.Tool.CONTENT_URI, null,
-					sSelection, sArguments4, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					Tool = ToolsStore.Tool.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		ToolsStore.Tool tool = null;
+		final Cursor c = ItemQueries.queryById(contentResolver,
+				ToolsStore.Tool.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				tool = ToolsStore.Tool.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
-		return Tool;
+		return tool;
 	}
 }
@@ -119,6 +119,7 @@ public class ToolsStore extends ServerInfo {
 				expiring = mLoader.load(url);
 			}
 			mLastModified = expiring.lastModified;
+			mETag = expiring.etag;
 
 			return expiring.bitmap;
 		}
@@ -138,6 +139,9 @@ public class ToolsStore extends ServerInfo {
 			if (mLastModified != null) {
 				values.put(LAST_MODIFIED, mLastModified.getTimeInMillis());
 			}
+			if (mETag != null) {
+				values.put(ETAG, mETag);
+			}
 			values.put(DETAILS_URL, TextUtilities.protectString(mDetailsUrl));
 			final int density = Preferences.getDPI();
 
@@ -201,6 +205,7 @@ public class ToolsStore extends ServerInfo {
 			calendar.setTimeInMillis(c.getLong(c
 					.getColumnIndexOrThrow(LAST_MODIFIED)));
 			tool.mLastModified = calendar;
+			tool.mETag = c.getString(c.getColumnIndexOrThrow(ETAG));
 			try {
 				Collections.addAll(tool.mTags,
 						c.getString(c.getColumnIndexOrThrow(TAGS)).split(", "));
@@ -373,6 +378,30 @@ public class ToolsStore extends ServerInfo {
 		}
 	}
 
+	/**
+	 * Finds the tools with the specified ids, several per request.
+	 * 
+	 * @param ids
+	 *            The ids of the tools to find (EAN, UPC, etc.)
+	 * 
+	 * @return The tools found, by id; the ids not found are missing.
+	 */
+	public HashMap<String, Tool> findTools(List<String> ids,
+			final IOUtilities.inputTypes mSavedImportType, Context context) {
+		return findItems(ids, mSavedImportType, context,
+				VALUE_SEARCHINDEX_TOOLS, RESPONSE_TAG_EAN,
+				new ItemParser<Tool>() {
+					public Tool createItem() {
+						return createTool();
+					}
+
+					public boolean parseItem(XmlPullParser parser, Tool tool)
+							throws XmlPullParserException, IOException {
+						return parseTool(parser, tool);
+					}
+				});
+	}
+
 	private Tool findToolLookup(HttpGet get, final Tool tool,
 			final inputTypes mSavedImportType, String id) {
 		final boolean[] result = new boolean[1];
@@ -16,17 +16,20 @@
 
 package com.miadzin.shelves.provider.toys;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
-import android.graphics.Bitmap;
 import android.net.Uri;
 
-import com.miadzin.shelves.base.BaseItem;
 import com.miadzin.shelves.provider.toys.ToysStore.Toy;
+import com.miadzin.shelves.util.CoverQueue;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.ImageUtilities;
-import com.miadzin.shelves.util.ImportUtilities;
+import com.miadzin.shelves.util.ItemQueries;
 import com.miadzin.shelves.util.Preferences;
 import com.miadzin.shelves.util.loan.Calendars;
 
@@ -34,81 +37,19 @@ public class ToysManager {
 	static int TOY_COVER_WIDTH;
 	static int TOY_COVER_HEIGHT;
 
-	private static String sIdSelection;
-	private static String sSelection;
-
-	private static String[] sArguments1 = new String[1];
-	private static String[] sArguments4 = new String[4];
-
-	private static final String[] PROJECTION_ID_IID = new String[] {
-			BaseItem._ID, BaseItem.INTERNAL_ID };
-
-	private static final String[] PROJECTION_ID = new String[] { BaseItem._ID };
-
-	static {
-		StringBuilder selection = new StringBuilder();
-		selection.append(BaseItem.INTERNAL_ID);
-		selection.append(" LIKE ?");
-		sIdSelection = selection.toString();
-
-		selection = new StringBuilder();
-		selection.append(sIdSelection);
-		selection.append(" OR ");
-		selection.append(BaseItem.EAN);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.UPC);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.ISBN);
-		selection.append(" LIKE ?");
-		sSelection = selection.toString();
-	}
-
 	private ToysManager() {
 	}
 
 	public static String findToyId(ContentResolver contentResolver, String id,
 			String sortOrder) {
-		String internalId = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id;
-			c = contentResolver.query(ToysStore.Toy.CONTENT_URI,
-					PROJECTION_ID_IID, sSelection, arguments4, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					internalId = c.getString(c
-							.getColumnIndexOrThrow(BaseItem.INTERNAL_ID));
-				}
-			}
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return internalId;
+		return ItemQueries.findInternalId(contentResolver,
+				ToysStore.Toy.CONTENT_URI, id, sortOrder);
 	}
 
 	public static boolean toyExists(ContentResolver contentResolver, String id,
 			String sortOrder, IOUtilities.inputTypes type) {
-		boolean exists;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id
-					.replaceFirst("^0+(?!$)", "");
-
-			c = contentResolver.query(ToysStore.Toy.CONTENT_URI, PROJECTION_ID,
-					sSelection, arguments4, sortOrder);
-			exists = c.getCount() > 0;
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return exists;
+		return ItemQueries.exists(contentResolver,
+				ToysStore.Toy.CONTENT_URI, id);
 	}
 
 	public static ToysStore.Toy loadAndAddToy(ContentResolver resolver,
@@ -117,48 +58,49 @@ public class ToysManager {
 
 		final ToysStore.Toy toy = toysStore.findToy(id, mSavedImportType,
 				context);
-		if (toy != null) {
-			Bitmap bitmap = null;
-
-			bitmap = Preferences.getBitmapForManager(toy);
-			TOY_COVER_WIDTH = Preferences.getWidthForManager();
-			TOY_COVER_HEIGHT = Preferences.getHeightForManager();
+		if (toy != null)
+			return addToy(resolver, toy);
 
-			if (bitmap != null) {
-				bitmap = ImageUtilities.createCover(bitmap, TOY_COVER_WIDTH,
-						TOY_COVER_HEIGHT);
-				ImportUtilities.addCoverToCache(toy.getInternalId(), bitmap);
-				bitmap.recycle();
-			}
+		return null;
+	}
 
-			// Should kill duplicate item entry bug...
-			Cursor c = null;
-			sArguments1[0] = toy.getInternalId();
-			c = resolver.query(ToysStore.Toy.CONTENT_URI, null,
-					BaseItem.INTERNAL_ID + "='" + toy.getInternalId() + "'",
-					null, null);
-			if (c.moveToFirst()) {
-				if (c.getCount() < 1) {
-					final Uri uri = resolver.insert(ToysStore.Toy.CONTENT_URI,
-							toy.getContentValues());
-					if (uri != null) {
-						if (c != null) {
-							c.close();
-						}
-						return toy;
-					}
-				}
-			} else {
-				if (c != null) {
-					c.close();
-				}
-				final Uri uri = resolver.insert(ToysStore.Toy.CONTENT_URI,
-						toy.getContentValues());
-				return toy;
-			}
+	/**
+	 * Looks up the toys with the specified ids, several per request, and
+	 * adds the ones found.
+	 * 
+	 * @return The toys added, by id
+	 */
+	public static HashMap<String, ToysStore.Toy> loadAndAddToys(
+			ContentResolver resolver, List<String> ids, ToysStore toysStore,
+			IOUtilities.inputTypes mSavedImportType, Context context) {
+		final HashMap<String, ToysStore.Toy> found = toysStore.findToys(ids,
+				mSavedImportType, context);
+		final HashMap<String, ToysStore.Toy> added = new HashMap<String, ToysStore.Toy>();
+		for (Map.Entry<String, ToysStore.Toy> entry : found.entrySet()) {
+			final ToysStore.Toy toy = addToy(resolver, entry.getValue());
+			if (toy != null)
+				added.put(entry.getKey(), toy);
 		}
 
-		return null;
+		return added;
+	}
+
+	private static ToysStore.Toy addToy(ContentResolver resolver,
+			ToysStore.Toy toy) {
+		TOY_COVER_WIDTH = Preferences.getWidthForManager();
+		TOY_COVER_HEIGHT = Preferences.getHeightForManager();
+
+		// Should kill duplicate item entry bug...
+		if (ItemQueries.containsInternalId(resolver,
+				ToysStore.Toy.CONTENT_URI, toy.getInternalId()))
+			return null;
+
+		if (resolver.insert(ToysStore.Toy.CONTENT_URI,
+				toy.getContentValues()) == null)
+			return null;
+
+		CoverQueue.get().enqueue(ToysStore.Toy.CONTENT_URI, toy);
+		return toy;
 	}
 
 	public static boolean deleteToy(ContentResolver contentResolver,
@@ -170,10 +112,8 @@ public class ToysManager {
 			eventId = toy.getEventId();
 		}
 
-		final String[] arguments1 = sArguments1;
-		arguments1[0] = toyId;
-		int count = contentResolver.delete(ToysStore.Toy.CONTENT_URI,
-				sIdSelection, arguments1);
+		int count = ItemQueries.delete(contentResolver,
+				ToysStore.Toy.CONTENT_URI, toyId);
 		ImageUtilities.deleteCachedCover(toyId);
 
 		if (eventId > 0) {
@@ -186,20 +126,14 @@ public class ToysManager {
 	public static ToysStore.Toy findToy(ContentResolver contentResolver,
 			String id, String sortOrder) {
 		ToysStore.Toy toy = null;
-		Cursor c = null;
-
-		try {
-			sArguments1[0] = id;
-			c = contentResolver.query(ToysStore.Toy.CONTENT_URI, null,
-					sIdSelection, sArguments1, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					toy = ToysStore.Toy.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		final Cursor c = ItemQueries.queryByInternalId(contentResolver,
+				ToysStore.Toy.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				toy = ToysStore.Toy.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
 		return toy;
@@ -228,22 +162,14 @@ public class ToysManager {
 	public static ToysStore.Toy findToyById(ContentResolver contentResolver,
 			String id, String sortOrder) {
 		ToysStore.Toy toy = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments4 = sArguments4;
-			arguments4[0] = arguments4[1] = arguments4[2] = arguments4[3] = id;
-
-			c = contentResolver.query(ToysStore.Toy.CONTENT_URI, null,
-					sSelection, sArguments4, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					toy = ToysStore.Toy.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		final Cursor c = ItemQueries.queryById(contentResolver,
+				ToysStore.Toy.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				toy = ToysStore.Toy.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
 		return toy;
@@ -119,6 +119,7 @@ public class ToysStore extends ServerInfo {
 				expiring = mLoader.load(url);
 			}
 			mLastModified = expiring.lastModified;
+			mETag = expiring.etag;
 
 			return expiring.bitmap;
 		}
@@ -137,6 +138,9 @@ public class ToysStore extends ServerInfo {
 			if (mLastModified != null) {
 				values.put(LAST_MODIFIED, mLastModified.getTimeInMillis());
 			}
+			if (mETag != null) {
+				values.put(ETAG, mETag);
+			}
 			values.put(RELEASE_DATE,
 					mReleaseDate != null ? format.format(mReleaseDate) : "");
 			values.put(DETAILS_URL, TextUtilities.protectString(mDetailsUrl));
@@ -200,6 +204,7 @@ public class ToysStore extends ServerInfo {
 			calendar.setTimeInMillis(c.getLong(c
 					.getColumnIndexOrThrow(LAST_MODIFIED)));
 			toy.mLastModified = calendar;
+			toy.mETag = c.getString(c.getColumnIndexOrThrow(ETAG));
 			try {
 				Collections.addAll(toy.mTags,
 						c.getString(c.getColumnIndexOrThrow(TAGS)).split(", "));
@@ -373,6 +378,30 @@ public class ToysStore extends ServerInfo {
 		}
 	}
 
+	/**
+	 * Finds the toys with the specified ids, several per request.
+	 * 
+	 * @param ids
+	 *            The ids of the toys to find (EAN, UPC, etc.)
+	 * 
+	 * @return The toys found, by id; the ids not found are missing.
+	 */
+	public HashMap<String, Toy> findToys(List<String> ids,
+			final IOUtilities.inputTypes mSavedImportType, Context context) {
+		return findItems(ids, mSavedImportType, context,
+				VALUE_SEARCHINDEX_TOYS, RESPONSE_TAG_EAN,
+				new ItemParser<Toy>() {
+					public Toy createItem() {
+						return createToy();
+					}
+
+					public boolean parseItem(XmlPullParser parser, Toy toy)
+							throws XmlPullParserException, IOException {
+						return parseToy(parser, toy);
+					}
+				});
+	}
+
 	private Toy findToyLookup(HttpGet get, final Toy toy,
 			final inputTypes mSavedImportType, String id) {
 		final boolean[] result = new boolean[1];
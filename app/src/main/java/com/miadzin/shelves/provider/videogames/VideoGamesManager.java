@@ -16,17 +16,20 @@
 
 package com.miadzin.shelves.provider.videogames;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
-import android.graphics.Bitmap;
 import android.net.Uri;
 
-import com.miadzin.shelves.base.BaseItem;
 import com.miadzin.shelves.provider.videogames.VideoGamesStore.VideoGame;
+import com.miadzin.shelves.util.CoverQueue;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.ImageUtilities;
-import com.miadzin.shelves.util.ImportUtilities;
+import com.miadzin.shelves.util.ItemQueries;
 import com.miadzin.shelves.util.Preferences;
 import com.miadzin.shelves.util.loan.Calendars;
 
@@ -35,79 +38,19 @@ public class VideoGamesManager {
 	static int VIDEOGAME_COVER_WIDTH;
 	static int VIDEOGAME_COVER_HEIGHT;
 
-	private static String sIdSelection;
-	private static String sSelection;
-
-	private static String[] sArguments1 = new String[1];
-	private static String[] sArguments3 = new String[3];
-
-	private static final String[] PROJECTION_ID_IID = new String[] {
-			BaseItem._ID, BaseItem.INTERNAL_ID };
-
-	private static final String[] PROJECTION_ID = new String[] { BaseItem._ID };
-
-	static {
-		StringBuilder selection = new StringBuilder();
-		selection.append(BaseItem.INTERNAL_ID);
-		selection.append(" LIKE ?");
-		sIdSelection = selection.toString();
-
-		selection = new StringBuilder();
-		selection.append(sIdSelection);
-		selection.append(" OR ");
-		selection.append(BaseItem.EAN);
-		selection.append(" LIKE ? OR ");
-		selection.append(BaseItem.UPC);
-		selection.append(" LIKE ?");
-		sSelection = selection.toString();
-	}
-
 	private VideoGamesManager() {
 	}
 
 	public static String findVideoGameId(ContentResolver contentResolver,
 			String id, String sortOrder) {
-		String internalId = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments3 = sArguments3;
-			arguments3[0] = arguments3[1] = arguments3[2] = id;
-			c = contentResolver.query(VideoGamesStore.VideoGame.CONTENT_URI,
-					PROJECTION_ID_IID, sSelection, arguments3, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					internalId = c.getString(c
-							.getColumnIndexOrThrow(BaseItem.INTERNAL_ID));
-				}
-			}
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return internalId;
+		return ItemQueries.findInternalId(contentResolver,
+				VideoGamesStore.VideoGame.CONTENT_URI, id, sortOrder);
 	}
 
 	public static boolean videogameExists(ContentResolver contentResolver,
 			String id, String sortOrder, IOUtilities.inputTypes type) {
-		boolean exists;
-		Cursor c = null;
-
-		try {
-			final String[] arguments3 = sArguments3;
-			arguments3[0] = arguments3[1] = arguments3[2] = id.replaceFirst(
-					"^0+(?!$)", "");
-
-			c = contentResolver.query(VideoGamesStore.VideoGame.CONTENT_URI,
-					PROJECTION_ID, sSelection, arguments3, sortOrder);
-			exists = c.getCount() > 0;
-		} finally {
-			if (c != null)
-				c.close();
-		}
-
-		return exists;
+		return ItemQueries.exists(contentResolver,
+				VideoGamesStore.VideoGame.CONTENT_URI, id);
 	}
 
 	public static VideoGamesStore.VideoGame loadAndAddVideoGame(
@@ -117,51 +60,54 @@ public class VideoGamesManager {
 
 		final VideoGamesStore.VideoGame videogame = videogamesStore
 				.findVideoGame(id, mSavedImportType, context);
-		if (videogame != null) {
-			Bitmap bitmap = null;
+		if (videogame != null)
+			return addVideoGame(resolver, videogame);
 
-			bitmap = Preferences.getBitmapForManager(videogame);
-			VIDEOGAME_COVER_WIDTH = Preferences.getWidthForManager();
-			VIDEOGAME_COVER_HEIGHT = Preferences.getHeightForManager();
-
-			if (bitmap != null) {
-				bitmap = ImageUtilities.createCover(bitmap,
-						VIDEOGAME_COVER_WIDTH, VIDEOGAME_COVER_HEIGHT);
-				ImportUtilities.addCoverToCache(videogame.getInternalId(),
-						bitmap);
-				bitmap.recycle();
-			}
+		return null;
+	}
 
-			// Should kill duplicate item entry bug...
-			Cursor c = null;
-			sArguments1[0] = videogame.getInternalId();
-			c = resolver.query(VideoGamesStore.VideoGame.CONTENT_URI, null,
-					BaseItem.INTERNAL_ID + "='" + videogame.getInternalId()
-							+ "'", null, null);
-			if (c.moveToFirst()) {
-				if (c.getCount() < 1) {
-					final Uri uri = resolver.insert(
-							VideoGamesStore.VideoGame.CONTENT_URI,
-							videogame.getContentValues());
-					if (uri != null) {
-						if (c != null) {
-							c.close();
-						}
-						return videogame;
-					}
-				}
-			} else {
-				if (c != null) {
-					c.close();
-				}
-				final Uri uri = resolver.insert(
-						VideoGamesStore.VideoGame.CONTENT_URI,
-						videogame.getContentValues());
-				return videogame;
-			}
+	/**
+	 * Looks up the video games with the specified ids, several per request, and
+	 * adds the ones found.
+	 * 
+	 * @return The video games added, by id
+	 */
+	public static HashMap<String, VideoGamesStore.VideoGame> loadAndAddVideoGames(
+			ContentResolver resolver, List<String> ids,
+			VideoGamesStore videogamesStore,
+			IOUtilities.inputTypes mSavedImportType, Context context) {
+		final HashMap<String, VideoGamesStore.VideoGame> found = videogamesStore
+				.findVideoGames(ids, mSavedImportType, context);
+		final HashMap<String, VideoGamesStore.VideoGame> added = new HashMap<String, VideoGamesStore.VideoGame>();
+		for (Map.Entry<String, VideoGamesStore.VideoGame> entry : found
+				.entrySet()) {
+			final VideoGamesStore.VideoGame videogame = addVideoGame(resolver,
+					entry.getValue());
+			if (videogame != null)
+				added.put(entry.getKey(), videogame);
 		}
 
-		return null;
+		return added;
+	}
+
+	private static VideoGamesStore.VideoGame addVideoGame(
+			ContentResolver resolver, VideoGamesStore.VideoGame videogame) {
+		VIDEOGAME_COVER_WIDTH = Preferences.getWidthForManager();
+		VIDEOGAME_COVER_HEIGHT = Preferences.getHeightForManager();
+
+		// Should kill duplicate item entry bug...
+		if (ItemQueries.containsInternalId(resolver,
+				VideoGamesStore.VideoGame.CONTENT_URI,
+				videogame.getInternalId()))
+			return null;
+
+		if (resolver.insert(VideoGamesStore.VideoGame.CONTENT_URI,
+				videogame.getContentValues()) == null)
+			return null;
+
+		CoverQueue.get().enqueue(VideoGamesStore.VideoGame.CONTENT_URI,
+				videogame);
+		return videogame;
 	}
 
 	public static boolean deleteVideoGame(ContentResolver contentResolver,
@@ -174,11 +120,8 @@ public class VideoGamesManager {
 			eventId = videogame.getEventId();
 		}
 
-		final String[] arguments1 = sArguments1;
-		arguments1[0] = videogameId;
-		int count = contentResolver
-				.delete(VideoGamesStore.VideoGame.CONTENT_URI, sIdSelection,
-						arguments1);
+		int count = ItemQueries.delete(contentResolver,
+				VideoGamesStore.VideoGame.CONTENT_URI, videogameId);
 		ImageUtilities.deleteCachedCover(videogameId);
 
 		if (eventId > 0) {
@@ -191,20 +134,14 @@ public class VideoGamesManager {
 	public static VideoGamesStore.VideoGame findVideoGame(
 			ContentResolver contentResolver, String id, String sortOrder) {
 		VideoGamesStore.VideoGame videogame = null;
-		Cursor c = null;
-
-		try {
-			sArguments1[0] = id;
-			c = contentResolver.query(VideoGamesStore.VideoGame.CONTENT_URI,
-					null, sIdSelection, sArguments1, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					videogame = VideoGamesStore.VideoGame.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		final Cursor c = ItemQueries.queryByInternalId(contentResolver,
+				VideoGamesStore.VideoGame.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				videogame = VideoGamesStore.VideoGame.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
 		return videogame;
@@ -233,22 +170,14 @@ public class VideoGamesManager {
 	public static VideoGamesStore.VideoGame findVideoGameById(
 			ContentResolver contentResolver, String id, String sortOrder) {
 		VideoGamesStore.VideoGame videogame = null;
-		Cursor c = null;
-
-		try {
-			final String[] arguments3 = sArguments3;
-			arguments3[0] = arguments3[1] = arguments3[2] = id;
-
-			c = contentResolver.query(VideoGamesStore.VideoGame.CONTENT_URI,
-					null, sSelection, sArguments3, sortOrder);
-			if (c.getCount() > 0) {
-				if (c.moveToFirst()) {
-					videogame = VideoGamesStore.VideoGame.fromCursor(c);
-				}
-			}
-		} finally {
-			if (c != null)
+		final Cursor c = ItemQueries.queryById(contentResolver,
+				VideoGamesStore.VideoGame.CONTENT_URI, id, sortOrder);
+		if (c != null) {
+			try {
+				videogame = VideoGamesStore.VideoGame.fromCursor(c);
+			} finally {
 				c.close();
+			}
 		}
 
 		return videogame;
@@ -129,6 +129,7 @@ public class VideoGamesStore extends ServerInfo {
 				expiring = mLoader.load(url);
 			}
 			mLastModified = expiring.lastModified;
+			mETag = expiring.etag;
 
 			return expiring.bitmap;
 		}
@@ -147,6 +148,9 @@ public class VideoGamesStore extends ServerInfo {
 			if (mLastModified != null) {
 				values.put(LAST_MODIFIED, mLastModified.getTimeInMillis());
 			}
+			if (mETag != null) {
+				values.put(ETAG, mETag);
+			}
 			values.put(RELEASE_DATE,
 					mReleaseDate != null ? format.format(mReleaseDate) : "");
 			values.put(DETAILS_URL, TextUtilities.protectString(mDetailsUrl));
@@ -213,6 +217,7 @@ public class VideoGamesStore extends ServerInfo {
 			calendar.setTimeInMillis(c.getLong(c
 					.getColumnIndexOrThrow(LAST_MODIFIED)));
 			videogame.mLastModified = calendar;
+			videogame.mETag = c.getString(c.getColumnIndexOrThrow(ETAG));
 			try {
 				Collections.addAll(videogame.mTags,
 						c.getString(c.getColumnIndexOrThrow(TAGS)).split(", "));
@@ -404,6 +409,31 @@ public class VideoGamesStore extends ServerInfo {
 		}
 	}
 
+	/**
+	 * Finds the video games with the specified ids, several per request.
+	 * 
+	 * @param ids
+	 *            The ids of the video games to find (EAN, UPC, etc.)
+	 * 
+	 * @return The video games found, by id; the ids not found are missing.
+	 */
+	public HashMap<String, VideoGame> findVideoGames(List<String> ids,
+			final IOUtilities.inputTypes mSavedImportType, Context context) {
+		return findItems(ids, mSavedImportType, context,
+				VALUE_SEARCHINDEX_VIDEOGAMES, RESPONSE_TAG_EAN,
+				new ItemParser<VideoGame>() {
+					public VideoGame createItem() {
+						return createVideoGame();
+					}
+
+					public boolean parseItem(XmlPullParser parser,
+							VideoGame videogame) throws XmlPullParserException,
+							IOException {
+						return parseVideoGame(parser, videogame);
+					}
+				});
+	}
+
 	private VideoGame findVideoGameLookup(HttpGet get,
 			final VideoGame videogame, final inputTypes mSavedImportType,
 			String id) {
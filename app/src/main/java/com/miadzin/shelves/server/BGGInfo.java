@@ -16,17 +16,13 @@
 
 package com.miadzin.shelves.server;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 
-import org.apache.http.Header;
-import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
@@ -34,9 +30,9 @@ import android.util.Xml;
 
 import com.miadzin.shelves.provider.books.BooksStore;
 import com.miadzin.shelves.util.CookieStore;
-import com.miadzin.shelves.util.HttpManager;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.ImageUtilities;
+import com.miadzin.shelves.util.ResponseCache;
 import com.miadzin.shelves.util.IOUtilities.inputTypes;
 import com.miadzin.shelves.util.ImageUtilities.ExpiringBitmap;
 
@@ -94,8 +90,9 @@ public class BGGInfo {
 	}
 
 	/**
-	 * Executes an HTTP request on a REST web service. If the response is ok,
-	 * the content is sent to the specified response handler.
+	 * Executes an HTTP request on a REST web service, or reads its response
+	 * from the {@link ResponseCache}. If the response is ok, the content is
+	 * sent to the specified response handler.
 	 * 
 	 * @param host
 	 * @param get
@@ -108,37 +105,22 @@ public class BGGInfo {
 	protected void executeRequest(HttpHost host, HttpGet get,
 			ResponseHandler handler) throws IOException {
 
-		HttpEntity entity = null;
-		try {
-			final HttpResponse response = HttpManager.execute(host, get);
-			int statusCode = response.getStatusLine().getStatusCode();
+		final String key = ResponseCache.getKey(host, get);
+		final boolean search = get.getURI().getPath().startsWith(REST_SEARCH_URL);
+		final long maxAge = search ? ResponseCache.SEARCH_MAX_AGE
+				: ResponseCache.LOOKUP_MAX_AGE;
 
-			if (statusCode == HttpStatus.SC_MOVED_TEMPORARILY
-					|| statusCode == HttpStatus.SC_SEE_OTHER) {
-				Header header = response.getFirstHeader("Location");
-				if (header != null) {
-					String redirectURI = header.getValue();
-					if ((redirectURI != null) && (!redirectURI.equals(""))) {
-						android.util.Log.e(LOG_TAG, "Redirect target: "
-								+ redirectURI);
-						DefaultHttpClient httpclient = new DefaultHttpClient();
-						get = new HttpGet(redirectURI);
-						entity = httpclient.execute(get).getEntity();
-						final InputStream in = entity.getContent();
-						handler.handleResponse(in);
-					}
-				} else {
-					android.util.Log.e(LOG_TAG, "Invalid redirect");
-				}
-			} else if (statusCode == HttpStatus.SC_OK) {
-				entity = response.getEntity();
-				final InputStream in = entity.getContent();
-				handler.handleResponse(in);
-			}
-		} finally {
-			if (entity != null) {
-				entity.consumeContent();
-			}
+		final byte[] response = ResponseCache.get().execute(host, get, key,
+				maxAge);
+		if (response == null)
+			return;
+
+		try {
+			handler.handleResponse(new ByteArrayInputStream(response));
+		} catch (IOException e) {
+			// GJT: Don't serve a response we can't read again
+			ResponseCache.get().remove(key);
+			throw e;
 		}
 	}
 
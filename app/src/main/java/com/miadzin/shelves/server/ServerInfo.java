@@ -16,19 +16,18 @@
 
 package com.miadzin.shelves.server;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.apache.http.Header;
-import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
@@ -39,12 +38,14 @@ import android.view.InflateException;
 
 import com.miadzin.shelves.BuildConfig;
 import com.miadzin.shelves.activity.SettingsActivity;
+import com.miadzin.shelves.base.BaseItem;
 import com.miadzin.shelves.provider.books.BooksStore;
 import com.miadzin.shelves.util.CookieStore;
 import com.miadzin.shelves.util.Entities;
-import com.miadzin.shelves.util.HttpManager;
 import com.miadzin.shelves.util.IOUtilities;
 import com.miadzin.shelves.util.ImageUtilities;
+import com.miadzin.shelves.util.ResponseCache;
+import com.miadzin.shelves.util.TextUtilities;
 
 public class ServerInfo {
 	public static final String NAME = "5h3lv35";
@@ -189,6 +190,13 @@ public class ServerInfo {
 
 	private static final String LOG_TAG = "PublicServerInfo";
 
+	// GJT: The most ItemIds a single ItemLookup accepts
+	public static final int MAX_LOOKUP_IDS = 10;
+
+	// Whether the last response parsed on this thread was rejected, so that
+	// executeRequest() doesn't keep it in the cache
+	private static final ThreadLocal<Boolean> sRejected = new ThreadLocal<Boolean>();
+
 	// GJT: Fields common to all derivatives
 	final protected String mHost = API_REST_HOST;
 	protected ServerImageLoader mLoader = new ServerImageLoader();
@@ -374,8 +382,118 @@ public class ServerInfo {
 	}
 
 	/**
-	 * Executes an HTTP request on a REST web service. If the response is ok,
-	 * the content is sent to the specified response handler.
+	 * Finds the items with the specified ids, up to {@link #MAX_LOOKUP_IDS}
+	 * per request, with the same query as the first lookup of a single item.
+	 * The items of each response are matched back to the ids they were
+	 * requested with by their EAN, ISBN, UPC or ASIN. Ids rejected by the
+	 * service don't fail the other ids of their request.
+	 * 
+	 * @param ids
+	 *            The ids of the items to find
+	 * @param itemParser
+	 *            Creates and parses the items of the type
+	 * 
+	 * @return The items found, by id; the ids not found are missing
+	 */
+	protected <T extends BaseItem> HashMap<String, T> findItems(
+			List<String> ids, final IOUtilities.inputTypes mSavedImportType,
+			Context context, String searchIndex, String altTag,
+			final ItemParser<T> itemParser) {
+		final HashMap<String, T> found = new HashMap<String, T>();
+
+		for (int start = 0; start < ids.size(); start += MAX_LOOKUP_IDS) {
+			final List<String> batch = ids.subList(start,
+					Math.min(start + MAX_LOOKUP_IDS, ids.size()));
+			final Uri.Builder uri = assembleURI(TextUtilities.join(batch, ","),
+					mSavedImportType, context, searchIndex, altTag);
+			final HttpGet get = new HttpGet(uri.build().toString());
+			final ArrayList<T> items = new ArrayList<T>(batch.size());
+
+			try {
+				executeRequest(new HttpHost(mHost, 80, "http"), get,
+						new ResponseHandler() {
+							public void handleResponse(InputStream in)
+									throws IOException {
+								parseResponse(in, new ResponseParser() {
+									public void parseResponse(
+											XmlPullParser parser)
+											throws XmlPullParserException,
+											IOException {
+										parseItems(parser, itemParser, items);
+									}
+								}, mSavedImportType, true);
+							}
+						});
+			} catch (IOException e) {
+				android.util.Log.e(LOG_TAG, "Could not find " + mSavedImportType
+						+ " items with IDs " + batch);
+				continue;
+			}
+
+			for (T item : items) {
+				for (String id : batch) {
+					if (!found.containsKey(id) && matches(item, id)) {
+						if (TextUtilities.isEmpty(item.mEan)
+								&& id.length() == 13) {
+							item.mEan = id;
+						} else if (TextUtilities.isEmpty(item.mIsbn)
+								&& id.length() == 10) {
+							item.mIsbn = id;
+						}
+						found.put(id, item);
+						break;
+					}
+				}
+			}
+		}
+
+		return found;
+	}
+
+	private <T extends BaseItem> void parseItems(XmlPullParser parser,
+			ItemParser<T> itemParser, ArrayList<T> items)
+			throws XmlPullParserException, IOException {
+		int type;
+		while ((type = parser.next()) != XmlPullParser.END_TAG
+				&& type != XmlPullParser.END_DOCUMENT) {
+
+			if (type != XmlPullParser.START_TAG) {
+				continue;
+			}
+
+			if (findNextItem(parser)) {
+				final T item = itemParser.createItem();
+				if (itemParser.parseItem(parser, item)) {
+					items.add(item);
+				}
+			}
+		}
+	}
+
+	private static boolean matches(BaseItem item, String id) {
+		final String key = normalizeId(id);
+		return key.equals(normalizeId(item.mEan))
+				|| key.equals(normalizeId(item.mIsbn))
+				|| key.equals(normalizeId(item.mUpc))
+				|| key.equals(normalizeId(item.mInternalId));
+	}
+
+	private static String normalizeId(String id) {
+		if (TextUtilities.isEmpty(id))
+			return "";
+
+		// GJT: A UPC is an EAN with its leading zero dropped
+		int start = 0;
+		while (start < id.length() - 1 && id.charAt(start) == '0') {
+			start++;
+		}
+		return id.substring(start).toUpperCase();
+	}
+
+	/**
+	 * Executes an HTTP request on a REST web service, or reads its response
+	 * from the {@link ResponseCache}. If the response is ok, the content is
+	 * sent to the specified response handler.
 	 * 
 	 * @param host
 	 * @param get
@@ -388,38 +506,32 @@ public class ServerInfo {
 	protected void executeRequest(HttpHost host, HttpGet get,
 			ResponseHandler handler) throws IOException {
 
-		HttpEntity entity = null;
+		final String key = ResponseCache.getKey(host, get, PARAM_API_KEY);
+		final long maxAge = isSearch(get) ? ResponseCache.SEARCH_MAX_AGE
+				: ResponseCache.LOOKUP_MAX_AGE;
+
+		final byte[] response = ResponseCache.get().execute(host, get, key,
+				maxAge);
+		if (response == null)
+			return;
+
+		sRejected.set(Boolean.FALSE);
 		try {
-			final HttpResponse response = HttpManager.execute(host, get);
-			int statusCode = response.getStatusLine().getStatusCode();
-
-			if (statusCode == HttpStatus.SC_MOVED_TEMPORARILY
-					|| statusCode == HttpStatus.SC_SEE_OTHER) {
-				Header header = response.getFirstHeader("Location");
-				if (header != null) {
-					String redirectURI = header.getValue();
-					if ((redirectURI != null) && (!redirectURI.equals(""))) {
-						android.util.Log.e(LOG_TAG, "Redirect target: "
-								+ redirectURI);
-						DefaultHttpClient httpclient = new DefaultHttpClient();
-						get = new HttpGet(redirectURI);
-						entity = httpclient.execute(get).getEntity();
-						final InputStream in = entity.getContent();
-						handler.handleResponse(in);
-					}
-				} else {
-					android.util.Log.e(LOG_TAG, "Invalid redirect");
-				}
-			} else if (statusCode == HttpStatus.SC_OK) {
-				entity = response.getEntity();
-				final InputStream in = entity.getContent();
-				handler.handleResponse(in);
-			}
-		} finally {
-			if (entity != null) {
-				entity.consumeContent();
-			}
+			handler.handleResponse(new ByteArrayInputStream(response));
+		} catch (IOException e) {
+			// GJT: Don't serve a response we can't read again
+			ResponseCache.get().remove(key);
+			throw e;
 		}
+
+		// GJT: No match or throttled, asking again may well do better
+		if (sRejected.get())
+			ResponseCache.get().remove(key);
+	}
+
+	private static boolean isSearch(HttpGet get) {
+		return Uri.parse(get.getURI().toString()).getQueryParameter(
+				PARAM_KEYWORDS) != null;
 	}
 
 	/**
@@ -439,6 +551,22 @@ public class ServerInfo {
 	public static void parseResponse(InputStream in,
 			ResponseParser responseParser, IOUtilities.inputTypes inputType)
 			throws IOException {
+		parseResponse(in, responseParser, inputType, false);
+	}
+
+	/**
+	 * Parses a valid XML response from the specified input stream, like
+	 * {@link #parseResponse(InputStream, ResponseParser, IOUtilities.inputTypes)}
+	 * .
+	 * 
+	 * @param partial
+	 *            True if the errors listed by the service only concern some
+	 *            of the requested items, as with a batched lookup, and the
+	 *            items found should be parsed anyway
+	 */
+	protected static void parseResponse(InputStream in,
+			ResponseParser responseParser, IOUtilities.inputTypes inputType,
+			boolean partial) throws IOException {
 		final XmlPullParser parser = Xml.newPullParser();
 		try {
 			parser.setInput(new InputStreamReader(in));
@@ -469,13 +597,15 @@ public class ServerInfo {
 				name = parser.getName();
 
 				if (RESPONSE_TAG_REQUEST.equals(name)) {
-					valid = isRequestValid(parser);
+					valid = isRequestValid(parser, partial);
 					break;
 				}
 			}
 
 			if (valid)
 				responseParser.parseResponse(parser);
+			else
+				sRejected.set(Boolean.TRUE);
 
 		} catch (XmlPullParserException e) {
 			final IOException ioe = new IOException(
@@ -484,8 +614,8 @@ public class ServerInfo {
 		}
 	}
 
-	private static boolean isRequestValid(XmlPullParser parser)
-			throws XmlPullParserException, IOException {
+	private static boolean isRequestValid(XmlPullParser parser,
+			boolean partial) throws XmlPullParserException, IOException {
 
 		int type;
 		String name;
@@ -508,7 +638,7 @@ public class ServerInfo {
 				} else {
 					valid = true;
 				}
-			} else if (RESPONSE_TAG_ERRORS.equals(name)) {
+			} else if (RESPONSE_TAG_ERRORS.equals(name) && !partial) {
 				valid = false;
 			}
 		}
@@ -585,6 +715,23 @@ public class ServerInfo {
 				throws XmlPullParserException, IOException;
 	}
 
+	/**
+	 * Creates and parses the items of one type, for
+	 * {@link ServerInfo#findItems(List, IOUtilities.inputTypes, Context, String, String, ItemParser)}
+	 * .
+	 */
+	protected interface ItemParser<T extends BaseItem> {
+		T createItem();
+
+		/**
+		 * Parses an item from the XML response.
+		 * 
+		 * @return True if the item could correctly be parsed, false otherwise.
+		 */
+		boolean parseItem(XmlPullParser parser, T item)
+				throws XmlPullParserException, IOException;
+	}
+
 	protected Description parseEditorialReview(XmlPullParser parser)
 			throws IOException, XmlPullParserException {
 
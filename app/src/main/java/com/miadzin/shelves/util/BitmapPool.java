@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+/**
+ * Bitmaps no longer in use, kept to be drawn into or decoded into again
+ * instead of allocating new ones. Bitmaps are grouped by size and
+ * configuration, and the pool is bounded by the number of bytes they hold;
+ * the bitmaps pooled first are recycled first once the budget is exceeded.
+ * All the methods can be called from any thread.
+ *
+ * A bitmap given to the pool must not be drawn anywhere anymore.
+ */
+public class BitmapPool {
+	private final HashMap<String, ArrayList<Bitmap>> mSizes = new HashMap<String, ArrayList<Bitmap>>();
+	// Pooled bitmaps, eldest first
+	private final LinkedList<Bitmap> mOrder = new LinkedList<Bitmap>();
+	private final int mMaxSize;
+	private int mSize;
+
+	private int mHitCount;
+	private int mMissCount;
+	private int mPutCount;
+	private int mEvictionCount;
+
+	/**
+	 * Creates a new pool.
+	 *
+	 * @param maxSize
+	 *            The maximum number of bytes the pooled bitmaps can use
+	 */
+	public BitmapPool(int maxSize) {
+		if (maxSize <= 0)
+			throw new IllegalArgumentException("maxSize <= 0");
+
+		mMaxSize = maxSize;
+	}
+
+	/**
+	 * Returns a budget suitable for the bitmap pool, a thirty-second of the
+	 * memory available to this VM.
+	 */
+	public static int getDefaultMaxSize() {
+		return (int) Math.min(Integer.MAX_VALUE,
+				Runtime.getRuntime().maxMemory() / 32);
+	}
+
+	/**
+	 * Returns a mutable, transparent bitmap of the specified size, from the
+	 * pool if it has one.
+	 */
+	public Bitmap obtain(int width, int height, Bitmap.Config config) {
+		Bitmap bitmap = null;
+		synchronized (this) {
+			final ArrayList<Bitmap> bitmaps = mSizes.get(getKey(width, height,
+					config));
+			if (bitmaps != null && !bitmaps.isEmpty()) {
+				bitmap = bitmaps.remove(bitmaps.size() - 1);
+				mOrder.remove(bitmap);
+				mSize -= sizeOf(bitmap);
+				mHitCount++;
+			} else {
+				mMissCount++;
+			}
+		}
+
+		if (bitmap == null)
+			return Bitmap.createBitmap(width, height, config);
+
+		bitmap.eraseColor(0);
+		return bitmap;
+	}
+
+	/**
+	 * Lets the decoder write into a pooled bitmap, where the platform can.
+	 * Before Honeycomb decoders always allocate; before KitKat they only
+	 * reuse a bitmap of the exact size of an image decoded at full size.
+	 * Decoding with these options must be retried without
+	 * {@code inBitmap} if it throws an IllegalArgumentException.
+	 *
+	 * @param options
+	 *            The options of the decode, with the bounds of the image and
+	 *            the sample size set
+	 */
+	public void setInBitmap(BitmapFactory.Options options) {
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB)
+			return;
+
+		options.inMutable = true;
+
+		final int sampleSize = Math.max(options.inSampleSize, 1);
+		Bitmap.Config config = options.inPreferredConfig;
+		if (config == null)
+			config = Bitmap.Config.ARGB_8888;
+
+		Bitmap bitmap = null;
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+			final int width = (options.outWidth + sampleSize - 1) / sampleSize;
+			final int height = (options.outHeight + sampleSize - 1)
+					/ sampleSize;
+			bitmap = takeLargeEnough(width * height * getBytesPerPixel(config),
+					config);
+		} else if (sampleSize == 1) {
+			bitmap = take(options.outWidth, options.outHeight, config);
+		}
+
+		options.inBitmap = bitmap;
+	}
+
+	/**
+	 * Gives a bitmap back to the pool. Immutable and recycled bitmaps, and
+	 * bitmaps larger than the whole pool, are recycled instead.
+	 */
+	public void put(Bitmap bitmap) {
+		if (bitmap == null || bitmap.isRecycled())
+			return;
+
+		final int size = sizeOf(bitmap);
+		if (!bitmap.isMutable() || size > mMaxSize) {
+			bitmap.recycle();
+			return;
+		}
+
+		final ArrayList<Bitmap> evicted = new ArrayList<Bitmap>();
+		synchronized (this) {
+			final String key = getKey(bitmap.getWidth(), bitmap.getHeight(),
+					bitmap.getConfig());
+			ArrayList<Bitmap> bitmaps = mSizes.get(key);
+			if (bitmaps == null) {
+				bitmaps = new ArrayList<Bitmap>();
+				mSizes.put(key, bitmaps);
+			} else if (bitmaps.contains(bitmap)) {
+				return;
+			}
+
+			bitmaps.add(bitmap);
+			mOrder.add(bitmap);
+			mSize += size;
+			mPutCount++;
+
+			while (mSize > mMaxSize && !mOrder.isEmpty()) {
+				final Bitmap eldest = mOrder.removeFirst();
+				mSizes.get(
+						getKey(eldest.getWidth(), eldest.getHeight(),
+								eldest.getConfig())).remove(eldest);
+				mSize -= sizeOf(eldest);
+				mEvictionCount++;
+				evicted.add(eldest);
+			}
+		}
+
+		for (Bitmap eldest : evicted) {
+			eldest.recycle();
+		}
+	}
+
+	/**
+	 * Recycles every pooled bitmap.
+	 */
+	public void clear() {
+		final ArrayList<Bitmap> bitmaps;
+		synchronized (this) {
+			bitmaps = new ArrayList<Bitmap>(mOrder);
+			mOrder.clear();
+			mSizes.clear();
+			mSize = 0;
+		}
+
+		for (Bitmap bitmap : bitmaps) {
+			bitmap.recycle();
+		}
+	}
+
+	private synchronized Bitmap take(int width, int height,
+			Bitmap.Config config) {
+		final ArrayList<Bitmap> bitmaps = mSizes.get(getKey(width, height,
+				config));
+		if (bitmaps == null || bitmaps.isEmpty()) {
+			mMissCount++;
+			return null;
+		}
+
+		final Bitmap bitmap = bitmaps.remove(bitmaps.size() - 1);
+		mOrder.remove(bitmap);
+		mSize -= sizeOf(bitmap);
+		mHitCount++;
+		return bitmap;
+	}
+
+	private synchronized Bitmap takeLargeEnough(int bytes,
+			Bitmap.Config config) {
+		// GJT: The smallest that fits, so large bitmaps stay for large images
+		Bitmap best = null;
+		for (Bitmap bitmap : mOrder) {
+			if (bitmap.getConfig() != config)
+				continue;
+			final int size = bitmap.getAllocationByteCount();
+			if (size >= bytes
+					&& (best == null || size < best.getAllocationByteCount())) {
+				best = bitmap;
+			}
+		}
+
+		if (best == null) {
+			mMissCount++;
+			return null;
+		}
+
+		mSizes.get(getKey(best.getWidth(), best.getHeight(), best.getConfig()))
+				.remove(best);
+		final Iterator<Bitmap> i = mOrder.iterator();
+		while (i.hasNext()) {
+			if (i.next() == best) {
+				i.remove();
+				break;
+			}
+		}
+		mSize -= sizeOf(best);
+		mHitCount++;
+		return best;
+	}
+
+	private static String getKey(int width, int height, Bitmap.Config config) {
+		return width + "x" + height + ":" + config;
+	}
+
+	private static int getBytesPerPixel(Bitmap.Config config) {
+		switch (config) {
+		case ALPHA_8:
+			return 1;
+		case RGB_565:
+		case ARGB_4444:
+			return 2;
+		default:
+			return 4;
+		}
+	}
+
+	private static int sizeOf(Bitmap bitmap) {
+		// Bitmap.getByteCount() is only available from API 12
+		return bitmap.getRowBytes() * bitmap.getHeight();
+	}
+
+	public synchronized int size() {
+		return mSize;
+	}
+
+	public int maxSize() {
+		return mMaxSize;
+	}
+
+	public synchronized int hitCount() {
+		return mHitCount;
+	}
+
+	public synchronized int missCount() {
+		return mMissCount;
+	}
+
+	public synchronized int putCount() {
+		return mPutCount;
+	}
+
+	public synchronized int evictionCount() {
+		return mEvictionCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		final int requests = mHitCount + mMissCount;
+		final int hitPercent = requests != 0 ? (100 * mHitCount / requests)
+				: 0;
+		return "BitmapPool[size=" + mSize + ",maxSize=" + mMaxSize + ",hits="
+				+ mHitCount + ",misses=" + mMissCount + ",evictions="
+				+ mEvictionCount + ",hitRate=" + hitPercent + "%]";
+	}
+}
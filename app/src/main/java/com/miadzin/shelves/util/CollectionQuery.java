@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Runs the same query against several collections at once, each on its own
+ * thread, and merges the rows by date. Used by the screens listing the items
+ * of every collection, such as the loans and the wishlist.
+ */
+public class CollectionQuery {
+	private static final String LOG_TAG = "CollectionQuery";
+
+	private static final int THREADS = 4;
+	private static final int KEEP_ALIVE = 10;
+
+	private static final ThreadFactory sThreadFactory = new ThreadFactory() {
+		private final AtomicInteger mCount = new AtomicInteger(1);
+
+		public Thread newThread(final Runnable r) {
+			return new Thread(new Runnable() {
+				public void run() {
+					Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+					r.run();
+				}
+			}, "CollectionQuery #" + mCount.getAndIncrement());
+		}
+	};
+
+	private static final ThreadPoolExecutor sExecutor = new ThreadPoolExecutor(
+			THREADS, THREADS, KEEP_ALIVE, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(), sThreadFactory);
+	static {
+		sExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * A row of one of the collections.
+	 */
+	public static class Row {
+		public final Uri contentUri;
+		public final String[] values;
+		final long mTime;
+
+		Row(Uri contentUri, String[] values, long time) {
+			this.contentUri = contentUri;
+			this.values = values;
+			mTime = time;
+		}
+	}
+
+	private static final Comparator<Row> BY_DATE = new Comparator<Row>() {
+		public int compare(Row lhs, Row rhs) {
+			return lhs.mTime < rhs.mTime ? -1 : (lhs.mTime == rhs.mTime ? 0
+					: 1);
+		}
+	};
+
+	private CollectionQuery() {
+	}
+
+	/**
+	 * Queries every specified collection and returns their rows, the oldest
+	 * date first. Dates are read with {@link Preferences#getDateFormat()};
+	 * rows with a date that can't be read come last. Must not be called from
+	 * the UI thread.
+	 *
+	 * @param contentUris
+	 *            The collections to query
+	 * @param projection
+	 *            The columns to return, all read as text
+	 * @param selection
+	 *            The rows to return
+	 * @param dateColumn
+	 *            The position in the projection of the date to sort on
+	 */
+	public static ArrayList<Row> query(final ContentResolver resolver,
+			Collection<Uri> contentUris, final String[] projection,
+			final String selection, final int dateColumn) {
+		final ArrayList<Future<ArrayList<Row>>> futures = new ArrayList<Future<ArrayList<Row>>>();
+		for (final Uri uri : contentUris) {
+			futures.add(sExecutor.submit(new Callable<ArrayList<Row>>() {
+				public ArrayList<Row> call() {
+					return queryCollection(resolver, uri, projection,
+							selection, dateColumn);
+				}
+			}));
+		}
+
+		final ArrayList<Row> rows = new ArrayList<Row>();
+		for (Future<ArrayList<Row>> future : futures) {
+			try {
+				rows.addAll(future.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (ExecutionException e) {
+				Log.e(LOG_TAG, "Could not query a collection", e.getCause());
+			}
+		}
+
+		// GJT: Each list is sorted already, this is mostly a merge
+		Collections.sort(rows, BY_DATE);
+		return rows;
+	}
+
+	private static ArrayList<Row> queryCollection(ContentResolver resolver,
+			Uri uri, String[] projection, String selection, int dateColumn) {
+		final ArrayList<Row> rows = new ArrayList<Row>();
+		final SimpleDateFormat format = Preferences.getDateFormat();
+
+		final Cursor c = resolver.query(uri, projection, selection, null,
+				null);
+		if (c == null)
+			return rows;
+
+		try {
+			final int count = projection.length;
+			while (c.moveToNext()) {
+				final String[] values = new String[count];
+				for (int i = 0; i < count; i++) {
+					values[i] = c.getString(i);
+				}
+				rows.add(new Row(uri, values, parseTime(format,
+						values[dateColumn])));
+			}
+		} finally {
+			c.close();
+		}
+
+		Collections.sort(rows, BY_DATE);
+		return rows;
+	}
+
+	private static long parseTime(SimpleDateFormat format, String date) {
+		if (TextUtilities.isEmpty(date))
+			return Long.MAX_VALUE;
+
+		try {
+			return format.parse(date).getTime();
+		} catch (ParseException e) {
+			return Long.MAX_VALUE;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.graphics.Bitmap;
+
+import com.miadzin.shelves.drawable.FastBitmapDrawable;
+
+/**
+ * A memory cache of cover drawables, keyed by internal id, bounded by the
+ * number of bytes held by the cached bitmaps. The least recently used covers
+ * are evicted first once the budget is exceeded. All the methods can be
+ * called from any thread.
+ */
+public class CoverCache {
+	// Cost given to entries without a bitmap (covers known to be missing)
+	private static final int EMPTY_ENTRY_SIZE = 64;
+
+	private final LinkedHashMap<String, FastBitmapDrawable> mMap;
+	private final int mMaxSize;
+	private int mSize;
+
+	private int mHitCount;
+	private int mMissCount;
+	private int mPutCount;
+	private int mEvictionCount;
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param maxSize
+	 *            The maximum number of bytes the cached bitmaps can use
+	 */
+	public CoverCache(int maxSize) {
+		if (maxSize <= 0)
+			throw new IllegalArgumentException("maxSize <= 0");
+
+		mMaxSize = maxSize;
+		// Access ordered, so that iteration starts with the eldest entry
+		mMap = new LinkedHashMap<String, FastBitmapDrawable>(0, 0.75f, true);
+	}
+
+	/**
+	 * Returns a budget suitable for the cover cache, an eighth of the memory
+	 * available to this VM.
+	 */
+	public static int getDefaultMaxSize() {
+		return (int) Math.min(Integer.MAX_VALUE,
+				Runtime.getRuntime().maxMemory() / 8);
+	}
+
+	public synchronized FastBitmapDrawable get(String id) {
+		if (id == null)
+			return null;
+
+		final FastBitmapDrawable drawable = mMap.get(id);
+		if (drawable != null) {
+			mHitCount++;
+		} else {
+			mMissCount++;
+		}
+		return drawable;
+	}
+
+	public synchronized FastBitmapDrawable put(String id,
+			FastBitmapDrawable drawable) {
+		if (id == null || drawable == null)
+			return null;
+
+		mPutCount++;
+		mSize += sizeOf(drawable);
+		final FastBitmapDrawable previous = mMap.put(id, drawable);
+		if (previous != null) {
+			mSize -= sizeOf(previous);
+		}
+
+		trimToSize(mMaxSize);
+		return previous;
+	}
+
+	public synchronized FastBitmapDrawable remove(String id) {
+		if (id == null)
+			return null;
+
+		final FastBitmapDrawable previous = mMap.remove(id);
+		if (previous != null) {
+			mSize -= sizeOf(previous);
+		}
+		return previous;
+	}
+
+	public synchronized void evictAll() {
+		trimToSize(-1);
+	}
+
+	/**
+	 * Returns a copy of the cached drawables, eldest first. The copy can be
+	 * walked without holding the cache lock.
+	 */
+	public synchronized ArrayList<FastBitmapDrawable> snapshot() {
+		return new ArrayList<FastBitmapDrawable>(mMap.values());
+	}
+
+	private void trimToSize(int maxSize) {
+		final Iterator<Map.Entry<String, FastBitmapDrawable>> iterator = mMap
+				.entrySet().iterator();
+
+		while (mSize > maxSize && iterator.hasNext()) {
+			final FastBitmapDrawable drawable = iterator.next().getValue();
+			iterator.remove();
+			mSize -= sizeOf(drawable);
+			mEvictionCount++;
+		}
+	}
+
+	private static int sizeOf(FastBitmapDrawable drawable) {
+		final Bitmap bitmap = drawable.getBitmap();
+		if (bitmap == null)
+			return EMPTY_ENTRY_SIZE;
+		// Bitmap.getByteCount() is only available from API 12
+		return bitmap.getRowBytes() * bitmap.getHeight();
+	}
+
+	public synchronized int size() {
+		return mSize;
+	}
+
+	public int maxSize() {
+		return mMaxSize;
+	}
+
+	public synchronized int hitCount() {
+		return mHitCount;
+	}
+
+	public synchronized int missCount() {
+		return mMissCount;
+	}
+
+	public synchronized int putCount() {
+		return mPutCount;
+	}
+
+	public synchronized int evictionCount() {
+		return mEvictionCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		final int accesses = mHitCount + mMissCount;
+		final int hitPercent = accesses != 0 ? (100 * mHitCount / accesses)
+				: 0;
+		return "CoverCache[size=" + mSize + ",maxSize=" + mMaxSize + ",hits="
+				+ mHitCount + ",misses=" + mMissCount + ",evictions="
+				+ mEvictionCount + ",hitRate=" + hitPercent + "%]";
+	}
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+import java.util.Calendar;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.BaseItemContentProvider;
+
+/**
+ * Downloads again the covers of every item of one type. Covers are downloaded
+ * by a small pool of threads and handed to a single thread that decorates
+ * them and writes them to the disk cache, with a bounded number of covers in
+ * between so memory use does not grow with the collection.
+ *
+ * Items are walked in row order and the last row below which every item is
+ * done is saved every few items, so a job interrupted by the death of the
+ * process resumes there the next time it runs. Covers checked less than a day
+ * ago are skipped, and covers already cached are only downloaded again if
+ * they changed on the server.
+ */
+public class CoverDownloadJob {
+	private static final String LOG_TAG = "CoverDownloadJob";
+
+	private static final int DOWNLOADERS = 3;
+	// Covers downloaded and not yet written to the cache, at most
+	private static final int MAX_IN_FLIGHT = 2 * DOWNLOADERS;
+	private static final int CHECKPOINT_INTERVAL = 10;
+
+	private static final long ONE_DAY = 24 * 60 * 60 * 1000;
+
+	private static final String KEY_CHECKPOINT = "shelves.coverJob.";
+
+	private static final String[] PROJECTION = new String[] { BaseItem._ID,
+			BaseItem.INTERNAL_ID, BaseItem.TINY_URL, BaseItem.LAST_MODIFIED,
+			BaseItem.ETAG, BaseItem.LAST_CHECKED };
+	private static final String SELECTION_AFTER = BaseItem._ID + ">?";
+
+	/**
+	 * Told of the progress of the job, from the threads of the job.
+	 */
+	public interface ProgressListener {
+		void onProgress(int done, int total);
+	}
+
+	private final ContentResolver mResolver;
+	private final Uri mContentUri;
+	private final SharedPreferences mPreferences;
+	private final String mCheckpointKey;
+
+	private final Semaphore mInFlight = new Semaphore(MAX_IN_FLIGHT);
+	// Rows handed to the download stage and not done yet
+	private final TreeSet<Long> mPending = new TreeSet<Long>();
+	private long mLastSubmitted;
+	private int mDone;
+	private int mTotal;
+
+	private final Stage mDownloadStage = new Stage("download");
+	private final Stage mCoverStage = new Stage("cover");
+	private long mStarted;
+
+	private ProgressListener mListener;
+	private ExecutorService mCovers;
+
+	public CoverDownloadJob(Context context, Uri contentUri) {
+		mResolver = context.getContentResolver();
+		mContentUri = contentUri;
+		mPreferences = context.getSharedPreferences(Preferences.NAME, 0);
+		mCheckpointKey = KEY_CHECKPOINT + contentUri;
+	}
+
+	/**
+	 * Runs the job in the calling thread, from where it last stopped.
+	 *
+	 * @return False if the job was interrupted before the end
+	 */
+	public boolean run(ProgressListener listener) {
+		mListener = listener;
+		mStarted = SystemClock.elapsedRealtime();
+
+		final long checkpoint = mPreferences.getLong(mCheckpointKey, 0);
+		mLastSubmitted = checkpoint;
+		if (checkpoint > 0) {
+			Log.i(LOG_TAG, "Resuming " + mContentUri + " after row "
+					+ checkpoint);
+		}
+
+		final ExecutorService downloads = Executors.newFixedThreadPool(
+				DOWNLOADERS, new StageThreadFactory("download"));
+		mCovers = Executors.newSingleThreadExecutor(new StageThreadFactory(
+				"cover"));
+
+		boolean interrupted = false;
+		Cursor c = null;
+		try {
+			c = mResolver.query(mContentUri, PROJECTION, SELECTION_AFTER,
+					new String[] { String.valueOf(checkpoint) }, BaseItem._ID);
+			if (c != null) {
+				mTotal = c.getCount();
+				while (c.moveToNext()) {
+					final Item item = new Item(c);
+					try {
+						mInFlight.acquire();
+					} catch (InterruptedException e) {
+						interrupted = true;
+						break;
+					}
+
+					synchronized (mPending) {
+						mPending.add(item.mRowId);
+						mLastSubmitted = item.mRowId;
+					}
+					downloads.execute(new DownloadTask(item));
+				}
+			}
+		} finally {
+			if (c != null)
+				c.close();
+		}
+
+		// GJT: Downloads first, they feed the cover stage
+		interrupted |= !awaitTermination(downloads);
+		interrupted |= !awaitTermination(mCovers);
+
+		if (interrupted) {
+			saveCheckpoint();
+		} else {
+			mPreferences.edit().remove(mCheckpointKey).commit();
+		}
+
+		Log.i(LOG_TAG, toString());
+		return !interrupted;
+	}
+
+	private static boolean awaitTermination(ExecutorService executor) {
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				// Wait
+			}
+			return true;
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			return false;
+		}
+	}
+
+	private void saveCheckpoint() {
+		final long checkpoint;
+		synchronized (mPending) {
+			checkpoint = mPending.isEmpty() ? mLastSubmitted : mPending
+					.first() - 1;
+		}
+		mPreferences.edit().putLong(mCheckpointKey, checkpoint).commit();
+	}
+
+	private void complete(Item item) {
+		mInFlight.release();
+
+		final int done;
+		synchronized (mPending) {
+			mPending.remove(item.mRowId);
+			done = ++mDone;
+		}
+
+		if (done % CHECKPOINT_INTERVAL == 0)
+			saveCheckpoint();
+		if (mListener != null)
+			mListener.onProgress(done, mTotal);
+	}
+
+	private void download(Item item) {
+		final long start = SystemClock.elapsedRealtime();
+
+		ImageUtilities.ExpiringBitmap expiring = null;
+		try {
+			final boolean cached = ImageUtilities.getDiskCoverCache().get(
+					item.mInternalId) != null;
+			if (cached && item.mLastChecked + ONE_DAY > System
+					.currentTimeMillis()) {
+				// GJT: Fresh enough, leave it alone
+			} else if (TextUtilities.isEmpty(item.mUrl)) {
+				// Nothing to download
+			} else if (cached
+					&& (item.mLastModified != null || item.mETag != null)) {
+				expiring = ImageUtilities.loadIfModified(item.mUrl,
+						item.mLastModified, item.mETag);
+			} else {
+				expiring = ImageUtilities.load(item.mUrl, CookieStore.get()
+						.getCookie(item.mUrl));
+			}
+		} finally {
+			mDownloadStage.add(SystemClock.elapsedRealtime() - start);
+		}
+
+		if (expiring != null) {
+			mCovers.execute(new CoverTask(item, expiring));
+		} else {
+			complete(item);
+		}
+	}
+
+	private void writeCover(Item item, ImageUtilities.ExpiringBitmap expiring) {
+		final long start = SystemClock.elapsedRealtime();
+
+		try {
+			final ContentValues values = new ContentValues();
+			values.put(BaseItem.LAST_CHECKED, System.currentTimeMillis());
+
+			boolean changed = false;
+			if (expiring.bitmap != null) {
+				final Bitmap cover = ImageUtilities.createCover(
+						expiring.bitmap, Preferences.getWidthForManager(),
+						Preferences.getHeightForManager());
+				ImageUtilities.deleteCachedCover(item.mInternalId);
+				ImportUtilities.addCoverToCache(item.mInternalId, cover);
+				ImageUtilities.getBitmapPool().put(cover);
+				ImageUtilities.getBitmapPool().put(expiring.bitmap);
+
+				if (expiring.lastModified != null) {
+					values.put(BaseItem.LAST_MODIFIED,
+							expiring.lastModified.getTimeInMillis());
+				}
+				values.put(BaseItem.ETAG, expiring.etag);
+				changed = true;
+			}
+
+			mResolver.update(changed ? mContentUri : BaseItemContentProvider
+					.getSilentUri(mContentUri), values,
+					ItemQueries.SELECTION_INTERNAL_ID,
+					new String[] { item.mInternalId });
+		} finally {
+			mCoverStage.add(SystemClock.elapsedRealtime() - start);
+		}
+	}
+
+	@Override
+	public String toString() {
+		final long elapsed = SystemClock.elapsedRealtime() - mStarted;
+		return "CoverDownloadJob[" + mContentUri + ",done=" + mDone + "/"
+				+ mTotal + ",elapsed=" + elapsed + "ms,"
+				+ mDownloadStage.toString(elapsed) + ","
+				+ mCoverStage.toString(elapsed) + "]";
+	}
+
+	/**
+	 * The columns of a row the job needs.
+	 */
+	private static class Item {
+		final long mRowId;
+		final String mInternalId;
+		final String mUrl;
+		final Calendar mLastModified;
+		final String mETag;
+		final long mLastChecked;
+
+		Item(Cursor c) {
+			mRowId = c.getLong(0);
+			mInternalId = c.getString(1);
+			mUrl = c.isNull(2) ? null : TextUtilities.unprotectString(c
+					.getString(2));
+			if (c.isNull(3)) {
+				mLastModified = null;
+			} else {
+				mLastModified = Calendar.getInstance();
+				mLastModified.setTimeInMillis(c.getLong(3));
+			}
+			mETag = c.getString(4);
+			mLastChecked = c.isNull(5) ? 0 : c.getLong(5);
+		}
+	}
+
+	/**
+	 * The number of items through a stage and the time spent on them.
+	 */
+	private static class Stage {
+		private final String mName;
+		private int mCount;
+		private long mBusy;
+
+		Stage(String name) {
+			mName = name;
+		}
+
+		synchronized void add(long elapsed) {
+			mCount++;
+			mBusy += elapsed;
+		}
+
+		synchronized String toString(long elapsed) {
+			final long perMinute = elapsed > 0 ? mCount * 60000L / elapsed : 0;
+			return mName + "[items=" + mCount + ",busy=" + mBusy
+					+ "ms,perMinute=" + perMinute + "]";
+		}
+	}
+
+	private static class StageThreadFactory implements ThreadFactory {
+		private final String mName;
+		private final AtomicInteger mCount = new AtomicInteger(1);
+
+		StageThreadFactory(String name) {
+			mName = name;
+		}
+
+		public Thread newThread(final Runnable r) {
+			return new Thread(new Runnable() {
+				public void run() {
+					Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+					r.run();
+				}
+			}, LOG_TAG + " " + mName + " #" + mCount.getAndIncrement());
+		}
+	}
+
+	private class DownloadTask implements Runnable {
+		private final Item mItem;
+
+		DownloadTask(Item item) {
+			mItem = item;
+		}
+
+		public void run() {
+			try {
+				download(mItem);
+			} catch (RuntimeException e) {
+				Log.e(LOG_TAG, "Could not download " + mItem.mInternalId, e);
+				complete(mItem);
+			}
+		}
+	}
+
+	private class CoverTask implements Runnable {
+		private final Item mItem;
+		private final ImageUtilities.ExpiringBitmap mExpiring;
+
+		CoverTask(Item item, ImageUtilities.ExpiringBitmap expiring) {
+			mItem = item;
+			mExpiring = expiring;
+		}
+
+		public void run() {
+			try {
+				writeCover(mItem, mExpiring);
+			} catch (RuntimeException e) {
+				Log.e(LOG_TAG, "Could not write " + mItem.mInternalId, e);
+			} finally {
+				complete(mItem);
+			}
+		}
+	}
+}
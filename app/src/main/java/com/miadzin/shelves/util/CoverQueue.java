@@ -0,0 +1,363 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Process;
+import android.util.Log;
+
+import com.miadzin.shelves.base.BaseItem;
+
+/**
+ * Downloads the covers of the items just added, behind their insertion, so
+ * adding an item only costs its lookup. Covers are written to the disk cache
+ * by a couple of background threads; a cover that fails to download is tried
+ * again a few times, each time later.
+ *
+ * Queued covers are kept in a journal until they are written, and queued
+ * again when the process starts, so the covers of an import killed halfway
+ * are not lost. Covers given up on are left to the daily sweep of
+ * {@link RefreshScheduler}, the items never having been checked.
+ */
+public class CoverQueue {
+	private static final String LOG_TAG = "CoverQueue";
+
+	private static final String JOURNAL_FILE = "covers.journal";
+	private static final String JOURNAL_TMP_FILE = "covers.journal.tmp";
+	private static final String ADD = "ADD";
+	private static final String DONE = "DONE";
+	private static final String SEPARATOR = "\t";
+	// GJT: Done lines tolerated in the journal before it is rewritten
+	private static final int MAX_REDUNDANT = 200;
+
+	private static final int WRITERS = 2;
+	private static final int MAX_ATTEMPTS = 4;
+	private static final long RETRY_DELAY = 30 * 1000;
+
+	private static CoverQueue sInstance;
+
+	private final ContentResolver mResolver;
+	private final File mDirectory;
+	private final ScheduledThreadPoolExecutor mExecutor;
+
+	// Queued covers by key, in the order they were queued
+	private final LinkedHashMap<String, Cover> mPending = new LinkedHashMap<String, Cover>();
+	private Writer mJournal;
+	private int mRedundant;
+	// The journal must not be rewritten before what it held is queued again
+	private boolean mReplayed;
+
+	private int mWritten;
+	private int mRetried;
+	private int mFailed;
+
+	private CoverQueue(Context context) {
+		mResolver = context.getContentResolver();
+		mDirectory = context.getFilesDir();
+
+		mExecutor = new ScheduledThreadPoolExecutor(WRITERS,
+				new ThreadFactory() {
+					private final AtomicInteger mCount = new AtomicInteger(1);
+
+					public Thread newThread(final Runnable r) {
+						return new Thread(new Runnable() {
+							public void run() {
+								Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+								r.run();
+							}
+						}, "CoverQueue #" + mCount.getAndIncrement());
+					}
+				});
+	}
+
+	/**
+	 * Creates the queue and, in the background, queues again the covers
+	 * still in the journal.
+	 */
+	public static synchronized void initialize(Context context) {
+		if (sInstance != null)
+			return;
+
+		sInstance = new CoverQueue(context.getApplicationContext());
+		sInstance.mExecutor.execute(new Runnable() {
+			public void run() {
+				sInstance.replayJournal();
+			}
+		});
+	}
+
+	public static synchronized CoverQueue get() {
+		return sInstance;
+	}
+
+	/**
+	 * Queues the download of the cover of an item just added. The item is
+	 * updated, and its lists redrawn, once the cover is in the cache.
+	 *
+	 * @param contentUri
+	 *            The content URI of the type of the item
+	 */
+	public void enqueue(Uri contentUri, BaseItem item) {
+		String url = Preferences.getImageURLForUpdater(item);
+		if (TextUtilities.isEmpty(url)) {
+			// GJT: Same fallback as the loadCover() of the stores
+			url = item.getImageUrl(BaseItem.ImageSize.MEDIUM);
+			if (TextUtilities.isEmpty(url))
+				return;
+		}
+
+		final Cover cover = new Cover(contentUri.toString(),
+				item.getInternalId(), url);
+		synchronized (this) {
+			if (mPending.containsKey(cover.getKey()))
+				return;
+			mPending.put(cover.getKey(), cover);
+			appendJournal(ADD, cover);
+		}
+		mExecutor.execute(new CoverTask(cover));
+	}
+
+	private void write(CoverTask task) {
+		final Cover cover = task.mCover;
+		final ImageUtilities.ExpiringBitmap expiring = ImageUtilities.load(
+				cover.mUrl, CookieStore.get().getCookie(cover.mUrl));
+
+		if (expiring.bitmap == null) {
+			if (++cover.mAttempts < MAX_ATTEMPTS) {
+				synchronized (this) {
+					mRetried++;
+				}
+				mExecutor.schedule(task, RETRY_DELAY << (cover.mAttempts - 1),
+						TimeUnit.MILLISECONDS);
+			} else {
+				Log.w(LOG_TAG, "Giving up on the cover of "
+						+ cover.mInternalId);
+				synchronized (this) {
+					mFailed++;
+				}
+				done(cover);
+			}
+			return;
+		}
+
+		final Bitmap bitmap = ImageUtilities.createCover(expiring.bitmap,
+				Preferences.getWidthForManager(),
+				Preferences.getHeightForManager());
+		// GJT: The lists may have cached the lack of a cover meanwhile
+		ImageUtilities.deleteCachedCover(cover.mInternalId);
+		ImportUtilities.addCoverToCache(cover.mInternalId, bitmap);
+		ImageUtilities.getBitmapPool().put(bitmap);
+		ImageUtilities.getBitmapPool().put(expiring.bitmap);
+
+		final ContentValues values = new ContentValues();
+		if (expiring.lastModified != null) {
+			values.put(BaseItem.LAST_MODIFIED,
+					expiring.lastModified.getTimeInMillis());
+		}
+		values.put(BaseItem.ETAG, expiring.etag);
+		values.put(BaseItem.LAST_CHECKED, System.currentTimeMillis());
+		mResolver.update(Uri.parse(cover.mContentUri), values,
+				ItemQueries.SELECTION_INTERNAL_ID,
+				new String[] { cover.mInternalId });
+
+		synchronized (this) {
+			mWritten++;
+		}
+		done(cover);
+	}
+
+	private synchronized void done(Cover cover) {
+		if (mPending.remove(cover.getKey()) == null)
+			return;
+
+		if (!mReplayed) {
+			appendJournal(DONE, cover);
+		} else if (mPending.isEmpty()) {
+			// Nothing left to replay, start the journal over
+			closeJournal();
+			new File(mDirectory, JOURNAL_FILE).delete();
+			mRedundant = 0;
+		} else if (++mRedundant > MAX_REDUNDANT) {
+			rewriteJournal();
+		} else {
+			appendJournal(DONE, cover);
+		}
+	}
+
+	private void replayJournal() {
+		final LinkedHashMap<String, Cover> covers = new LinkedHashMap<String, Cover>();
+
+		BufferedReader in = null;
+		try {
+			in = new BufferedReader(new FileReader(new File(mDirectory,
+					JOURNAL_FILE)), IOUtilities.IO_BUFFER_SIZE);
+			String line;
+			while ((line = in.readLine()) != null) {
+				final String[] fields = line.split(SEPARATOR);
+				if (ADD.equals(fields[0]) && fields.length == 4) {
+					final Cover cover = new Cover(fields[1], fields[2],
+							fields[3]);
+					covers.put(cover.getKey(), cover);
+				} else if (DONE.equals(fields[0]) && fields.length == 3) {
+					covers.remove(fields[1] + SEPARATOR + fields[2]);
+				}
+			}
+		} catch (IOException e) {
+			// GJT: No journal, or a torn last line, replay what was read
+		} finally {
+			IOUtilities.closeStream(in);
+		}
+
+		final ArrayList<Cover> replayed = new ArrayList<Cover>();
+		synchronized (this) {
+			for (Cover cover : covers.values()) {
+				if (!mPending.containsKey(cover.getKey())) {
+					mPending.put(cover.getKey(), cover);
+					replayed.add(cover);
+				}
+			}
+			mReplayed = true;
+			rewriteJournal();
+		}
+
+		if (!replayed.isEmpty())
+			Log.i(LOG_TAG, "Replaying " + replayed.size() + " covers");
+		for (Cover cover : replayed) {
+			mExecutor.execute(new CoverTask(cover));
+		}
+	}
+
+	private void appendJournal(String operation, Cover cover) {
+		try {
+			if (mJournal == null) {
+				mJournal = new BufferedWriter(new FileWriter(new File(
+						mDirectory, JOURNAL_FILE), true),
+						IOUtilities.IO_BUFFER_SIZE);
+			}
+			writeLine(mJournal, operation, cover);
+			// GJT: One line per item, cheap next to the lookup it follows
+			mJournal.flush();
+		} catch (IOException e) {
+			Log.e(LOG_TAG, "Could not write the journal", e);
+			closeJournal();
+		}
+	}
+
+	private void rewriteJournal() {
+		closeJournal();
+		mRedundant = 0;
+
+		final File tmp = new File(mDirectory, JOURNAL_TMP_FILE);
+		Writer out = null;
+		try {
+			out = new BufferedWriter(new FileWriter(tmp),
+					IOUtilities.IO_BUFFER_SIZE);
+			for (Cover cover : mPending.values()) {
+				writeLine(out, ADD, cover);
+			}
+			out.close();
+			out = null;
+			if (!tmp.renameTo(new File(mDirectory, JOURNAL_FILE)))
+				tmp.delete();
+		} catch (IOException e) {
+			Log.e(LOG_TAG, "Could not rewrite the journal", e);
+			tmp.delete();
+		} finally {
+			IOUtilities.closeStream(out);
+		}
+	}
+
+	private void closeJournal() {
+		IOUtilities.closeStream(mJournal);
+		mJournal = null;
+	}
+
+	private static void writeLine(Writer out, String operation, Cover cover)
+			throws IOException {
+		out.write(operation);
+		out.write(SEPARATOR);
+		out.write(cover.mContentUri);
+		out.write(SEPARATOR);
+		out.write(cover.mInternalId);
+		if (ADD.equals(operation)) {
+			out.write(SEPARATOR);
+			out.write(cover.mUrl);
+		}
+		out.write('\n');
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "CoverQueue[pending=" + mPending.size() + ",written="
+				+ mWritten + ",retried=" + mRetried + ",failed=" + mFailed
+				+ "]";
+	}
+
+	private static class Cover {
+		final String mContentUri;
+		final String mInternalId;
+		final String mUrl;
+		// Only touched by the task of the cover, one run at a time
+		int mAttempts;
+
+		Cover(String contentUri, String internalId, String url) {
+			mContentUri = contentUri;
+			mInternalId = internalId;
+			mUrl = url;
+		}
+
+		String getKey() {
+			return mContentUri + SEPARATOR + mInternalId;
+		}
+	}
+
+	private class CoverTask implements Runnable {
+		final Cover mCover;
+
+		CoverTask(Cover cover) {
+			mCover = cover;
+		}
+
+		public void run() {
+			try {
+				write(this);
+			} catch (RuntimeException e) {
+				Log.e(LOG_TAG, "Could not write the cover of "
+						+ mCover.mInternalId, e);
+				done(mCover);
+			}
+		}
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Reads delimited text one record at a time. Where the format quotes its
+ * fields the RFC 4180 way, a field starting with a double quote runs to the
+ * matching closing quote, can hold delimiters and line breaks, and doubles
+ * the quotes it contains; quotes anywhere else are kept as they are. Formats
+ * that don't quote their fields are read with every quote kept.
+ *
+ * The fields of the current record are available until the next call to
+ * {@link #readRecord()}; blank lines are skipped. No regular expression is
+ * involved and the memory used does not depend on the size of the file.
+ */
+public class DelimitedReader implements Closeable {
+	private static final int BUFFER_SIZE = 8 * 1024;
+	private static final int EOF = -1;
+
+	private final Reader mReader;
+	private final char mDelimiter;
+	private final boolean mQuotes;
+
+	private final char[] mBuffer = new char[BUFFER_SIZE];
+	private int mPosition;
+	private int mLimit;
+
+	private final StringBuilder mField = new StringBuilder();
+	private final ArrayList<String> mFields = new ArrayList<String>();
+
+	private final HashMap<String, Integer> mColumns = new HashMap<String, Integer>();
+
+	/**
+	 * @param quotes
+	 *            True if the fields can be quoted, false if quotes are just
+	 *            characters, as in the files the application exports
+	 */
+	public DelimitedReader(Reader reader, char delimiter, boolean quotes) {
+		mReader = reader;
+		mDelimiter = delimiter;
+		mQuotes = quotes;
+	}
+
+	/**
+	 * Reads the next record and maps the names of its fields to their
+	 * positions, for {@link #getColumn(String)}. The first of several columns
+	 * with the same name wins.
+	 *
+	 * @return The names of the columns, or null at the end of the input
+	 */
+	public String[] readHeader() throws IOException {
+		mColumns.clear();
+		if (!readRecord())
+			return null;
+
+		final String[] header = getFields();
+		for (int i = 0; i < header.length; i++) {
+			if (!mColumns.containsKey(header[i]))
+				mColumns.put(header[i], i);
+		}
+		return header;
+	}
+
+	/**
+	 * Returns the position of the specified column in the header, or -1 if
+	 * the header doesn't have it.
+	 */
+	public int getColumn(String name) {
+		final Integer column = mColumns.get(name);
+		return column != null ? column : -1;
+	}
+
+	/**
+	 * Reads the next non blank record.
+	 *
+	 * @return False at the end of the input
+	 */
+	public boolean readRecord() throws IOException {
+		while (true) {
+			mFields.clear();
+			mField.setLength(0);
+
+			int c = read();
+			if (c == EOF)
+				return false;
+
+			boolean quoted = false;
+			boolean inQuotes = false;
+
+			while (true) {
+				if (inQuotes) {
+					if (c == EOF) {
+						// GJT: Unterminated quote, take what we have
+						break;
+					} else if (c == '"') {
+						if (peek() == '"') {
+							read();
+							mField.append('"');
+						} else {
+							inQuotes = false;
+						}
+					} else {
+						mField.append((char) c);
+					}
+				} else if (c == EOF || c == '\n') {
+					break;
+				} else if (c == '\r') {
+					if (peek() == '\n')
+						read();
+					break;
+				} else if (c == mDelimiter) {
+					endField();
+					quoted = false;
+				} else if (c == '"' && mQuotes && !quoted
+						&& mField.length() == 0) {
+					quoted = true;
+					inQuotes = true;
+				} else {
+					mField.append((char) c);
+				}
+
+				c = read();
+			}
+
+			final boolean blank = mFields.isEmpty() && mField.length() == 0
+					&& !quoted;
+			endField();
+			if (!blank)
+				return true;
+		}
+	}
+
+	private void endField() {
+		mFields.add(mField.toString());
+		mField.setLength(0);
+	}
+
+	public int getFieldCount() {
+		return mFields.size();
+	}
+
+	/**
+	 * Returns the specified field of the current record, or null if the
+	 * record doesn't have it.
+	 */
+	public String getField(int index) {
+		if (index < 0 || index >= mFields.size())
+			return null;
+		return mFields.get(index);
+	}
+
+	/**
+	 * Returns the field of the current record in the specified column of the
+	 * header, or null if there is no such field.
+	 */
+	public String getField(String column) {
+		return getField(getColumn(column));
+	}
+
+	/**
+	 * Returns a copy of the fields of the current record.
+	 */
+	public String[] getFields() {
+		return mFields.toArray(new String[mFields.size()]);
+	}
+
+	private int read() throws IOException {
+		if (mPosition == mLimit && !fill())
+			return EOF;
+		return mBuffer[mPosition++];
+	}
+
+	private int peek() throws IOException {
+		if (mPosition == mLimit && !fill())
+			return EOF;
+		return mBuffer[mPosition];
+	}
+
+	private boolean fill() throws IOException {
+		final int count = mReader.read(mBuffer, 0, mBuffer.length);
+		if (count <= 0)
+			return false;
+
+		mPosition = 0;
+		mLimit = count;
+		return true;
+	}
+
+	public void close() throws IOException {
+		mReader.close();
+	}
+}
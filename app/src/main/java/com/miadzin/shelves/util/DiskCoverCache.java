@@ -0,0 +1,513 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * The covers stored on the external storage, keyed by internal id. Covers are
+ * spread over 256 subdirectories. They are the only copy of the covers of the
+ * collection, so by default none is ever deleted to make room; with a budget,
+ * the least recently used ones are deleted once it is exceeded. The order of
+ * use survives restarts through a journal appended to on every operation and
+ * compacted when it holds too many stale lines.
+ *
+ * A cover is written to a temporary file then renamed, so a cover file is
+ * always complete. Covers written by older versions, directly in the cache
+ * directory, are moved into their subdirectory the first time the cache is
+ * opened. All the methods can be called from any thread.
+ */
+public class DiskCoverCache {
+	private static final String LOG_TAG = "DiskCoverCache";
+
+	/**
+	 * The budget of a cache that never deletes covers to make room.
+	 */
+	public static final long NO_LIMIT = Long.MAX_VALUE;
+
+	private static final String JOURNAL_FILE = "journal";
+	private static final String JOURNAL_FILE_TMP = "journal.tmp";
+	private static final String JOURNAL_MAGIC = "shelves.DiskCoverCache";
+	private static final String JOURNAL_VERSION = "1";
+
+	private static final String PUT = "PUT";
+	private static final String READ = "READ";
+	private static final String REMOVE = "DEL";
+
+	private static final String TMP_SUFFIX = ".tmp";
+	private static final String NO_MEDIA = ".nomedia";
+
+	private static final int COMPRESS_QUALITY = 85;
+	private static final int REDUNDANT_OP_COMPACT_THRESHOLD = 2000;
+
+	private final File mDirectory;
+	private final LinkedHashMap<String, Long> mEntries;
+	private long mMaxSize;
+	private long mSize;
+
+	private Writer mJournal;
+	private int mRedundantOps;
+	private boolean mOpened;
+
+	/**
+	 * Creates a new cache. Nothing is read from the disk until the cache is
+	 * first used.
+	 *
+	 * @param directory
+	 *            The directory holding the covers
+	 * @param maxSize
+	 *            The maximum number of bytes the cover files can use, or
+	 *            {@link #NO_LIMIT}
+	 */
+	public DiskCoverCache(File directory, long maxSize) {
+		if (maxSize <= 0)
+			throw new IllegalArgumentException("maxSize <= 0");
+
+		mDirectory = directory;
+		mMaxSize = maxSize;
+		// Access ordered, so that iteration starts with the eldest entry
+		mEntries = new LinkedHashMap<String, Long>(0, 0.75f, true);
+	}
+
+	/**
+	 * Changes the budget of the cache, deleting covers right away if the
+	 * cache holds more than the new budget.
+	 */
+	public synchronized void setMaxSize(long maxSize) {
+		if (maxSize <= 0)
+			throw new IllegalArgumentException("maxSize <= 0");
+
+		mMaxSize = maxSize;
+		if (ensureOpen())
+			trimToSize();
+	}
+
+	/**
+	 * Returns the file of the specified cover, or null if the cache doesn't
+	 * have it. The cover counts as used.
+	 */
+	public synchronized File get(String id) {
+		if (id == null || !ensureOpen())
+			return null;
+
+		if (mEntries.get(id) == null)
+			return null;
+
+		final File file = getFile(id);
+		if (!file.exists()) {
+			// GJT: Deleted behind our back, forget it
+			mSize -= mEntries.remove(id);
+			appendJournal(REMOVE, id, false);
+			return null;
+		}
+
+		appendJournal(READ, id, false);
+		return file;
+	}
+
+	/**
+	 * Stores the specified cover, replacing the one already stored for the id.
+	 * Covers with transparent areas are kept as WebP where the platform can
+	 * encode it with its alpha channel, as PNG otherwise; opaque covers are
+	 * kept as JPEG.
+	 *
+	 * @return True if the cover was stored
+	 */
+	public boolean put(String id, Bitmap bitmap) {
+		if (id == null || bitmap == null)
+			return false;
+
+		final File file;
+		synchronized (this) {
+			if (!ensureOpen())
+				return false;
+			file = getFile(id);
+		}
+
+		final File parent = file.getParentFile();
+		if (!parent.exists() && !parent.mkdirs() && !parent.exists())
+			return false;
+
+		// GJT: Encoded outside the lock, so each writer needs its own file
+		final File tmp = new File(parent, file.getName() + "."
+				+ Thread.currentThread().getId() + TMP_SUFFIX);
+
+		BufferedOutputStream out = null;
+		boolean written = false;
+		try {
+			out = new BufferedOutputStream(new FileOutputStream(tmp),
+					IOUtilities.IO_BUFFER_SIZE);
+			written = bitmap.compress(getFormat(bitmap), COMPRESS_QUALITY,
+					out);
+			out.close();
+			out = null;
+		} catch (IOException e) {
+			Log.e(LOG_TAG, "Could not write cover " + id, e);
+			written = false;
+		} finally {
+			IOUtilities.closeStream(out);
+		}
+
+		if (!written) {
+			tmp.delete();
+			return false;
+		}
+
+		synchronized (this) {
+			if (!ensureOpen() || !tmp.renameTo(file)) {
+				tmp.delete();
+				return false;
+			}
+
+			final long size = file.length();
+			final Long previous = mEntries.put(id, size);
+			if (previous != null)
+				mSize -= previous;
+			mSize += size;
+
+			appendJournal(PUT, size + " " + id, true);
+			trimToSize();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Deletes the specified cover.
+	 */
+	public synchronized void remove(String id) {
+		if (id == null || !ensureOpen())
+			return;
+
+		getFile(id).delete();
+		final Long size = mEntries.remove(id);
+		if (size != null) {
+			mSize -= size;
+			appendJournal(REMOVE, id, true);
+		}
+	}
+
+	/**
+	 * Deletes every cover and the cache directory itself.
+	 *
+	 * @return True if the directory was deleted
+	 */
+	public synchronized boolean clear() {
+		closeJournal();
+		mEntries.clear();
+		mSize = 0;
+		mRedundantOps = 0;
+		mOpened = false;
+
+		return IOUtilities.deleteDirectory(mDirectory);
+	}
+
+	/**
+	 * Returns the number of bytes used by the cover files.
+	 */
+	public synchronized long size() {
+		ensureOpen();
+		return mSize;
+	}
+
+	public synchronized long maxSize() {
+		return mMaxSize;
+	}
+
+	private static Bitmap.CompressFormat getFormat(Bitmap bitmap) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+			return Bitmap.CompressFormat.WEBP;
+		// GJT: The shadow of the decorated covers would turn black in a JPEG
+		return bitmap.hasAlpha() ? Bitmap.CompressFormat.PNG
+				: Bitmap.CompressFormat.JPEG;
+	}
+
+	private File getFile(String id) {
+		final String shard = Integer.toHexString(0x100 | (id.hashCode() & 0xff))
+				.substring(1);
+		return new File(new File(mDirectory, shard), id);
+	}
+
+	private boolean ensureOpen() {
+		if (mOpened)
+			return true;
+
+		try {
+			if (!mDirectory.exists()) {
+				mDirectory.mkdirs();
+				new File(mDirectory, NO_MEDIA).createNewFile();
+			}
+		} catch (IOException e) {
+			Log.e(LOG_TAG, "Could not create cache directory!");
+			return false;
+		}
+
+		final File journal = new File(mDirectory, JOURNAL_FILE);
+		boolean adopted = false;
+		if (journal.exists()) {
+			try {
+				readJournal(journal);
+			} catch (IOException e) {
+				Log.e(LOG_TAG, "Could not read journal, rebuilding", e);
+				mEntries.clear();
+				adoptFiles();
+				adopted = true;
+			}
+		} else {
+			adoptFiles();
+			adopted = true;
+		}
+
+		mSize = 0;
+		for (Long size : mEntries.values()) {
+			mSize += size;
+		}
+
+		try {
+			if (mRedundantOps >= REDUNDANT_OP_COMPACT_THRESHOLD
+					|| !journal.exists()) {
+				rebuildJournal();
+			} else {
+				mJournal = new BufferedWriter(new OutputStreamWriter(
+						new FileOutputStream(journal, true), "UTF-8"),
+						IOUtilities.IO_BUFFER_SIZE);
+			}
+		} catch (IOException e) {
+			Log.e(LOG_TAG, "Could not open journal", e);
+			return false;
+		}
+
+		mOpened = true;
+		// GJT: Never delete covers just found on the disk, they may be the
+		// covers of an upgraded library that nothing would download again
+		if (!adopted)
+			trimToSize();
+		return true;
+	}
+
+	private void readJournal(File journal) throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(journal), "UTF-8"),
+				IOUtilities.IO_BUFFER_SIZE);
+		try {
+			if (!JOURNAL_MAGIC.equals(reader.readLine())
+					|| !JOURNAL_VERSION.equals(reader.readLine())) {
+				throw new IOException("Unexpected journal header");
+			}
+
+			int lines = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final int space = line.indexOf(' ');
+				if (space == -1)
+					continue;
+
+				final String op = line.substring(0, space);
+				final String rest = line.substring(space + 1);
+
+				if (PUT.equals(op)) {
+					final int secondSpace = rest.indexOf(' ');
+					if (secondSpace == -1)
+						continue;
+					try {
+						mEntries.put(rest.substring(secondSpace + 1),
+								Long.parseLong(rest.substring(0, secondSpace)));
+					} catch (NumberFormatException e) {
+						// GJT: Torn last line, skip it
+						continue;
+					}
+				} else if (READ.equals(op)) {
+					mEntries.get(rest);
+				} else if (REMOVE.equals(op)) {
+					mEntries.remove(rest);
+				}
+				lines++;
+			}
+
+			mRedundantOps = Math.max(0, lines - mEntries.size());
+		} finally {
+			IOUtilities.closeStream(reader);
+		}
+	}
+
+	/**
+	 * Rebuilds the entries from the files on the disk, when there is no
+	 * journal to read them from: the covers already in a subdirectory, and
+	 * the covers left directly in the cache directory by older versions,
+	 * moved into their subdirectory. Oldest first, so they keep their order
+	 * of use.
+	 */
+	private void adoptFiles() {
+		final File[] top = mDirectory.listFiles();
+		if (top == null)
+			return;
+
+		final ArrayList<File> files = new ArrayList<File>(top.length);
+		for (File file : top) {
+			if (file.isFile()) {
+				files.add(file);
+			} else if (isShard(file)) {
+				final File[] covers = file.listFiles();
+				if (covers != null)
+					files.addAll(Arrays.asList(covers));
+			}
+		}
+
+		Collections.sort(files, new Comparator<File>() {
+			public int compare(File lhs, File rhs) {
+				final long l = lhs.lastModified();
+				final long r = rhs.lastModified();
+				return l < r ? -1 : (l == r ? 0 : 1);
+			}
+		});
+
+		for (File file : files) {
+			final String name = file.getName();
+			if (!file.isFile() || name.equals(NO_MEDIA)
+					|| name.startsWith(JOURNAL_FILE)
+					|| name.endsWith(TMP_SUFFIX)) {
+				continue;
+			}
+
+			final File target = getFile(name);
+			if (target.equals(file)) {
+				mEntries.put(name, file.length());
+				continue;
+			}
+
+			final File parent = target.getParentFile();
+			if (!parent.exists())
+				parent.mkdirs();
+
+			if (file.renameTo(target)) {
+				mEntries.put(name, target.length());
+			}
+		}
+	}
+
+	private static boolean isShard(File directory) {
+		final String name = directory.getName();
+		if (!directory.isDirectory() || name.length() != 2)
+			return false;
+		return Character.digit(name.charAt(0), 16) != -1
+				&& Character.digit(name.charAt(1), 16) != -1;
+	}
+
+	private void rebuildJournal() throws IOException {
+		closeJournal();
+
+		final File tmp = new File(mDirectory, JOURNAL_FILE_TMP);
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(tmp), "UTF-8"), IOUtilities.IO_BUFFER_SIZE);
+		try {
+			writer.write(JOURNAL_MAGIC);
+			writer.write('\n');
+			writer.write(JOURNAL_VERSION);
+			writer.write('\n');
+			for (Map.Entry<String, Long> entry : mEntries.entrySet()) {
+				writer.write(PUT + " " + entry.getValue() + " " + entry.getKey()
+						+ "\n");
+			}
+		} finally {
+			writer.close();
+		}
+
+		final File journal = new File(mDirectory, JOURNAL_FILE);
+		if (!tmp.renameTo(journal)) {
+			journal.delete();
+			if (!tmp.renameTo(journal))
+				throw new IOException("Could not replace the journal");
+		}
+
+		mRedundantOps = 0;
+		mJournal = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(journal, true), "UTF-8"),
+				IOUtilities.IO_BUFFER_SIZE);
+	}
+
+	private void appendJournal(String op, String arguments, boolean flush) {
+		if (mJournal == null)
+			return;
+
+		try {
+			mJournal.write(op + " " + arguments + "\n");
+			// GJT: A lost READ only costs some accuracy in the eviction order
+			if (flush)
+				mJournal.flush();
+
+			if (++mRedundantOps >= REDUNDANT_OP_COMPACT_THRESHOLD
+					&& mRedundantOps >= mEntries.size()) {
+				rebuildJournal();
+			}
+		} catch (IOException e) {
+			Log.e(LOG_TAG, "Could not write journal", e);
+		}
+	}
+
+	private void closeJournal() {
+		if (mJournal != null) {
+			IOUtilities.closeStream(mJournal);
+			mJournal = null;
+		}
+	}
+
+	private void trimToSize() {
+		final Iterator<Map.Entry<String, Long>> i = mEntries.entrySet()
+				.iterator();
+		while (mSize > mMaxSize && i.hasNext()) {
+			final Map.Entry<String, Long> entry = i.next();
+			final String id = entry.getKey();
+
+			getFile(id).delete();
+			mSize -= entry.getValue();
+			i.remove();
+			appendJournal(REMOVE, id, false);
+		}
+		flushJournal();
+	}
+
+	private void flushJournal() {
+		if (mJournal == null)
+			return;
+
+		try {
+			mJournal.flush();
+		} catch (IOException e) {
+			Log.e(LOG_TAG, "Could not write journal", e);
+		}
+	}
+}
@@ -17,18 +17,19 @@
 package com.miadzin.shelves.util;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.util.ArrayList;
 
 import android.content.ContentResolver;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.miadzin.shelves.R;
 import com.miadzin.shelves.ShelvesApplication;
 import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.BaseItemContentProvider;
 import com.miadzin.shelves.provider.apparel.ApparelStore;
 import com.miadzin.shelves.provider.boardgames.BoardGamesStore;
 import com.miadzin.shelves.provider.books.BooksStore;
@@ -45,6 +46,9 @@ import com.miadzin.shelves.server.ServerInfo;
 public final class ExportUtilities extends IOUtilities {
 	private static final String LOG_TAG = "ExportUtilities";
 
+	// Rows read per query while exporting
+	private static final int PAGE_SIZE = 500;
+
 	public static String[] header;
 
 	private static final String EXPORT_FILE_DL_APPAREL = ShelvesApplication
@@ -161,148 +165,175 @@ public final class ExportUtilities extends IOUtilities {
 
 	public static boolean exportItems(outputTypes type,
 			ContentResolver contentResolver) throws IOException {
+		return exportItems(type, contentResolver, null);
+	}
+
+	/**
+	 * Exports the collection in the specified format.
+	 * 
+	 * @param listener
+	 *            Told of the progress after each page of rows, may be null
+	 * @return True if at least one item was exported
+	 */
+	public static boolean exportItems(outputTypes type,
+			ContentResolver contentResolver, ExportListener listener)
+			throws IOException {
 		boolean success = false;
 		File outportFile = null;
 
 		switch (type) {
 		case DLApparel:
 			outportFile = IOUtilities.getExternalFile(EXPORT_FILE_DL_APPAREL);
-			success = exportingApparelToDL(outportFile, contentResolver);
+			success = exportingApparelToDL(outportFile,
+					contentResolver, listener);
 			break;
 		case shelvesApparel:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_SHELVES_APPAREL);
 			success = exportingToShelves(outportFile, contentResolver,
-					ApparelStore.Apparel.CONTENT_URI);
+					ApparelStore.Apparel.CONTENT_URI, listener);
 			break;
 		case shelvesBoardGames:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_SHELVES_BOARDGAMES);
 			success = exportingToShelves(outportFile, contentResolver,
-					BoardGamesStore.BoardGame.CONTENT_URI);
+					BoardGamesStore.BoardGame.CONTENT_URI, listener);
 			break;
 		case DLBooks:
 			outportFile = IOUtilities.getExternalFile(EXPORT_FILE_DL_BOOKS);
-			success = exportingBooksToDL(outportFile, contentResolver);
+			success = exportingBooksToDL(outportFile, contentResolver,
+					listener);
 			break;
 		case libraryThingBooks:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_LIBRARY_THING_BOOKS);
-			success = exportingBooksToLibraryThing(outportFile, contentResolver);
+			success = exportingBooksToLibraryThing(outportFile,
+					contentResolver, listener);
 			break;
 		case mediaManBooks:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_MEDIAMAN_BOOKS);
-			success = exportingBooksToMediaMan(outportFile, contentResolver);
+			success = exportingBooksToMediaMan(outportFile,
+					contentResolver, listener);
 			break;
 		case shelfariBooks:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_SHELFARI_BOOKS);
 			success = exportingBooksToShelfariBooks(outportFile,
-					contentResolver);
+					contentResolver, listener);
 			break;
 		case googleLibraryBooks:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_GOOGLE_LIBRARY_BOOKS);
-			success = exportingBooksToGoogleBooks(outportFile, contentResolver);
+			success = exportingBooksToGoogleBooks(outportFile,
+					contentResolver, listener);
 			break;
 		case shelvesBooks:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_SHELVES_BOOKS);
 			success = exportingToShelves(outportFile, contentResolver,
-					BooksStore.Book.CONTENT_URI);
+					BooksStore.Book.CONTENT_URI, listener);
 			break;
 		case shelvesComics:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_SHELVES_COMICS);
 			success = exportingToShelves(outportFile, contentResolver,
-					ComicsStore.Comic.CONTENT_URI);
+					ComicsStore.Comic.CONTENT_URI, listener);
 			break;
 		case DLGadgets:
 			outportFile = IOUtilities.getExternalFile(EXPORT_FILE_DL_GADGETS);
-			success = exportingGadgetsToDL(outportFile, contentResolver);
+			success = exportingGadgetsToDL(outportFile,
+					contentResolver, listener);
 			break;
 		case shelvesGadgets:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_SHELVES_GADGETS);
 			success = exportingToShelves(outportFile, contentResolver,
-					GadgetsStore.Gadget.CONTENT_URI);
+					GadgetsStore.Gadget.CONTENT_URI, listener);
 			break;
 		case DLMovies:
 			outportFile = IOUtilities.getExternalFile(EXPORT_FILE_DL_MOVIES);
-			success = exportingMoviesToDL(outportFile, contentResolver);
+			success = exportingMoviesToDL(outportFile, contentResolver,
+					listener);
 			break;
 		case mediaManMovies:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_MEDIAMAN_MOVIES);
-			success = exportingMoviesToMediaMan(outportFile, contentResolver);
+			success = exportingMoviesToMediaMan(outportFile,
+					contentResolver, listener);
 			break;
 		case shelvesMovies:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_SHELVES_MOVIES);
 			success = exportingToShelves(outportFile, contentResolver,
-					MoviesStore.Movie.CONTENT_URI);
+					MoviesStore.Movie.CONTENT_URI, listener);
 			break;
 		case DLMusic:
 			outportFile = IOUtilities.getExternalFile(EXPORT_FILE_DL_MUSIC);
-			success = exportingMusicToDL(outportFile, contentResolver);
+			success = exportingMusicToDL(outportFile, contentResolver,
+					listener);
 			break;
 		case mediaManMusic:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_MEDIAMAN_MUSIC);
-			success = exportingMusicToMediaMan(outportFile, contentResolver);
+			success = exportingMusicToMediaMan(outportFile,
+					contentResolver, listener);
 			break;
 		case shelvesMusic:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_SHELVES_MUSIC);
 			success = exportingToShelves(outportFile, contentResolver,
-					MusicStore.Music.CONTENT_URI);
+					MusicStore.Music.CONTENT_URI, listener);
 			break;
 		case DLSoftware:
 			outportFile = IOUtilities.getExternalFile(EXPORT_FILE_DL_SOFTWARE);
-			success = exportingSoftwareToDL(outportFile, contentResolver);
+			success = exportingSoftwareToDL(outportFile,
+					contentResolver, listener);
 			break;
 		case shelvesSoftware:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_SHELVES_SOFTWARE);
 			success = exportingToShelves(outportFile, contentResolver,
-					SoftwareStore.Software.CONTENT_URI);
+					SoftwareStore.Software.CONTENT_URI, listener);
 			break;
 		case DLTools:
 			outportFile = IOUtilities.getExternalFile(EXPORT_FILE_DL_TOOLS);
-			success = exportingToolsToDL(outportFile, contentResolver);
+			success = exportingToolsToDL(outportFile, contentResolver,
+					listener);
 			break;
 		case shelvesTools:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_SHELVES_TOOLS);
 			success = exportingToShelves(outportFile, contentResolver,
-					ToolsStore.Tool.CONTENT_URI);
+					ToolsStore.Tool.CONTENT_URI, listener);
 			break;
 		case DLToys:
 			outportFile = IOUtilities.getExternalFile(EXPORT_FILE_DL_TOYS);
-			success = exportingToysToDL(outportFile, contentResolver);
+			success = exportingToysToDL(outportFile, contentResolver,
+					listener);
 			break;
 		case shelvesToys:
 			outportFile = IOUtilities.getExternalFile(EXPORT_FILE_SHELVES_TOYS);
 			success = exportingToShelves(outportFile, contentResolver,
-					ToysStore.Toy.CONTENT_URI);
+					ToysStore.Toy.CONTENT_URI, listener);
 			break;
 		case DLVideoGames:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_DL_VIDEOGAMES);
-			success = exportingVideoGamesToDL(outportFile, contentResolver);
+			success = exportingVideoGamesToDL(outportFile,
+					contentResolver, listener);
 			break;
 		case mediaManVideoGames:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_MEDIAMAN_VIDEOGAMES);
 			success = exportingVideoGamesToMediaMan(outportFile,
-					contentResolver);
+					contentResolver, listener);
 			break;
 		case shelvesVideoGames:
 			outportFile = IOUtilities
 					.getExternalFile(EXPORT_FILE_SHELVES_VIDEOGAMES);
 			success = exportingToShelves(outportFile, contentResolver,
-					VideoGamesStore.VideoGame.CONTENT_URI);
+					VideoGamesStore.VideoGame.CONTENT_URI, listener);
 			break;
 		default:
 			break;
@@ -311,764 +342,413 @@ public final class ExportUtilities extends IOUtilities {
 	}
 
 	private static boolean exportingApparelToDL(File exportFile,
-			ContentResolver contentResolver) throws IOException {
-		String[] row = new String[] { "server link", BaseItem.TITLE,
-				BaseItem.AUTHORS, BaseItem.FEATURES, BaseItem.FABRIC,
-				BaseItem.DEPARTMENT, BaseItem.RATING };
-
-		TSVWriter writer = null;
-		boolean success = false;
-		Cursor c = null;
-
-		try {
-			writer = new TSVWriter(new OutputStreamWriter(new FileOutputStream(
-					exportFile), "UTF-8"), TSVWriter.DEFAULT_SEPARATOR,
-					TSVWriter.NO_QUOTE_CHARACTER,
-					TSVWriter.NO_ESCAPE_CHARACTER, TSVWriter.DEFAULT_LINE_END);
-
-			// Write header row
-			writer.writeNext(row);
-			c = contentResolver.query(ApparelStore.Apparel.CONTENT_URI,
-					new String[] { BaseItem.INTERNAL_ID, BaseItem.TITLE,
-							BaseItem.AUTHORS, BaseItem.FEATURES,
-							BaseItem.FABRIC, BaseItem.DEPARTMENT,
-							BaseItem.RATING }, null, null, null);
-			if (c.moveToFirst()) {
-				do {
-					row[0] = c.getString(0).replace(ServerInfo.NAME, "");
-					row[1] = c.getString(1);
-					row[2] = c.getString(2);
-					row[3] = c.getString(3);
-					row[4] = c.getString(4);
-					row[5] = c.getString(5);
-					row[6] = c.getString(6);
-
-					writer.writeNext(row);
-					success = true;
-				} while (c.moveToNext());
-			}
-		} catch (Exception ex) {
-			Log.e(LOG_TAG, ex.toString());
-		} finally {
-			if (null != writer)
-				writer.close();
-			if (c != null)
-				c.close();
-		}
-
-		return success;
+			ContentResolver contentResolver, ExportListener listener) {
+		return exportRows(exportFile, contentResolver,
+				ApparelStore.Apparel.CONTENT_URI, new String[] {
+						BaseItem.INTERNAL_ID, BaseItem.TITLE, BaseItem.AUTHORS,
+						BaseItem.FEATURES, BaseItem.FABRIC,
+						BaseItem.DEPARTMENT, BaseItem.RATING }, new String[] {
+						"server link", BaseItem.TITLE, BaseItem.AUTHORS,
+						BaseItem.FEATURES, BaseItem.FABRIC,
+						BaseItem.DEPARTMENT, BaseItem.RATING },
+				TSVWriter.DEFAULT_SEPARATOR, TSVWriter.NO_QUOTE_CHARACTER,
+				new ServerLinkFormatter(), listener);
 	}
 
 	private static boolean exportingBooksToMediaMan(File exportFile,
-			ContentResolver contentResolver) throws IOException {
-
-		TSVWriter writer = null;
-		boolean success = false;
-		Cursor c = null;
-
-		try {
-			writer = new TSVWriter(new OutputStreamWriter(new FileOutputStream(
-					exportFile), "UTF-8"), TSVWriter.DEFAULT_SEPARATOR,
-					TSVWriter.NO_QUOTE_CHARACTER,
-					TSVWriter.NO_ESCAPE_CHARACTER, TSVWriter.DEFAULT_LINE_END);
-
-			c = contentResolver.query(BooksStore.Book.CONTENT_URI,
-					new String[] { BaseItem.INTERNAL_ID }, null, null, null);
-			if (c.moveToFirst()) {
-				do {
-					writer.writeNext(new String[] { c.getString(0).replace(
-							ServerInfo.NAME, "") });
-					success = true;
-				} while (c.moveToNext());
-			}
-		} catch (Exception ex) {
-			Log.e(LOG_TAG, ex.toString());
-		} finally {
-			if (null != writer)
-				writer.close();
-			if (c != null)
-				c.close();
-		}
-
-		return success;
+			ContentResolver contentResolver, ExportListener listener) {
+		return exportRows(exportFile, contentResolver,
+				BooksStore.Book.CONTENT_URI,
+				new String[] { BaseItem.INTERNAL_ID }, null,
+				TSVWriter.DEFAULT_SEPARATOR, TSVWriter.NO_QUOTE_CHARACTER,
+				new ServerLinkFormatter(), listener);
 	}
 
 	private static boolean exportingBooksToLibraryThing(File exportFile,
-			ContentResolver contentResolver) throws IOException {
-		String[] row = new String[] { "'TITLE'", "'AUTHOR (last, first)'",
-				"'DATE'", "'ISBN'", "'PUBLICATION INFO'", "'TAGS'", "'RATING'",
-				"'REVIEW'", "'ENTRY DATE'" };
-
-		TSVWriter writer = null;
-		boolean success = false;
-		Cursor c = null;
-
-		try {
-			writer = new TSVWriter(new OutputStreamWriter(new FileOutputStream(
-					exportFile), "UTF-8"), ',', '"',
-					TSVWriter.NO_ESCAPE_CHARACTER, TSVWriter.DEFAULT_LINE_END);
-
-			// Write header row
-			writer.writeNext(row);
-
-			c = contentResolver
-					.query(BooksStore.Book.CONTENT_URI, new String[] {
-							BaseItem.INTERNAL_ID, BaseItem.ISBN, BaseItem.TAGS,
-							BaseItem.RATING, }, null, null, null);
-			if (c.moveToFirst()) {
-				do {
-					row[0] = " ";
-					row[1] = " ";
-					row[2] = " ";
-					row[3] = c.getString(1);
-					row[4] = " ";
-					row[5] = c.getString(2);
-					row[6] = c.getString(3);
-					row[7] = " ";
-					row[8] = " ";
-
-					writer.writeNext(row);
-					success = true;
-				} while (c.moveToNext());
-			}
-		} catch (Exception ex) {
-			Log.e(LOG_TAG, ex.toString());
-		} finally {
-			if (null != writer)
-				writer.close();
-			if (c != null)
-				c.close();
-		}
-
-		return success;
+			ContentResolver contentResolver, ExportListener listener) {
+		final String[] row = new String[] { "'TITLE'",
+				"'AUTHOR (last, first)'", "'DATE'", "'ISBN'",
+				"'PUBLICATION INFO'", "'TAGS'", "'RATING'", "'REVIEW'",
+				"'ENTRY DATE'" };
+
+		return exportRows(exportFile, contentResolver,
+				BooksStore.Book.CONTENT_URI, new String[] {
+						BaseItem.INTERNAL_ID, BaseItem.ISBN, BaseItem.TAGS,
+						BaseItem.RATING }, row.clone(), ',', '"',
+				new RowFormatter() {
+					@Override
+					String[] format(Cursor c, String[] columns) {
+						row[0] = " ";
+						row[1] = " ";
+						row[2] = " ";
+						row[3] = c.getString(1);
+						row[4] = " ";
+						row[5] = c.getString(2);
+						row[6] = c.getString(3);
+						row[7] = " ";
+						row[8] = " ";
+						return row;
+					}
+				}, listener);
 	}
 
 	private static boolean exportingBooksToDL(File exportFile,
-			ContentResolver contentResolver) throws IOException {
-		String[] row = new String[] { "server link", BaseItem.ISBN,
-				BaseItem.TITLE, BaseItem.AUTHORS, BaseItem.PUBLISHER,
-				BaseItem.PAGES, BaseItem.RATING };
-
-		TSVWriter writer = null;
-		boolean success = false;
-		Cursor c = null;
-
-		try {
-			writer = new TSVWriter(new OutputStreamWriter(new FileOutputStream(
-					exportFile), "UTF-8"), TSVWriter.DEFAULT_SEPARATOR,
-					TSVWriter.NO_QUOTE_CHARACTER,
-					TSVWriter.NO_ESCAPE_CHARACTER, TSVWriter.DEFAULT_LINE_END);
-
-			// Write header row
-			writer.writeNext(row);
-
-			c = contentResolver
-					.query(BooksStore.Book.CONTENT_URI,
-							new String[] { BaseItem.INTERNAL_ID, BaseItem.ISBN,
-									BaseItem.TITLE, BaseItem.AUTHORS,
-									BaseItem.PUBLISHER, BaseItem.PAGES,
-									BaseItem.RATING }, null, null, null);
-			if (c.moveToFirst()) {
-				do {
-					row[0] = c.getString(0).replace(ServerInfo.NAME, "");
-					row[1] = c.getString(1);
-					row[2] = c.getString(2);
-					row[3] = c.getString(3);
-					row[4] = c.getString(4);
-					row[5] = c.getString(5);
-					row[6] = c.getString(6);
-
-					writer.writeNext(row);
-					success = true;
-				} while (c.moveToNext());
-			}
-		} catch (Exception ex) {
-			Log.e(LOG_TAG, ex.toString());
-		} finally {
-			if (null != writer)
-				writer.close();
-			if (c != null)
-				c.close();
-		}
-
-		return success;
+			ContentResolver contentResolver, ExportListener listener) {
+		return exportRows(exportFile, contentResolver,
+				BooksStore.Book.CONTENT_URI, new String[] {
+						BaseItem.INTERNAL_ID, BaseItem.ISBN, BaseItem.TITLE,
+						BaseItem.AUTHORS, BaseItem.PUBLISHER, BaseItem.PAGES,
+						BaseItem.RATING }, new String[] { "server link",
+						BaseItem.ISBN, BaseItem.TITLE, BaseItem.AUTHORS,
+						BaseItem.PUBLISHER, BaseItem.PAGES, BaseItem.RATING },
+				TSVWriter.DEFAULT_SEPARATOR, TSVWriter.NO_QUOTE_CHARACTER,
+				new ServerLinkFormatter(), listener);
 	}
 
 	// GJT: Google books import just takes a list of ISBNs
 	private static boolean exportingBooksToGoogleBooks(File exportFile,
-			ContentResolver contentResolver) {
-		String[] row = new String[] { BaseItem.EAN };
-
-		TSVWriter writer = null;
-		boolean success = false;
-		Cursor c = null;
-		try {
-			writer = new TSVWriter(new OutputStreamWriter(new FileOutputStream(
-					exportFile), "UTF-8"), TSVWriter.DEFAULT_SEPARATOR,
-					TSVWriter.NO_QUOTE_CHARACTER,
-					TSVWriter.NO_ESCAPE_CHARACTER, TSVWriter.DEFAULT_LINE_END);
-
-			// Write header row
-			writer.writeNext(row);
-			try {
-				c = contentResolver.query(BooksStore.Book.CONTENT_URI,
-						new String[] { BaseItem.EAN }, null, null, null);
-				if (c.moveToFirst()) {
-					do {
-						row[0] = c.getString(0);
-
-						writer.writeNext(row);
-						success = true;
-					} while (c.moveToNext());
-				}
-			} finally {
-				if (c != null)
-					c.close();
-			}
-		} catch (Exception ex) {
-			Log.e(LOG_TAG, "exportingBooksToGoogleBooks", ex);
-		} finally {
-			try {
-				if (null != writer)
-					writer.close();
-			} catch (IOException ex) {
-			}
-		}
-
-		return success;
+			ContentResolver contentResolver, ExportListener listener) {
+		return exportRows(exportFile, contentResolver,
+				BooksStore.Book.CONTENT_URI, new String[] { BaseItem.EAN },
+				new String[] { BaseItem.EAN }, TSVWriter.DEFAULT_SEPARATOR,
+				TSVWriter.NO_QUOTE_CHARACTER, new RowFormatter(), listener);
 	}
 
 	// GJT: According to the Shelfari website:
 	// Shelfari looks for ISBN numbers, titles, and author names when importing
 	// a file.
 	private static boolean exportingBooksToShelfariBooks(File exportFile,
-			ContentResolver contentResolver) throws IOException {
-		String[] row = new String[] { BaseItem.EAN, BaseItem.TITLE,
+			ContentResolver contentResolver, ExportListener listener) {
+		final String[] columns = new String[] { BaseItem.EAN, BaseItem.TITLE,
 				BaseItem.AUTHORS };
 
-		TSVWriter writer = null;
-		boolean success = false;
-		Cursor c = null;
-		try {
-			writer = new TSVWriter(new OutputStreamWriter(new FileOutputStream(
-					exportFile), "UTF-8"), TSVWriter.DEFAULT_SEPARATOR,
-					TSVWriter.NO_QUOTE_CHARACTER,
-					TSVWriter.NO_ESCAPE_CHARACTER, TSVWriter.DEFAULT_LINE_END);
-
-			// Write header row
-			writer.writeNext(row);
-			try {
-				c = contentResolver.query(BooksStore.Book.CONTENT_URI,
-						new String[] { BaseItem.EAN, BaseItem.TITLE,
-								BaseItem.AUTHORS }, null, null, null);
-				if (c.moveToFirst()) {
-					do {
-						row[0] = c.getString(0);
-						row[1] = c.getString(1);
-						row[2] = c.getString(2);
-
-						writer.writeNext(row);
-						success = true;
-					} while (c.moveToNext());
-				}
-			} finally {
-				if (c != null)
-					c.close();
-			}
-		} catch (Exception ex) {
-			Log.e(LOG_TAG, "exportingBooksToShelfari", ex);
-		} finally {
-			try {
-				if (null != writer)
-					writer.close();
-			} catch (IOException ex) {
-			}
-		}
-
-		return success;
+		return exportRows(exportFile, contentResolver,
+				BooksStore.Book.CONTENT_URI, columns, columns,
+				TSVWriter.DEFAULT_SEPARATOR, TSVWriter.NO_QUOTE_CHARACTER,
+				new RowFormatter(), listener);
 	}
 
 	private static boolean exportingGadgetsToDL(File exportFile,
-			ContentResolver contentResolver) throws IOException {
-		String[] row = new String[] { "server link", BaseItem.TITLE,
-				BaseItem.AUTHORS, BaseItem.FEATURES, BaseItem.RATING };
-
-		TSVWriter writer = null;
-		boolean success = false;
-		Cursor c = null;
-
-		try {
-			writer = new TSVWriter(new OutputStreamWriter(new FileOutputStream(
-					exportFile), "UTF-8"), TSVWriter.DEFAULT_SEPARATOR,
-					TSVWriter.NO_QUOTE_CHARACTER,
-					TSVWriter.NO_ESCAPE_CHARACTER, TSVWriter.DEFAULT_LINE_END);
-
-			// Write header row
-			writer.writeNext(row);
-
-			c = contentResolver.query(GadgetsStore.Gadget.CONTENT_URI,
-					new String[] { BaseItem.INTERNAL_ID, BaseItem.TITLE,
-							BaseItem.AUTHORS, BaseItem.FEATURES,
-							BaseItem.RATING }, null, null, null);
-			if (c.moveToFirst()) {
-				do {
-					row[0] = c.getString(0).replace(ServerInfo.NAME, "");
-					row[1] = c.getString(1);
-					row[2] = c.getString(2);
-					row[3] = c.getString(3);
-					row[4] = c.getString(4);
-
-					writer.writeNext(row);
-					success = true;
-				} while (c.moveToNext());
-			}
-		} catch (Exception ex) {
-			Log.e(LOG_TAG, ex.toString());
-		} finally {
-			if (null != writer)
-				writer.close();
-			if (c != null)
-				c.close();
-		}
-
-		return success;
+			ContentResolver contentResolver, ExportListener listener) {
+		return exportRows(exportFile, contentResolver,
+				GadgetsStore.Gadget.CONTENT_URI, new String[] {
+						BaseItem.INTERNAL_ID, BaseItem.TITLE, BaseItem.AUTHORS,
+						BaseItem.FEATURES, BaseItem.RATING }, new String[] {
+						"server link", BaseItem.TITLE, BaseItem.AUTHORS,
+						BaseItem.FEATURES, BaseItem.RATING },
+				TSVWriter.DEFAULT_SEPARATOR, TSVWriter.NO_QUOTE_CHARACTER,
+				new ServerLinkFormatter(), listener);
 	}
 
 	private static boolean exportingMoviesToDL(File exportFile,
-			ContentResolver contentResolver) throws IOException {
-		String[] row = new String[] { "server link", BaseItem.TITLE,
-				BaseItem.DIRECTORS, BaseItem.ACTORS, BaseItem.LABEL,
-				"features", BaseItem.RUNNING_TIME, BaseItem.LANGUAGES,
-				BaseItem.RATING };
-
-		TSVWriter writer = null;
-		boolean success = false;
-		Cursor c = null;
-
-		try {
-			writer = new TSVWriter(new OutputStreamWriter(new FileOutputStream(
-					exportFile), "UTF-8"), TSVWriter.DEFAULT_SEPARATOR,
-					TSVWriter.NO_QUOTE_CHARACTER,
-					TSVWriter.NO_ESCAPE_CHARACTER, TSVWriter.DEFAULT_LINE_END);
-
-			// Write header row
-			writer.writeNext(row);
-
-			c = contentResolver.query(MoviesStore.Movie.CONTENT_URI,
-					new String[] { BaseItem.INTERNAL_ID, BaseItem.TITLE,
-							BaseItem.DIRECTORS, BaseItem.ACTORS,
-							BaseItem.LABEL, BaseItem.FEATURES,
-							BaseItem.RUNNING_TIME, BaseItem.LANGUAGES,
-							BaseItem.RATING }, null, null, null);
-			if (c.moveToFirst()) {
-				do {
-					row[0] = c.getString(0).replace(ServerInfo.NAME, "");
-					row[1] = c.getString(1);
-					row[2] = c.getString(2);
-					row[3] = c.getString(3);
-					row[4] = c.getString(4);
-					row[5] = c.getString(5);
-					row[6] = c.getString(6);
-					row[7] = c.getString(7);
-					row[8] = c.getString(8);
-
-					writer.writeNext(row);
-					success = true;
-				} while (c.moveToNext());
-			}
-		} catch (Exception ex) {
-			Log.e(LOG_TAG, ex.toString());
-		} finally {
-			if (null != writer)
-				writer.close();
-			if (c != null)
-				c.close();
-		}
-
-		return success;
+			ContentResolver contentResolver, ExportListener listener) {
+		return exportRows(exportFile, contentResolver,
+				MoviesStore.Movie.CONTENT_URI, new String[] {
+						BaseItem.INTERNAL_ID, BaseItem.TITLE,
+						BaseItem.DIRECTORS, BaseItem.ACTORS, BaseItem.LABEL,
+						BaseItem.FEATURES, BaseItem.RUNNING_TIME,
+						BaseItem.LANGUAGES, BaseItem.RATING }, new String[] {
+						"server link", BaseItem.TITLE, BaseItem.DIRECTORS,
+						BaseItem.ACTORS, BaseItem.LABEL, "features",
+						BaseItem.RUNNING_TIME, BaseItem.LANGUAGES,
+						BaseItem.RATING }, TSVWriter.DEFAULT_SEPARATOR,
+				TSVWriter.NO_QUOTE_CHARACTER, new ServerLinkFormatter(),
+				listener);
 	}
 
 	private static boolean exportingMoviesToMediaMan(File exportFile,
-			ContentResolver contentResolver) throws IOException {
-
-		TSVWriter writer = null;
-		boolean success = false;
-		Cursor c = null;
-
-		try {
-			writer = new TSVWriter(new OutputStreamWriter(new FileOutputStream(
-					exportFile), "UTF-8"), TSVWriter.DEFAULT_SEPARATOR,
-					TSVWriter.NO_QUOTE_CHARACTER,
-					TSVWriter.NO_ESCAPE_CHARACTER, TSVWriter.DEFAULT_LINE_END);
-
-			c = contentResolver.query(MoviesStore.Movie.CONTENT_URI,
-					new String[] { BaseItem.INTERNAL_ID }, null, null, null);
-			if (c.moveToFirst()) {
-				do {
-					writer.writeNext(new String[] { c.getString(0).replace(
-							ServerInfo.NAME, "") });
-					success = true;
-				} while (c.moveToNext());
-			}
-		} catch (Exception ex) {
-			Log.e(LOG_TAG, ex.toString());
-		} finally {
-			if (null != writer)
-				writer.close();
-			if (c != null)
-				c.close();
-		}
-
-		return success;
+			ContentResolver contentResolver, ExportListener listener) {
+		return exportRows(exportFile, contentResolver,
+				MoviesStore.Movie.CONTENT_URI,
+				new String[] { BaseItem.INTERNAL_ID }, null,
+				TSVWriter.DEFAULT_SEPARATOR, TSVWriter.NO_QUOTE_CHARACTER,
+				new ServerLinkFormatter(), listener);
 	}
 
 	private static boolean exportingMusicToDL(File exportFile,
-			ContentResolver contentResolver) throws IOException {
-		String[] row = new String[] { "server link", BaseItem.TITLE,
-				BaseItem.AUTHORS, BaseItem.LABEL, BaseItem.FORMAT,
-				BaseItem.RATING };
-
-		TSVWriter writer = null;
-		boolean success = false;
-		Cursor c = null;
-
-		try {
-			writer = new TSVWriter(new OutputStreamWriter(new FileOutputStream(
-					exportFile), "UTF-8"), TSVWriter.DEFAULT_SEPARATOR,
-					TSVWriter.NO_QUOTE_CHARACTER,
-					TSVWriter.NO_ESCAPE_CHARACTER, TSVWriter.DEFAULT_LINE_END);
-
-			// Write header row
-			writer.writeNext(row);
-
-			c = contentResolver.query(MusicStore.Music.CONTENT_URI,
-					new String[] { BaseItem.INTERNAL_ID, BaseItem.TITLE,
-							BaseItem.AUTHORS, BaseItem.LABEL, BaseItem.FORMAT,
-							BaseItem.RATING }, null, null, null);
-			if (c.moveToFirst()) {
-				do {
-					row[0] = c.getString(0).replace(ServerInfo.NAME, "");
-					row[1] = c.getString(1);
-					row[2] = c.getString(2);
-					row[3] = c.getString(3);
-					row[4] = c.getString(4);
-					row[5] = c.getString(5);
-
-					writer.writeNext(row);
-					success = true;
-				} while (c.moveToNext());
-			}
-		} catch (Exception ex) {
-			Log.e(LOG_TAG, ex.toString());
-		} finally {
-			if (null != writer)
-				writer.close();
-			if (c != null)
-				c.close();
-		}
-
-		return success;
+			ContentResolver contentResolver, ExportListener listener) {
+		return exportRows(exportFile, contentResolver,
+				MusicStore.Music.CONTENT_URI, new String[] {
+						BaseItem.INTERNAL_ID, BaseItem.TITLE, BaseItem.AUTHORS,
+						BaseItem.LABEL, BaseItem.FORMAT, BaseItem.RATING },
+				new String[] { "server link", BaseItem.TITLE,
+						BaseItem.AUTHORS, BaseItem.LABEL, BaseItem.FORMAT,
+						BaseItem.RATING }, TSVWriter.DEFAULT_SEPARATOR,
+				TSVWriter.NO_QUOTE_CHARACTER, new ServerLinkFormatter(),
+				listener);
 	}
 
 	private static boolean exportingMusicToMediaMan(File exportFile,
-			ContentResolver contentResolver) throws IOException {
-
-		TSVWriter writer = null;
-		boolean success = false;
-		Cursor c = null;
-
-		try {
-			writer = new TSVWriter(new OutputStreamWriter(new FileOutputStream(
-					exportFile), "UTF-8"), TSVWriter.DEFAULT_SEPARATOR,
-					TSVWriter.NO_QUOTE_CHARACTER,
-					TSVWriter.NO_ESCAPE_CHARACTER, TSVWriter.DEFAULT_LINE_END);
-
-			c = contentResolver.query(MusicStore.Music.CONTENT_URI,
-					new String[] { BaseItem.INTERNAL_ID }, null, null, null);
-			if (c.moveToFirst()) {
-				do {
-					writer.writeNext(new String[] { c.getString(0).replace(
-							ServerInfo.NAME, "") });
-					success = true;
-				} while (c.moveToNext());
-			}
-		} catch (Exception ex) {
-			Log.e(LOG_TAG, ex.toString());
-		} finally {
-			if (null != writer)
-				writer.close();
-			if (c != null)
-				c.close();
-		}
-
-		return success;
+			ContentResolver contentResolver, ExportListener listener) {
+		return exportRows(exportFile, contentResolver,
+				MusicStore.Music.CONTENT_URI,
+				new String[] { BaseItem.INTERNAL_ID }, null,
+				TSVWriter.DEFAULT_SEPARATOR, TSVWriter.NO_QUOTE_CHARACTER,
+				new ServerLinkFormatter(), listener);
 	}
 
 	private static boolean exportingSoftwareToDL(File exportFile,
-			ContentResolver contentResolver) throws IOException {
-		String[] row = new String[] { "server link", BaseItem.TITLE,
-				BaseItem.AUTHORS, BaseItem.FORMAT, BaseItem.PLATFORM,
-				BaseItem.RATING };
-
-		TSVWriter writer = null;
-		boolean success = false;
-		Cursor c = null;
-
-		try {
-			writer = new TSVWriter(new OutputStreamWriter(new FileOutputStream(
-					exportFile), "UTF-8"), TSVWriter.DEFAULT_SEPARATOR,
-					TSVWriter.NO_QUOTE_CHARACTER,
-					TSVWriter.NO_ESCAPE_CHARACTER, TSVWriter.DEFAULT_LINE_END);
-
-			// Write header row
-			writer.writeNext(row);
-
-			c = contentResolver.query(SoftwareStore.Software.CONTENT_URI,
-					new String[] { BaseItem.INTERNAL_ID, BaseItem.TITLE,
-							BaseItem.AUTHORS, BaseItem.FORMAT,
-							BaseItem.PLATFORM, BaseItem.RATING }, null, null,
-					null);
-			if (c.moveToFirst()) {
-				do {
-					row[0] = c.getString(0).replace(ServerInfo.NAME, "");
-					row[1] = c.getString(1);
-					row[2] = c.getString(2);
-					row[3] = c.getString(3);
-					row[4] = c.getString(4);
-					row[5] = c.getString(5);
-
-					writer.writeNext(row);
-					success = true;
-				} while (c.moveToNext());
-			}
-		} catch (Exception ex) {
-			Log.e(LOG_TAG, ex.toString());
-		} finally {
-			if (null != writer)
-				writer.close();
-			if (c != null)
-				c.close();
-		}
-
-		return success;
+			ContentResolver contentResolver, ExportListener listener) {
+		return exportRows(exportFile, contentResolver,
+				SoftwareStore.Software.CONTENT_URI, new String[] {
+						BaseItem.INTERNAL_ID, BaseItem.TITLE, BaseItem.AUTHORS,
+						BaseItem.FORMAT, BaseItem.PLATFORM, BaseItem.RATING },
+				new String[] { "server link", BaseItem.TITLE,
+						BaseItem.AUTHORS, BaseItem.FORMAT, BaseItem.PLATFORM,
+						BaseItem.RATING }, TSVWriter.DEFAULT_SEPARATOR,
+				TSVWriter.NO_QUOTE_CHARACTER, new ServerLinkFormatter(),
+				listener);
 	}
 
 	private static boolean exportingToolsToDL(File exportFile,
-			ContentResolver contentResolver) throws IOException {
-		String[] row = new String[] { "server link", BaseItem.TITLE,
-				BaseItem.AUTHORS, "features", BaseItem.RATING };
+			ContentResolver contentResolver, ExportListener listener) {
+		return exportRows(exportFile, contentResolver,
+				ToolsStore.Tool.CONTENT_URI, new String[] {
+						BaseItem.INTERNAL_ID, BaseItem.TITLE, BaseItem.AUTHORS,
+						BaseItem.FEATURES, BaseItem.RATING }, new String[] {
+						"server link", BaseItem.TITLE, BaseItem.AUTHORS,
+						"features", BaseItem.RATING },
+				TSVWriter.DEFAULT_SEPARATOR, TSVWriter.NO_QUOTE_CHARACTER,
+				new ServerLinkFormatter(), listener);
+	}
 
-		TSVWriter writer = null;
-		boolean success = false;
-		Cursor c = null;
+	private static boolean exportingToysToDL(File exportFile,
+			ContentResolver contentResolver, ExportListener listener) {
+		return exportRows(exportFile, contentResolver,
+				ToysStore.Toy.CONTENT_URI, new String[] {
+						BaseItem.INTERNAL_ID, BaseItem.TITLE, BaseItem.AUTHORS,
+						BaseItem.FEATURES, BaseItem.RATING }, new String[] {
+						"server link", BaseItem.TITLE, BaseItem.AUTHORS,
+						BaseItem.FEATURES, BaseItem.RATING },
+				TSVWriter.DEFAULT_SEPARATOR, TSVWriter.NO_QUOTE_CHARACTER,
+				new ServerLinkFormatter(), listener);
+	}
 
-		try {
-			writer = new TSVWriter(new OutputStreamWriter(new FileOutputStream(
-					exportFile), "UTF-8"), TSVWriter.DEFAULT_SEPARATOR,
-					TSVWriter.NO_QUOTE_CHARACTER,
-					TSVWriter.NO_ESCAPE_CHARACTER, TSVWriter.DEFAULT_LINE_END);
+	private static boolean exportingVideoGamesToDL(File exportFile,
+			ContentResolver contentResolver, ExportListener listener) {
+		return exportRows(exportFile, contentResolver,
+				VideoGamesStore.VideoGame.CONTENT_URI, new String[] {
+						BaseItem.INTERNAL_ID, BaseItem.TITLE, BaseItem.AUTHORS,
+						BaseItem.ESRB, BaseItem.FEATURES, BaseItem.PLATFORM,
+						BaseItem.GENRE, BaseItem.RATING }, new String[] {
+						"server link", BaseItem.TITLE, BaseItem.AUTHORS,
+						BaseItem.ESRB, "features", BaseItem.PLATFORM,
+						BaseItem.GENRE, BaseItem.RATING },
+				TSVWriter.DEFAULT_SEPARATOR, TSVWriter.NO_QUOTE_CHARACTER,
+				new ServerLinkFormatter(), listener);
+	}
 
-			// Write header row
-			writer.writeNext(row);
-			c = contentResolver.query(ToolsStore.Tool.CONTENT_URI,
-					new String[] { BaseItem.INTERNAL_ID, BaseItem.TITLE,
-							BaseItem.AUTHORS, BaseItem.FEATURES,
-							BaseItem.RATING }, null, null, null);
-			if (c.moveToFirst()) {
-				do {
-					row[0] = c.getString(0).replace(ServerInfo.NAME, "");
-					row[1] = c.getString(1);
-					row[2] = c.getString(2);
-					row[3] = c.getString(3);
-					row[4] = c.getString(4);
-
-					writer.writeNext(row);
-					success = true;
-				} while (c.moveToNext());
-			}
-		} catch (Exception ex) {
-			Log.e(LOG_TAG, ex.toString());
-		} finally {
-			if (null != writer)
-				writer.close();
-			if (c != null)
-				c.close();
-		}
+	private static boolean exportingVideoGamesToMediaMan(File exportFile,
+			ContentResolver contentResolver, ExportListener listener) {
+		return exportRows(exportFile, contentResolver,
+				VideoGamesStore.VideoGame.CONTENT_URI,
+				new String[] { BaseItem.INTERNAL_ID }, null,
+				TSVWriter.DEFAULT_SEPARATOR, TSVWriter.NO_QUOTE_CHARACTER,
+				new ServerLinkFormatter(), listener);
+	}
 
-		return success;
+	public static boolean exportingToShelves(File exportFile,
+			ContentResolver contentResolver, Uri uri) throws IOException {
+		return exportingToShelves(exportFile, contentResolver, uri, null);
 	}
 
-	private static boolean exportingToysToDL(File exportFile,
-			ContentResolver contentResolver) throws IOException {
-		String[] row = new String[] { "server link", BaseItem.TITLE,
-				BaseItem.AUTHORS, BaseItem.FEATURES, BaseItem.RATING };
+	public static boolean exportingToShelves(File exportFile,
+			ContentResolver contentResolver, Uri uri, ExportListener listener)
+			throws IOException {
+		// Every column the user entered, headed by the column names
+		return exportRows(exportFile, contentResolver, uri, null, null,
+				TSVWriter.DEFAULT_SEPARATOR, TSVWriter.NO_QUOTE_CHARACTER,
+				new BackupFormatter(), listener);
+	}
 
-		TSVWriter writer = null;
-		boolean success = false;
-		Cursor c = null;
+	/**
+	 * Told of the progress of an export, once per page of rows.
+	 */
+	public interface ExportListener {
+		void onRowsExported(int rows, int rowsPerSecond);
+	}
 
-		try {
-			writer = new TSVWriter(new OutputStreamWriter(new FileOutputStream(
-					exportFile), "UTF-8"), TSVWriter.DEFAULT_SEPARATOR,
-					TSVWriter.NO_QUOTE_CHARACTER,
-					TSVWriter.NO_ESCAPE_CHARACTER, TSVWriter.DEFAULT_LINE_END);
+	/**
+	 * Turns the current row of the cursor into the fields written to the
+	 * file. By default, the fields are the requested columns, in order.
+	 */
+	private static class RowFormatter {
+		/**
+		 * Called once, before the first row is written.
+		 */
+		void begin(Cursor c, TSVWriter writer) throws IOException {
+		}
 
-			// Write header row
-			writer.writeNext(row);
-			c = contentResolver.query(ToysStore.Toy.CONTENT_URI, new String[] {
-					BaseItem.INTERNAL_ID, BaseItem.TITLE, BaseItem.AUTHORS,
-					BaseItem.FEATURES, BaseItem.RATING }, null, null, null);
-			if (c.moveToFirst()) {
-				do {
-					row[0] = c.getString(0).replace(ServerInfo.NAME, "");
-					row[1] = c.getString(1);
-					row[2] = c.getString(2);
-					row[3] = c.getString(3);
-					row[4] = c.getString(4);
-
-					writer.writeNext(row);
-					success = true;
-				} while (c.moveToNext());
+		/**
+		 * @param columns
+		 *            A scratch array, as long as the requested columns
+		 * @return The fields to write
+		 */
+		String[] format(Cursor c, String[] columns) {
+			for (int i = 0; i < columns.length; i++) {
+				columns[i] = c.getString(i);
 			}
-		} catch (Exception ex) {
-			Log.e(LOG_TAG, ex.toString());
-		} finally {
-			if (null != writer)
-				writer.close();
-			if (c != null)
-				c.close();
+			return columns;
 		}
-
-		return success;
 	}
 
-	private static boolean exportingVideoGamesToDL(File exportFile,
-			ContentResolver contentResolver) throws IOException {
-		String[] row = new String[] { "server link", BaseItem.TITLE,
-				BaseItem.AUTHORS, BaseItem.ESRB, "features", BaseItem.PLATFORM,
-				BaseItem.GENRE, BaseItem.RATING };
-
-		TSVWriter writer = null;
-		boolean success = false;
-		Cursor c = null;
-
-		try {
-			writer = new TSVWriter(new OutputStreamWriter(new FileOutputStream(
-					exportFile), "UTF-8"), TSVWriter.DEFAULT_SEPARATOR,
-					TSVWriter.NO_QUOTE_CHARACTER,
-					TSVWriter.NO_ESCAPE_CHARACTER, TSVWriter.DEFAULT_LINE_END);
+	/**
+	 * Writes the requested columns, the first one being the internal id
+	 * turned into the link of the item on the server.
+	 */
+	private static class ServerLinkFormatter extends RowFormatter {
+		@Override
+		String[] format(Cursor c, String[] columns) {
+			super.format(c, columns);
+			columns[0] = columns[0].replace(ServerInfo.NAME, "");
+			return columns;
+		}
+	}
 
-			// Write header row
-			writer.writeNext(row);
-			c = contentResolver
-					.query(VideoGamesStore.VideoGame.CONTENT_URI,
-							new String[] { BaseItem.INTERNAL_ID,
-									BaseItem.TITLE, BaseItem.AUTHORS,
-									BaseItem.ESRB, BaseItem.FEATURES,
-									BaseItem.PLATFORM, BaseItem.GENRE,
-									BaseItem.RATING }, null, null, null);
-			if (c.moveToFirst()) {
-				do {
-					row[0] = c.getString(0).replace(ServerInfo.NAME, "");
-					row[1] = c.getString(1);
-					row[2] = c.getString(2);
-					row[3] = c.getString(3);
-					row[4] = c.getString(4);
-					row[5] = c.getString(5);
-					row[6] = c.getString(6);
-					row[7] = c.getString(7);
-
-					writer.writeNext(row);
-					success = true;
-				} while (c.moveToNext());
+	/**
+	 * Writes every column but the ones the provider derives, see
+	 * {@link BaseItemContentProvider#isDerivedColumn(String)}, headed by the
+	 * column names.
+	 */
+	private static class BackupFormatter extends RowFormatter {
+		private int[] mColumns;
+		private String[] mFields;
+
+		@Override
+		void begin(Cursor c, TSVWriter writer) throws IOException {
+			final String[] names = c.getColumnNames();
+			final ArrayList<String> kept = new ArrayList<String>(names.length);
+			mColumns = new int[names.length];
+			for (int i = 0; i < names.length; i++) {
+				if (!BaseItemContentProvider.isDerivedColumn(names[i])) {
+					mColumns[kept.size()] = i;
+					kept.add(names[i]);
+				}
 			}
-		} catch (Exception ex) {
-			Log.e(LOG_TAG, ex.toString());
-		} finally {
-			if (null != writer)
-				writer.close();
-			if (c != null)
-				c.close();
+			mFields = new String[kept.size()];
+			writer.writeNext(kept.toArray(new String[kept.size()]));
 		}
 
-		return success;
+		@Override
+		String[] format(Cursor c, String[] columns) {
+			for (int i = 0; i < mFields.length; i++) {
+				mFields[i] = c.getString(mColumns[i]);
+			}
+			return mFields;
+		}
 	}
 
-	private static boolean exportingVideoGamesToMediaMan(File exportFile,
-			ContentResolver contentResolver) throws IOException {
-
+	/**
+	 * Writes the specified columns of every item to the file.
+	 * 
+	 * @param projection
+	 *            The columns to read, or null for all of them
+	 * @param header
+	 *            The header row, or null if there is none
+	 * @return True if at least one item was exported
+	 */
+	private static boolean exportRows(File exportFile,
+			ContentResolver contentResolver, Uri uri, String[] projection,
+			String[] header, char separator, char quotechar,
+			RowFormatter formatter, ExportListener listener) {
 		TSVWriter writer = null;
 		boolean success = false;
-		Cursor c = null;
 
 		try {
-			writer = new TSVWriter(new OutputStreamWriter(new FileOutputStream(
-					exportFile), "UTF-8"), TSVWriter.DEFAULT_SEPARATOR,
-					TSVWriter.NO_QUOTE_CHARACTER,
+			writer = new TSVWriter(exportFile, separator, quotechar,
 					TSVWriter.NO_ESCAPE_CHARACTER, TSVWriter.DEFAULT_LINE_END);
 
-			c = contentResolver.query(VideoGamesStore.VideoGame.CONTENT_URI,
-					new String[] { BaseItem.INTERNAL_ID }, null, null, null);
-			if (c.moveToFirst()) {
-				do {
-					writer.writeNext(new String[] { c.getString(0).replace(
-							ServerInfo.NAME, "") });
-					success = true;
-				} while (c.moveToNext());
-			}
+			// Write header row
+			if (header != null)
+				writer.writeNext(header);
+
+			final int rows = writeRows(contentResolver, uri, projection,
+					writer, formatter, listener);
+
+			writer.close();
+			writer = null;
+			success = rows > 0;
 		} catch (Exception ex) {
-			Log.e(LOG_TAG, ex.toString());
+			Log.e(LOG_TAG, "Export using " + exportFile, ex);
 		} finally {
-			if (null != writer)
-				writer.close();
-			if (c != null)
-				c.close();
+			try {
+				if (null != writer)
+					writer.close();
+			} catch (IOException ex) {
+			}
 		}
 
 		return success;
 	}
 
-	public static boolean exportingToShelves(File exportFile,
-			ContentResolver contentResolver, Uri uri) throws IOException {
+	/**
+	 * Pages through the items in id order, {@link #PAGE_SIZE} at a time, so
+	 * that no single cursor window has to hold the whole collection.
+	 * 
+	 * @return The number of rows written
+	 */
+	private static int writeRows(ContentResolver contentResolver, Uri uri,
+			String[] projection, TSVWriter writer, RowFormatter formatter,
+			ExportListener listener) throws IOException {
+		// GJT: The id is needed to find the next page; ask for it last so
+		// the requested columns keep their indexes
+		String[] columns = null;
+		if (projection != null) {
+			columns = new String[projection.length + 1];
+			System.arraycopy(projection, 0, columns, 0, projection.length);
+			columns[projection.length] = BaseItem._ID;
+		}
 
-		TSVWriter writer = null;
-		boolean success = false;
-		Cursor c = null;
+		final Uri pageUri = uri
+				.buildUpon()
+				.appendQueryParameter(BaseItemContentProvider.LIMIT_PARAMETER,
+						Integer.toString(PAGE_SIZE)).build();
+		final String selection = BaseItem._ID + " > ?";
+		final String[] selectionArgs = new String[] { "0" };
 
-		try {
-			writer = new TSVWriter(new OutputStreamWriter(new FileOutputStream(
-					exportFile), "UTF-8"), TSVWriter.DEFAULT_SEPARATOR,
-					TSVWriter.NO_QUOTE_CHARACTER,
-					TSVWriter.NO_ESCAPE_CHARACTER, TSVWriter.DEFAULT_LINE_END);
+		final long start = SystemClock.elapsedRealtime();
+		String[] row = null;
+		int rows = 0;
+		int count;
+
+		do {
+			final Cursor c = contentResolver.query(pageUri, columns,
+					selection, selectionArgs, BaseItem._ID);
+			if (c == null)
+				break;
 
 			try {
-				c = contentResolver.query(uri, null, null, null, null);
-				if (c.moveToFirst()) {
-					String[] row = c.getColumnNames();
-					// Write header row
-					writer.writeNext(row);
-					do {
-						for (int i = 0; i < c.getColumnCount(); i++) {
-							row[i] = c.getString(i);
-						}
-						writer.writeNext(row);
-						success = true;
-					} while (c.moveToNext());
+				count = c.getCount();
+				if (count == 0)
+					break;
+
+				if (row == null) {
+					row = new String[projection != null ? projection.length
+							: c.getColumnCount()];
+					c.moveToFirst();
+					formatter.begin(c, writer);
+					c.moveToPosition(-1);
 				}
+
+				while (c.moveToNext()) {
+					writer.writeNext(formatter.format(c, row));
+				}
+				rows += count;
+
+				c.moveToLast();
+				selectionArgs[0] = c.getString(c
+						.getColumnIndexOrThrow(BaseItem._ID));
 			} finally {
-				if (c != null)
-					c.close();
+				c.close();
 			}
-		} catch (Exception ex) {
-			Log.e(LOG_TAG, "Export using " + exportFile, ex);
-		} finally {
-			try {
-				if (null != writer)
-					writer.close();
-			} catch (IOException ex) {
+
+			if (listener != null) {
+				final long elapsed = Math.max(1, SystemClock.elapsedRealtime()
+						- start);
+				listener.onRowsExported(rows, (int) (rows * 1000L / elapsed));
 			}
-		}
+		} while (count == PAGE_SIZE);
 
-		return success;
+		return rows;
 	}
 }
@@ -18,37 +18,92 @@
 package com.miadzin.shelves.util;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
 import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpStatus;
 import org.apache.http.HttpVersion;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.params.HttpClientParams;
-import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.HttpContext;
 
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * The HTTP client shared by the whole application. Connections are pooled
+ * per host and kept alive between requests, then closed once idle for
+ * {@link #IDLE_TIMEOUT} milliseconds. Responses are requested gzipped and
+ * decompressed as they are read. The time taken by the requests to each host
+ * is kept in a {@link LatencyHistogram}.
+ */
 public class HttpManager {
+	private static final String LOG_TAG = "HttpManager";
+
+	private static final int MAX_TOTAL_CONNECTIONS = 20;
+	private static final int MAX_CONNECTIONS_PER_HOST = 4;
+	private static final int CONNECTION_POOL_TIMEOUT = 10 * 1000;
+
+	private static final long IDLE_TIMEOUT = 30 * 1000;
+	private static final long EVICTION_INTERVAL = 10 * 1000;
+
+	private static final int MAX_REDIRECTS = 5;
+
+	private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+	private static final String ENCODING_GZIP = "gzip";
+
+	private static final ConnPerRouteBean sConnectionsPerRoute = new ConnPerRouteBean(
+			MAX_CONNECTIONS_PER_HOST);
+	private static final ThreadSafeClientConnManager sManager;
 	private static final DefaultHttpClient sClient;
 	static {
 		final HttpParams params = new BasicHttpParams();
 		HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
 		HttpProtocolParams.setContentCharset(params, "UTF-8");
 
+		// GJT: Idle connections are evicted instead, see executeTimed()
 		HttpConnectionParams.setStaleCheckingEnabled(params, false);
 		HttpConnectionParams.setConnectionTimeout(params, 20 * 1000);
 		HttpConnectionParams.setSoTimeout(params, 20 * 1000);
 		HttpConnectionParams.setSocketBufferSize(params, 8192);
 
+		ConnManagerParams.setMaxTotalConnections(params,
+				MAX_TOTAL_CONNECTIONS);
+		ConnManagerParams.setMaxConnectionsPerRoute(params,
+				sConnectionsPerRoute);
+		ConnManagerParams.setTimeout(params, CONNECTION_POOL_TIMEOUT);
+
 		HttpClientParams.setRedirecting(params, true); // GJT: Changed this to
 														// true
 
@@ -60,24 +115,259 @@ public class HttpManager {
 		schemeRegistry.register(new Scheme("https", SSLSocketFactory
 				.getSocketFactory(), 443));
 
-		ClientConnectionManager manager = new ThreadSafeClientConnManager(
-				params, schemeRegistry);
-		sClient = new DefaultHttpClient(manager, params);
+		sManager = new ThreadSafeClientConnManager(params, schemeRegistry);
+		sClient = new DefaultHttpClient(sManager, params);
+
+		sClient.setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+			private final ConnectionKeepAliveStrategy mDefault = new DefaultConnectionKeepAliveStrategy();
+
+			public long getKeepAliveDuration(HttpResponse response,
+					HttpContext context) {
+				// Whatever the server allows, but never longer than idle
+				final long duration = mDefault.getKeepAliveDuration(response,
+						context);
+				return duration > 0 ? Math.min(duration, IDLE_TIMEOUT)
+						: IDLE_TIMEOUT;
+			}
+		});
+
+		sClient.addRequestInterceptor(new HttpRequestInterceptor() {
+			public void process(HttpRequest request, HttpContext context) {
+				if (!request.containsHeader(HEADER_ACCEPT_ENCODING)) {
+					request.addHeader(HEADER_ACCEPT_ENCODING, ENCODING_GZIP);
+				}
+			}
+		});
+
+		sClient.addResponseInterceptor(new HttpResponseInterceptor() {
+			public void process(HttpResponse response, HttpContext context)
+					throws HttpException, IOException {
+				final HttpEntity entity = response.getEntity();
+				if (entity == null)
+					return;
+
+				final Header encoding = entity.getContentEncoding();
+				if (encoding == null)
+					return;
+
+				for (HeaderElement element : encoding.getElements()) {
+					if (ENCODING_GZIP.equalsIgnoreCase(element.getName())) {
+						response.setEntity(new GzipEntity(entity));
+						return;
+					}
+				}
+			}
+		});
 	}
 
+	private static final AtomicLong sLastEviction = new AtomicLong();
+
+	private static final HashMap<String, LatencyHistogram> sLatencies = new HashMap<String, LatencyHistogram>();
+
 	private HttpManager() {
 	}
 
 	public static HttpResponse execute(HttpHead head) throws IOException {
-		return sClient.execute(head);
+		return executeTimed(null, head);
 	}
 
 	public static HttpResponse execute(HttpHost host, HttpGet get)
 			throws IOException {
-		return sClient.execute(host, get);
+		return executeTimed(host, get);
 	}
 
 	public static HttpResponse execute(HttpGet get) throws IOException {
-		return sClient.execute(get);
+		return executeTimed(null, get);
+	}
+
+	/**
+	 * Executes the specified request, then follows the redirections the
+	 * client didn't follow itself on the same pooled connections. The body of
+	 * every redirection is consumed.
+	 *
+	 * @return The response to the last request
+	 */
+	public static HttpResponse executeFollowingRedirects(HttpHost host,
+			HttpGet get) throws IOException {
+		HttpResponse response = executeTimed(host, get);
+
+		URI uri = host != null ? URI.create(host.toURI()).resolve(
+				get.getURI()) : get.getURI();
+		for (int i = 0; i < MAX_REDIRECTS; i++) {
+			final int statusCode = response.getStatusLine().getStatusCode();
+			if (statusCode != HttpStatus.SC_MOVED_PERMANENTLY
+					&& statusCode != HttpStatus.SC_MOVED_TEMPORARILY
+					&& statusCode != HttpStatus.SC_SEE_OTHER
+					&& statusCode != HttpStatus.SC_TEMPORARY_REDIRECT)
+				break;
+
+			final Header location = response.getFirstHeader("Location");
+			if (location == null
+					|| TextUtilities.isEmpty(location.getValue())) {
+				Log.e(LOG_TAG, "Invalid redirect from " + uri);
+				break;
+			}
+
+			final HttpEntity entity = response.getEntity();
+			if (entity != null)
+				entity.consumeContent();
+
+			try {
+				uri = uri.resolve(location.getValue().trim());
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Invalid redirect to "
+						+ location.getValue());
+			}
+
+			final HttpGet redirect = new HttpGet(uri);
+			for (Header header : get.getAllHeaders()) {
+				redirect.addHeader(header);
+			}
+			response = executeTimed(null, redirect);
+		}
+
+		return response;
+	}
+
+	private static HttpResponse executeTimed(HttpHost host,
+			HttpUriRequest request) throws IOException {
+		evictIdleConnections();
+
+		final long start = SystemClock.elapsedRealtime();
+		try {
+			return host != null ? sClient.execute(host, request) : sClient
+					.execute(request);
+		} finally {
+			String name = host != null ? host.getHostName() : request
+					.getURI().getHost();
+			if (name == null)
+				name = "";
+			getLatencyHistogram(name).add(
+					SystemClock.elapsedRealtime() - start);
+		}
+	}
+
+	private static void evictIdleConnections() {
+		final long now = SystemClock.elapsedRealtime();
+		final long last = sLastEviction.get();
+		if (now - last >= EVICTION_INTERVAL
+				&& sLastEviction.compareAndSet(last, now)) {
+			sManager.closeExpiredConnections();
+			sManager.closeIdleConnections(IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Changes the number of connections kept open to the specified host.
+	 */
+	public static void setMaxConnections(HttpHost host, int max) {
+		sConnectionsPerRoute.setMaxForRoute(new HttpRoute(host), max);
+	}
+
+	private static LatencyHistogram getLatencyHistogram(String host) {
+		synchronized (sLatencies) {
+			LatencyHistogram histogram = sLatencies.get(host);
+			if (histogram == null) {
+				histogram = new LatencyHistogram();
+				sLatencies.put(host, histogram);
+			}
+			return histogram;
+		}
+	}
+
+	/**
+	 * Returns the latency histograms of the hosts requested so far, keyed by
+	 * host name.
+	 */
+	public static HashMap<String, LatencyHistogram> getLatencyHistograms() {
+		synchronized (sLatencies) {
+			return new HashMap<String, LatencyHistogram>(sLatencies);
+		}
+	}
+
+	/**
+	 * Counts requests by the time they took until the response headers came,
+	 * redirections included.
+	 */
+	public static class LatencyHistogram {
+		private static final int[] BOUNDS = new int[] { 50, 100, 250, 500,
+				1000, 2500, 5000 };
+
+		private final int[] mCounts = new int[BOUNDS.length + 1];
+		private int mCount;
+		private long mTotal;
+
+		synchronized void add(long millis) {
+			int bucket = 0;
+			while (bucket < BOUNDS.length && millis >= BOUNDS[bucket]) {
+				bucket++;
+			}
+			mCounts[bucket]++;
+			mCount++;
+			mTotal += millis;
+		}
+
+		/**
+		 * Returns the upper bounds of the buckets but the last, in
+		 * milliseconds.
+		 */
+		public static int[] getBounds() {
+			return BOUNDS.clone();
+		}
+
+		/**
+		 * Returns the number of requests in each bucket; the last one holds
+		 * the requests longer than every bound.
+		 */
+		public synchronized int[] getCounts() {
+			return mCounts.clone();
+		}
+
+		public synchronized int getCount() {
+			return mCount;
+		}
+
+		public synchronized long getMeanMillis() {
+			return mCount != 0 ? mTotal / mCount : 0;
+		}
+
+		@Override
+		public synchronized String toString() {
+			final StringBuilder builder = new StringBuilder(
+					"LatencyHistogram[");
+			for (int i = 0; i < BOUNDS.length; i++) {
+				builder.append("<").append(BOUNDS[i]).append("ms=")
+						.append(mCounts[i]).append(',');
+			}
+			builder.append(">=").append(BOUNDS[BOUNDS.length - 1])
+					.append("ms=").append(mCounts[BOUNDS.length])
+					.append(",mean=").append(getMeanMillis()).append("ms]");
+			return builder.toString();
+		}
+	}
+
+	/**
+	 * Decompresses a gzipped entity as it is read.
+	 */
+	private static class GzipEntity extends HttpEntityWrapper {
+		GzipEntity(HttpEntity entity) {
+			super(entity);
+		}
+
+		@Override
+		public InputStream getContent() throws IOException {
+			return new GZIPInputStream(wrappedEntity.getContent());
+		}
+
+		@Override
+		public long getContentLength() {
+			// Unknown once decompressed
+			return -1;
+		}
+
+		@Override
+		public Header getContentEncoding() {
+			return null;
+		}
 	}
 }
@@ -141,9 +141,8 @@ public class IOUtilities {
 	}
 
 	public static boolean deleteCache(Context context) {
-		File dir = getCacheDirectory();
-
-		return deleteDirectory(dir);
+		ResponseCache.get().clear();
+		return ImageUtilities.getDiskCoverCache().clear();
 	}
 
 	static public boolean deleteDirectory(File path) {
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+import java.util.HashSet;
+import java.util.Locale;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.miadzin.shelves.base.BaseItem;
+
+/**
+ * The identifiers of the items of one type, to tell whether an item is in the
+ * collection already without a query per item. Barcodes are reduced to a
+ * single numeric key, see {@link #getKey(String)}, so an ISBN-10, its
+ * ISBN-13, and a UPC and its EAN-13 all find the same item; other ids are
+ * compared to the internal ids without regard to case, as typed in and
+ * imported ids don't always match the case of the stored ones.
+ *
+ * The providers keep the key of each item in {@link BaseItem#IDENTIFIER_KEY},
+ * indexed, which serves the single lookups through
+ * {@link #getSelection(String)}. Bulk operations load the whole index once
+ * with {@link #load(ContentResolver, Uri)}. Instances are not thread safe.
+ */
+public class IdentifierIndex {
+	/**
+	 * The key of an id that is not a barcode.
+	 */
+	public static final long NO_KEY = 0;
+
+	// GJT: GTIN-14 is the longest barcode we could be handed
+	private static final int MAX_DIGITS = 14;
+
+	private static final String[] PROJECTION = new String[] {
+			BaseItem.IDENTIFIER_KEY, BaseItem.INTERNAL_ID };
+
+	// GJT: Collated like the index of the internal ids, so it serves them
+	private static final String SELECTION_KEY = BaseItem.IDENTIFIER_KEY
+			+ " = ? OR " + BaseItem.INTERNAL_ID + " = ? COLLATE NOCASE";
+
+	private final LongHashSet mKeys;
+	private final HashSet<String> mInternalIds;
+
+	/**
+	 * Creates an empty index, to collect ids as they are added.
+	 */
+	public IdentifierIndex() {
+		this(0);
+	}
+
+	private IdentifierIndex(int expectedSize) {
+		mKeys = new LongHashSet(expectedSize);
+		mInternalIds = new HashSet<String>(expectedSize * 2);
+	}
+
+	/**
+	 * Reads the identifiers of every item of the specified type.
+	 */
+	public static IdentifierIndex load(ContentResolver resolver,
+			Uri contentUri) {
+		final Cursor c = resolver.query(contentUri, PROJECTION, null, null,
+				null);
+		if (c == null)
+			return new IdentifierIndex(0);
+
+		try {
+			final IdentifierIndex index = new IdentifierIndex(c.getCount());
+			while (c.moveToNext()) {
+				if (!c.isNull(0) && c.getLong(0) != NO_KEY)
+					index.mKeys.add(c.getLong(0));
+				if (!c.isNull(1))
+					index.mInternalIds.add(fold(c.getString(1)));
+			}
+			return index;
+		} finally {
+			c.close();
+		}
+	}
+
+	/**
+	 * Returns true if an item has the specified id as a barcode or as its
+	 * internal id.
+	 */
+	public boolean contains(String id) {
+		if (TextUtilities.isEmpty(id))
+			return false;
+
+		final String trimmed = id.trim();
+		final long key = getKey(trimmed);
+		return (key != NO_KEY && mKeys.contains(key))
+				|| mInternalIds.contains(fold(trimmed));
+	}
+
+	/**
+	 * Adds an id to the index, for instance one that is being imported.
+	 *
+	 * @return True if the index did not hold the id yet
+	 */
+	public boolean add(String id) {
+		if (TextUtilities.isEmpty(id) || contains(id))
+			return false;
+
+		final String trimmed = id.trim();
+		final long key = getKey(trimmed);
+		if (key != NO_KEY)
+			return mKeys.add(key);
+		return mInternalIds.add(fold(trimmed));
+	}
+
+	private static String fold(String internalId) {
+		return internalId.toUpperCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Removes an id from the index, for instance one whose import failed.
+	 */
+	public void remove(String id) {
+		if (TextUtilities.isEmpty(id))
+			return;
+
+		final String trimmed = id.trim();
+		final long key = getKey(trimmed);
+		if (key != NO_KEY)
+			mKeys.remove(key);
+		else
+			mInternalIds.remove(fold(trimmed));
+	}
+
+	public int size() {
+		return mKeys.size() + mInternalIds.size();
+	}
+
+	/**
+	 * Returns the selection matching the item with the specified id, to be
+	 * used with {@link #getSelectionArgs(String)}.
+	 */
+	public static String getSelection(String id) {
+		return getKey(id) != NO_KEY ? SELECTION_KEY
+				: ItemQueries.SELECTION_INTERNAL_ID;
+	}
+
+	public static String[] getSelectionArgs(String id) {
+		final String trimmed = id != null ? id.trim() : "";
+		final long key = getKey(trimmed);
+		if (key != NO_KEY)
+			return new String[] { String.valueOf(key), trimmed };
+		return new String[] { trimmed };
+	}
+
+	/**
+	 * Returns the key of the first of the specified barcodes that has one.
+	 * An item's barcodes all stand for the same product, so it only needs
+	 * one key.
+	 */
+	public static long getKey(String ean, String isbn, String upc) {
+		long key = getKey(ean);
+		if (key == NO_KEY)
+			key = getKey(isbn);
+		if (key == NO_KEY)
+			key = getKey(upc);
+		return key;
+	}
+
+	/**
+	 * Returns the key of a barcode: its EAN-13, as a number. Hyphens and
+	 * spaces are ignored, an ISBN-10 is turned into its ISBN-13, and since
+	 * leading zeros vanish in a number, a UPC-A and the EAN-13 written with
+	 * one more zero have the same key.
+	 *
+	 * @return The key, or {@link #NO_KEY} if the id is not a barcode
+	 */
+	public static long getKey(String id) {
+		if (id == null)
+			return NO_KEY;
+
+		final StringBuilder digits = new StringBuilder(id.length());
+		for (int i = 0; i < id.length(); i++) {
+			final char c = id.charAt(i);
+			if (c != '-' && c != ' ')
+				digits.append(c);
+		}
+
+		final int length = digits.length();
+		if (length == 10 && isIsbn10(digits))
+			return getIsbn13(digits);
+		if (length == 0 || length > MAX_DIGITS)
+			return NO_KEY;
+
+		long key = 0;
+		for (int i = 0; i < length; i++) {
+			final char c = digits.charAt(i);
+			if (c < '0' || c > '9')
+				return NO_KEY;
+			key = key * 10 + (c - '0');
+		}
+		return key;
+	}
+
+	private static boolean isIsbn10(CharSequence digits) {
+		int sum = 0;
+		for (int i = 0; i < 10; i++) {
+			final char c = digits.charAt(i);
+			final int value;
+			if (c >= '0' && c <= '9')
+				value = c - '0';
+			else if (i == 9 && (c == 'X' || c == 'x'))
+				value = 10;
+			else
+				return false;
+			sum += (10 - i) * value;
+		}
+		return sum % 11 == 0;
+	}
+
+	private static long getIsbn13(CharSequence isbn10) {
+		long key = 978;
+		int sum = 9 + 3 * 7 + 8;
+		for (int i = 0; i < 9; i++) {
+			final int value = isbn10.charAt(i) - '0';
+			key = key * 10 + value;
+			// Digits 4 to 12 of the EAN-13, weighted 3 and 1 in turn
+			sum += (i % 2 == 0 ? 3 : 1) * value;
+		}
+		return key * 10 + (10 - sum % 10) % 10;
+	}
+}
@@ -17,19 +17,17 @@
 
 package com.miadzin.shelves.util;
 
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.lang.ref.SoftReference;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.HashMap;
+import java.util.Locale;
+import java.util.TimeZone;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
@@ -53,6 +51,8 @@ public class ImageUtilities {
 	private static final String LOG_TAG = "ImageUtilities";
 
 	private static final boolean FLAG_DECODE_BITMAP_WITH_SKIA = false;
+	// GJT: Half the heap per cover; images with alpha still get ARGB_8888
+	private static final boolean FLAG_DECODE_TO_RGB_565 = true;
 
 	private static final float EDGE_START = 0.0f;
 	private static final float EDGE_END = 4.0f;
@@ -80,8 +80,20 @@ public class ImageUtilities {
 	private static final FastBitmapDrawable NULL_DRAWABLE = new FastBitmapDrawable(
 			null);
 
-	// TODO: Use a concurrent HashMap to support multiple threads
-	private static final HashMap<String, SoftReference<FastBitmapDrawable>> sArtCache = new HashMap<String, SoftReference<FastBitmapDrawable>>();
+	private static final BitmapPool sBitmapPool = new BitmapPool(
+			BitmapPool.getDefaultMaxSize());
+
+	// GJT: Evicted covers are not pooled, a row may still be drawing them
+	private static final CoverCache sArtCache = new CoverCache(
+			CoverCache.getDefaultMaxSize());
+
+	// GJT: The covers of the collection, none can be thrown away
+	private static final DiskCoverCache sDiskCache = new DiskCoverCache(
+			IOUtilities.getCacheDirectory(), DiskCoverCache.NO_LIMIT);
+
+	// GJT: adb shell setprop log.tag.ImageUtilities DEBUG, then restart
+	private static final boolean sLogDecodes = android.util.Log.isLoggable(
+			LOG_TAG, android.util.Log.DEBUG);
 
 	private static volatile Matrix sScaleMatrix;
 	private static SimpleDateFormat sLastModifiedFormat;
@@ -116,12 +128,13 @@ public class ImageUtilities {
 	}
 
 	/**
-	 * A Bitmap associated with its last modification date. This can be used to
-	 * check whether the book covers should be downloaded again.
+	 * A Bitmap associated with its last modification date and entity tag. This
+	 * can be used to check whether the book covers should be downloaded again.
 	 */
 	public static class ExpiringBitmap {
 		public Bitmap bitmap;
 		public Calendar lastModified;
+		public String etag;
 	}
 
 	/**
@@ -134,7 +147,7 @@ public class ImageUtilities {
 	 */
 	public static void deleteCachedCover(String id) {
 		if (id != null) {
-			new File(IOUtilities.getCacheDirectory(), id).delete();
+			sDiskCache.remove(id);
 			sArtCache.remove(id);
 		}
 	}
@@ -157,12 +170,7 @@ public class ImageUtilities {
 	 */
 	public static FastBitmapDrawable getCachedCover(String id,
 			FastBitmapDrawable defaultCover) {
-		FastBitmapDrawable drawable = null;
-
-		SoftReference<FastBitmapDrawable> reference = sArtCache.get(id);
-		if (reference != null) {
-			drawable = reference.get();
-		}
+		FastBitmapDrawable drawable = sArtCache.get(id);
 
 		if (drawable == null) {
 			final Bitmap bitmap = loadCover(id);
@@ -172,12 +180,34 @@ public class ImageUtilities {
 				drawable = NULL_DRAWABLE;
 			}
 
-			sArtCache.put(id, new SoftReference<FastBitmapDrawable>(drawable));
+			sArtCache.put(id, drawable);
 		}
 
 		return drawable == NULL_DRAWABLE ? defaultCover : drawable;
 	}
 
+	/**
+	 * Retrieves a drawable from the in-memory book covers cache only. Unlike
+	 * {@link #getCachedCover(String, FastBitmapDrawable)}, this method never
+	 * touches the disk and can be called from the UI thread.
+	 * 
+	 * @param id
+	 *            The id of the drawable to retrieve
+	 * @param defaultCover
+	 *            The default drawable returned if the cache knows there is no
+	 *            drawable matching the id
+	 * 
+	 * @return The drawable identified by id, defaultCover, or null if the
+	 *         drawable is not in memory yet
+	 */
+	public static FastBitmapDrawable peekCachedCover(String id,
+			FastBitmapDrawable defaultCover) {
+		final FastBitmapDrawable drawable = sArtCache.get(id);
+		if (drawable == null)
+			return null;
+		return drawable == NULL_DRAWABLE ? defaultCover : drawable;
+	}
+
 	/**
 	 * Removes all the callbacks from the drawables stored in the memory cache.
 	 * This method must be called from the onDestroy() method of any activity
@@ -185,13 +215,34 @@ public class ImageUtilities {
 	 * activity being leaked.
 	 */
 	public static void cleanupCache() {
-		for (SoftReference<FastBitmapDrawable> reference : sArtCache.values()) {
-			final FastBitmapDrawable drawable = reference.get();
-			if (drawable != null)
-				drawable.setCallback(null);
+		for (FastBitmapDrawable drawable : sArtCache.snapshot()) {
+			drawable.setCallback(null);
 		}
 	}
 
+	/**
+	 * Returns the in-memory covers cache, to read its hit, miss and eviction
+	 * counters.
+	 */
+	public static CoverCache getCoverCache() {
+		return sArtCache;
+	}
+
+	/**
+	 * Returns the pool the covers are decoded and drawn into, to give it the
+	 * bitmaps no longer used and to read its hit, miss and eviction counters.
+	 */
+	public static BitmapPool getBitmapPool() {
+		return sBitmapPool;
+	}
+
+	/**
+	 * Returns the covers cache on the external storage.
+	 */
+	public static DiskCoverCache getDiskCoverCache() {
+		return sDiskCache;
+	}
+
 	/**
 	 * Loads an image from the specified URL.
 	 * 
@@ -228,76 +279,249 @@ public class ImageUtilities {
 				setLastModified(expiring, response);
 
 				entity = response.getEntity();
-
-				InputStream in = null;
-				OutputStream out = null;
-
-				try {
-					in = entity.getContent();
-
-					if (FLAG_DECODE_BITMAP_WITH_SKIA) {
-						expiring.bitmap = BitmapFactory.decodeStream(in);
-					} else {
-						final ByteArrayOutputStream dataStream = new ByteArrayOutputStream();
-						out = new BufferedOutputStream(dataStream,
-								IOUtilities.IO_BUFFER_SIZE);
-						IOUtilities.copy(in, out);
-						out.flush();
-
-						final byte[] data = dataStream.toByteArray();
-
-						final double ratio = getScale(in);
-
-						final BitmapFactory.Options bitmapOptions = new BitmapFactory.Options();
-						bitmapOptions.inSampleSize = getPowerOfTwoForSampleRatio(ratio);
-						bitmapOptions.inDither = true;
-						bitmapOptions.inPreferredConfig = Bitmap.Config.ARGB_8888;
-
-						expiring.bitmap = BitmapFactory.decodeByteArray(data,
-								0, data.length, bitmapOptions);
-					}
-				} catch (IOException e) {
-					android.util.Log.e(LOG_TAG, "Could not load image from "
-							+ url, e);
-				} catch (OutOfMemoryError oom) {
-					expiring.bitmap = null;
-				} finally {
-					IOUtilities.closeStream(in);
-					IOUtilities.closeStream(out);
-				}
+				expiring.bitmap = decodeEntity(entity, url);
 			}
 		} catch (IOException e) {
 			android.util.Log.e(LOG_TAG, "Could not load image from " + url, e);
 		} finally {
-			if (entity != null) {
-				try {
-					entity.consumeContent();
-				} catch (IOException e) {
-					android.util.Log.e(LOG_TAG, "Could not load image from "
-							+ url, e);
-				}
+			consumeEntity(entity, url);
+		}
+
+		return expiring;
+	}
+
+	/**
+	 * Loads an image from the specified URL unless it hasn't changed since it
+	 * was last loaded. The request is conditional, so an unchanged image costs
+	 * a 304 response without a body. Servers ignoring the conditions are
+	 * caught by comparing the validators they return with the known ones.
+	 * 
+	 * @param url
+	 *            The URL of the image to load.
+	 * @param lastModified
+	 *            The modification date of the known image, or null.
+	 * @param etag
+	 *            The entity tag of the known image, or null.
+	 * 
+	 * @return The image with its new validators if it changed, or an empty
+	 *         ExpiringBitmap if it didn't, has no validators or an error
+	 *         occured.
+	 */
+	public static ExpiringBitmap loadIfModified(String url,
+			Calendar lastModified, String etag) {
+		final ExpiringBitmap expiring = new ExpiringBitmap();
+
+		final HttpGet get;
+		try {
+			get = new HttpGet(url);
+		} catch (IllegalArgumentException e) {
+			android.util.Log.e(LOG_TAG, "Invalid image URL " + url, e);
+			return expiring;
+		}
+
+		if (lastModified != null)
+			get.setHeader("If-Modified-Since", formatHttpDate(lastModified));
+		if (!TextUtilities.isEmpty(etag))
+			get.setHeader("If-None-Match", etag);
+
+		HttpEntity entity = null;
+		try {
+			final HttpResponse response = HttpManager.execute(get);
+			entity = response.getEntity();
+
+			// GJT: Anything but a 200, 304 included, leaves the cover alone
+			if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK)
+				return expiring;
+
+			setLastModified(expiring, response);
+
+			final boolean changed;
+			if (expiring.etag != null && !TextUtilities.isEmpty(etag)) {
+				changed = !expiring.etag.equals(etag);
+			} else if (expiring.lastModified != null) {
+				changed = lastModified == null
+						|| expiring.lastModified.after(lastModified);
+			} else {
+				// GJT: Nothing to compare with, keep what we have
+				changed = false;
+			}
+
+			if (changed) {
+				expiring.bitmap = decodeEntity(entity, url);
 			}
+		} catch (IOException e) {
+			android.util.Log.e(LOG_TAG, "Could not check modification of "
+					+ url, e);
+		} finally {
+			consumeEntity(entity, url);
 		}
 
+		if (expiring.bitmap == null) {
+			expiring.lastModified = null;
+			expiring.etag = null;
+		}
 		return expiring;
 	}
 
+	private static Bitmap decodeEntity(HttpEntity entity, String url) {
+		InputStream in = null;
+
+		try {
+			in = entity.getContent();
+
+			if (FLAG_DECODE_BITMAP_WITH_SKIA) {
+				return BitmapFactory.decodeStream(in);
+			} else {
+				// GJT: Read once, then sized and decoded from the same bytes
+				final long length = entity.getContentLength();
+				final DataStream data = new DataStream(length > 0
+						&& length < Integer.MAX_VALUE ? (int) length
+						: IOUtilities.IO_BUFFER_SIZE);
+				IOUtilities.copy(in, data);
+
+				return decodeSampled(data.getData(), data.size(),
+						Preferences.getWidthForManager(),
+						Preferences.getHeightForManager());
+			}
+		} catch (IOException e) {
+			android.util.Log.e(LOG_TAG, "Could not load image from " + url, e);
+		} catch (OutOfMemoryError oom) {
+			// Ignore
+		} finally {
+			IOUtilities.closeStream(in);
+		}
+		return null;
+	}
+
+	/**
+	 * Decodes an image no smaller than the specified size, skipping as many
+	 * pixels of the original as possible. The bounds are read from the data
+	 * first, so a large image never gets decoded at full size.
+	 * 
+	 * @param data
+	 *            The encoded image
+	 * @param length
+	 *            The number of bytes of data holding the image
+	 * @param width
+	 *            The width the image will be displayed at
+	 * @param height
+	 *            The height the image will be displayed at
+	 * 
+	 * @return The decoded image, or null if the data can't be decoded
+	 */
+	public static Bitmap decodeSampled(byte[] data, int length, int width,
+			int height) {
+		final BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeByteArray(data, 0, length, options);
+		if (options.outWidth <= 0 || options.outHeight <= 0)
+			return null;
+
+		final int outWidth = options.outWidth;
+		final int outHeight = options.outHeight;
+
+		options.inJustDecodeBounds = false;
+		options.inSampleSize = getSampleSize(outWidth, outHeight, width,
+				height);
+		options.inDither = true;
+		options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+		if (FLAG_DECODE_TO_RGB_565)
+			options.inPreferredConfig = Bitmap.Config.RGB_565;
+		sBitmapPool.setInBitmap(options);
+
+		Bitmap bitmap;
+		try {
+			bitmap = BitmapFactory.decodeByteArray(data, 0, length, options);
+		} catch (IllegalArgumentException e) {
+			// The pooled bitmap didn't fit the image after all
+			sBitmapPool.put(options.inBitmap);
+			options.inBitmap = null;
+			bitmap = BitmapFactory.decodeByteArray(data, 0, length, options);
+		}
+
+		if (bitmap != null && sLogDecodes) {
+			// Peak heap of the cover against a full size ARGB_8888 decode
+			final int peak = length + bitmap.getRowBytes() * bitmap.getHeight();
+			android.util.Log.d(LOG_TAG, length + " bytes, " + outWidth + "x"
+					+ outHeight + " decoded at 1/" + options.inSampleSize
+					+ " to " + bitmap.getWidth() + "x" + bitmap.getHeight()
+					+ ": " + peak + " bytes peak instead of "
+					+ (length + outWidth * outHeight * 4));
+		}
+
+		return bitmap;
+	}
+
+	/**
+	 * Returns the largest power of two the specified image can be divided by
+	 * while staying at least as large as the specified size in both
+	 * directions.
+	 */
+	public static int getSampleSize(int width, int height, int reqWidth,
+			int reqHeight) {
+		int sampleSize = 1;
+		if (reqWidth <= 0 || reqHeight <= 0)
+			return sampleSize;
+
+		while (width / (sampleSize * 2) >= reqWidth
+				&& height / (sampleSize * 2) >= reqHeight) {
+			sampleSize *= 2;
+		}
+		return sampleSize;
+	}
+
+	/**
+	 * A ByteArrayOutputStream handing out its buffer rather than a copy.
+	 */
+	private static class DataStream extends ByteArrayOutputStream {
+		DataStream(int size) {
+			super(size);
+		}
+
+		byte[] getData() {
+			return buf;
+		}
+	}
+
+	private static void consumeEntity(HttpEntity entity, String url) {
+		if (entity != null) {
+			try {
+				entity.consumeContent();
+			} catch (IOException e) {
+				android.util.Log.e(LOG_TAG, "Could not load image from " + url,
+						e);
+			}
+		}
+	}
+
+	private static String formatHttpDate(Calendar calendar) {
+		final SimpleDateFormat format = new SimpleDateFormat(
+				"EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return format.format(calendar.getTime());
+	}
+
 	private static void setLastModified(ExpiringBitmap expiring,
 			HttpResponse response) {
 		expiring.lastModified = null;
 
+		final Header etag = response.getFirstHeader("ETag");
+		expiring.etag = etag != null ? etag.getValue() : null;
+
 		final Header header = response.getFirstHeader("Last-Modified");
 		if (header == null)
 			return;
 
-		if (sLastModifiedFormat == null) {
-			sLastModifiedFormat = new SimpleDateFormat(
-					"EEE, dd MMM yyyy HH:mm:ss z");
-		}
-
 		final Calendar calendar = Calendar.getInstance();
 		try {
-			calendar.setTime(sLastModifiedFormat.parse(header.getValue()));
+			// GJT: Shared by the updaters, which all run on their own thread
+			synchronized (ImageUtilities.class) {
+				if (sLastModifiedFormat == null) {
+					sLastModifiedFormat = new SimpleDateFormat(
+							"EEE, dd MMM yyyy HH:mm:ss z", Locale.US);
+				}
+				calendar.setTime(sLastModifiedFormat.parse(header.getValue()));
+			}
 			expiring.lastModified = calendar;
 		} catch (ParseException e) {
 			// Ignore
@@ -359,7 +583,6 @@ public class ImageUtilities {
 
 		final Bitmap decored = createScaledBitmap(bitmap, scaledWidth,
 				scaledHeight, SHADOW_RADIUS, true, SHADOW_PAINT);
-		bitmap.recycle();
 
 		final Canvas canvas = new Canvas(decored);
 
@@ -375,22 +598,15 @@ public class ImageUtilities {
 	}
 
 	private static Bitmap loadCover(String id) {
-		if (id == null)
+		final File file = sDiskCache.get(id);
+		if (file == null)
 			return null;
-		final File file = new File(IOUtilities.getCacheDirectory(), id);
 
 		try {
-			if (file.exists()) {
-				return decodeFile(file);
-			} else {
-				// final File newFile = new File(IOUtilities.ensureCache(), id);
-				// if (newFile.exists())
-				// return decodeFile(newFile);
-			}
+			return decodeFile(file);
 		} catch (Exception e) {
 			return null;
 		}
-		return null;
 	}
 
 	private static Bitmap createScaledBitmap(Bitmap src, int dstWidth,
@@ -418,7 +634,6 @@ public class ImageUtilities {
 			sScaleMatrix = m;
 		}
 
-		src.recycle();
 		return b;
 	}
 
@@ -437,7 +652,7 @@ public class ImageUtilities {
 		final RectF to = new RectF(0, 0, width, height);
 
 		if (m == null || m.isIdentity()) {
-			bitmap = Bitmap.createBitmap(scaledWidth + (int) offset,
+			bitmap = sBitmapPool.obtain(scaledWidth + (int) offset,
 					scaledHeight
 							+ (int) (clipShadow ? (offset / 2.0f) : offset),
 					Bitmap.Config.ARGB_8888);
@@ -449,7 +664,7 @@ public class ImageUtilities {
 			scaledWidth = Math.round(mapped.width());
 			scaledHeight = Math.round(mapped.height());
 
-			bitmap = Bitmap.createBitmap(scaledWidth + (int) offset,
+			bitmap = sBitmapPool.obtain(scaledWidth + (int) offset,
 					scaledHeight
 							+ (int) (clipShadow ? (offset / 2.0f) : offset),
 					Bitmap.Config.ARGB_8888);
@@ -464,44 +679,6 @@ public class ImageUtilities {
 		return bitmap;
 	}
 
-	// GJT: Solves "java.lang.OutOfMemoryError: bitmap size exceeds VM budget"
-	public static double getScale(InputStream stream) {
-		final BitmapFactory.Options onlyBoundsOptions = new BitmapFactory.Options();
-		onlyBoundsOptions.inJustDecodeBounds = true;
-		onlyBoundsOptions.inDither = true;
-		onlyBoundsOptions.inPreferredConfig = Bitmap.Config.ARGB_8888;
-		BitmapFactory.decodeStream(stream, null, onlyBoundsOptions);
-
-		try {
-			stream.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-
-		if ((onlyBoundsOptions.outWidth == -1)
-				|| (onlyBoundsOptions.outHeight == -1))
-			return 1.0;
-
-		// Determine the limiting size of the width and height sizes
-		final int originalSize = (onlyBoundsOptions.outHeight > onlyBoundsOptions.outWidth) ? onlyBoundsOptions.outHeight
-				: onlyBoundsOptions.outWidth;
-
-		// How much do we need to shrink it to make it smaller than the advised
-		// thumbnail size, either direction.
-		final double ratio = (originalSize > Preferences.getHeightForManager()) ? (originalSize / Preferences
-				.getHeightForManager()) : 1.0;
-
-		return ratio;
-	}
-
-	public static int getPowerOfTwoForSampleRatio(double ratio) {
-		int k = Integer.highestOneBit((int) Math.floor(ratio));
-		if (k == 0)
-			return 1;
-		else
-			return k;
-	}
-
 	public static Bitmap decodeFile(File f) {
 		Bitmap b = null;
 		try {
@@ -526,10 +703,20 @@ public class ImageUtilities {
 			}
 
 			// Decode with inSampleSize
-			BitmapFactory.Options o2 = new BitmapFactory.Options();
-			o2.inSampleSize = scale;
+			o.inJustDecodeBounds = false;
+			o.inSampleSize = scale;
+			sBitmapPool.setInBitmap(o);
 			fis = new FileInputStream(f);
-			b = BitmapFactory.decodeStream(fis, null, o2);
+			try {
+				b = BitmapFactory.decodeStream(fis, null, o);
+			} catch (IllegalArgumentException e) {
+				// The pooled bitmap didn't fit the image after all
+				fis.close();
+				sBitmapPool.put(o.inBitmap);
+				o.inBitmap = null;
+				fis = new FileInputStream(f);
+				b = BitmapFactory.decodeStream(fis, null, o);
+			}
 			fis.close();
 		} catch (FileNotFoundException e) {
 		} catch (IOException e) {
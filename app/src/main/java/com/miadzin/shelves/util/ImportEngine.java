@@ -0,0 +1,516 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.Process;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.provider.ItemImport;
+
+/**
+ * Imports a list of items for any of the item types. Online lookups run on a
+ * small pool of workers, throttled by a token bucket shared by every import so
+ * the upstream API budget is respected whatever the number of workers. Items
+ * already in the database, and manual items, never wait on the bucket.
+ *
+ * The identifiers of the items already in the database are read once, into an
+ * {@link IdentifierIndex}, and the ids of the imported items are added to it
+ * as they are claimed, so telling whether an item exists costs no query and
+ * an item listed twice, under the same or another of its barcodes, is only
+ * imported once. A line repeating an id claimed by the import itself waits
+ * for the end, when the outcome of the first line is known and written: it
+ * then updates the item, or is looked up if the first line found nothing.
+ *
+ * The updates and the manual inserts are queued and applied in batches, each
+ * in a single transaction. Handlers able to look up several items per request
+ * are given consecutive items in groups, so a group costs one request and one
+ * token; the items a group request does not find are looked up again one at a
+ * time.
+ *
+ * The resume position is kept in the supplied counter: it always points at
+ * the first item not yet imported, so an import restarted from it never skips
+ * an item. An item whose update or insert is queued only counts as imported
+ * once its batch is applied; the items of a batch that fails don't count.
+ */
+public class ImportEngine<T extends BaseItem> {
+	private static final String LOG_TAG = "ImportEngine";
+
+	private static final int LOOKUP_WORKERS = 3;
+	private static final int BATCH_SIZE = 25;
+
+	// GJT: Same budget as the old one-second sleep between items
+	private static final RateLimiter sLookupLimiter = new RateLimiter(1.0, 1);
+
+	private static final byte OUTCOME_NONE = 0;
+	private static final byte OUTCOME_IMPORTED = 1;
+	private static final byte OUTCOME_MISSING = 2;
+	private static final byte OUTCOME_EXISTS = 3;
+
+	/**
+	 * The type specific part of an import. The lookups of existing items and
+	 * the batches are serialized by the engine; only
+	 * {@link #loadAndAdd(String)} runs concurrently.
+	 */
+	public interface ItemHandler<T extends BaseItem> {
+		boolean isCancelled();
+
+		void onProgress(int done, int count);
+
+		String getId(ItemImport item);
+
+		T loadAndAdd(String id);
+
+		T findExisting(String id);
+
+		ContentProviderOperation newUpdate(T item, ItemImport currItem);
+
+		ContentProviderOperation newManualInsert(int manualItemNum);
+	}
+
+	/**
+	 * An {@link ItemHandler} that can look up several items per request.
+	 */
+	public interface BatchItemHandler<T extends BaseItem> extends
+			ItemHandler<T> {
+		/**
+		 * Returns the most items looked up per request.
+		 */
+		int getBatchSize();
+
+		/**
+		 * Looks up and adds the items with the specified ids. Runs
+		 * concurrently, like {@link #loadAndAdd(String)}.
+		 * 
+		 * @return The items added, by id
+		 */
+		Map<String, T> loadAndAddAll(List<String> ids);
+	}
+
+	private final ContentResolver mResolver;
+	private final Uri mContentUri;
+	private final List<ItemImport> mItems;
+	private final AtomicInteger mImportCount;
+	private final ItemHandler<T> mHandler;
+	private final boolean mUpdateExisting;
+	private final String mNoBarcodeLabel;
+
+	private final Object mDatabaseLock = new Object();
+	private IdentifierIndex mIdentifiers;
+	// The ids claimed by this import, and the lines repeating them
+	private final IdentifierIndex mClaimed = new IdentifierIndex();
+	private final ArrayList<Integer> mRepeats = new ArrayList<Integer>();
+	private final ArrayList<ContentProviderOperation> mPending = new ArrayList<ContentProviderOperation>();
+	// The items the pending operations belong to, one per operation
+	private final ArrayList<Integer> mPendingItems = new ArrayList<Integer>();
+
+	private byte[] mOutcomes;
+	private String[] mIds;
+	private boolean[] mDone;
+	// Items with an operation not applied yet, and items whose batch failed
+	private boolean[] mUnwritten;
+	private boolean[] mFailed;
+	private int mStart;
+	private int mCompleted;
+	private volatile boolean mCancelled;
+
+	private int mImported;
+	private int mMissing;
+	private int mExisting;
+	private final StringBuilder mMissingItems = new StringBuilder();
+	private final StringBuilder mExistingItems = new StringBuilder();
+
+	/**
+	 * @param resolver
+	 *            The resolver the batches are applied through
+	 * @param contentUri
+	 *            The content URI of the imported type
+	 * @param items
+	 *            The items to import
+	 * @param importCount
+	 *            The index of the first item to import; updated as items
+	 *            complete
+	 * @param handler
+	 *            The type specific lookups and inserts
+	 * @param updateExisting
+	 *            Whether items already in the database get the imported
+	 *            information
+	 * @param noBarcodeLabel
+	 *            Reported in place of the id of missing items without one
+	 */
+	public ImportEngine(ContentResolver resolver, Uri contentUri,
+			List<ItemImport> items, AtomicInteger importCount,
+			ItemHandler<T> handler, boolean updateExisting,
+			String noBarcodeLabel) {
+		mResolver = resolver;
+		mContentUri = contentUri;
+		mItems = items;
+		mImportCount = importCount;
+		mHandler = handler;
+		mUpdateExisting = updateExisting;
+		mNoBarcodeLabel = noBarcodeLabel;
+	}
+
+	/**
+	 * Runs the import and blocks until it completes or is cancelled.
+	 *
+	 * @return The number of items imported, or null if the import was
+	 *         cancelled
+	 */
+	public Integer run() {
+		final List<ItemImport> items = mItems;
+		final int count = items.size();
+		final int start = Math.min(mImportCount.get(), count);
+		mStart = start;
+
+		mOutcomes = new byte[count];
+		mIds = new String[count];
+		mDone = new boolean[count];
+		mUnwritten = new boolean[count];
+		mFailed = new boolean[count];
+
+		// Manual items are numbered in file order, whatever order they complete
+		final int[] manualItemNums = new int[count];
+		int manualItemNum = 0;
+		for (int i = 0; i < count; i++) {
+			if (TextUtilities.isManualItem(items.get(i).internalID)) {
+				manualItemNums[i] = manualItemNum++;
+			}
+		}
+
+		if (start < count) {
+			mIdentifiers = IdentifierIndex.load(mResolver, mContentUri);
+
+			final ExecutorService pool = Executors.newFixedThreadPool(
+					Math.min(LOOKUP_WORKERS, count - start), new ThreadFactory() {
+						private final AtomicInteger mCount = new AtomicInteger(
+								1);
+
+						public Thread newThread(final Runnable r) {
+							return new Thread(new Runnable() {
+								public void run() {
+									Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+									r.run();
+								}
+							}, "ImportEngine #" + mCount.getAndIncrement());
+						}
+					});
+
+			final int batchSize = getBatchSize();
+			for (int i = start; i < count; i += batchSize) {
+				final int from = i;
+				final int to = Math.min(i + batchSize, count);
+				pool.execute(new Runnable() {
+					public void run() {
+						if (isCancelled())
+							return;
+						importItems(from, to, manualItemNums, false);
+					}
+				});
+			}
+			pool.shutdown();
+
+			try {
+				while (!pool.awaitTermination(250, TimeUnit.MILLISECONDS)) {
+					if (isCancelled()) {
+						pool.shutdownNow();
+					}
+				}
+			} catch (InterruptedException e) {
+				mCancelled = true;
+				pool.shutdownNow();
+			}
+		}
+
+		// Completed items are kept even when the import is cancelled
+		synchronized (mDatabaseLock) {
+			flush();
+		}
+
+		// GJT: Every line they repeat is done now, one at a time is enough
+		Collections.sort(mRepeats);
+		for (int index : mRepeats) {
+			if (isCancelled())
+				break;
+			importItems(index, index + 1, manualItemNums, true);
+			synchronized (mDatabaseLock) {
+				flush();
+			}
+		}
+
+		if (isCancelled())
+			return null;
+
+		for (int i = start; i < count; i++) {
+			switch (mOutcomes[i]) {
+			case OUTCOME_IMPORTED:
+				mImported++;
+				break;
+			case OUTCOME_MISSING:
+				mMissing++;
+				if (TextUtilities.isEmpty(mIds[i]))
+					mMissingItems.append(mNoBarcodeLabel).append("\n");
+				else
+					mMissingItems.append(mIds[i]).append("\n");
+				break;
+			case OUTCOME_EXISTS:
+				mExisting++;
+				mExistingItems.append(mIds[i]).append("\n");
+				break;
+			}
+		}
+
+		return mImported;
+	}
+
+	private int getBatchSize() {
+		if (mHandler instanceof BatchItemHandler)
+			return Math.max(((BatchItemHandler<T>) mHandler).getBatchSize(), 1);
+		return 1;
+	}
+
+	private boolean isCancelled() {
+		if (!mCancelled && mHandler.isCancelled())
+			mCancelled = true;
+		return mCancelled;
+	}
+
+	/**
+	 * Imports the items between the specified indexes: the ones already in
+	 * the database and the manual ones first, then the lookups, in a single
+	 * request if the handler can.
+	 *
+	 * @param repeats
+	 *            True for the lines put off because they repeat an id the
+	 *            import claimed, false to put off such lines
+	 */
+	private void importItems(int from, int to, int[] manualItemNums,
+			boolean repeats) {
+		final ItemHandler<T> handler = mHandler;
+		final ArrayList<Integer> lookups = new ArrayList<Integer>(to - from);
+
+		for (int index = from; index < to; index++) {
+			if (isCancelled())
+				return;
+
+			final ItemImport currItem = mItems.get(index);
+			final String id = handler.getId(currItem);
+			mIds[index] = id;
+
+			final boolean exists;
+			synchronized (mDatabaseLock) {
+				if (TextUtilities.isEmpty(id)) {
+					exists = false;
+				} else if (mIdentifiers.add(id)) {
+					// The claim is given back if the lookup finds nothing
+					mClaimed.add(id);
+					exists = false;
+				} else if (!repeats && mClaimed.contains(id)) {
+					// Its first line may not be looked up or written yet
+					mRepeats.add(index);
+					continue;
+				} else {
+					exists = true;
+				}
+			}
+
+			if (exists) {
+				if (mUpdateExisting) {
+					final T existing;
+					synchronized (mDatabaseLock) {
+						existing = handler.findExisting(id);
+					}
+					queue(index, handler.newUpdate(existing, currItem));
+				}
+				completed(index, OUTCOME_EXISTS);
+			} else if (TextUtilities.isManualItem(currItem.internalID)) {
+				queue(index, handler.newManualInsert(manualItemNums[index]));
+				Log.d(LOG_TAG, "Manual add for" + id);
+				completed(index, OUTCOME_IMPORTED);
+			} else {
+				lookups.add(index);
+			}
+		}
+
+		try {
+			if (lookups.size() > 1 && handler instanceof BatchItemHandler) {
+				final ArrayList<String> ids = new ArrayList<String>(
+						lookups.size());
+				for (int index : lookups) {
+					ids.add(mIds[index]);
+				}
+
+				sLookupLimiter.acquire();
+				if (isCancelled())
+					return;
+				final Map<String, T> items = ((BatchItemHandler<T>) handler)
+						.loadAndAddAll(ids);
+
+				for (int i = lookups.size() - 1; i >= 0; i--) {
+					final int index = lookups.get(i);
+					final T item = items.get(mIds[index]);
+					if (item != null) {
+						imported(index, item);
+						lookups.remove(i);
+					}
+				}
+			}
+
+			// GJT: Whatever the group missed gets the full single lookup
+			for (int index : lookups) {
+				sLookupLimiter.acquire();
+				if (isCancelled())
+					return;
+
+				final T item = handler.loadAndAdd(mIds[index]);
+				if (item != null) {
+					imported(index, item);
+				} else {
+					missing(index);
+				}
+			}
+		} catch (InterruptedException e) {
+			mCancelled = true;
+		}
+	}
+
+	private void imported(int index, T item) {
+		queue(index, mHandler.newUpdate(item, mItems.get(index)));
+		Log.d(LOG_TAG, item.toString());
+		completed(index, OUTCOME_IMPORTED);
+	}
+
+	private void missing(int index) {
+		synchronized (mDatabaseLock) {
+			mIdentifiers.remove(mIds[index]);
+			mClaimed.remove(mIds[index]);
+		}
+		completed(index, OUTCOME_MISSING);
+	}
+
+	private void queue(int index, ContentProviderOperation operation) {
+		if (operation == null)
+			return;
+
+		synchronized (mDatabaseLock) {
+			synchronized (this) {
+				mUnwritten[index] = true;
+			}
+			mPending.add(operation);
+			mPendingItems.add(index);
+			if (mPending.size() >= BATCH_SIZE) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Applies the pending operations. Must be called with the database lock
+	 * held.
+	 */
+	private void flush() {
+		if (mPending.isEmpty())
+			return;
+
+		boolean applied = false;
+		try {
+			mResolver.applyBatch(mContentUri.getAuthority(), mPending);
+			applied = true;
+		} catch (RemoteException e) {
+			Log.e(LOG_TAG, "Could not apply " + mPending.size()
+					+ " operations", e);
+		} catch (OperationApplicationException e) {
+			Log.e(LOG_TAG, "Could not apply " + mPending.size()
+					+ " operations", e);
+		}
+
+		synchronized (this) {
+			for (int index : mPendingItems) {
+				mUnwritten[index] = false;
+				if (!applied) {
+					// GJT: Not imported after all, a resumed import redoes it
+					mFailed[index] = true;
+					mOutcomes[index] = OUTCOME_NONE;
+				}
+			}
+			advance();
+		}
+		mPending.clear();
+		mPendingItems.clear();
+	}
+
+	private void completed(int index, byte outcome) {
+		final int done;
+		final int count = mItems.size();
+
+		synchronized (this) {
+			if (!mFailed[index])
+				mOutcomes[index] = outcome;
+			mDone[index] = true;
+			advance();
+
+			done = mStart + ++mCompleted;
+		}
+
+		mHandler.onProgress(done, count);
+	}
+
+	/**
+	 * Moves the resume position past the items done and written. Must be
+	 * called with the lock of the engine held.
+	 */
+	private void advance() {
+		final int count = mItems.size();
+		int next = mImportCount.get();
+		while (next < count && mDone[next] && !mUnwritten[next]
+				&& !mFailed[next]) {
+			next++;
+		}
+		mImportCount.set(next);
+	}
+
+	public int getMissingCount() {
+		return mMissing;
+	}
+
+	public int getExistingCount() {
+		return mExisting;
+	}
+
+	public String getMissingItems() {
+		return mMissingItems.toString();
+	}
+
+	public String getExistingItems() {
+		return mExistingItems.toString();
+	}
+}
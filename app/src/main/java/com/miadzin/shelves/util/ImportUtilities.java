@@ -17,17 +17,14 @@
 
 package com.miadzin.shelves.util;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.NoSuchElementException;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -136,7 +133,7 @@ public final class ImportUtilities extends IOUtilities {
 			.getContext().getString(R.string.IMPORT_FILE_LIST_OF_VIDEOGAMES);
 
 	public static String[] header;
-	public static List<String> manualItems;
+	public static List<String[]> manualItems;
 
 	private static final String LOG_TAG = "ImportUtilities";
 
@@ -145,8 +142,42 @@ public final class ImportUtilities extends IOUtilities {
 
 	public static ArrayList<ItemImport> loadItems(inputTypes type)
 			throws IOException {
+		if (type == null) {
+			return null;
+		}
+
 		ArrayList<ItemImport> list = new ArrayList<ItemImport>();
+
+		if (type == inputTypes.googleLibraryBooks)
+			return importingGoogleLibraryBooks(list);
+
+		// GJT: The import engine resumes by position, so it needs the list
+		final ItemImportIterator items = openItems(type);
+		if (items != null) {
+			try {
+				while (items.hasNext()) {
+					list.add(items.next());
+				}
+			} finally {
+				items.close();
+			}
+		}
+
+		return list;
+	}
+
+	/**
+	 * Opens the file of the specified import type. Its items are parsed one
+	 * at a time, as they are iterated, so the whole file is never held in
+	 * memory.
+	 * 
+	 * @return The items, or null if the type has no file or the file doesn't
+	 *         exist
+	 */
+	public static ItemImportIterator openItems(inputTypes type)
+			throws IOException {
 		File importFile = null;
+		RecordParser parser = null;
 
 		if (type == null) {
 			return null;
@@ -155,332 +186,226 @@ public final class ImportUtilities extends IOUtilities {
 		switch (type) {
 		case bulkScanApparel:
 			importFile = IOUtilities.getExternalFile(FILE_BULK_SCAN_APPAREL);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		case DLApparel:
 			importFile = IOUtilities.getExternalFile(IMPORT_FILE_DL_APPAREL);
-			list = importingDL(importFile, list);
+			parser = new DLParser();
 			break;
 		case shelvesApparel:
 			importFile = IOUtilities
 					.getExternalFile(IMPORT_FILE_SHELVES_APPAREL);
-			list = importingShelves(type, importFile, list);
+			parser = new ShelvesParser();
 			break;
 		case listOfApparel:
 			importFile = IOUtilities
 					.getExternalFile(IMPORT_FILE_LIST_OF_APPAREL);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		case boardGameGeekBoardGames:
 			importFile = IOUtilities
 					.getExternalFile(IMPORT_FILE_BOARDGAMEGEEK_BOARDGAMES);
-			list = importingBoardGameGeek(type, importFile, list);
+			parser = new BoardGameGeekParser();
 			break;
 		case shelvesBoardGames:
 			importFile = IOUtilities
 					.getExternalFile(IMPORT_FILE_SHELVES_BOARDGAMES);
-			list = importingShelves(type, importFile, list);
+			parser = new ShelvesParser();
 			break;
 		case bulkScanBooks:
 			importFile = IOUtilities.getExternalFile(FILE_BULK_SCAN_BOOKS);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		case DLBooks:
 			importFile = IOUtilities.getExternalFile(IMPORT_FILE_DL_BOOKS);
-			list = importingDL(importFile, list);
-			break;
-		case googleLibraryBooks:
-			list = importingGoogleLibraryBooks(list);
+			parser = new DLParser();
 			break;
 		case libraryThingBooks:
-			list = importingLibraryThingBooks(list);
+			importFile = IOUtilities
+					.getExternalFile(IMPORT_FILE_LIBRARY_THING_BOOKS);
+			parser = new LibraryThingParser();
 			break;
 		case mediaManBooks:
 			importFile = IOUtilities
 					.getExternalFile(IMPORT_FILE_MEDIAMAN_BOOKS);
-			list = importingMediaMan(importFile, list);
+			parser = new MediaManParser();
 			break;
 		case shelfariBooks:
-			list = importingShelfariBooks(list);
+			importFile = IOUtilities
+					.getExternalFile(IMPORT_FILE_SHELFARI_BOOKS);
+			parser = new ShelfariParser();
 			break;
 		case shelvesBooks:
 			importFile = IOUtilities.getExternalFile(IMPORT_FILE_SHELVES_BOOKS);
-			list = importingShelves(type, importFile, list);
+			parser = new ShelvesParser();
 			break;
 		case listOfBooks:
 			importFile = IOUtilities.getExternalFile(IMPORT_FILE_LIST_OF_BOOKS);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		case shelvesComics:
 			importFile = IOUtilities
 					.getExternalFile(IMPORT_FILE_SHELVES_COMICS);
-			list = importingShelves(type, importFile, list);
+			parser = new ShelvesParser();
 			break;
 		case bulkScanGadgets:
 			importFile = IOUtilities.getExternalFile(FILE_BULK_SCAN_GADGETS);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		case DLGadgets:
 			importFile = IOUtilities.getExternalFile(IMPORT_FILE_DL_GADGETS);
-			list = importingDL(importFile, list);
+			parser = new DLParser();
 			break;
 		case shelvesGadgets:
 			importFile = IOUtilities
 					.getExternalFile(IMPORT_FILE_SHELVES_GADGETS);
-			list = importingShelves(type, importFile, list);
+			parser = new ShelvesParser();
 			break;
 		case listOfGadgets:
 			importFile = IOUtilities
 					.getExternalFile(IMPORT_FILE_LIST_OF_GADGETS);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		case bulkScanMovies:
 			importFile = IOUtilities.getExternalFile(FILE_BULK_SCAN_MOVIES);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		case DLMovies:
 			importFile = IOUtilities.getExternalFile(IMPORT_FILE_DL_MOVIES);
-			list = importingDL(importFile, list);
+			parser = new DLParser();
 			break;
 		case mediaManMovies:
 			importFile = IOUtilities
 					.getExternalFile(IMPORT_FILE_MEDIAMAN_MOVIES);
-			list = importingMediaMan(importFile, list);
+			parser = new MediaManParser();
 			break;
 		case shelvesMovies:
 			importFile = IOUtilities
 					.getExternalFile(IMPORT_FILE_SHELVES_MOVIES);
-			list = importingShelves(type, importFile, list);
+			parser = new ShelvesParser();
 			break;
 		case listOfMovies:
 			importFile = IOUtilities
 					.getExternalFile(IMPORT_FILE_LIST_OF_MOVIES);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		case bulkScanMusic:
 			importFile = IOUtilities.getExternalFile(FILE_BULK_SCAN_MUSIC);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		case DLMusic:
 			importFile = IOUtilities.getExternalFile(IMPORT_FILE_DL_MUSIC);
-			list = importingDL(importFile, list);
+			parser = new DLParser();
 			break;
 		case mediaManMusic:
 			importFile = IOUtilities
 					.getExternalFile(IMPORT_FILE_MEDIAMAN_MUSIC);
-			list = importingMediaMan(importFile, list);
+			parser = new MediaManParser();
 			break;
 		case shelvesMusic:
 			importFile = IOUtilities.getExternalFile(IMPORT_FILE_SHELVES_MUSIC);
-			list = importingShelves(type, importFile, list);
+			parser = new ShelvesParser();
 			break;
 		case listOfMusic:
 			importFile = IOUtilities.getExternalFile(IMPORT_FILE_LIST_OF_MUSIC);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		case bulkScanSoftware:
 			importFile = IOUtilities.getExternalFile(FILE_BULK_SCAN_SOFTWARE);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		case DLSoftware:
 			importFile = IOUtilities.getExternalFile(IMPORT_FILE_DL_SOFTWARE);
-			list = importingDL(importFile, list);
+			parser = new DLParser();
 			break;
 		case shelvesSoftware:
 			importFile = IOUtilities
 					.getExternalFile(IMPORT_FILE_SHELVES_SOFTWARE);
-			list = importingShelves(type, importFile, list);
+			parser = new ShelvesParser();
 			break;
 		case listOfSoftware:
 			importFile = IOUtilities
 					.getExternalFile(IMPORT_FILE_LIST_OF_SOFTWARE);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		case bulkScanTools:
 			importFile = IOUtilities.getExternalFile(FILE_BULK_SCAN_TOOLS);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		case DLTools:
 			importFile = IOUtilities.getExternalFile(IMPORT_FILE_DL_TOOLS);
-			list = importingDL(importFile, list);
+			parser = new DLParser();
 			break;
 		case shelvesTools:
 			importFile = IOUtilities.getExternalFile(IMPORT_FILE_SHELVES_TOOLS);
-			list = importingShelves(type, importFile, list);
+			parser = new ShelvesParser();
 			break;
 		case listOfTools:
 			importFile = IOUtilities.getExternalFile(IMPORT_FILE_LIST_OF_TOOLS);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		case bulkScanToys:
 			importFile = IOUtilities.getExternalFile(FILE_BULK_SCAN_TOYS);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		case DLToys:
 			importFile = IOUtilities.getExternalFile(IMPORT_FILE_DL_TOYS);
-			list = importingDL(importFile, list);
+			parser = new DLParser();
 			break;
 		case shelvesToys:
 			importFile = IOUtilities.getExternalFile(IMPORT_FILE_SHELVES_TOYS);
-			list = importingShelves(type, importFile, list);
+			parser = new ShelvesParser();
 			break;
 		case listOfToys:
 			importFile = IOUtilities.getExternalFile(IMPORT_FILE_LIST_OF_TOYS);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		case bulkScanVideoGames:
 			importFile = IOUtilities.getExternalFile(FILE_BULK_SCAN_VIDEOGAMES);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		case DLVideoGames:
 			importFile = IOUtilities.getExternalFile(IMPORT_FILE_DL_VIDEOGAMES);
-			list = importingDL(importFile, list);
+			parser = new DLParser();
 			break;
 		case mediaManVideoGames:
 			importFile = IOUtilities
 					.getExternalFile(IMPORT_FILE_MEDIAMAN_VIDEOGAMES);
-			list = importingMediaMan(importFile, list);
+			parser = new MediaManParser();
 			break;
 		case shelvesVideoGames:
 			importFile = IOUtilities
 					.getExternalFile(IMPORT_FILE_SHELVES_VIDEOGAMES);
-			list = importingShelves(type, importFile, list);
+			parser = new ShelvesParser();
 			break;
 		case listOfVideoGames:
 			importFile = IOUtilities
 					.getExternalFile(IMPORT_FILE_LIST_OF_VIDEOGAMES);
-			list = importingListOf(importFile, list);
+			parser = new ListOfParser();
 			break;
 		default:
 			break;
 		}
-		return list;
-	}
-
-	private static ArrayList<ItemImport> importingDL(File importFile,
-			ArrayList<ItemImport> list) {
-		if (!importFile.exists())
-			return list;
-
-		BufferedReader in = null;
-		try {
-			in = new BufferedReader(new InputStreamReader(new FileInputStream(
-					importFile)), IOUtilities.IO_BUFFER_SIZE);
 
-			String line;
-
-			// Read the TSV headers
-			in.readLine();
-
-			while ((line = in.readLine()) != null) {
-				if (!TextUtilities.isEmpty(line)) {
-					final String[] splitLine = line.split("\t");
-
-					final ItemImport item = new ItemImport();
-
-					int i = 0;
-					item.id_one = splitLine[i];
-					i++;
-					if (i < splitLine.length)
-						item.notes = splitLine[i];
-					i++;
-					if (i < splitLine.length)
-						item.rating = splitLine[i];
-
-					list.add(item);
-				}
-			}
-		} catch (FileNotFoundException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} finally {
-			IOUtilities.closeStream(in);
-		}
-
-		return list;
-	}
-
-	private static ArrayList<ItemImport> importingBoardGameGeek(
-			inputTypes type, File importFile, ArrayList<ItemImport> list) {
-		if (!importFile.exists())
-			return list;
-
-		BufferedReader in = null;
+		if (importFile == null || !importFile.exists())
+			return null;
 
+		final InputStreamReader reader;
+		if (parser.charset != null)
+			reader = new InputStreamReader(new FileInputStream(importFile),
+					parser.charset);
+		else
+			reader = new InputStreamReader(new FileInputStream(importFile));
+		final ItemImportIterator items = new ItemImportIterator(
+				new DelimitedReader(reader, parser.delimiter, parser.quotes),
+				parser);
 		try {
-			in = new BufferedReader(new InputStreamReader(new FileInputStream(
-					importFile)), IOUtilities.IO_BUFFER_SIZE);
-
-			String line;
-			manualItems = new ArrayList<String>();
-
-			// GJT: Read the CSV headers; store them for manual item adds
-			header = in.readLine().split(",");
-
-			int eanPos = -1;
-			int ratingPos = -1;
-			int wishlistPos = -1;
-
-			// find positions
-			for (int i = 0; i < header.length; i++) {
-				if (header[i].equals(BaseItem.OBJECTID))
-					eanPos = i;
-				else if (header[i].equals(BaseItem.RATING))
-					ratingPos = i;
-				else if (header[i].equals(BaseItem.BGG_WISHLIST))
-					wishlistPos = i;
-			}
-
-			while ((line = in.readLine()) != null) {
-				ItemImport item = new ItemImport();
-				// GJT: I only want the EAN--if one exists!
-				if (line.indexOf(",") >= 0) {
-					line = line.replace("\"", "");
-					final String[] splitLine = line.split(",");
-					final int splitLineLength = splitLine.length;
-					try {
-						if (!TextUtilities.isEmpty(splitLine[eanPos])) {
-							item.id_one = splitLine[eanPos];
-						}
-
-						item.rating = splitLine[ratingPos];
-
-						int rating = (int) Math.ceil(Double
-								.parseDouble(item.rating));
-
-						if (rating > 5)
-							item.rating = String.valueOf((int) Math
-									.ceil(rating / 2));
-						else
-							item.rating = String.valueOf(rating);
-
-						item.wishlist = splitLine[wishlistPos];
-
-						if (item.wishlist.equals("1"))
-							item.wishlist = TextUtilities.getCurrentDate();
-						else
-							item.wishlist = IOUtilities.NO_OP;
-
-						list.add(item);
-					} catch (ArrayIndexOutOfBoundsException e) {
-						Log.e(LOG_TAG, splitLine[eanPos] + ": " + e.toString());
-					}
-				}
-			}
-		} catch (FileNotFoundException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			parser.readHeader(items.mReader);
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} finally {
-			IOUtilities.closeStream(in);
+			items.close();
+			throw e;
 		}
-
-		return list;
+		return items;
 	}
 
 	private static ArrayList<ItemImport> importingGoogleLibraryBooks(
@@ -536,348 +461,311 @@ public final class ImportUtilities extends IOUtilities {
 		return textVal;
 	}
 
-	private static ArrayList<ItemImport> importingMediaMan(File importFile,
-			ArrayList<ItemImport> list) throws IOException {
-		if (!importFile.exists())
-			return list;
-		BufferedReader in = null;
-
-		try {
-			in = new BufferedReader(new InputStreamReader(new FileInputStream(
-					importFile), "UTF16"), IOUtilities.IO_BUFFER_SIZE);
-
-			String line;
-
-			// Read the TSV headers
-			final String[] header = in.readLine().split("\t");
-
-			int asinPos = -1;
-			int eanPos = -1;
-			int isbnPos = -1;
-			int tagPos = -1;
-			int ratingPos = -1;
-
-			// find positions
-			for (int i = 0; i < header.length; i++) {
-				if (asinPos == -1 && header[i].equals("ASIN"))
-					asinPos = i;
-				else if (eanPos == -1 && header[i].equals("EAN"))
-					eanPos = i;
-				else if (isbnPos == -1 && header[i].equals("ISBN"))
-					isbnPos = i;
-				else if (tagPos == -1 && header[i].equals("Tag"))
-					tagPos = i;
-				else if (ratingPos == -1 && header[i].equals("Rating"))
-					ratingPos = i;
-			}
+	/**
+	 * Iterates over the items of an import file, parsing each record as it is
+	 * reached. An error reading the file ends the iteration.
+	 */
+	public static final class ItemImportIterator implements
+			Iterator<ItemImport> {
+		private final DelimitedReader mReader;
+		private final RecordParser mParser;
+		private ItemImport mNext;
+		private boolean mDone;
+
+		ItemImportIterator(DelimitedReader reader, RecordParser parser) {
+			mReader = reader;
+			mParser = parser;
+		}
 
-			while ((line = in.readLine()) != null) {
-				ItemImport item = new ItemImport();
-				if (line.indexOf("\t") >= 0) {
-					final String[] splitLine = line.split("\t");
-					final int splitLineLength = splitLine.length;
-					try {
-						if (asinPos != -1)
-							item.id_one = splitLine[asinPos];
-						if (TextUtilities.isEmpty(item.id_one)) {
-							if (eanPos != -1)
-								item.id_one = splitLine[eanPos];
-							if (TextUtilities.isEmpty(item.id_one))
-								item.id_one = splitLine[isbnPos];
-						}
-						if (tagPos != -1 && tagPos < splitLineLength)
-							item.tags = splitLine[tagPos];
-						if (ratingPos != -1 && ratingPos < splitLineLength)
-							if (!TextUtilities.isEmpty(splitLine[ratingPos]))
-								item.rating = splitLine[ratingPos];
-						list.add(item);
-					} catch (ArrayIndexOutOfBoundsException e) {
-						Log.e(LOG_TAG, splitLine[asinPos] + ": " + e.toString());
-					}
+		public boolean hasNext() {
+			while (mNext == null && !mDone) {
+				try {
+					if (mReader.readRecord())
+						mNext = mParser.parse(mReader);
+					else
+						mDone = true;
+				} catch (IOException e) {
+					Log.e(LOG_TAG, "Could not read the import file", e);
+					mDone = true;
 				}
 			}
-		} finally {
-			IOUtilities.closeStream(in);
+			return mNext != null;
 		}
 
-		return list;
-	}
-
-	private static ArrayList<ItemImport> importingLibraryThingBooks(
-			ArrayList<ItemImport> list) throws IOException {
-		File importFile = IOUtilities
-				.getExternalFile(IMPORT_FILE_LIBRARY_THING_BOOKS);
-
-		if (!importFile.exists())
-			return list;
-
-		BufferedReader in = null;
-		try {
-			in = new BufferedReader(new InputStreamReader(new FileInputStream(
-					importFile)), IOUtilities.IO_BUFFER_SIZE);
+		public ItemImport next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
 
-			String line;
-			String ISBN = null;
+			final ItemImport item = mNext;
+			mNext = null;
+			return item;
+		}
 
-			// Read the TSV headers
-			in.readLine();
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
 
-			Pattern p = Pattern.compile("[^0-9]");
-			Matcher m = p.matcher("");
+		public void close() {
+			IOUtilities.closeStream(mReader);
+		}
+	}
 
-			Pattern anp = Pattern.compile("[^A-Za-z0-9, ]");
-			Matcher anm = anp.matcher("");
+	/**
+	 * Turns the records of one import format into items.
+	 */
+	private static abstract class RecordParser {
+		final char delimiter;
+		final String charset;
+		// GJT: Our own exports never quote, a stray quote must stay a quote
+		final boolean quotes;
+
+		RecordParser() {
+			this('\t', null, false);
+		}
 
-			while ((line = in.readLine()) != null) {
-				ItemImport item = new ItemImport();
+		RecordParser(char delimiter, String charset, boolean quotes) {
+			this.delimiter = delimiter;
+			this.charset = charset;
+			this.quotes = quotes;
+		}
 
-				// GJT: Like Shelfari, this list is always the same format.
-				if (line.indexOf("\t") >= 0) {
-					final String rowData[] = line.split("\t");
-					final String rawISBN = rowData[7];
-					m.reset(rawISBN);
-					ISBN = m.replaceAll("");
+		/**
+		 * Reads the header of the file. Most formats only skip it.
+		 */
+		void readHeader(DelimitedReader reader) throws IOException {
+			reader.readRecord();
+		}
 
-					if (!TextUtilities.isEmpty(ISBN))
-						item.id_one = ISBN;
+		/**
+		 * @return The item for the current record, or null to skip it
+		 */
+		abstract ItemImport parse(DelimitedReader reader);
+	}
 
-					m.reset(rowData[20]);
-					item.rating = m.replaceAll("");
+	private static String valueOf(String field, String defaultValue) {
+		return field != null ? field : defaultValue;
+	}
 
-					anm.reset(rowData[22]);
-					item.tags = anm.replaceAll("");
-					list.add(item);
-				}
+	// GJT: Stand-in for the old [^0-9] and [^A-Za-z0-9, ] regexes
+	private static String keepChars(String field, boolean lettersToo) {
+		if (field == null)
+			return "";
+
+		final int length = field.length();
+		final StringBuilder kept = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			final char c = field.charAt(i);
+			if (c >= '0' && c <= '9') {
+				kept.append(c);
+			} else if (lettersToo
+					&& ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')
+							|| c == ',' || c == ' ')) {
+				kept.append(c);
 			}
-		} finally {
-			IOUtilities.closeStream(in);
 		}
+		return kept.toString();
+	}
 
-		return list;
+	private static class DLParser extends RecordParser {
+		@Override
+		ItemImport parse(DelimitedReader reader) {
+			final ItemImport item = new ItemImport();
+			item.id_one = reader.getField(0);
+			item.notes = valueOf(reader.getField(1), item.notes);
+			if (!TextUtilities.isEmpty(reader.getField(2)))
+				item.rating = reader.getField(2);
+			return item;
+		}
 	}
 
-	private static ArrayList<ItemImport> importingShelfariBooks(
-			ArrayList<ItemImport> list) throws IOException {
-		File importFile = IOUtilities
-				.getExternalFile(IMPORT_FILE_SHELFARI_BOOKS);
+	private static class BoardGameGeekParser extends RecordParser {
+		BoardGameGeekParser() {
+			super(',', null, true);
+		}
 
-		if (!importFile.exists())
-			return list;
+		@Override
+		void readHeader(DelimitedReader reader) throws IOException {
+			// GJT: Store the headers for manual item adds
+			header = reader.readHeader();
+			manualItems = new ArrayList<String[]>();
+		}
 
-		BufferedReader in = null;
-		try {
-			in = new BufferedReader(new InputStreamReader(new FileInputStream(
-					importFile)), IOUtilities.IO_BUFFER_SIZE);
-
-			String line;
-			String ISBN = null;
-			// Read the TSV headers
-			in.readLine();
-
-			while ((line = in.readLine()) != null) {
-				ItemImport item = new ItemImport();
-				// GJT: Shelfari is easy; it'll always give the list in the same
-				// format. All I really care about is the ISBN, nuts to the
-				// rest.
-				if (line.indexOf("\t") >= 0) {
-					ISBN = line.split("\t", 4)[2];
-					ISBN = ISBN.substring(1, ISBN.length() - 1); // GJT: remove
-					// quote marks
-				}
-				if (!TextUtilities.isEmpty(ISBN))
-					item.id_one = ISBN;
-				list.add(item);
+		@Override
+		ItemImport parse(DelimitedReader reader) {
+			if (reader.getFieldCount() < 2)
+				return null;
+
+			final ItemImport item = new ItemImport();
+			// GJT: I only want the EAN--if one exists!
+			final String ean = reader.getField(BaseItem.OBJECTID);
+			if (!TextUtilities.isEmpty(ean))
+				item.id_one = ean;
+
+			try {
+				int rating = (int) Math.ceil(Double.parseDouble(reader
+						.getField(BaseItem.RATING)));
+
+				if (rating > 5)
+					item.rating = String.valueOf((int) Math.ceil(rating / 2));
+				else
+					item.rating = String.valueOf(rating);
+			} catch (NullPointerException e) {
+				// No rating column, keep the default
+			} catch (NumberFormatException e) {
+				// Not rated, keep the default
 			}
-		} finally {
-			IOUtilities.closeStream(in);
-		}
 
-		return list;
+			if ("1".equals(reader.getField(BaseItem.BGG_WISHLIST)))
+				item.wishlist = TextUtilities.getCurrentDate();
+			else
+				item.wishlist = IOUtilities.NO_OP;
+
+			return item;
+		}
 	}
 
-	private static ArrayList<ItemImport> importingShelves(inputTypes type,
-			File importFile, ArrayList<ItemImport> list) {
-		if (!importFile.exists())
-			return list;
+	private static class MediaManParser extends RecordParser {
+		MediaManParser() {
+			super('\t', "UTF16", false);
+		}
 
-		BufferedReader in = null;
+		@Override
+		void readHeader(DelimitedReader reader) throws IOException {
+			reader.readHeader();
+		}
 
-		try {
-			in = new BufferedReader(new InputStreamReader(new FileInputStream(
-					importFile)), IOUtilities.IO_BUFFER_SIZE);
-
-			String line;
-			manualItems = new ArrayList<String>();
-
-			// GJT: Read the TSV headers; store them for manual item adds
-			header = in.readLine().split("\t");
-
-			int eanPos = -1;
-			int titlePos = -1;
-			int sortTitlePos = -1;
-			int descPos = -1;
-			int tagPos = -1;
-			int ratingPos = -1;
-			int notesPos = -1;
-			int loanDatePos = -1;
-			int loanToPos = -1;
-			int eventIDPos = -1;
-			int wishlistPos = -1;
-
-			// find positions
-			for (int i = 0; i < header.length; i++) {
-				if (header[i].equals(BaseItem.EAN))
-					eanPos = i;
-				else if (header[i].equals(BaseItem.TITLE))
-					titlePos = i;
-				else if (header[i].equals(BaseItem.SORT_TITLE))
-					sortTitlePos = i;
-				else if (header[i].equals(BaseItem.REVIEWS))
-					descPos = i;
-				else if (header[i].equals(BaseItem.TAGS))
-					tagPos = i;
-				else if (header[i].equals(BaseItem.RATING))
-					ratingPos = i;
-				else if (header[i].equals(BaseItem.NOTES))
-					notesPos = i;
-				else if (header[i].equals(BaseItem.LOAN_DATE))
-					loanDatePos = i;
-				else if (header[i].equals(BaseItem.LOANED_TO))
-					loanToPos = i;
-				else if (header[i].equals(BaseItem.EVENT_ID))
-					eventIDPos = i;
-				else if (header[i].equals(BaseItem.WISHLIST_DATE))
-					wishlistPos = i;
-			}
+		@Override
+		ItemImport parse(DelimitedReader reader) {
+			if (reader.getFieldCount() < 2)
+				return null;
 
-			while ((line = in.readLine()) != null) {
-				ItemImport item = new ItemImport();
-				// GJT: For Shelves imports, I only want the EAN--if one exists!
-				if (line.indexOf("\t") >= 0) {
-					line = line.replace("\"", "");
-					final String[] splitLine = line.split("\t");
-					final int splitLineLength = splitLine.length;
-					try {
-						item.internalID = splitLine[1];
+			final ItemImport item = new ItemImport();
 
-						if (!TextUtilities.isEmpty(splitLine[eanPos])) {
-							item.id_one = splitLine[eanPos];
-						} else {
-							item.id_one = splitLine[eanPos + 1];
-						}
+			String id = reader.getField("ASIN");
+			if (TextUtilities.isEmpty(id))
+				id = reader.getField("EAN");
+			if (TextUtilities.isEmpty(id))
+				id = reader.getField("ISBN");
+			item.id_one = valueOf(id, item.id_one);
 
-						if (TextUtilities.isManualItem(item.internalID)) {
-							manualItems.add(line);
-						}
+			item.tags = valueOf(reader.getField("Tag"), item.tags);
 
-						item.title = splitLine[titlePos];
-						if (sortTitlePos != 0)
-							item.sort_title = splitLine[sortTitlePos];
+			final String rating = reader.getField("Rating");
+			if (!TextUtilities.isEmpty(rating))
+				item.rating = rating;
 
-						item.desc = splitLine[descPos];
-						item.tags = splitLine[tagPos];
-						item.rating = splitLine[ratingPos];
+			return item;
+		}
+	}
 
-						if (notesPos != -1 && notesPos < splitLineLength)
-							item.notes = splitLine[notesPos];
+	// GJT: Like Shelfari, this list is always the same format.
+	private static class LibraryThingParser extends RecordParser {
+		@Override
+		ItemImport parse(DelimitedReader reader) {
+			if (reader.getFieldCount() < 2)
+				return null;
 
-						if (loanToPos != -1 && loanToPos < splitLineLength)
-							item.loan_to = splitLine[loanToPos];
+			final ItemImport item = new ItemImport();
 
-						if (loanDatePos != -1 && loanDatePos < splitLineLength)
-							item.loan_date = splitLine[loanDatePos];
+			final String ISBN = keepChars(reader.getField(7), false);
+			if (!TextUtilities.isEmpty(ISBN))
+				item.id_one = ISBN;
 
-						if (eventIDPos != -1 && eventIDPos < splitLineLength)
-							item.event_id = splitLine[eventIDPos];
+			item.rating = keepChars(reader.getField(20), false);
+			item.tags = keepChars(reader.getField(22), true);
 
-						if (wishlistPos != -1 && wishlistPos < splitLineLength)
-							item.wishlist = splitLine[wishlistPos];
+			return item;
+		}
+	}
 
-						list.add(item);
-					} catch (ArrayIndexOutOfBoundsException e) {
-						Log.e(LOG_TAG, eanPos + ": " + e.toString());
-					}
-				}
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		} finally {
-			IOUtilities.closeStream(in);
+	// GJT: Shelfari is easy; it'll always give the list in the same format.
+	// All I really care about is the ISBN, nuts to the rest.
+	private static class ShelfariParser extends RecordParser {
+		ShelfariParser() {
+			super('\t', null, true);
 		}
 
-		return list;
-	}
+		@Override
+		ItemImport parse(DelimitedReader reader) {
+			final ItemImport item = new ItemImport();
 
-	private static ArrayList<ItemImport> importingListOf(File importFile,
-			ArrayList<ItemImport> list) throws IOException {
-		if (!importFile.exists())
-			return list;
+			// The quotes around it are gone already
+			final String ISBN = reader.getField(2);
+			if (!TextUtilities.isEmpty(ISBN))
+				item.id_one = ISBN;
 
-		BufferedReader in = null;
-		try {
-			in = new BufferedReader(new InputStreamReader(new FileInputStream(
-					importFile)), IOUtilities.IO_BUFFER_SIZE);
+			return item;
+		}
+	}
 
-			String line;
+	private static class ShelvesParser extends RecordParser {
+		private int eanPos;
 
-			// Read the TSV headers
-			in.readLine();
+		@Override
+		void readHeader(DelimitedReader reader) throws IOException {
+			// GJT: Store the headers for manual item adds
+			header = reader.readHeader();
+			manualItems = new ArrayList<String[]>();
+			eanPos = reader.getColumn(BaseItem.EAN);
+		}
 
-			while ((line = in.readLine()) != null) {
-				final int index = line.indexOf('\t');
-				final int length = line.length();
+		@Override
+		ItemImport parse(DelimitedReader reader) {
+			if (reader.getFieldCount() < 2)
+				return null;
 
-				final ItemImport item = new ItemImport();
-				// Only one field, we grab the entire line
-				if (index == -1 && length > 0) {
-					item.id_one = line;
-					// Only one field, the first one is empty
-				} else if (index != length - 1) {
-					item.id_one = line.substring(index + 1);
+			final ItemImport item = new ItemImport();
+			item.internalID = reader.getField(1);
 
-				} else if (index == 0 || line.equals("")) {
-					// GJT: Skip it; it's just an empty tab or line
-				}
-				// We have two fields, or the second one is empty
-				else {
-					item.id_one = line.substring(0, index);
-				}
+			// GJT: For Shelves imports, I only want the EAN--if one exists!
+			final String ean = reader.getField(eanPos);
+			if (!TextUtilities.isEmpty(ean))
+				item.id_one = ean;
+			else
+				item.id_one = valueOf(reader.getField(eanPos + 1), item.id_one);
 
-				list.add(item);
+			if (TextUtilities.isManualItem(item.internalID)) {
+				manualItems.add(reader.getFields());
 			}
-		} finally {
-			IOUtilities.closeStream(in);
-		}
 
-		return list;
+			item.title = valueOf(reader.getField(BaseItem.TITLE), item.title);
+			item.sort_title = valueOf(reader.getField(BaseItem.SORT_TITLE),
+					item.sort_title);
+			item.desc = valueOf(reader.getField(BaseItem.REVIEWS), item.desc);
+			item.tags = valueOf(reader.getField(BaseItem.TAGS), item.tags);
+			item.rating = valueOf(reader.getField(BaseItem.RATING),
+					item.rating);
+			item.notes = valueOf(reader.getField(BaseItem.NOTES), item.notes);
+			item.loan_to = reader.getField(BaseItem.LOANED_TO);
+			item.loan_date = reader.getField(BaseItem.LOAN_DATE);
+			item.event_id = reader.getField(BaseItem.EVENT_ID);
+			item.wishlist = valueOf(reader.getField(BaseItem.WISHLIST_DATE),
+					item.wishlist);
+
+			return item;
+		}
 	}
 
-	// GJT: Made this more generic by removing Book references
-	public static boolean addCoverToCache(String iId, Bitmap bitmap) {
-		File cacheDirectory;
+	private static class ListOfParser extends RecordParser {
+		@Override
+		ItemImport parse(DelimitedReader reader) {
+			final ItemImport item = new ItemImport();
 
-		if (bitmap == null) {
-			return false;
-		}
-		try {
-			cacheDirectory = ensureCache();
-		} catch (IOException e) {
-			Log.e(LOG_TAG, "Could not create cache directory!");
-			return false;
-		}
+			// Either one field, or two of which the second one wins unless
+			// it's empty
+			final String second = reader.getField(1);
+			if (!TextUtilities.isEmpty(second))
+				item.id_one = second;
+			else
+				item.id_one = reader.getField(0);
 
-		File coverFile = new File(cacheDirectory, iId);
-		FileOutputStream out = null;
-		try {
-			out = new FileOutputStream(coverFile);
-			bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
-		} catch (FileNotFoundException e) {
-			return false;
-		} finally {
-			IOUtilities.closeStream(out);
+			return item;
 		}
+	}
 
-		return true;
+	// GJT: Made this more generic by removing Book references
+	public static boolean addCoverToCache(String iId, Bitmap bitmap) {
+		return ImageUtilities.getDiskCoverCache().put(iId, bitmap);
 	}
 
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.miadzin.shelves.base.BaseItem;
+
+/**
+ * The lookups the managers run against the providers, for every type of
+ * item. The methods hold no state and build their selection arguments on
+ * every call, so they can be called from any number of threads at once.
+ *
+ * The selections are constants, so the SQL the providers run is the same
+ * text from one call to the next and SQLite reuses the statement it compiled
+ * the first time instead of compiling one per id.
+ */
+public class ItemQueries {
+	private static final String[] PROJECTION_ID = new String[] { BaseItem._ID };
+
+	private static final String[] PROJECTION_INTERNAL_ID = new String[] { BaseItem.INTERNAL_ID };
+
+	/**
+	 * Selects the items of an internal id whatever its case, through the
+	 * NOCASE index on the column. Ids typed in or imported don't always match
+	 * the stored case.
+	 */
+	public static final String SELECTION_INTERNAL_ID = BaseItem.INTERNAL_ID
+			+ " = ? COLLATE NOCASE";
+
+	private ItemQueries() {
+	}
+
+	/**
+	 * Returns true if an item has the specified id as a barcode or as its
+	 * internal id, see {@link IdentifierIndex#getSelection(String)}.
+	 */
+	public static boolean exists(ContentResolver resolver, Uri contentUri,
+			String id) {
+		return count(resolver, contentUri, IdentifierIndex.getSelection(id),
+				IdentifierIndex.getSelectionArgs(id)) > 0;
+	}
+
+	/**
+	 * Returns true if an item has the specified internal id, whatever its
+	 * case.
+	 */
+	public static boolean containsInternalId(ContentResolver resolver,
+			Uri contentUri, String internalId) {
+		return count(resolver, contentUri, SELECTION_INTERNAL_ID,
+				new String[] { internalId }) > 0;
+	}
+
+	/**
+	 * Returns the internal id of the item with the specified id as a barcode
+	 * or as its internal id, or null if there is none.
+	 */
+	public static String findInternalId(ContentResolver resolver,
+			Uri contentUri, String id, String sortOrder) {
+		final Cursor c = queryFirst(resolver, contentUri,
+				PROJECTION_INTERNAL_ID, IdentifierIndex.getSelection(id),
+				IdentifierIndex.getSelectionArgs(id), sortOrder);
+		if (c == null)
+			return null;
+
+		try {
+			return c.getString(0);
+		} finally {
+			c.close();
+		}
+	}
+
+	/**
+	 * Returns a cursor on the whole row of the item with the specified
+	 * internal id, moved to that row, or null if there is none. The caller
+	 * closes the cursor.
+	 */
+	public static Cursor queryByInternalId(ContentResolver resolver,
+			Uri contentUri, String internalId, String sortOrder) {
+		return queryFirst(resolver, contentUri, null,
+				SELECTION_INTERNAL_ID, new String[] { internalId },
+				sortOrder);
+	}
+
+	/**
+	 * Returns a cursor on the whole row of the item with the specified id as
+	 * a barcode or as its internal id, moved to that row, or null if there is
+	 * none. The caller closes the cursor.
+	 */
+	public static Cursor queryById(ContentResolver resolver, Uri contentUri,
+			String id, String sortOrder) {
+		return queryFirst(resolver, contentUri, null,
+				IdentifierIndex.getSelection(id),
+				IdentifierIndex.getSelectionArgs(id), sortOrder);
+	}
+
+	/**
+	 * Deletes the item with the specified internal id.
+	 *
+	 * @return The number of rows deleted
+	 */
+	public static int delete(ContentResolver resolver, Uri contentUri,
+			String internalId) {
+		return resolver.delete(contentUri, SELECTION_INTERNAL_ID,
+				new String[] { internalId });
+	}
+
+	private static int count(ContentResolver resolver, Uri contentUri,
+			String selection, String[] selectionArgs) {
+		final Cursor c = resolver.query(contentUri, PROJECTION_ID, selection,
+				selectionArgs, null);
+		if (c == null)
+			return 0;
+
+		try {
+			return c.getCount();
+		} finally {
+			c.close();
+		}
+	}
+
+	private static Cursor queryFirst(ContentResolver resolver,
+			Uri contentUri, String[] projection, String selection,
+			String[] selectionArgs, String sortOrder) {
+		final Cursor c = resolver.query(contentUri, projection, selection,
+				selectionArgs, sortOrder);
+		if (c != null && !c.moveToFirst()) {
+			c.close();
+			return null;
+		}
+		return c;
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+/**
+ * A set of longs held in a single array, without boxing, for sets too large
+ * to be worth a {@link java.util.HashSet} of {@link Long}. Zero marks the
+ * empty slots and cannot be added. Not thread safe.
+ */
+public class LongHashSet {
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] mSlots;
+	private int mSize;
+
+	public LongHashSet() {
+		this(0);
+	}
+
+	/**
+	 * @param expectedSize
+	 *            The number of values the set should hold before growing
+	 */
+	public LongHashSet(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		// GJT: Kept at most half full, so probes stay short
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		mSlots = new long[capacity];
+	}
+
+	/**
+	 * Adds a value to the set.
+	 *
+	 * @return True if the set did not hold the value yet
+	 */
+	public boolean add(long value) {
+		if (value == 0)
+			throw new IllegalArgumentException("value == 0");
+
+		final long[] slots = mSlots;
+		final int mask = slots.length - 1;
+		int i = indexFor(value, mask);
+		while (slots[i] != 0) {
+			if (slots[i] == value)
+				return false;
+			i = (i + 1) & mask;
+		}
+
+		slots[i] = value;
+		if (++mSize * 2 > slots.length)
+			grow();
+		return true;
+	}
+
+	public boolean contains(long value) {
+		if (value == 0)
+			return false;
+
+		final long[] slots = mSlots;
+		final int mask = slots.length - 1;
+		int i = indexFor(value, mask);
+		while (slots[i] != 0) {
+			if (slots[i] == value)
+				return true;
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes a value from the set.
+	 *
+	 * @return True if the set held the value
+	 */
+	public boolean remove(long value) {
+		if (value == 0)
+			return false;
+
+		final long[] slots = mSlots;
+		final int mask = slots.length - 1;
+		int i = indexFor(value, mask);
+		while (slots[i] != value) {
+			if (slots[i] == 0)
+				return false;
+			i = (i + 1) & mask;
+		}
+
+		// GJT: Shift back the values probed past the freed slot, so that
+		// none of them ends up behind an empty slot
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (slots[j] == 0)
+				break;
+			final int home = indexFor(slots[j], mask);
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				slots[i] = slots[j];
+				i = j;
+			}
+		}
+		slots[i] = 0;
+		mSize--;
+		return true;
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	private void grow() {
+		final long[] old = mSlots;
+		final long[] slots = new long[old.length * 2];
+		final int mask = slots.length - 1;
+		for (long value : old) {
+			if (value == 0)
+				continue;
+			int i = indexFor(value, mask);
+			while (slots[i] != 0) {
+				i = (i + 1) & mask;
+			}
+			slots[i] = value;
+		}
+		mSlots = slots;
+	}
+
+	private static int indexFor(long value, int mask) {
+		// Barcodes share their leading digits, spread them over the table
+		final int hash = (int) (value ^ (value >>> 32)) * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+/**
+ * A token bucket. Tokens are added at a fixed rate up to a maximum burst;
+ * every request takes one token, waiting for it if the bucket is empty.
+ * Instances are safe to share between threads.
+ */
+public class RateLimiter {
+	private final double mPermitsPerMilli;
+	private final double mMaxPermits;
+
+	private double mPermits;
+	private long mLastRefill;
+
+	/**
+	 * @param permitsPerSecond
+	 *            The sustained number of requests allowed per second
+	 * @param burst
+	 *            The number of requests that can be made at once after an idle
+	 *            period
+	 */
+	public RateLimiter(double permitsPerSecond, int burst) {
+		if (permitsPerSecond <= 0 || burst < 1)
+			throw new IllegalArgumentException("Invalid rate " + permitsPerSecond
+					+ "/s, burst " + burst);
+
+		mPermitsPerMilli = permitsPerSecond / 1000.0;
+		mMaxPermits = burst;
+		mPermits = burst;
+		mLastRefill = System.currentTimeMillis();
+	}
+
+	/**
+	 * Takes a token, blocking until one is available.
+	 *
+	 * @throws InterruptedException
+	 *             If the calling thread is interrupted while waiting
+	 */
+	public void acquire() throws InterruptedException {
+		while (true) {
+			final long wait;
+			synchronized (this) {
+				refill();
+				if (mPermits >= 1.0) {
+					mPermits -= 1.0;
+					return;
+				}
+				wait = (long) Math.ceil((1.0 - mPermits) / mPermitsPerMilli);
+			}
+			Thread.sleep(Math.max(wait, 1));
+		}
+	}
+
+	/**
+	 * Takes a token if one is available right now.
+	 *
+	 * @return True if a token was taken, false otherwise
+	 */
+	public synchronized boolean tryAcquire() {
+		refill();
+		if (mPermits >= 1.0) {
+			mPermits -= 1.0;
+			return true;
+		}
+		return false;
+	}
+
+	private void refill() {
+		final long now = System.currentTimeMillis();
+		final long elapsed = now - mLastRefill;
+		if (elapsed > 0) {
+			mPermits = Math.min(mMaxPermits, mPermits + elapsed
+					* mPermitsPerMilli);
+			mLastRefill = now;
+		}
+	}
+}
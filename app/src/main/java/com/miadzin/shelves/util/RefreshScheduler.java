@@ -0,0 +1,424 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Process;
+import android.util.Log;
+
+import com.miadzin.shelves.base.BaseItem;
+import com.miadzin.shelves.base.BaseItemContentProvider;
+
+/**
+ * Checks whether the covers of the items are still fresh, for every item
+ * type, on a single small pool of background threads. Requests are served by
+ * priority: the rows on screen first, then the rows of the next page, then a
+ * sweep through the items not checked for a day. A request for an item
+ * already queued only raises its priority.
+ *
+ * The time of the last check is kept with each item, so items checked
+ * recently are skipped even after a restart. No more than
+ * {@link #MAX_REQUESTS_PER_HOST} covers are downloaded at once from a host.
+ */
+public class RefreshScheduler {
+	private static final String LOG_TAG = "RefreshScheduler";
+
+	public static final int PRIORITY_VISIBLE = 0;
+	public static final int PRIORITY_NEXT_PAGE = 1;
+	public static final int PRIORITY_SWEEP = 2;
+
+	private static final int WORKERS = 3;
+	private static final int KEEP_ALIVE = 10;
+	private static final int MAX_REQUESTS_PER_HOST = 2;
+	private static final int SWEEP_SIZE = 25;
+
+	private static final long ONE_DAY = 24 * 60 * 60 * 1000;
+
+	private static final String[] PROJECTION_LAST_CHECKED = new String[] { BaseItem.LAST_CHECKED };
+	private static final String[] PROJECTION_INTERNAL_ID = new String[] { BaseItem.INTERNAL_ID };
+	private static final String SELECTION_STALE = BaseItem.LAST_CHECKED
+			+ " IS NULL OR " + BaseItem.LAST_CHECKED + "<?";
+
+	private static RefreshScheduler sInstance;
+
+	/**
+	 * The type specific part of a refresh.
+	 */
+	public interface ItemSource {
+		Uri getContentUri();
+
+		BaseItem findItem(ContentResolver resolver, String internalId);
+	}
+
+	private final ContentResolver mResolver;
+	private final ThreadPoolExecutor mExecutor;
+	private final AtomicLong mSequence = new AtomicLong();
+
+	private final HashMap<String, RefreshTask> mPending = new HashMap<String, RefreshTask>();
+	private final ArrayList<SweepTask> mSweeps = new ArrayList<SweepTask>();
+	private final HashMap<String, Semaphore> mHosts = new HashMap<String, Semaphore>();
+
+	private RefreshScheduler(Context context) {
+		mResolver = context.getContentResolver();
+
+		final ThreadFactory factory = new ThreadFactory() {
+			private final AtomicInteger mCount = new AtomicInteger(1);
+
+			public Thread newThread(final Runnable r) {
+				return new Thread(new Runnable() {
+					public void run() {
+						Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+						r.run();
+					}
+				}, "RefreshScheduler #" + mCount.getAndIncrement());
+			}
+		};
+
+		mExecutor = new ThreadPoolExecutor(WORKERS, WORKERS, KEEP_ALIVE,
+				TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(),
+				factory);
+		mExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	public static synchronized RefreshScheduler getInstance(Context context) {
+		if (sInstance == null) {
+			sInstance = new RefreshScheduler(context.getApplicationContext());
+		}
+		return sInstance;
+	}
+
+	/**
+	 * Queues a freshness check of the specified items.
+	 *
+	 * @param source
+	 *            The type of the items
+	 * @param priority
+	 *            One of {@link #PRIORITY_VISIBLE}, {@link #PRIORITY_NEXT_PAGE}
+	 *            and {@link #PRIORITY_SWEEP}
+	 * @param internalIds
+	 *            The internal ids of the items
+	 */
+	public void offer(ItemSource source, int priority, String... internalIds) {
+		for (String internalId : internalIds) {
+			if (internalId == null)
+				continue;
+
+			final String key = getKey(source, internalId);
+			synchronized (mPending) {
+				final RefreshTask pending = mPending.get(key);
+				if (pending != null) {
+					if (pending.mRunning || pending.mPriority <= priority)
+						continue;
+					// GJT: Queued again with a better priority
+					pending.mCancelled = true;
+					mExecutor.remove(pending);
+				}
+
+				final RefreshTask task = new RefreshTask(source, internalId,
+						priority, key);
+				mPending.put(key, task);
+				mExecutor.execute(task);
+			}
+		}
+	}
+
+	/**
+	 * Queues a sweep through the items of the specified type not checked for
+	 * a day, one page at a time, behind every other request.
+	 */
+	public void sweep(ItemSource source) {
+		synchronized (mPending) {
+			for (SweepTask sweep : mSweeps) {
+				if (sweep.mSource == source)
+					return;
+			}
+
+			final SweepTask sweep = new SweepTask(source);
+			mSweeps.add(sweep);
+			mExecutor.execute(sweep);
+		}
+	}
+
+	/**
+	 * Drops the requests queued for the specified type, down to the specified
+	 * priority. Checks already running complete.
+	 *
+	 * @param lowestPriority
+	 *            The last priority to drop; {@link #PRIORITY_NEXT_PAGE} keeps
+	 *            the sweep, {@link #PRIORITY_SWEEP} drops everything
+	 */
+	public void cancel(ItemSource source, int lowestPriority) {
+		synchronized (mPending) {
+			final Iterator<RefreshTask> i = mPending.values().iterator();
+			while (i.hasNext()) {
+				final RefreshTask task = i.next();
+				if (task.mSource == source && !task.mRunning
+						&& task.mPriority <= lowestPriority) {
+					task.mCancelled = true;
+					mExecutor.remove(task);
+					i.remove();
+				}
+			}
+
+			if (lowestPriority >= PRIORITY_SWEEP) {
+				final Iterator<SweepTask> s = mSweeps.iterator();
+				while (s.hasNext()) {
+					final SweepTask sweep = s.next();
+					if (sweep.mSource == source) {
+						sweep.mCancelled = true;
+						mExecutor.remove(sweep);
+						s.remove();
+					}
+				}
+			}
+		}
+	}
+
+	private static String getKey(ItemSource source, String internalId) {
+		return source.getContentUri() + "/" + internalId;
+	}
+
+	private void refresh(ItemSource source, String internalId) {
+		final Uri uri = source.getContentUri();
+		final String[] arguments = new String[] { internalId };
+		final long now = System.currentTimeMillis();
+
+		Cursor c = null;
+		try {
+			c = mResolver.query(uri, PROJECTION_LAST_CHECKED,
+					ItemQueries.SELECTION_INTERNAL_ID, arguments, null);
+			if (c == null || !c.moveToFirst())
+				return;
+			if (!c.isNull(0) && c.getLong(0) + ONE_DAY > now)
+				return;
+		} finally {
+			if (c != null)
+				c.close();
+		}
+
+		final ContentValues values = new ContentValues();
+		values.put(BaseItem.LAST_CHECKED, now);
+
+		boolean changed = false;
+		final BaseItem item = source.findItem(mResolver, internalId);
+		final String imgURL = item != null ? Preferences
+				.getImageURLForUpdater(item) : null;
+		if (!TextUtilities.isEmpty(imgURL)) {
+			final Semaphore host = getHost(imgURL);
+			try {
+				host.acquire();
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			final boolean cached = ImageUtilities.getDiskCoverCache().get(
+					internalId) != null;
+			final ImageUtilities.ExpiringBitmap expiring;
+			try {
+				if (cached) {
+					// GJT: Conditional, so an unchanged cover costs no download
+					expiring = ImageUtilities.loadIfModified(imgURL,
+							item.getLastModified(), item.getETag());
+				} else {
+					// The cover is gone, its validators would only get a 304
+					expiring = ImageUtilities.load(imgURL, CookieStore.get()
+							.getCookie(imgURL));
+				}
+			} finally {
+				host.release();
+			}
+
+			if (expiring.bitmap != null) {
+				ImageUtilities.deleteCachedCover(internalId);
+				ImportUtilities.addCoverToCache(internalId, expiring.bitmap);
+				ImageUtilities.getBitmapPool().put(expiring.bitmap);
+
+				if (expiring.lastModified != null) {
+					values.put(BaseItem.LAST_MODIFIED,
+							expiring.lastModified.getTimeInMillis());
+				}
+				values.put(BaseItem.ETAG, expiring.etag);
+				changed = true;
+			}
+		}
+
+		// GJT: Only a new cover is worth redrawing the lists for
+		mResolver.update(changed ? uri : BaseItemContentProvider
+				.getSilentUri(uri), values, ItemQueries.SELECTION_INTERNAL_ID,
+				arguments);
+	}
+
+	private Semaphore getHost(String url) {
+		String host = Uri.parse(url).getHost();
+		if (host == null)
+			host = "";
+
+		synchronized (mHosts) {
+			Semaphore semaphore = mHosts.get(host);
+			if (semaphore == null) {
+				semaphore = new Semaphore(MAX_REQUESTS_PER_HOST);
+				mHosts.put(host, semaphore);
+			}
+			return semaphore;
+		}
+	}
+
+	/**
+	 * Queues the items of the sweep page, and the next page if this one was
+	 * full.
+	 *
+	 * @return True if there may be more items to sweep
+	 */
+	/**
+	 * Records a check of the specified item that could not complete, so the
+	 * sweep doesn't pick it again before a day.
+	 */
+	private void markChecked(ItemSource source, String internalId) {
+		final ContentValues values = new ContentValues();
+		values.put(BaseItem.LAST_CHECKED, System.currentTimeMillis());
+		try {
+			mResolver.update(BaseItemContentProvider.getSilentUri(source
+					.getContentUri()), values,
+					ItemQueries.SELECTION_INTERNAL_ID,
+					new String[] { internalId });
+		} catch (RuntimeException e) {
+			Log.e(LOG_TAG, "Could not mark " + internalId + " as checked", e);
+		}
+	}
+
+	private boolean sweepPage(ItemSource source) {
+		final Uri uri = source.getContentUri().buildUpon()
+				.appendQueryParameter(BaseItemContentProvider.LIMIT_PARAMETER,
+						String.valueOf(SWEEP_SIZE)).build();
+		final String[] arguments = new String[] { String.valueOf(System
+				.currentTimeMillis() - ONE_DAY) };
+
+		final ArrayList<String> ids = new ArrayList<String>(SWEEP_SIZE);
+		Cursor c = null;
+		try {
+			c = mResolver.query(uri, PROJECTION_INTERNAL_ID, SELECTION_STALE,
+					arguments, BaseItem.LAST_CHECKED);
+			if (c == null)
+				return false;
+			while (c.moveToNext()) {
+				ids.add(c.getString(0));
+			}
+		} finally {
+			if (c != null)
+				c.close();
+		}
+
+		offer(source, PRIORITY_SWEEP, ids.toArray(new String[ids.size()]));
+		return ids.size() == SWEEP_SIZE;
+	}
+
+	private abstract class Task implements Runnable, Comparable<Task> {
+		final ItemSource mSource;
+		final int mPriority;
+		final long mSequence;
+
+		volatile boolean mCancelled;
+
+		Task(ItemSource source, int priority) {
+			mSource = source;
+			mPriority = priority;
+			mSequence = RefreshScheduler.this.mSequence.getAndIncrement();
+		}
+
+		public int compareTo(Task another) {
+			if (mPriority != another.mPriority)
+				return mPriority < another.mPriority ? -1 : 1;
+			return mSequence < another.mSequence ? -1
+					: (mSequence == another.mSequence ? 0 : 1);
+		}
+	}
+
+	private class RefreshTask extends Task {
+		private final String mInternalId;
+		private final String mKey;
+
+		// Guarded by mPending
+		boolean mRunning;
+
+		RefreshTask(ItemSource source, String internalId, int priority,
+				String key) {
+			super(source, priority);
+			mInternalId = internalId;
+			mKey = key;
+		}
+
+		public void run() {
+			synchronized (mPending) {
+				if (mCancelled)
+					return;
+				mRunning = true;
+			}
+
+			// GJT: Kept pending until checked, so the sweep can't queue the
+			// item again meanwhile
+			try {
+				refresh(mSource, mInternalId);
+			} catch (RuntimeException e) {
+				Log.e(LOG_TAG, "Could not refresh the cover of " + mInternalId,
+						e);
+				markChecked(mSource, mInternalId);
+			} finally {
+				synchronized (mPending) {
+					if (mPending.get(mKey) == this)
+						mPending.remove(mKey);
+				}
+			}
+		}
+	}
+
+	private class SweepTask extends Task {
+		SweepTask(ItemSource source) {
+			super(source, PRIORITY_SWEEP);
+		}
+
+		public void run() {
+			if (mCancelled)
+				return;
+
+			final boolean more = sweepPage(mSource);
+
+			synchronized (mPending) {
+				mSweeps.remove(this);
+				if (!more || mCancelled)
+					return;
+			}
+
+			// GJT: Queued behind the page just offered
+			sweep(mSource);
+		}
+	}
+}
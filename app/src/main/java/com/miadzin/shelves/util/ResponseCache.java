@@ -0,0 +1,427 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.util.Log;
+
+/**
+ * The raw responses of the web services the items are looked up on, kept on
+ * the internal storage so that looking up the same item or paging through the
+ * same search again does not cost a request. A response is keyed by the host
+ * and the parameters of its request, less the ones that change from one
+ * request to the next such as the API key, and is served while younger than
+ * the age the caller allows. The least recently used responses are deleted
+ * once the cache holds more than its budget. Responses the service answered
+ * with errors are deleted by their caller once read.
+ *
+ * When there is no network, or the service fails, a response older than
+ * allowed is served rather than nothing. All the methods can be called from
+ * any thread.
+ */
+public class ResponseCache {
+	private static final String LOG_TAG = "ResponseCache";
+
+	/**
+	 * How long an item looked up by its id is served from the cache.
+	 */
+	public static final long LOOKUP_MAX_AGE = 7 * 24 * 60 * 60 * 1000L;
+	/**
+	 * How long a page of search results is served from the cache.
+	 */
+	public static final long SEARCH_MAX_AGE = 24 * 60 * 60 * 1000L;
+
+	private static final String CACHE_DIRECTORY = "responses";
+	// GJT: Lookups run to tens of KB each, this holds a whole import
+	private static final long MAX_SIZE = 16 * 1024 * 1024;
+	private static final int FORMAT_VERSION = 1;
+	private static final String TMP_SUFFIX = ".tmp";
+
+	private static final ResponseCache sResponseCache = new ResponseCache();
+
+	private Context mContext;
+	private File mDirectory;
+	// File names to sizes, eldest use first
+	private final LinkedHashMap<String, Long> mEntries = new LinkedHashMap<String, Long>(
+			0, 0.75f, true);
+	private long mSize;
+	private boolean mOpened;
+
+	private int mHitCount;
+	private int mStaleCount;
+	private int mMissCount;
+
+	private ResponseCache() {
+	}
+
+	public static void initialize(Context context) {
+		synchronized (sResponseCache) {
+			sResponseCache.mContext = context.getApplicationContext();
+			sResponseCache.mDirectory = new File(context.getCacheDir(),
+					CACHE_DIRECTORY);
+		}
+	}
+
+	public static ResponseCache get() {
+		return sResponseCache;
+	}
+
+	/**
+	 * Builds the key of a request: the host, the path and the query
+	 * parameters in a stable order, without the specified parameters.
+	 *
+	 * @param ignoredParameters
+	 *            The parameters that don't change the response, such as API
+	 *            keys picked at random
+	 */
+	public static String getKey(HttpHost host, HttpGet get,
+			String... ignoredParameters) {
+		final ArrayList<String> parameters = new ArrayList<String>();
+		final String query = get.getURI().getRawQuery();
+		if (query != null) {
+			for (String parameter : query.split("&")) {
+				if (!isIgnored(parameter, ignoredParameters))
+					parameters.add(parameter);
+			}
+		}
+		// GJT: The builders append the same parameters in different orders
+		Collections.sort(parameters);
+
+		final StringBuilder key = new StringBuilder(host.getHostName());
+		key.append(get.getURI().getRawPath());
+		for (int i = 0; i < parameters.size(); i++) {
+			key.append(i == 0 ? '?' : '&').append(parameters.get(i));
+		}
+		return key.toString();
+	}
+
+	private static boolean isIgnored(String parameter,
+			String[] ignoredParameters) {
+		for (String ignored : ignoredParameters) {
+			if (parameter.startsWith(ignored + "="))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the response to the specified request, from the cache if it has
+	 * one younger than the specified age, from the network otherwise.
+	 * Redirects are followed. Only successful responses are stored.
+	 *
+	 * @param key
+	 *            The key of the request, see
+	 *            {@link #getKey(HttpHost, HttpGet, String...)}
+	 * @param maxAge
+	 *            The age in milliseconds above which the response is
+	 *            requested again
+	 *
+	 * @return The body of the response, or null if the service did not answer
+	 *         the request
+	 *
+	 * @throws IOException
+	 *             If the network failed and the cache has no response at all
+	 */
+	public byte[] execute(HttpHost host, HttpGet get, String key, long maxAge)
+			throws IOException {
+		final Entry cached = read(key);
+		if (cached != null
+				&& cached.mStored + maxAge > System.currentTimeMillis()) {
+			synchronized (this) {
+				mHitCount++;
+			}
+			return cached.mResponse;
+		}
+
+		if (cached != null && isOffline()) {
+			Log.i(LOG_TAG, "Offline, serving stale " + key);
+			return stale(cached);
+		}
+
+		HttpEntity entity = null;
+		try {
+			final HttpResponse response = HttpManager
+					.executeFollowingRedirects(host, get);
+			entity = response.getEntity();
+			if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+				// GJT: Most likely throttled, an old answer beats none
+				return cached != null ? stale(cached) : null;
+			}
+
+			final byte[] body = readFully(entity.getContent());
+			synchronized (this) {
+				mMissCount++;
+			}
+			write(key, body);
+			return body;
+		} catch (IOException e) {
+			if (cached == null)
+				throw e;
+			Log.w(LOG_TAG, "Could not reach " + host + ", serving stale "
+					+ key, e);
+			return stale(cached);
+		} finally {
+			if (entity != null) {
+				entity.consumeContent();
+			}
+		}
+	}
+
+	private byte[] stale(Entry cached) {
+		synchronized (this) {
+			mStaleCount++;
+		}
+		return cached.mResponse;
+	}
+
+	/**
+	 * Deletes the response to the specified request, for instance because it
+	 * could not be parsed.
+	 */
+	public void remove(String key) {
+		final String name = getFileName(key);
+		synchronized (this) {
+			if (!ensureOpen())
+				return;
+
+			new File(mDirectory, name).delete();
+			final Long size = mEntries.remove(name);
+			if (size != null)
+				mSize -= size;
+		}
+	}
+
+	/**
+	 * Deletes every response.
+	 */
+	public synchronized void clear() {
+		mEntries.clear();
+		mSize = 0;
+		mOpened = false;
+
+		if (mDirectory != null)
+			IOUtilities.deleteDirectory(mDirectory);
+	}
+
+	/**
+	 * Returns true if the device has no network to send requests on.
+	 */
+	public boolean isOffline() {
+		final Context context;
+		synchronized (this) {
+			context = mContext;
+		}
+		if (context == null)
+			return false;
+
+		final ConnectivityManager manager = (ConnectivityManager) context
+				.getSystemService(Context.CONNECTIVITY_SERVICE);
+		final NetworkInfo info = manager != null ? manager
+				.getActiveNetworkInfo() : null;
+		return info == null || !info.isConnected();
+	}
+
+	private Entry read(String key) {
+		final String name = getFileName(key);
+		final File file;
+		synchronized (this) {
+			if (!ensureOpen() || mEntries.get(name) == null)
+				return null;
+			file = new File(mDirectory, name);
+		}
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file), IOUtilities.IO_BUFFER_SIZE));
+			if (in.readInt() != FORMAT_VERSION || !key.equals(in.readUTF()))
+				return null;
+
+			final long stored = in.readLong();
+			final byte[] response = new byte[in.readInt()];
+			in.readFully(response);
+			return new Entry(stored, response);
+		} catch (IOException e) {
+			// GJT: Torn or deleted behind our back, forget it
+			remove(key);
+			return null;
+		} finally {
+			IOUtilities.closeStream(in);
+		}
+	}
+
+	private void write(String key, byte[] response) {
+		final String name = getFileName(key);
+		final File tmp;
+		synchronized (this) {
+			if (!ensureOpen())
+				return;
+			tmp = new File(mDirectory, name + "."
+					+ Thread.currentThread().getId() + TMP_SUFFIX);
+		}
+
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(tmp), IOUtilities.IO_BUFFER_SIZE));
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(key);
+			out.writeLong(System.currentTimeMillis());
+			out.writeInt(response.length);
+			out.write(response);
+			out.close();
+			out = null;
+		} catch (IOException e) {
+			Log.e(LOG_TAG, "Could not write response " + key, e);
+			tmp.delete();
+			return;
+		} finally {
+			IOUtilities.closeStream(out);
+		}
+
+		synchronized (this) {
+			final File file = new File(mDirectory, name);
+			if (!ensureOpen() || !tmp.renameTo(file)) {
+				tmp.delete();
+				return;
+			}
+
+			final long size = file.length();
+			final Long previous = mEntries.put(name, size);
+			if (previous != null)
+				mSize -= previous;
+			mSize += size;
+			trimToSize();
+		}
+	}
+
+	private boolean ensureOpen() {
+		if (mOpened)
+			return true;
+		if (mDirectory == null)
+			return false;
+
+		if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+			Log.e(LOG_TAG, "Could not create cache directory!");
+			return false;
+		}
+
+		final File[] files = mDirectory.listFiles();
+		if (files != null) {
+			// GJT: Last modified first, as good an order of use as any
+			Arrays.sort(files, new Comparator<File>() {
+				public int compare(File lhs, File rhs) {
+					final long l = lhs.lastModified();
+					final long r = rhs.lastModified();
+					return l < r ? -1 : (l == r ? 0 : 1);
+				}
+			});
+
+			for (File file : files) {
+				if (file.getName().endsWith(TMP_SUFFIX)) {
+					file.delete();
+				} else {
+					mEntries.put(file.getName(), file.length());
+					mSize += file.length();
+				}
+			}
+		}
+
+		mOpened = true;
+		trimToSize();
+		return true;
+	}
+
+	private void trimToSize() {
+		final Iterator<Map.Entry<String, Long>> i = mEntries.entrySet()
+				.iterator();
+		while (mSize > MAX_SIZE && i.hasNext()) {
+			final Map.Entry<String, Long> entry = i.next();
+			new File(mDirectory, entry.getKey()).delete();
+			mSize -= entry.getValue();
+			i.remove();
+		}
+	}
+
+	private static String getFileName(String key) {
+		try {
+			final byte[] digest = MessageDigest.getInstance("MD5").digest(
+					key.getBytes("UTF-8"));
+			final StringBuilder name = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				name.append(Integer.toHexString(0x100 | (b & 0xff))
+						.substring(1));
+			}
+			return name.toString();
+		} catch (NoSuchAlgorithmException e) {
+			return Integer.toHexString(key.hashCode());
+		} catch (IOException e) {
+			return Integer.toHexString(key.hashCode());
+		}
+	}
+
+	private static byte[] readFully(InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		IOUtilities.copy(in, out);
+		return out.toByteArray();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ResponseCache[size=" + mSize + ",maxSize=" + MAX_SIZE
+				+ ",hits=" + mHitCount + ",stale=" + mStaleCount
+				+ ",misses=" + mMissCount + "]";
+	}
+
+	private static class Entry {
+		final long mStored;
+		final byte[] mResponse;
+
+		Entry(long stored, byte[] response) {
+			mStored = stored;
+			mResponse = response;
+		}
+	}
+}
@@ -25,17 +25,31 @@ package com.miadzin.shelves.util;
  * GJT: Rewrote references from CSV to TSV
  */
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 
+/**
+ * Writes rows of delimited text. Each row is escaped in a single pass into a
+ * char buffer reused from row to row, then handed to a large buffered
+ * writer, so writing a row allocates nothing once the buffer has grown to the
+ * longest row.
+ */
 public class TSVWriter {
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Writer out;
+	private final char separator;
+	private final char quotechar;
+	private final char escapechar;
+	private final String lineEnd;
 
-	private PrintWriter pw;
-	private char separator;
-	private char quotechar;
-	private char escapechar;
-	private String lineEnd;
+	private char[] line = new char[1024];
+	private int length;
 
 	/** The character used for escaping quotes. */
 	public static final char DEFAULT_ESCAPE_CHARACTER = '"';
@@ -86,62 +100,104 @@ public class TSVWriter {
 	 */
 	public TSVWriter(Writer writer, char separator, char quotechar,
 			char escapechar, String lineEnd) {
-		this.pw = new PrintWriter(writer);
+		this.out = writer instanceof BufferedWriter ? writer
+				: new BufferedWriter(writer, BUFFER_SIZE);
 		this.separator = separator;
 		this.quotechar = quotechar;
 		this.escapechar = escapechar;
 		this.lineEnd = lineEnd;
 	}
 
+	/**
+	 * Constructs TSVWriter writing UTF-8 to the specified file, with supplied
+	 * separator, quote char, escape char and line ending.
+	 * 
+	 * @param file
+	 *            the file to create or overwrite.
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public TSVWriter(File file, char separator, char quotechar,
+			char escapechar, String lineEnd) throws IOException {
+		this(new OutputStreamWriter(new BufferedOutputStream(
+				new FileOutputStream(file), BUFFER_SIZE), "UTF-8"), separator,
+				quotechar, escapechar, lineEnd);
+	}
+
 	/**
 	 * Writes the next line to the file.
 	 * 
 	 * @param nextLine
 	 *            a string array with each comma-separated element as a separate
 	 *            entry.
+	 * @throws IOException
+	 *             if the line cannot be written
 	 */
-	public void writeNext(String[] nextLine) {
+	public void writeNext(String[] nextLine) throws IOException {
 
 		if (nextLine == null)
 			return;
 
-		StringBuffer sb = new StringBuffer();
+		length = 0;
 		for (int i = 0; i < nextLine.length; i++) {
 
 			if (i != 0) {
-				sb.append(separator);
+				append(separator);
 			}
 
 			String nextElement = nextLine[i];
 			if (nextElement == null) {
-				sb.append(" ");
+				append(' ');
 				continue;
 			}
 			if (quotechar != NO_QUOTE_CHARACTER)
-				sb.append(quotechar);
+				append(quotechar);
 			if (nextElement.length() == 0)
-				sb.append(" ");
-			else {
-				for (int j = 0; j < nextElement.length(); j++) {
-					char nextChar = nextElement.charAt(j);
-					if (escapechar != NO_ESCAPE_CHARACTER
-							&& nextChar == quotechar) {
-						sb.append(escapechar).append(nextChar);
-					} else if (escapechar != NO_ESCAPE_CHARACTER
-							&& nextChar == escapechar) {
-						sb.append(escapechar).append(nextChar);
-					} else {
-						sb.append(nextChar);
-					}
-				}
-			}
+				append(' ');
+			else
+				appendEscaped(nextElement);
 			if (quotechar != NO_QUOTE_CHARACTER)
-				sb.append(quotechar);
+				append(quotechar);
+		}
+
+		final int count = lineEnd.length();
+		ensureCapacity(count);
+		lineEnd.getChars(0, count, line, length);
+		length += count;
+
+		out.write(line, 0, length);
+	}
+
+	private void appendEscaped(String element) {
+		final int count = element.length();
+		// GJT: Worst case, every char needs escaping
+		ensureCapacity(escapechar != NO_ESCAPE_CHARACTER ? count * 2 : count);
+
+		final char[] chars = line;
+		int position = length;
+		for (int j = 0; j < count; j++) {
+			final char nextChar = element.charAt(j);
+			if (escapechar != NO_ESCAPE_CHARACTER
+					&& (nextChar == quotechar || nextChar == escapechar)) {
+				chars[position++] = escapechar;
+			}
+			chars[position++] = nextChar;
 		}
+		length = position;
+	}
 
-		sb.append(lineEnd);
-		pw.write(sb.toString());
+	private void append(char c) {
+		ensureCapacity(1);
+		line[length++] = c;
+	}
 
+	private void ensureCapacity(int extra) {
+		final int required = length + extra;
+		if (required > line.length) {
+			final char[] grown = new char[Math.max(required, line.length * 2)];
+			System.arraycopy(line, 0, grown, 0, length);
+			line = grown;
+		}
 	}
 
 	/**
@@ -151,7 +207,7 @@ public class TSVWriter {
 	 *             if bad things happen
 	 */
 	public void flush() throws IOException {
-		pw.flush();
+		out.flush();
 	}
 
 	/**
@@ -162,8 +218,7 @@ public class TSVWriter {
 	 * 
 	 */
 	public void close() throws IOException {
-		pw.flush();
-		pw.close();
+		out.close();
 	}
 
 }
\ No newline at end of file
@@ -32,9 +32,6 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import android.text.TextUtils;
 
@@ -216,36 +213,52 @@ public final class TextUtilities {
 		return str.substring(1, str.length() - 1);
 	}
 
-	public static String keyFor(Pattern[] mKeyPrefixes, Pattern[] mKeySuffixes,
-			String name) {
-		final Locale locale = Locale.getDefault();
-
-		final Pattern[] prefixes = mKeyPrefixes;
-		for (Pattern prefix : prefixes) {
-			final Matcher matcher = prefix.matcher(name);
-			if (matcher.find()) {
-				if (prefix.toString().contains("die")
-						&& !(locale.equals(Locale.GERMAN) || locale
-								.equals(Locale.GERMANY))) {
-					// GJT: If it starts with "die," like Die Hard, and this
-					// isn't a German locale, ignore it!
-				} else {
-					name = name.substring(matcher.end());
-				}
+	/**
+	 * Returns the first number written in the specified text, such as the
+	 * amount of a price or the "12" of "12+", or null if there is none. A
+	 * period or a comma followed by one or two digits is read as the decimal
+	 * separator, the others as grouping.
+	 */
+	public static Double numberFor(String text) {
+		if (text == null)
+			return null;
+
+		final int length = text.length();
+		int start = 0;
+		while (start < length && !Character.isDigit(text.charAt(start))) {
+			start++;
+		}
+		if (start == length)
+			return null;
+
+		int end = start;
+		int separator = -1;
+		while (end < length) {
+			final char c = text.charAt(end);
+			if (c == '.' || c == ',')
+				separator = end;
+			else if (!Character.isDigit(c))
 				break;
-			}
+			end++;
 		}
 
-		final Pattern[] suffixes = mKeySuffixes;
-		for (Pattern suffix : suffixes) {
-			final Matcher matcher = suffix.matcher(name);
-			if (matcher.find()) {
-				name = name.substring(0, matcher.start());
-				break;
-			}
+		final int decimals = end - separator - 1;
+		final boolean decimal = separator != -1 && decimals >= 1
+				&& decimals <= 2;
+		final StringBuilder number = new StringBuilder(end - start);
+		for (int i = start; i < end; i++) {
+			final char c = text.charAt(i);
+			if (i == separator && decimal)
+				number.append('.');
+			else if (Character.isDigit(c))
+				number.append(Character.forDigit(Character.digit(c, 10), 10));
 		}
 
-		return name;
+		try {
+			return Double.valueOf(number.toString());
+		} catch (NumberFormatException e) {
+			return null;
+		}
 	}
 
 	public static class RevStrComp implements Comparator<String> {
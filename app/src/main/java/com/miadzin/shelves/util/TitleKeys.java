@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import com.miadzin.shelves.R;
+
+/**
+ * Builds the keys the items are sorted by title on: the title in lower case,
+ * without accents, and without the article it starts or ends with, so that
+ * "The Hobbit" and "Hobbit, The" sort under H, and accented letters next to
+ * the letters they are accents on.
+ *
+ * The articles of {@link R.array#prefixes} and {@link R.array#suffixes} are
+ * compiled into a single pattern each, so a title costs two matches whatever
+ * the number of articles. "Die" only counts as an article in German, where
+ * it is not a verb. Instances are immutable and can be shared by threads.
+ */
+public class TitleKeys {
+	private static final String GERMAN_ARTICLE = "die";
+
+	private static TitleKeys sInstance;
+
+	private final Locale mLocale;
+	private final Pattern mPrefixes;
+	private final Pattern mSuffixes;
+
+	/**
+	 * @param prefixes
+	 *            The articles a title can start with, followed by spaces
+	 * @param suffixes
+	 *            The articles a title can end with, comma included
+	 */
+	public TitleKeys(String[] prefixes, String[] suffixes, Locale locale) {
+		mLocale = locale;
+
+		final boolean german = "de".equals(locale.getLanguage());
+		final StringBuilder prefix = new StringBuilder("^(?:");
+		for (String article : prefixes) {
+			if (!german && GERMAN_ARTICLE.equals(article))
+				continue;
+			if (prefix.length() > 4)
+				prefix.append('|');
+			prefix.append(Pattern.quote(article));
+		}
+		// GJT: Same order as the arrays, the first article listed wins
+		mPrefixes = Pattern.compile(prefix.append(")\\s+").toString());
+
+		final StringBuilder suffix = new StringBuilder("\\s*(?:");
+		for (int i = 0; i < suffixes.length; i++) {
+			if (i > 0)
+				suffix.append('|');
+			suffix.append(Pattern.quote(suffixes[i]));
+		}
+		mSuffixes = Pattern.compile(suffix.append(")$").toString());
+	}
+
+	/**
+	 * Returns the keys of the articles of the application, for the current
+	 * locale.
+	 */
+	public static synchronized TitleKeys get(Context context) {
+		final Locale locale = Locale.getDefault();
+		if (sInstance == null || !sInstance.mLocale.equals(locale)) {
+			final Resources resources = context.getResources();
+			sInstance = new TitleKeys(resources
+					.getStringArray(R.array.prefixes), resources
+					.getStringArray(R.array.suffixes), locale);
+		}
+		return sInstance;
+	}
+
+	/**
+	 * Returns the sort key of the specified title, empty for a null title.
+	 */
+	public String keyFor(String title) {
+		if (title == null)
+			return "";
+
+		String key = fold(title.trim());
+
+		final Matcher prefix = mPrefixes.matcher(key);
+		if (prefix.find())
+			key = key.substring(prefix.end());
+
+		final Matcher suffix = mSuffixes.matcher(key);
+		if (suffix.find())
+			key = key.substring(0, suffix.start());
+
+		return key;
+	}
+
+	/**
+	 * Lowers the case of the specified text and drops its accents. The case
+	 * is lowered the same way in every locale, so the keys don't depend on
+	 * the one the items were added in.
+	 */
+	static String fold(String text) {
+		final String lower = text.toLowerCase(Locale.ENGLISH);
+
+		boolean ascii = true;
+		for (int i = 0; i < lower.length() && ascii; i++) {
+			ascii = lower.charAt(i) < 0x80;
+		}
+		if (ascii)
+			return lower;
+
+		final String decomposed = Normalizer.normalize(lower,
+				Normalizer.Form.NFD);
+		final StringBuilder folded = new StringBuilder(decomposed.length());
+		for (int i = 0; i < decomposed.length(); i++) {
+			final char c = decomposed.charAt(i);
+			if (Character.getType(c) != Character.NON_SPACING_MARK)
+				folded.append(c);
+		}
+		return folded.toString();
+	}
+}
@@ -233,15 +233,20 @@ public class Calendars {
 
 	public static void deleteCalendar(ContentResolver contentResolver,
 			BaseItem bi) {
+		deleteCalendarEvent(contentResolver, bi.getEventId());
+	}
+
+	public static void deleteCalendarEvent(ContentResolver contentResolver,
+			int eventId) {
 		try {
 			Calendars.setupCalendarUri();
 			contentResolver.delete(
 					Uri.parse(Calendars.CALENDAR_EVENTS_URI.toString() + "/"
-							+ bi.getEventId()), null, null);
+							+ eventId), null, null);
 		} catch (IllegalArgumentException iae) {
 			Log.e(LOG_TAG,
 					"Unknown URI: " + Calendars.CALENDAR_EVENTS_URI.toString()
-							+ "/" + bi.getEventId() + iae.toString());
+							+ "/" + eventId + iae.toString());
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates titles the way collections hold them, with the key each one must
+ * sort on: articles in front or at the end, after a comma, in any case, and
+ * words with and without accents. The same seed always gives the same titles.
+ */
+class TitleCorpus {
+	/**
+	 * The articles of R.array.prefixes.
+	 */
+	static final String[] PREFIXES = new String[] { "the", "a", "an", "le",
+			"la", "les", "l'", "die", "der", "das" };
+
+	/**
+	 * The articles of R.array.suffixes.
+	 */
+	static final String[] SUFFIXES = new String[] { ",the", ",a", ",an", ",le",
+			",la", ",les", ",l'", ",die", ",der", ",das", ", the", ", a",
+			", an", ", le", ", la", ", les", ", l'", ", die", ", der",
+			", das" };
+
+	private static final String[] ARTICLES = new String[] { "The", "A", "An",
+			"Le", "La", "Les", "Der", "Das" };
+
+	// Each word, then its key
+	private static final String[][] WORDS = new String[][] {
+			{ "Hobbit", "hobbit" }, { "Night", "night" },
+			{ "Garden", "garden" }, { "Secret", "secret" },
+			{ "River", "river" }, { "Winter", "winter" },
+			{ "Stone", "stone" }, { "Empire", "empire" },
+			{ "Silence", "silence" }, { "Machine", "machine" },
+			{ "Mirror", "mirror" }, { "Ocean", "ocean" },
+			{ "Shadow", "shadow" }, { "Kingdom", "kingdom" },
+			{ "Journey", "journey" }, { "Music", "music" },
+			{ "\u00c9tranger", "etranger" }, { "Caf\u00e9", "cafe" },
+			{ "Na\u00efve", "naive" }, { "M\u00fcller", "muller" },
+			{ "Se\u00f1or", "senor" }, { "Fa\u00e7ade", "facade" },
+			{ "Cr\u00e8me", "creme" }, { "Z\u00fcrich", "zurich" } };
+
+	private final Random mRandom;
+
+	TitleCorpus(long seed) {
+		mRandom = new Random(seed);
+	}
+
+	/**
+	 * Fills the specified arrays with titles and the keys they must sort on.
+	 */
+	void generate(String[] titles, String[] keys) {
+		final StringBuilder title = new StringBuilder();
+		final StringBuilder key = new StringBuilder();
+
+		for (int i = 0; i < titles.length; i++) {
+			title.setLength(0);
+			key.setLength(0);
+
+			final int words = 1 + mRandom.nextInt(5);
+			for (int w = 0; w < words; w++) {
+				final String[] word = WORDS[mRandom.nextInt(WORDS.length)];
+				if (w > 0) {
+					title.append(' ');
+					key.append(' ');
+				}
+				title.append(mRandom.nextInt(4) == 0 ? word[0]
+						.toUpperCase(Locale.ENGLISH) : word[0]);
+				key.append(word[1]);
+			}
+
+			final String article = ARTICLES[mRandom.nextInt(ARTICLES.length)];
+			switch (mRandom.nextInt(4)) {
+			case 0:
+				title.insert(0, article + " ");
+				break;
+			case 1:
+				title.append(", ").append(article);
+				break;
+			case 2:
+				title.append(',').append(article.toLowerCase(Locale.ENGLISH));
+				break;
+			default:
+				// No article
+				break;
+			}
+
+			titles[i] = title.toString();
+			keys[i] = key.toString();
+		}
+	}
+}
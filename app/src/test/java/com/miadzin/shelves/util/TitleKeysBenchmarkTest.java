@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2011 Garen J. Torikian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.miadzin.shelves.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Locale;
+
+import org.junit.Test;
+
+/**
+ * Checks the sort keys of {@link TitleKeys} and times them over a corpus of
+ * 100,000 titles from {@link TitleCorpus}, the size of a large collection
+ * being sorted again after an upgrade.
+ */
+public class TitleKeysBenchmarkTest {
+	private static final int TITLES = 100000;
+	private static final int ROUNDS = 5;
+	private static final long SEED = 42;
+
+	private final TitleKeys mKeys = new TitleKeys(TitleCorpus.PREFIXES,
+			TitleCorpus.SUFFIXES, Locale.ENGLISH);
+
+	@Test
+	public void testArticles() {
+		assertEquals("hobbit", mKeys.keyFor("The Hobbit"));
+		assertEquals("hobbit", mKeys.keyFor("Hobbit, The"));
+		assertEquals("hobbit", mKeys.keyFor("  hobbit,the  "));
+		assertEquals("miserables", mKeys.keyFor("Les Mis\u00e9rables"));
+		assertEquals("cafe", mKeys.keyFor("Le Caf\u00e9"));
+		assertEquals("", mKeys.keyFor(null));
+	}
+
+	@Test
+	public void testGermanArticle() {
+		assertEquals("die hard", mKeys.keyFor("Die Hard"));
+
+		final TitleKeys german = new TitleKeys(TitleCorpus.PREFIXES,
+				TitleCorpus.SUFFIXES, Locale.GERMAN);
+		assertEquals("verwandlung", german.keyFor("Die Verwandlung"));
+	}
+
+	@Test
+	public void testCorpus() {
+		final String[] titles = new String[TITLES];
+		final String[] keys = new String[TITLES];
+		new TitleCorpus(SEED).generate(titles, keys);
+
+		// GJT: The first round also warms up the compiler
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			final long start = System.nanoTime();
+			for (int i = 0; i < TITLES; i++) {
+				final String key = mKeys.keyFor(titles[i]);
+				if (!key.equals(keys[i]))
+					assertEquals(titles[i], keys[i], key);
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+
+		System.out.println(String.format(Locale.ENGLISH,
+				"TitleKeys: %d titles in %.1f ms, %d ns per title", TITLES,
+				best / 1e6, best / TITLES));
+	}
+}